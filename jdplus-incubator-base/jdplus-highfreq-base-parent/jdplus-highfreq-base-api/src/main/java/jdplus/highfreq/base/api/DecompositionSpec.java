@@ -29,6 +29,13 @@ import nbbrd.design.Development;
 public class DecompositionSpec {
 
     public static final boolean DEF_ITERATIVE = true, DEF_NOISY = true, DEF_STDEV = false, DEF_BIAS = true;
+    /**
+     * Periods above that limit are not decomposed canonically (the roots of the
+     * seasonal polynomial can't be computed in reasonable time); they are
+     * handled by a trigonometric seasonal block with a limited number of
+     * harmonics
+     */
+    public static final int DEF_MAXCANONICALPERIOD = 1000, DEF_HARMONICS = 12;
 
     @lombok.NonNull
     private double[] periodicities;
@@ -38,13 +45,17 @@ public class DecompositionSpec {
     private int backcastsCount, forecastsCount;
     private boolean biasCorrection;
     private boolean adjustToInt;
+    private int maxCanonicalPeriod;
+    private int harmonicsCount;
 
     public static Builder builder() {
         return new Builder()
                 .iterative(DEF_ITERATIVE)
                 .noisy(DEF_NOISY)
                 .stdev(DEF_STDEV)
-                .biasCorrection(DEF_BIAS);
+                .biasCorrection(DEF_BIAS)
+                .maxCanonicalPeriod(DEF_MAXCANONICALPERIOD)
+                .harmonicsCount(DEF_HARMONICS);
 
     }
 
@@ -69,10 +80,31 @@ public class DecompositionSpec {
                     .periodicities(new double[]{7, 365.25})
                     .adjustToInt(true)
                     .build();
+        } else if (unit.equals(TsUnit.HOUR)) {
+            return builder
+                    .periodicities(new double[]{24, 24 * 7, 24 * 365.25})
+                    .adjustToInt(true)
+                    .build();
+        } else if (unit.equals(TsUnit.MINUTE)) {
+            return builder
+                    .periodicities(new double[]{60 * 24, 60 * 24 * 7})
+                    .adjustToInt(true)
+                    .build();
         } else {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
         }
 
     }
 
+    /**
+     * Checks that a given period will be decomposed with a reduced
+     * (trigonometric) seasonal block
+     *
+     * @param period
+     * @return
+     */
+    public boolean isReduced(double period) {
+        return maxCanonicalPeriod > 0 && period > maxCanonicalPeriod;
+    }
+
 }
@@ -80,6 +80,7 @@ public class ExtendedAirlineDictionaries {
             S_CMP="s_cmp", S_CMP_F="s_cmp_f", S_CMP_B="s_cmp_b",
             SY_CMP="sy_cmp", SY_CMP_F="sy_cmp_f", SY_CMP_B="sy_cmp_b",
             SW_CMP="sw_cmp", SW_CMP_F="sw_cmp_f", SW_CMP_B="sw_cmp_b",
+            SD_CMP="sd_cmp", SD_CMP_F="sd_cmp_f", SD_CMP_B="sd_cmp_b",
             I_CMP="i_cmp", I_CMP_F="i_cmp_f", I_CMP_B="i_cmp_b",
            SW_LIN="sw_lin", SW_LIN_F="sw_lin_f", SW_LIN_B="sw_lin_b",
             SW_LIN_E="sw_lin_e", SW_LIN_EF="sw_lin_ef", SW_LIN_EB="sw_lin_eb",
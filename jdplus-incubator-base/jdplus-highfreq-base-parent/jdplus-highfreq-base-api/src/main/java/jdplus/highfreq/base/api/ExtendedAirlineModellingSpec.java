@@ -35,6 +35,27 @@ import nbbrd.design.Development;
 @lombok.Value
 @lombok.Builder(toBuilder = true, builderClassName = "Builder")
 public class ExtendedAirlineModellingSpec implements ProcSpecification {
+
+    /**
+     * Algorithm used for the automatic detection of the outliers
+     */
+    public static enum OutliersDetection {
+        /**
+         * Generic regarima detection: the most significant outlier is added
+         * at each iteration
+         */
+        Generic,
+        /**
+         * Detection by rounds for long series: all the significant outliers
+         * of a round are added in one batch
+         */
+        Batch,
+        /**
+         * Detection by rounds, each candidate being confirmed by a
+         * re-estimation of the model
+         */
+        ConfirmedBatch
+    }
     
     @NonNull
     private TsUnit period;
@@ -54,6 +75,8 @@ public class ExtendedAirlineModellingSpec implements ProcSpecification {
     private ExtendedAirlineSpec stochastic;
     @NonNull
     private OutlierSpec outlier;
+    @NonNull
+    private OutliersDetection outliersDetection;
 
     public static Builder builder() {
         return new Builder()
@@ -64,6 +87,7 @@ public class ExtendedAirlineModellingSpec implements ProcSpecification {
                 .stochastic(null)
                 .regression(RegressionSpec.DEFAULT)
                 .outlier(OutlierSpec.DEFAULT_DISABLED)
+                .outliersDetection(OutliersDetection.Generic)
                 .estimate(EstimateSpec.DEFAULT);
     }
     
@@ -128,6 +128,23 @@ public class ExtendedAirlineSpec {
             .adjustToInt(false)
             .build();
 
+    public static final ExtendedAirlineSpec DEFAULT_H = builder()
+            .periodicities(new double[]{24, 24 * 7})
+            .differencingOrder(3)
+            .phi(null)
+            .theta(Parameter.undefined())
+            .adjustToInt(true)
+            .build();
+
+    public static final ExtendedAirlineSpec DEFAULT_MIN = builder()
+            .periodicities(new double[]{60 * 24})
+            .differencingOrder(2)
+            .phi(null)
+            .theta(Parameter.undefined())
+            .stheta(Parameter.make(1))
+            .adjustToInt(true)
+            .build();
+
     public int freeParametersCount() {
         int np = 0;
         if (phi != null && phi.isFree()) {
@@ -152,6 +169,10 @@ public class ExtendedAirlineSpec {
             return ExtendedAirlineSpec.DEFAULT_W;
         } else if (unit.equals(TsUnit.DAY)) {
             return ExtendedAirlineSpec.DEFAULT_WD;
+        } else if (unit.equals(TsUnit.HOUR)) {
+            return ExtendedAirlineSpec.DEFAULT_H;
+        } else if (unit.equals(TsUnit.MINUTE)) {
+            return ExtendedAirlineSpec.DEFAULT_MIN;
         } else {
             throw new UnsupportedOperationException("Not supported yet.");
         }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.bench;
+
+import java.util.concurrent.TimeUnit;
+import jdplus.highfreq.base.api.DecompositionSpec;
+import jdplus.highfreq.base.api.ExtendedAirlineSpec;
+import jdplus.highfreq.base.core.extendedairline.decomposition.DecompositionKernel;
+import jdplus.highfreq.base.core.extendedairline.decomposition.ExtendedAirlineDecomposer;
+import jdplus.highfreq.base.core.extendedairline.decomposition.ExtendedAirlineDecomposition;
+import jdplus.highfreq.base.core.extendedairline.decomposition.LightExtendedAirlineDecomposition;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.processing.ProcessingLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Canonical decompositions of (linearized) series, through
+ * ExtendedAirlineDecomposer and DecompositionKernel. The decompositions
+ * require complete series; missing values are not considered here.
+ *
+ * @author Jean Palate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DecompositionBenchmark {
+
+    @Param({"DAILY", "HOURLY", "WEEKLY"})
+    public Workload.Frequency frequency;
+
+    @Param({"1000", "10000", "100000"})
+    public int length;
+
+    private DoubleSeq series;
+    private DecompositionKernel kernel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        series = DoubleSeq.of(Workload.generate(frequency, length));
+        kernel = new DecompositionKernel(DecompositionSpec.builder()
+                .periodicities(frequency.getPeriodicities())
+                .build());
+    }
+
+    @Benchmark
+    public LightExtendedAirlineDecomposition decomposer() {
+        ExtendedAirlineSpec spec = frequency.getSpec();
+        return ExtendedAirlineDecomposer.decompose(series, spec.getPeriodicities(), spec.getDifferencingOrder(), spec.hasAr(), false, 0, 0);
+    }
+
+    @Benchmark
+    public ExtendedAirlineDecomposition kernel() {
+        return kernel.process(series, false, ProcessingLog.dummy());
+    }
+}
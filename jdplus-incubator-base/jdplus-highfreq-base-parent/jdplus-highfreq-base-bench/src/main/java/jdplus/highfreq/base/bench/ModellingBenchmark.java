@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.bench;
+
+import java.util.concurrent.TimeUnit;
+import jdplus.highfreq.base.api.ExtendedAirlineModellingSpec;
+import jdplus.highfreq.base.core.extendedairline.ExtendedAirlineKernel;
+import jdplus.highfreq.base.core.regarima.HighFreqRegArimaModel;
+import jdplus.toolkit.base.api.modelling.TransformationType;
+import jdplus.toolkit.base.api.modelling.highfreq.TransformSpec;
+import jdplus.toolkit.base.api.processing.ProcessingLog;
+import jdplus.toolkit.base.api.timeseries.TsData;
+import jdplus.toolkit.base.api.timeseries.regression.ModellingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Estimation of extended airline models (ExtendedAirlineKernel.process) on
+ * series with missing values
+ *
+ * @author Jean Palate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ModellingBenchmark {
+
+    @Param({"DAILY", "HOURLY", "WEEKLY"})
+    public Workload.Frequency frequency;
+
+    @Param({"1000", "10000", "100000"})
+    public int length;
+
+    @Param({"0", "0.01", "0.05"})
+    public double missing;
+
+    private TsData series;
+    private ExtendedAirlineKernel kernel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        series = Workload.series(frequency, length, missing, 0);
+        ExtendedAirlineModellingSpec spec = ExtendedAirlineModellingSpec.builder()
+                .transform(TransformSpec.builder()
+                        .function(TransformationType.None)
+                        .build())
+                .stochastic(frequency.getSpec())
+                .build();
+        kernel = ExtendedAirlineKernel.of(spec, new ModellingContext());
+    }
+
+    @Benchmark
+    public HighFreqRegArimaModel process() {
+        return kernel.process(series, ProcessingLog.dummy());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.bench;
+
+import java.util.concurrent.TimeUnit;
+import jdplus.highfreq.base.api.ExtendedAirlineSpec;
+import jdplus.highfreq.base.core.extendedairline.decomposition.ExtendedAirlineDecomposer;
+import jdplus.highfreq.base.core.extendedairline.decomposition.LightExtendedAirlineDecomposition;
+import jdplus.highfreq.base.core.ssf.extractors.SsfUcarimaEstimation;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.core.ssf.StateStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filtering and smoothing of the state space form of a ucarima model
+ * (SsfUcarimaEstimation). The model is estimated once, in the set-up.
+ *
+ * @author Jean Palate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class SmoothingBenchmark {
+
+    @Param({"DAILY", "HOURLY", "WEEKLY"})
+    public Workload.Frequency frequency;
+
+    @Param({"1000", "10000", "100000"})
+    public int length;
+
+    private LightExtendedAirlineDecomposition decomposition;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ExtendedAirlineSpec spec = frequency.getSpec();
+        DoubleSeq series = DoubleSeq.of(Workload.generate(frequency, length));
+        decomposition = ExtendedAirlineDecomposer.decompose(series, spec.getPeriodicities(), spec.getDifferencingOrder(), spec.hasAr(), false, 0, 0);
+    }
+
+    @Benchmark
+    public StateStorage smoothedStates() {
+        return new SsfUcarimaEstimation(decomposition.getUcarima(), decomposition.getY()).getSmoothedStates();
+    }
+
+    @Benchmark
+    public StateStorage filteredStates() {
+        return new SsfUcarimaEstimation(decomposition.getUcarima(), decomposition.getY()).getFilteredStates();
+    }
+}
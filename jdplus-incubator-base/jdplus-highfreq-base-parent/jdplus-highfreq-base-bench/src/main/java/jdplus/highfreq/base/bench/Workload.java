@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.bench;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import jdplus.highfreq.base.api.ExtendedAirlineSpec;
+import jdplus.highfreq.base.core.extendedairline.ExtendedAirlineMapping;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.data.Parameter;
+import jdplus.toolkit.base.api.timeseries.TsData;
+import jdplus.toolkit.base.api.timeseries.TsPeriod;
+import jdplus.toolkit.base.api.timeseries.TsUnit;
+import jdplus.toolkit.base.core.arima.ArimaModel;
+import jdplus.toolkit.base.core.math.linearfilters.BackFilter;
+
+/**
+ * Synthetic high-frequency series, generated by extended airline models
+ * (fixed seeds)
+ *
+ * @author Jean Palate
+ */
+@lombok.experimental.UtilityClass
+public class Workload {
+
+    public static enum Frequency {
+        DAILY(TsUnit.DAY, ExtendedAirlineSpec.DEFAULT_FY),
+        HOURLY(TsUnit.HOUR, ExtendedAirlineSpec.DEFAULT_H),
+        WEEKLY(TsUnit.WEEK, ExtendedAirlineSpec.DEFAULT_W.toBuilder().adjustToInt(false).build());
+
+        private final TsUnit unit;
+        private final ExtendedAirlineSpec spec;
+
+        private Frequency(TsUnit unit, ExtendedAirlineSpec spec) {
+            this.unit = unit;
+            this.spec = spec;
+        }
+
+        public TsUnit getUnit() {
+            return unit;
+        }
+
+        public ExtendedAirlineSpec getSpec() {
+            return spec;
+        }
+
+        public double[] getPeriodicities() {
+            return spec.getPeriodicities();
+        }
+    }
+
+    public final double THETA = -0.6, STHETA = -0.8;
+    public final long SEED = 20230101L;
+    private final int WARMUP = 1000;
+
+    /**
+     * Generates a series without missing values. The innovations are drawn
+     * from a generator with a fixed seed, so that all the runs use the same
+     * corpus.
+     *
+     * @param freq
+     * @param n Length of the series
+     * @return
+     */
+    public double[] generate(Frequency freq, int n) {
+        double[] periods = freq.getPeriodicities();
+        ExtendedAirlineSpec spec = ExtendedAirlineSpec.builder()
+                .periodicities(periods)
+                .theta(Parameter.undefined())
+                .stheta(Parameter.make(periods.length))
+                .adjustToInt(freq.getSpec().isAdjustToInt())
+                .build();
+        double[] p = new double[periods.length + 1];
+        Arrays.fill(p, STHETA);
+        p[0] = THETA;
+        ArimaModel arima = ExtendedAirlineMapping.of(spec).map(DoubleSeq.of(p));
+        BackFilter ar = arima.getAr(), ma = arima.getMa();
+        int par = ar.getDegree(), pma = ma.getDegree();
+        // y(t) = ma(B)/ar(B) e(t), started with zeros
+        Random rnd = new Random(SEED + freq.ordinal());
+        int m = n + WARMUP;
+        double[] e = new double[m], y = new double[m];
+        for (int t = 0; t < m; ++t) {
+            e[t] = rnd.nextGaussian();
+            double cur = e[t];
+            for (int j = 1; j <= Math.min(pma, t); ++j) {
+                cur += ma.get(j) * e[t - j];
+            }
+            for (int i = 1; i <= Math.min(par, t); ++i) {
+                cur -= ar.get(i) * y[t - i];
+            }
+            y[t] = cur;
+        }
+        return Arrays.copyOfRange(y, WARMUP, m);
+    }
+
+    /**
+     * Generates a series with missing values
+     *
+     * @param freq
+     * @param n Length of the series
+     * @param missingRate Fraction of missing values (in [0, 1[)
+     * @param seed Seed used for the positions of the missing values
+     * @return
+     */
+    public TsData series(Frequency freq, int n, double missingRate, long seed) {
+        double[] data = generate(freq, n);
+        if (missingRate > 0) {
+            Random rnd = new Random(seed);
+            for (int i = 0; i < n; ++i) {
+                if (rnd.nextDouble() < missingRate) {
+                    data[i] = Double.NaN;
+                }
+            }
+        }
+        TsPeriod start = TsPeriod.of(freq.getUnit(), LocalDate.of(2000, 1, 3).atStartOfDay());
+        return TsData.of(start, DoubleSeq.of(data));
+    }
+}
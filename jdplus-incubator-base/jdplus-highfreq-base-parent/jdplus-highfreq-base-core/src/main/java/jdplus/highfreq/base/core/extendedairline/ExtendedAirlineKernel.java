@@ -56,11 +56,11 @@ import java.util.List;
 import java.util.Map;
 import jdplus.toolkit.base.core.arima.ArimaModel;
 import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.highfreq.base.core.regarima.HighFreqOutliersDetectionModule;
 import jdplus.highfreq.base.core.regarima.HighFreqRegArimaModel;
 import jdplus.highfreq.base.core.regarima.ModelDescription;
 import jdplus.sa.base.api.SaException;
 import static jdplus.sa.base.core.PreliminaryChecks.MAX_MISSING_COUNT;
-import jdplus.toolkit.base.api.data.DoubleSeqCursor;
 import jdplus.toolkit.base.api.util.IntList;
 import jdplus.toolkit.base.core.data.interpolation.AverageInterpolator;
 import jdplus.toolkit.base.core.data.interpolation.DataInterpolator;
@@ -259,211 +259,207 @@ public class ExtendedAirlineKernel {
     }
 
     public static ExtendedAirlineEstimation fastProcess(DoubleSeq y, Matrix X, boolean mean, String[] outliers, double cv, ExtendedAirlineSpec spec, double eps, int nfcasts, boolean log) {
+        return new FastProcessor(spec, mean, outliers, cv, eps).process(y, X, nfcasts, log);
+    }
 
-//Missing
-        int nz = y.length();
-        int nm = y.count(z -> !Double.isFinite(z));
-        if (nm > MAX_MISSING_COUNT * nz / 100) {
-            throw new SaException("Too many missing values");
-        }
-
-        DataInterpolator interpolator = AverageInterpolator.interpolator();
-        double[] interpolatedData;
-        int[] missing = IntList.EMPTY;
+    /**
+     *
+     * @param y
+     * @param X
+     * @param mean
+     * @param outliers
+     * @param cv
+     * @param spec
+     * @param eps
+     * @param approximateHessian The final derivatives (hessian) are computed
+     * numerically by the optimizer instead of exactly
+     * @param nfcasts
+     * @param log
+     * @return
+     */
+    public static ExtendedAirlineEstimation fastProcess(DoubleSeq y, Matrix X, boolean mean, String[] outliers, double cv, ExtendedAirlineSpec spec, double eps, boolean approximateHessian, int nfcasts, boolean log) {
+        return new FastProcessor(spec, mean, outliers, cv, eps, approximateHessian).process(y, X, nfcasts, log);
+    }
 
-        if (y.anyMatch(z -> Double.isNaN(z))) {
-            IntList lmissing = new IntList();
-            interpolatedData = interpolator.interpolate(y, lmissing);
-            y = DoubleSeq.of(interpolatedData);
-            if (lmissing.isEmpty()) {
-                missing = IntList.EMPTY;
-            } else {
-                missing = lmissing.toArray();
-                Arrays.sort(missing);
-            }
-        } else {
-            interpolatedData = null;
-            missing = IntList.EMPTY;
+    /**
+     * Processor used by fastProcess. The mapping, the outliers factories and
+     * the estimation routines are created once and can be reused for
+     * different series sharing the same specification. An instance should not
+     * be shared between threads.
+     */
+    public static final class FastProcessor {
+
+        private final ExtendedAirlineSpec spec;
+        private final boolean mean;
+        private final double cv;
+        private final ExtendedAirlineMapping mapping;
+        private final IOutlierFactory[] factories;
+        private final OutliersDetectionModule od;
+        private final GlsArimaProcessor<ArimaModel> finalProcessor;
+
+        public FastProcessor(ExtendedAirlineSpec spec, boolean mean, String[] outliers, double cv, double eps) {
+            this(spec, mean, outliers, cv, eps, false);
         }
 
-        if (log) {
-            if (y.anyMatch(x -> x < 0.0000001)) {
-                log = false;
+        public FastProcessor(ExtendedAirlineSpec spec, boolean mean, String[] outliers, double cv, double eps, boolean approximateHessian) {
+            this.spec = spec;
+            this.mean = mean;
+            this.cv = cv;
+            this.mapping = ExtendedAirlineMapping.of(spec);
+            if (outliers != null && outliers.length > 0) {
+                GlsArimaProcessor<ArimaModel> processor = GlsArimaProcessor.builder(ArimaModel.class)
+                        .precision(1e-5)
+                        .build();
+                factories = factories(outliers);
+                od = OutliersDetectionModule.build(ArimaModel.class)
+                        .maxOutliers(100)
+                        .addFactories(factories)
+                        .processor(processor)
+                        .build();
             } else {
-                y = y.log();
+                factories = null;
+                od = null;
             }
-        }
-
-        Matrix X_withoutFcast;
-        if (nfcasts > 0 && X
-                != null) {
-            X_withoutFcast = X.extract(0, X.getRowsCount() - nfcasts, 0, X.getColumnsCount());
-        } else {
-            X_withoutFcast = X;
-        }
-
-        final ExtendedAirlineMapping mapping = ExtendedAirlineMapping.of(spec);
-        //
-        RegArimaModel.Builder builder = RegArimaModel.<ArimaModel>builder()
-                .y(y)
-                .addX(FastMatrix.of(X_withoutFcast))
-                .arima(mapping.getDefault())
-                .meanCorrection(mean);
-        OutlierDescriptor[] o = null;
-        if (outliers != null && outliers.length
-                > 0) {
-            GlsArimaProcessor<ArimaModel> processor = GlsArimaProcessor.builder(ArimaModel.class)
-                    .precision(1e-5)
+            finalProcessor = GlsArimaProcessor.builder(ArimaModel.class)
+                    .precision(eps)
+                    .computeExactFinalDerivatives(!approximateHessian)
                     .build();
-            IOutlierFactory[] factories = factories(outliers);
-            OutliersDetectionModule od = OutliersDetectionModule.build(ArimaModel.class)
-                    .maxOutliers(100)
-                    .addFactories(factories)
-                    .processor(processor)
-                    .build();
-
-            cv = Math.max(cv, GenericOutliersDetection.criticalValue(y.length(), 0.01));
-            od.setCriticalValue(cv);
-
-            RegArimaModel regarima = builder.build();
-            od.prepare(regarima.getObservationsCount());
-            od.process(regarima, mapping);
-            int[][] io = od.getOutliers();
-            o = new OutlierDescriptor[io.length];
-            for (int i = 0; i < io.length; ++i) {
-                int[] cur = io[i];
-                DataBlock xcur = DataBlock.make(y.length());
-                factories[cur[1]].fill(cur[0], xcur);
-                o[i] = new OutlierDescriptor(factories[cur[1]].getCode(), cur[0]);
-                builder.addX(xcur);
-            }
-        } else {
-            o = new OutlierDescriptor[0];
         }
-        RegArimaModel regarima = builder.build();
-        GlsArimaProcessor<ArimaModel> finalProcessor = GlsArimaProcessor.builder(ArimaModel.class)
-                .precision(eps)
-                .computeExactFinalDerivatives(true)
-                .build();
-        RegArimaEstimation rslt = finalProcessor.process(regarima, mapping);
-        LogLikelihoodFunction.Point max = rslt.getMax();
-        DoubleSeq parameters = max.getParameters();
-
-        ExtendedAirline ea = ExtendedAirline.of(spec)
-                .toBuilder()
-                .p(parameters)
-                .build();
 
-        //Ausgabe anpassen
-        RegArimaModel model = rslt.getModel();
+        public ExtendedAirlineEstimation process(DoubleSeq y, Matrix X, int nfcasts, boolean log) {
+            //Missing
+            int nz = y.length();
+            int nm = y.count(z -> !Double.isFinite(z));
+            if (nm > MAX_MISSING_COUNT * nz / 100) {
+                throw new SaException("Too many missing values");
+            }
 
-        DoubleSeq y_fcasts = DoubleSeq.empty();
+            DataInterpolator interpolator = AverageInterpolator.interpolator();
+            double[] interpolatedData;
+            int[] missing = IntList.EMPTY;
 
-        if (nfcasts > 0) {
-            FastArimaForecasts fcasts = new FastArimaForecasts();
-            fcasts.prepare(model.arima(), false); //Jean said mean should not be used
-            double[] detAll = new double[y.length()];
-            DoubleSeqCursor coeff = rslt.getConcentratedLikelihood().coefficients().cursor();
-            FastMatrix variables = regarima.variables();
-            for (int j = 0; j < variables.getColumnsCount(); ++j) {
-                double c = coeff.getAndNext();
-                if (c != 0) {
-                    DoubleSeqCursor cursor = variables.column(j).cursor();
-                    for (int k = 0; k < y.length(); ++k) {
-                        detAll[k] += c * cursor.getAndNext();
-                    }
+            if (y.anyMatch(z -> Double.isNaN(z))) {
+                IntList lmissing = new IntList();
+                interpolatedData = interpolator.interpolate(y, lmissing);
+                y = DoubleSeq.of(interpolatedData);
+                if (lmissing.isEmpty()) {
+                    missing = IntList.EMPTY;
+                } else {
+                    missing = lmissing.toArray();
+                    Arrays.sort(missing);
                 }
+            } else {
+                interpolatedData = null;
+                missing = IntList.EMPTY;
             }
 
-            //lin series is the original series y minus coeff*variables
-            double[] y_lin_a = new double[y.length()];
-            for (int i = 0; i < y.length(); i++) {
-                y_lin_a[i] = y.get(i) - detAll[i];
-            }
-            DoubleSeq y_lin = DoubleSeq.of(y_lin_a);
-            // y minus  \beta X to use as fcast
-            DoubleSeq y_fcasts_lin = fcasts.forecasts(y_lin, nfcasts); // we should use the lin series for the fcasts
-            double[] y_fcast_a;
-            coeff = rslt.getConcentratedLikelihood().coefficients().cursor();
-            y_fcast_a = y_fcasts_lin.toArray().clone();
-            if (X != null && X.getColumnsCount() != 0) {
-                for (int j = 0; j < X.getColumnsCount(); ++j) {
-                    double c = coeff.getAndNext();
-                    if (c != 0) {
-                        DoubleSeqCursor cursor = X.column(j).cursor();
-                        for (int k = y.length(); k < y.length() + nfcasts; ++k) {
-                            y_fcast_a[k - y.length()] -= c * cursor.getAndNext();
-                        }
-                    }
+            if (log) {
+                if (y.anyMatch(x -> x < 0.0000001)) {
+                    log = false;
+                } else {
+                    y = y.log();
                 }
             }
-            y_fcasts = DoubleSeq.of(y_fcast_a);
-        } else {
-            y_fcasts = DoubleSeq.empty();
-        }
-        //
-        int xNumberRows = 0;
-        int xNumberColumns = 0;
-        if (X
-                != null) {
-            xNumberColumns = X.getColumnsCount();
-            xNumberRows = X.getRowsCount();
-        }
 
-        Matrix regVariables;
-        if (nfcasts
-                > 0) {
-            double[] data = new double[(regarima.variables().getRowsCount() + nfcasts) * regarima.variables().getColumnsCount()];
-            for (int i = 0; i < regarima.variables().getRowsCount(); i++) {
-                for (int j = 0; j < regarima.variables().getColumnsCount(); j++) {
-                    data[i + j * (regarima.variables().getRowsCount() + nfcasts)] = regarima.variables().get(i, j);
-                }
+            Matrix X_withoutFcast;
+            if (nfcasts > 0 && X
+                    != null) {
+                X_withoutFcast = X.extract(0, X.getRowsCount() - nfcasts, 0, X.getColumnsCount());
+            } else {
+                X_withoutFcast = X;
             }
 
-            // Regression Variable in the future
-            for (int i = regarima.variables().getRowsCount(); i < regarima.variables().getRowsCount() + nfcasts; i++) {
-                for (int j = 0; j < xNumberColumns; j++) {
-                    data[(i + j * (regarima.variables().getRowsCount() + nfcasts))] = X.get(i, j);
+            RegArimaModel.Builder builder = RegArimaModel.<ArimaModel>builder()
+                    .y(y)
+                    .addX(FastMatrix.of(X_withoutFcast))
+                    .arima(mapping.getDefault())
+                    .meanCorrection(mean);
+            OutlierDescriptor[] o = null;
+            if (od != null) {
+                od.setCriticalValue(Math.max(cv, GenericOutliersDetection.criticalValue(y.length(), 0.01)));
+
+                RegArimaModel regarima = builder.build();
+                od.prepare(regarima.getObservationsCount());
+                od.process(regarima, mapping);
+                int[][] io = od.getOutliers();
+                o = new OutlierDescriptor[io.length];
+                for (int i = 0; i < io.length; ++i) {
+                    int[] cur = io[i];
+                    DataBlock xcur = DataBlock.make(y.length());
+                    factories[cur[1]].fill(cur[0], xcur);
+                    o[i] = new OutlierDescriptor(factories[cur[1]].getCode(), cur[0]);
+                    builder.addX(xcur);
                 }
+            } else {
+                o = new OutlierDescriptor[0];
             }
+            RegArimaModel regarima = builder.build();
+            RegArimaEstimation rslt = finalProcessor.process(regarima, mapping);
+            LogLikelihoodFunction.Point max = rslt.getMax();
+            DoubleSeq parameters = max.getParameters();
 
-            //zeros for the other variables
-            for (int i = regarima.variables().getRowsCount(); i < regarima.variables().getRowsCount() + nfcasts; i++) {
-                for (int j = xNumberColumns; j < regarima.variables().getColumnsCount(); j++) {
-                    data[(i + j * (regarima.variables().getRowsCount() + nfcasts))] = 0;
-                }
-            }
+            ExtendedAirline ea = ExtendedAirline.of(spec)
+                    .toBuilder()
+                    .p(parameters)
+                    .build();
 
-            regVariables = Matrix.of(data, xNumberRows, regarima.variables().getColumnsCount());
+            //Ausgabe anpassen
+            RegArimaModel model = rslt.getModel();
 
-        } else {
-            regVariables = regarima.variables();
-        }
+            int n = y.length();
+            FastMatrix variables = regarima.variables();
+            int nvars = variables.getColumnsCount();
+            DoubleSeq coefficients = rslt.getConcentratedLikelihood().coefficients();
+            // y and its forecasts, x extended with its future values are directly written in the final storage
+            double[] y_inclFcasts = new double[n + nfcasts];
+            regarima.getY().copyTo(y_inclFcasts, 0);
+            FastMatrix regVariables;
+            if (nfcasts > 0) {
+                regVariables = FastMatrix.make(n + nfcasts, nvars);
+                regVariables.extract(0, n, 0, nvars).copy(variables);
+                // future values of the users' regressors (which follow the mean correction).
+                // The other regressors (outliers) are 0 in the future
+                if (X != null && X.getColumnsCount() != 0) {
+                    int nx = X.getColumnsCount();
+                    regVariables.extract(n, nfcasts, mean ? 1 : 0, nx).copy(FastMatrix.of(X).extract(n, nfcasts, 0, nx));
+                }
+                // deterministic effects (in-sample and future) in a single pass, skipping null coefficients
+                DataBlock det = DataBlock.make(n + nfcasts);
+                for (int j = 0; j < nvars; ++j) {
+                    double c = coefficients.get(j);
+                    if (c != 0) {
+                        det.addAY(c, regVariables.column(j));
+                    }
+                }
+                // forecasts of the linearized series (y - X*b)
+                DataBlock ylin = DataBlock.of(y);
+                ylin.addAY(-1, det.range(0, n));
+                FastArimaForecasts fcasts = new FastArimaForecasts();
+                fcasts.prepare(model.arima(), false); //Jean said mean should not be used
+                DataBlock yf = DataBlock.of(y_inclFcasts).range(n, n + nfcasts);
+                yf.copy(fcasts.forecasts(ylin, nfcasts));
+                yf.add(det.range(n, n + nfcasts));
+            } else {
+                regVariables = variables;
+            }
 
-        DoubleSeq y_f = regarima.getY().extend(0, nfcasts);
-        double[] y_inclFcasts = y_f.toArray();
-        for (int i = 0;
-                i < nfcasts;
-                i++) {
-            y_inclFcasts[regarima.getY().length() + i] = y_fcasts.get(i);
+            //Missing values are still replaced
+            return ExtendedAirlineEstimation.builder()
+                    .y(y_inclFcasts)
+                    .x(regVariables)
+                    .model(ea)
+                    .coefficients(rslt.getConcentratedLikelihood().coefficients())
+                    .coefficientsCovariance(rslt.getConcentratedLikelihood().covariance(mapping.getDim(), true))
+                    .likelihood(rslt.statistics())
+                    .residuals(rslt.getConcentratedLikelihood().e())
+                    .outliers(o)
+                    .parameters(max.getParameters())
+                    .parametersCovariance(max.asymptoticCovariance())
+                    .score(max.getScore())
+                    .log(log)
+                    .missing(missing)
+                    .build();
         }
-
-        //Missing values are still replaced
-        return ExtendedAirlineEstimation.builder()
-                .y(y_inclFcasts)
-                .x(regVariables)
-                .model(ea)
-                .coefficients(rslt.getConcentratedLikelihood().coefficients())
-                .coefficientsCovariance(rslt.getConcentratedLikelihood().covariance(mapping.getDim(), true))
-                .likelihood(rslt.statistics())
-                .residuals(rslt.getConcentratedLikelihood().e())
-                .outliers(o)
-                .parameters(max.getParameters())
-                .parametersCovariance(max.asymptoticCovariance())
-                .score(max.getScore())
-                .log(log)
-                .missing(missing)
-                .build();
     }
 
     private void execTransform(ExtendedRegAirlineModelling modelling, ProcessingLog log) {
@@ -487,49 +483,38 @@ public class ExtendedAirlineKernel {
         log.push("outliers");
         OutlierSpec ospec = spec.getOutlier();
         String[] outliers = ospec.allOutliers();
-        LevenbergMarquardtMinimizer.LmBuilder min = LevenbergMarquardtMinimizer.builder().maxIter(5);
-        GlsArimaProcessor<ArimaModel> processor = GlsArimaProcessor.builder(ArimaModel.class
-        )
-                .minimizer(min)
-                .precision(1e-5)
-                .build();
-        IOutlierFactory[] factories = factories(outliers);
-        OutliersDetectionModule od = OutliersDetectionModule.build(ArimaModel.class
-        )
-                .maxOutliers(spec.getOutlier().getMaxOutliers())
-                .maxRound(spec.getOutlier().getMaxRound())
-                .addFactories(factories)
-                .processor(processor)
-                .build();
         double cv = ospec.getCriticalValue();
 
         RegArimaModel<ArimaModel> regarima = modelling.getDescription().regarima();
         TsDomain edom = modelling.getDescription().getEstimationDomain();
         cv = Math.max(cv, GenericOutliersDetection.criticalValue(edom.getLength(), 0.01));
-        od.setCriticalValue(cv);
-        od.prepare(edom.getLength());
         TsDomain odom = edom.select(ospec.getSpan());
         int nb = edom.getStartPeriod().until(odom.getStartPeriod());
-        od.setBounds(nb, nb + odom.getLength());
-        // remove missing values
+        // excluded positions: missing values and current outliers ([fixed], pre-specified, identified)
+        List<int[]> excluded = new ArrayList<>();
         int[] missing = modelling.getDescription().getMissingInEstimationDomain();
         if (missing != null) {
             for (int i = 0; i < missing.length; ++i) {
                 for (int j = 0; j < outliers.length; ++j) {
-                    od.exclude(missing[i], j);
+                    excluded.add(new int[]{missing[i], j});
                 }
             }
         }
-        // current outliers ([fixed], pre-specified, identified)
         modelling.getDescription().variables()
                 .filter(var -> var.getCore() instanceof IOutlier)
                 .map(var -> (IOutlier) var.getCore()).forEach(
-                o -> od.exclude(edom.indexOf(o.getPosition()), outlierType(outliers, o.getCode())));
+                o -> excluded.add(new int[]{edom.indexOf(o.getPosition()), outlierType(outliers, o.getCode())}));
 
         ExtendedAirlineMapping mapping = (ExtendedAirlineMapping) modelling.getDescription().mapping();
 
-        od.process(regarima, mapping);
-        int[][] io = od.getOutliers();
+        int[][] io = switch (spec.getOutliersDetection()) {
+            case Batch ->
+                batchOutliers(regarima, mapping, cv, edom.getLength(), nb, nb + odom.getLength(), excluded, false);
+            case ConfirmedBatch ->
+                batchOutliers(regarima, mapping, cv, edom.getLength(), nb, nb + odom.getLength(), excluded, true);
+            default ->
+                genericOutliers(regarima, mapping, cv, edom.getLength(), nb, nb + odom.getLength(), excluded);
+        };
         if (io.length > 0) {
             addOutliers(modelling.getDescription(), io);
             modelling.clearEstimation();
@@ -537,6 +522,49 @@ public class ExtendedAirlineKernel {
         log.pop();
     }
 
+    private GlsArimaProcessor<ArimaModel> outliersProcessor() {
+        LevenbergMarquardtMinimizer.LmBuilder min = LevenbergMarquardtMinimizer.builder().maxIter(5);
+        return GlsArimaProcessor.builder(ArimaModel.class
+        )
+                .minimizer(min)
+                .precision(1e-5)
+                .build();
+    }
+
+    private int[][] genericOutliers(RegArimaModel<ArimaModel> regarima, ExtendedAirlineMapping mapping,
+            double cv, int n, int lbound, int ubound, List<int[]> excluded) {
+        OutliersDetectionModule od = OutliersDetectionModule.build(ArimaModel.class
+        )
+                .maxOutliers(spec.getOutlier().getMaxOutliers())
+                .maxRound(spec.getOutlier().getMaxRound())
+                .addFactories(factories(spec.getOutlier().allOutliers()))
+                .processor(outliersProcessor())
+                .build();
+        od.setCriticalValue(cv);
+        od.prepare(n);
+        od.setBounds(lbound, ubound);
+        excluded.forEach(o -> od.exclude(o[0], o[1]));
+        od.process(regarima, mapping);
+        return od.getOutliers();
+    }
+
+    private int[][] batchOutliers(RegArimaModel<ArimaModel> regarima, ExtendedAirlineMapping mapping,
+            double cv, int n, int lbound, int ubound, List<int[]> excluded, boolean exact) {
+        HighFreqOutliersDetectionModule od = HighFreqOutliersDetectionModule.builder()
+                .maxOutliers(spec.getOutlier().getMaxOutliers())
+                .maxRound(spec.getOutlier().getMaxRound())
+                .addFactories(factories(spec.getOutlier().allOutliers()))
+                .processor(outliersProcessor())
+                .exactConfirmation(exact)
+                .build();
+        od.setCriticalValue(cv);
+        od.prepare(n);
+        od.setBounds(lbound, ubound);
+        excluded.forEach(o -> od.exclude(o[0], o[1]));
+        od.process(regarima, mapping);
+        return od.getOutliers();
+    }
+
     private static int outlierType(String[] all, String cur) {
         for (int i = 0; i < all.length; ++i) {
             if (cur.equals(all[i])) {
@@ -72,12 +72,21 @@ public class DecompositionKernel {
                     .backcastsCount(nb)
                     .forecastsCount(nf);
             Arrays.sort(periodicities);
+            String[] names = seasonalNames(periodicities);
             DoubleSeq cur = lin;
             ExtendedAirlineDecomposition.Step[] steps = new ExtendedAirlineDecomposition.Step[periodicities.length];
             for (int i = 0; i < periodicities.length; ++i) {
+                double curp = periodicities[i];
+                if (spec.isReduced(curp)) {
+                    // trigonometric seasonal block, with a limited number of harmonics
+                    ExtendedAirlineDecomposition.Step step = TrigonometricDecomposer.step(cur, curp, spec.getHarmonicsCount(), spec.isStdev(), nb, nf);
+                    builder.step(step);
+                    steps[i] = step;
+                    cur = DoublesMath.subtract(cur, step.getComponent(1).getData().drop(nb, nf));
+                    continue;
+                }
                 ExtendedAirlineDecomposition.Step.Builder sbuilder = ExtendedAirlineDecomposition.Step.builder();
                 // we re-estimate the model
-                double curp = periodicities[i];
                 ArimaModel arima = ExtendedAirlineKernel.estimate(cur, curp);
                 UcarimaModel ucm = ucm(arima, false);
                 if (ucm.getComponentsCount() == 2) {
@@ -137,6 +146,10 @@ public class DecompositionKernel {
                     if (spec.isBiasCorrection()) {
                         double f = steps[i].getPeriod();
                         int np = (int) (f * (int) (n / f));
+                        if (np == 0) {
+                            // less than one cycle (long periods)
+                            np = n;
+                        }
                         double sbias = curs.range(nb, nb + np).average();
                         curs = curs.fastOp(z -> z / sbias);
                         bias *= sbias;
@@ -145,11 +158,7 @@ public class DecompositionKernel {
                 } else {
                     s = DoublesMath.add(s, curs);
                 }
-                if (steps[i].getPeriod() == 7) {
-                    builder.finalComponent(new SeriesComponent(ExtendedAirlineDictionaries.SW_CMP, curs, ComponentType.Seasonal));
-                } else {
-                    builder.finalComponent(new SeriesComponent(ExtendedAirlineDictionaries.SY_CMP, curs, ComponentType.Seasonal));
-                }
+                builder.finalComponent(new SeriesComponent(names[i], curs, ComponentType.Seasonal));
             }
             builder.finalComponent(new SeriesComponent(ExtendedAirlineDictionaries.S_CMP, s, ComponentType.Seasonal));
 
@@ -184,6 +193,51 @@ public class DecompositionKernel {
         }
     }
 
+    private static final double DAYS_IN_WEEK = 7, DAYS_IN_YEAR = 365.25, RATIO_EPS = .01;
+
+    /**
+     * Names of the seasonal components, following their role (daily, weekly
+     * or yearly cycle). The role is identified by the ratios between the
+     * periods (7 between a daily and a weekly cycle, 365.25 between a daily
+     * and a yearly cycle, 365.25/7 between a weekly and a yearly cycle), so
+     * that it doesn't depend on the unit of the series: {7, 365.25} (days),
+     * {24, 168, 8766} (hours) or {1440, 10080} (minutes) are correctly
+     * labelled. A period 7 without longer cycle is a weekly cycle (daily
+     * series); the other periods are considered as yearly cycles.
+     *
+     * @param periods The sorted periods
+     * @return The names of the corresponding seasonal components
+     */
+    public static String[] seasonalNames(double[] periods) {
+        int n = periods.length;
+        String[] names = new String[n];
+        for (int i = 0; i < n; ++i) {
+            for (int j = i + 1; j < n; ++j) {
+                double ratio = periods[j] / periods[i];
+                if (isRatio(ratio, DAYS_IN_WEEK)) {
+                    names[i] = ExtendedAirlineDictionaries.SD_CMP;
+                    names[j] = ExtendedAirlineDictionaries.SW_CMP;
+                } else if (isRatio(ratio, DAYS_IN_YEAR)) {
+                    names[i] = ExtendedAirlineDictionaries.SD_CMP;
+                    names[j] = ExtendedAirlineDictionaries.SY_CMP;
+                } else if (isRatio(ratio, DAYS_IN_YEAR / DAYS_IN_WEEK) && !ExtendedAirlineDictionaries.SD_CMP.equals(names[i])) {
+                    names[i] = ExtendedAirlineDictionaries.SW_CMP;
+                    names[j] = ExtendedAirlineDictionaries.SY_CMP;
+                }
+            }
+        }
+        for (int i = 0; i < n; ++i) {
+            if (names[i] == null) {
+                names[i] = periods[i] == DAYS_IN_WEEK ? ExtendedAirlineDictionaries.SW_CMP : ExtendedAirlineDictionaries.SY_CMP;
+            }
+        }
+        return names;
+    }
+
+    private static boolean isRatio(double ratio, double target) {
+        return Math.abs(ratio - target) <= RATIO_EPS * target;
+    }
+
     public static UcarimaModel ucm(IArimaModel arima, boolean sn) {
 
         TrendCycleSelector tsel = new TrendCycleSelector();
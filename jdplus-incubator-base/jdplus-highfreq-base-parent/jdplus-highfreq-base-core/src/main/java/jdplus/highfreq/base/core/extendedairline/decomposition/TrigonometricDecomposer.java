@@ -0,0 +1,231 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.core.extendedairline.decomposition;
+
+import jdplus.highfreq.base.api.SeriesComponent;
+import jdplus.highfreq.base.core.ssf.TrigonometricSeasonal;
+import jdplus.sa.base.api.ComponentType;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.data.DataBlockStorage;
+import jdplus.toolkit.base.core.math.functions.IParametricMapping;
+import jdplus.toolkit.base.core.math.functions.ParamValidation;
+import jdplus.toolkit.base.core.math.functions.bfgs.Bfgs;
+import jdplus.toolkit.base.core.ssf.ISsfLoading;
+import jdplus.toolkit.base.core.ssf.composite.CompositeSsf;
+import jdplus.toolkit.base.core.ssf.dk.DkToolkit;
+import jdplus.toolkit.base.core.ssf.dk.SsfFunction;
+import jdplus.toolkit.base.core.ssf.dk.SsfFunctionPoint;
+import jdplus.toolkit.base.core.ssf.sts.LocalLinearTrend;
+import jdplus.toolkit.base.core.ssf.sts.Noise;
+import jdplus.toolkit.base.core.ssf.univariate.DefaultSmoothingResults;
+import jdplus.toolkit.base.core.ssf.univariate.ExtendedSsfData;
+import jdplus.toolkit.base.core.ssf.univariate.ISsfData;
+import jdplus.toolkit.base.core.ssf.univariate.SsfData;
+
+/**
+ * Decomposition of a series in trend, seasonal and irregular components, when
+ * the seasonal component is represented by a limited number of harmonics.
+ * Used for very long periods (yearly pattern in hourly data...), for which the
+ * canonical decomposition of the airline model is not feasible: the size of the
+ * state vector is 2 + 2*nharmonics + 1 instead of the period.
+ * The variances are estimated by maximum likelihood (concentrated on the
+ * variance of the irregular).
+ *
+ * @author Jean Palate <jean.palate@nbb.be>
+ */
+public class TrigonometricDecomposer {
+
+    @lombok.Value
+    public static class Variances {
+
+        double level, slope, seasonal, noise;
+
+        public Variances scale(double c) {
+            return new Variances(level * c, slope * c, seasonal * c, noise * c);
+        }
+    }
+
+    public static CompositeSsf ssf(double period, int nharmonics, Variances var) {
+        return CompositeSsf.builder()
+                .add(LocalLinearTrend.stateComponent(var.getLevel(), var.getSlope()), LocalLinearTrend.defaultLoading())
+                .add(TrigonometricSeasonal.of(period, nharmonics, var.getSeasonal()), TrigonometricSeasonal.defaultLoading(nharmonics))
+                .add(Noise.of(var.getNoise()), Noise.defaultLoading())
+                .build();
+    }
+
+    /**
+     * Maximum likelihood estimation of the variances
+     *
+     * @param s The series
+     * @param period The period
+     * @param nharmonics The number of harmonics
+     * @return The (scaled) variances
+     */
+    public static Variances estimate(DoubleSeq s, double period, int nharmonics) {
+        Mapping mapping = new Mapping();
+        SsfFunction<Variances, CompositeSsf> fn = SsfFunction.<Variances, CompositeSsf>builder(new SsfData(s), mapping, v -> ssf(period, nharmonics, v))
+                .useFastAlgorithm(true)
+                .useParallelProcessing(false)
+                .useLog(false)
+                .useScalingFactor(true)
+                .build();
+        Bfgs bfgs = Bfgs.builder()
+                .functionPrecision(1e-7)
+                .maxIter(100)
+                .build();
+        bfgs.minimize(fn.evaluate(mapping.getDefaultParameters()));
+        SsfFunctionPoint<Variances, CompositeSsf> rslt = (SsfFunctionPoint<Variances, CompositeSsf>) bfgs.getResult();
+        return rslt.getCore().scale(rslt.getLikelihood().sigma2());
+    }
+
+    /**
+     * Computes a step of the (iterative) decomposition.
+     * The components are respectively the trend, the seasonal and the
+     * irregular
+     *
+     * @param s
+     * @param period
+     * @param nharmonics
+     * @param stdev
+     * @param nb
+     * @param nf
+     * @return
+     */
+    public static ExtendedAirlineDecomposition.Step step(DoubleSeq s, double period, int nharmonics, boolean stdev, int nb, int nf) {
+        int nh = Math.min(nharmonics, (int) ((period - 1) / 2));
+        Variances var = estimate(s, period, nh);
+        CompositeSsf ssf = ssf(period, nh, var);
+        ISsfData data = new ExtendedSsfData(new SsfData(s), nb, nf);
+        int[] pos = ssf.componentsPosition();
+        ISsfLoading sloading = TrigonometricSeasonal.defaultLoading(nh);
+        int ns = nb + s.length() + nf;
+
+        ExtendedAirlineDecomposition.Step.Builder builder = ExtendedAirlineDecomposition.Step.builder()
+                .period(period)
+                .data(s);
+        if (stdev) {
+            DefaultSmoothingResults sr = DkToolkit.sqrtSmooth(ssf, data, true, true);
+            double[] sc = new double[ns], esc = new double[ns];
+            for (int i = 0; i < ns; ++i) {
+                DataBlock a = sr.a(i).range(pos[1], pos[1] + 2 * nh);
+                sc[i] = sloading.ZX(i, a);
+                double v = sloading.ZVZ(i, sr.P(i).extract(pos[1], 2 * nh, pos[1], 2 * nh));
+                esc[i] = v <= 0 ? 0 : Math.sqrt(v);
+            }
+            return builder
+                    .component(new SeriesComponent("cmp1", sr.getComponent(pos[0]).commit(),
+                            sr.getComponentVariance(pos[0]).fn(a -> a <= 0 ? 0 : Math.sqrt(a)), ComponentType.Undefined))
+                    .component(new SeriesComponent("cmp2", DoubleSeq.of(sc), DoubleSeq.of(esc), ComponentType.Undefined))
+                    .component(new SeriesComponent("cmp3", sr.getComponent(pos[2]).commit(),
+                            sr.getComponentVariance(pos[2]).fn(a -> a <= 0 ? 0 : Math.sqrt(a)), ComponentType.Undefined))
+                    .build();
+        } else {
+            DataBlockStorage ds = DkToolkit.fastSmooth(ssf, data);
+            DataBlock sc = DataBlock.make(ns);
+            for (int j = 0; j < nh; ++j) {
+                sc.add(ds.item(pos[1] + 2 * j));
+            }
+            return builder
+                    .component(new SeriesComponent("cmp1", ds.item(pos[0]).commit(), DoubleSeq.empty(), ComponentType.Undefined))
+                    .component(new SeriesComponent("cmp2", sc, DoubleSeq.empty(), ComponentType.Undefined))
+                    .component(new SeriesComponent("cmp3", ds.item(pos[2]).commit(), DoubleSeq.empty(), ComponentType.Undefined))
+                    .build();
+        }
+    }
+
+    /**
+     * Level, slope and seasonal variances (square roots), relative to the
+     * variance of the irregular (fixed to 1)
+     */
+    static class Mapping implements IParametricMapping<Variances> {
+
+        private static final double STEP = 1e-6, DEF = .1, MAX = 10;
+
+        @Override
+        public Variances map(DoubleSeq p) {
+            double l = p.get(0), s = p.get(1), seas = p.get(2);
+            return new Variances(l * l, s * s, seas * seas, 1);
+        }
+
+        @Override
+        public DoubleSeq getDefaultParameters() {
+            return DoubleSeq.of(DEF, DEF * DEF, DEF);
+        }
+
+        @Override
+        public boolean checkBoundaries(DoubleSeq inparams) {
+            for (int i = 0; i < 3; ++i) {
+                double p = inparams.get(i);
+                if (p < -.1 || p > MAX) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public double epsilon(DoubleSeq inparams, int idx) {
+            return inparams.get(idx) < .5 ? STEP : -STEP;
+        }
+
+        @Override
+        public int getDim() {
+            return 3;
+        }
+
+        @Override
+        public double lbound(int idx) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        @Override
+        public double ubound(int idx) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public ParamValidation validate(DataBlock ioparams) {
+            ParamValidation status = ParamValidation.Valid;
+            for (int i = 0; i < 3; ++i) {
+                double p = ioparams.get(i);
+                if (p > MAX) {
+                    ioparams.set(i, MAX);
+                    status = ParamValidation.Changed;
+                } else if (p < -.1) {
+                    ioparams.set(i, Math.min(MAX, -p));
+                    status = ParamValidation.Changed;
+                }
+            }
+            return status;
+        }
+
+        @Override
+        public String getDescription(int idx) {
+            return switch (idx) {
+                case 0 ->
+                    "level var.";
+                case 1 ->
+                    "slope var.";
+                case 2 ->
+                    "seasonal var.";
+                default ->
+                    "Unexpected";
+            };
+        }
+    }
+}
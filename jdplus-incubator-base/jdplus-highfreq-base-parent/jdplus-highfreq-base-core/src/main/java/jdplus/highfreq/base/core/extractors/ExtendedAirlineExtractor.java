@@ -94,6 +94,39 @@ public class ExtendedAirlineExtractor extends InformationMapping<ExtendedAirline
                 -> source.getComponents().getSeries(ComponentType.Seasonal, ComponentInformation.Value));
         set(cmpItem(SaDictionaries.I_CMP), TsData.class, source
                 -> source.getComponents().getSeries(ComponentType.Irregular, ComponentInformation.Value));
+        set(cmpItem(ExtendedAirlineDictionaries.SD_CMP), TsData.class, source -> {
+            DoubleSeq data = source.getDecomposition().getFinalComponent(ExtendedAirlineDictionaries.SD_CMP);
+            if (data.isEmpty()) {
+                return null;
+            }
+            int nb = source.getDecomposition().getBackcastsCount(), nf = source.getDecomposition().getForecastsCount();
+            TsDomain dom = source.getPreprocessing().getDescription().getDomain();
+            return TsData.of(dom.getStartPeriod(), data.drop(nb, nf));
+        });
+        set(cmpItem(ExtendedAirlineDictionaries.SD_CMP_B), TsData.class, source -> {
+            int nb = source.getDecomposition().getBackcastsCount();
+            if (nb == 0) {
+                return null;
+            }
+            DoubleSeq data = source.getDecomposition().getFinalComponent(ExtendedAirlineDictionaries.SD_CMP);
+            if (data.isEmpty()) {
+                return null;
+            }
+            TsDomain dom = source.getPreprocessing().getDescription().getDomain();
+            return TsData.of(dom.getStartPeriod().plus(-nb), data.range(0, nb));
+        });
+        set(cmpItem(ExtendedAirlineDictionaries.SD_CMP_F), TsData.class, source -> {
+            int nf = source.getDecomposition().getForecastsCount();
+            if (nf == 0) {
+                return null;
+            }
+            DoubleSeq data = source.getDecomposition().getFinalComponent(ExtendedAirlineDictionaries.SD_CMP);
+            if (data.isEmpty()) {
+                return null;
+            }
+            TsDomain dom = source.getPreprocessing().getDescription().getDomain();
+            return TsData.of(dom.getEndPeriod(), data.range(data.length() - nf, data.length()));
+        });
         set(cmpItem(ExtendedAirlineDictionaries.SW_CMP), TsData.class, source -> {
             DoubleSeq data = source.getDecomposition().getFinalComponent(ExtendedAirlineDictionaries.SW_CMP);
             if (data.isEmpty()) {
@@ -0,0 +1,543 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.core.regarima;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.math.matrices.Matrix;
+import jdplus.toolkit.base.core.arima.ArimaModel;
+import jdplus.toolkit.base.core.arima.estimation.IArimaMapping;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.linearfilters.BackFilter;
+import jdplus.toolkit.base.core.modelling.regression.IOutlierFactory;
+import jdplus.toolkit.base.core.regarima.GlsArimaProcessor;
+import jdplus.toolkit.base.core.regarima.RegArimaEstimation;
+import jdplus.toolkit.base.core.regarima.RegArimaModel;
+import jdplus.toolkit.base.core.regarima.RegArimaUtility;
+import jdplus.toolkit.base.core.stats.likelihood.ConcentratedLikelihoodWithMissing;
+
+/**
+ * Outliers detection for long (high-frequency) series.
+ * <br>
+ * At each round, the t-statistics of all the candidate outliers are computed
+ * for the residual filter of the current model, without re-estimation. The
+ * residuals are filtered once backwards, so that the t-statistic of an outlier
+ * with a finite filtered pattern is obtained in O(pattern length). The scan is
+ * split in chunks of positions that can be processed in parallel. All the
+ * significant candidates are added in one batch (or confirmed one by one when
+ * exact confirmation is required) before the next GLS estimation. The
+ * non-significant outliers are removed at the end of the process.
+ * <br>
+ * The filtered patterns are truncated when they become negligible. Outliers
+ * whose filtered pattern doesn't start at their position or is still
+ * significant after MAX_PATTERN periods are not considered.
+ *
+ * @author Jean Palate <jean.palate@nbb.be>
+ */
+public final class HighFreqOutliersDetectionModule {
+
+    public static final int DEF_MAXROUND = 100, DEF_MAXOUTLIERS = 100;
+    public static final double MAD = 1.483;
+    private static final int CHUNK = 256, MAX_PATTERN = 1024;
+    private static final double EPS = 1e-9;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private final List<IOutlierFactory> factories = new ArrayList<>();
+        private int maxOutliers = DEF_MAXOUTLIERS;
+        private int maxRound = DEF_MAXROUND;
+        private GlsArimaProcessor<ArimaModel> processor;
+        private boolean exactConfirmation = false;
+        private boolean parallelProcessing = true;
+
+        private Builder() {
+        }
+
+        public Builder addFactories(IOutlierFactory... factories) {
+            this.factories.addAll(Arrays.asList(factories));
+            return this;
+        }
+
+        public Builder maxOutliers(int max) {
+            this.maxOutliers = max;
+            return this;
+        }
+
+        public Builder maxRound(int max) {
+            this.maxRound = max;
+            return this;
+        }
+
+        public Builder processor(GlsArimaProcessor<ArimaModel> processor) {
+            this.processor = processor;
+            return this;
+        }
+
+        /**
+         * When set, each candidate of a batch is added individually and kept
+         * only if its t-statistic in the re-estimated model is still above the
+         * critical value.
+         *
+         * @param exact
+         * @return
+         */
+        public Builder exactConfirmation(boolean exact) {
+            this.exactConfirmation = exact;
+            return this;
+        }
+
+        public Builder parallelProcessing(boolean parallel) {
+            this.parallelProcessing = parallel;
+            return this;
+        }
+
+        public HighFreqOutliersDetectionModule build() {
+            GlsArimaProcessor<ArimaModel> p = processor;
+            if (p == null) {
+                p = GlsArimaProcessor.builder(ArimaModel.class)
+                        .precision(1e-5)
+                        .build();
+            }
+            return new HighFreqOutliersDetectionModule(factories.toArray(IOutlierFactory[]::new),
+                    maxOutliers, maxRound, p, exactConfirmation, parallelProcessing);
+        }
+    }
+
+    private final IOutlierFactory[] factories;
+    private final int maxOutliers, maxRound;
+    private final GlsArimaProcessor<ArimaModel> processor;
+    private final boolean exactConfirmation, parallelProcessing;
+
+    private double cv;
+    private int lbound, ubound, round;
+    private boolean[][] excluded;
+    private final List<int[]> outliers = new ArrayList<>();
+
+    private RegArimaModel<ArimaModel> base, current;
+    private RegArimaEstimation<ArimaModel> estimation;
+    private IArimaMapping<ArimaModel> mapping;
+
+    private HighFreqOutliersDetectionModule(IOutlierFactory[] factories, int maxOutliers, int maxRound,
+            GlsArimaProcessor<ArimaModel> processor, boolean exactConfirmation, boolean parallelProcessing) {
+        this.factories = factories;
+        this.maxOutliers = maxOutliers;
+        this.maxRound = maxRound;
+        this.processor = processor;
+        this.exactConfirmation = exactConfirmation;
+        this.parallelProcessing = parallelProcessing;
+    }
+
+    public void setCriticalValue(double cv) {
+        this.cv = cv;
+    }
+
+    public double getCriticalValue() {
+        return cv;
+    }
+
+    /**
+     * Prepares the detection for a series of length n. All the previous
+     * exclusions and bounds are cleared.
+     *
+     * @param n
+     */
+    public void prepare(int n) {
+        excluded = new boolean[factories.length][n];
+        lbound = 0;
+        ubound = n;
+        outliers.clear();
+    }
+
+    /**
+     * Restricts the detection to the positions [lbound, ubound[
+     *
+     * @param lbound Included
+     * @param ubound Excluded
+     */
+    public void setBounds(int lbound, int ubound) {
+        this.lbound = lbound;
+        this.ubound = ubound;
+    }
+
+    public void exclude(int pos, int type) {
+        if (type >= 0 && type < excluded.length && pos >= 0 && pos < excluded[type].length) {
+            excluded[type][pos] = true;
+        }
+    }
+
+    /**
+     *
+     * @return The number of rounds used in the last processing
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     *
+     * @return The identified outliers, as {position, type}. The type
+     * corresponds to the position of the factory
+     */
+    public int[][] getOutliers() {
+        return outliers.toArray(int[][]::new);
+    }
+
+    public boolean process(RegArimaModel<ArimaModel> regarima, IArimaMapping<ArimaModel> mapping) {
+        int n = regarima.getY().length();
+        outliers.clear();
+        round = 0;
+        if (factories.length == 0) {
+            return false;
+        }
+        if (excluded == null || excluded[0].length != n) {
+            prepare(n);
+        }
+        this.mapping = mapping;
+        base = regarima;
+        current = regarima;
+        try {
+            estimate();
+            while (round < maxRound && outliers.size() < maxOutliers) {
+                ++round;
+                double[][] t = scan();
+                List<int[]> candidates = select(t);
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                int nadded = exactConfirmation ? confirm(candidates) : addAll(candidates);
+                if (nadded == 0) {
+                    break;
+                }
+            }
+            prune();
+            return !outliers.isEmpty();
+        } finally {
+            base = null;
+            current = null;
+            estimation = null;
+            this.mapping = null;
+        }
+    }
+
+    private void estimate() {
+        estimation = processor.process(current, mapping);
+        current = estimation.getModel();
+    }
+
+    private DataBlock regressor(int[] o) {
+        DataBlock x = DataBlock.make(base.getY().length());
+        factories[o[1]].fill(o[0], x);
+        return x;
+    }
+
+    private void rebuild() {
+        RegArimaModel.Builder<ArimaModel> builder = base.toBuilder()
+                .arima(current.arima());
+        for (int[] o : outliers) {
+            builder.addX(regressor(o));
+        }
+        current = builder.build();
+    }
+
+    private int addAll(List<int[]> candidates) {
+        RegArimaModel.Builder<ArimaModel> builder = current.toBuilder();
+        for (int[] o : candidates) {
+            outliers.add(o);
+            exclude(o[0], o[1]);
+            builder.addX(regressor(o));
+        }
+        current = builder.build();
+        estimate();
+        return candidates.size();
+    }
+
+    private int confirm(List<int[]> candidates) {
+        int nadded = 0;
+        for (int[] o : candidates) {
+            if (outliers.size() >= maxOutliers) {
+                break;
+            }
+            exclude(o[0], o[1]);
+            RegArimaModel<ArimaModel> trial = current.toBuilder()
+                    .addX(regressor(o))
+                    .build();
+            RegArimaEstimation<ArimaModel> test = processor.process(trial, mapping);
+            double[] t = tstats(test, 1);
+            if (Math.abs(t[0]) >= cv) {
+                outliers.add(o);
+                estimation = test;
+                current = test.getModel();
+                ++nadded;
+            }
+        }
+        return nadded;
+    }
+
+    /**
+     * Removes iteratively the least significant outlier, until all the
+     * remaining outliers are significant
+     */
+    private void prune() {
+        while (!outliers.isEmpty()) {
+            double[] t = tstats(estimation, outliers.size());
+            int imin = -1;
+            double tmin = cv;
+            for (int i = 0; i < t.length; ++i) {
+                double cur = Math.abs(t[i]);
+                if (cur < tmin) {
+                    tmin = cur;
+                    imin = i;
+                }
+            }
+            if (imin < 0) {
+                return;
+            }
+            outliers.remove(imin);
+            rebuild();
+            estimate();
+        }
+    }
+
+    /**
+     * t-statistics of the last k regression coefficients. The covariance of
+     * the coefficients is computed once
+     *
+     * @param est
+     * @param k
+     * @return
+     */
+    private double[] tstats(RegArimaEstimation<ArimaModel> est, int k) {
+        ConcentratedLikelihoodWithMissing ll = est.getConcentratedLikelihood();
+        DoubleSeq b = ll.coefficients();
+        Matrix cov = ll.covariance(mapping.getDim(), true);
+        int start = b.length() - k;
+        double[] t = new double[k];
+        for (int i = 0; i < k; ++i) {
+            double v = cov.get(start + i, start + i);
+            t[i] = v <= 0 ? 0 : b.get(start + i) / Math.sqrt(v);
+        }
+        return t;
+    }
+
+    private List<int[]> select(double[][] t) {
+        List<double[]> all = new ArrayList<>();
+        for (int k = 0; k < t.length; ++k) {
+            double[] tk = t[k];
+            for (int i = lbound; i < ubound; ++i) {
+                double cur = Math.abs(tk[i]);
+                if (cur > cv) {
+                    all.add(new double[]{cur, i, k});
+                }
+            }
+        }
+        Collections.sort(all, (a, b) -> {
+            int cmp = Double.compare(b[0], a[0]);
+            return cmp != 0 ? cmp : Double.compare(a[1], b[1]);
+        });
+        // Only one outlier by position (and none in the neighbourhood
+        // of another candidate) in a given batch
+        List<int[]> sel = new ArrayList<>();
+        int nmax = maxOutliers - outliers.size();
+        boolean[] used = new boolean[t[0].length];
+        for (double[] c : all) {
+            if (sel.size() >= nmax) {
+                break;
+            }
+            int pos = (int) c[1];
+            if (used[pos] || (pos > 0 && used[pos - 1]) || (pos < used.length - 1 && used[pos + 1])) {
+                continue;
+            }
+            used[pos] = true;
+            sel.add(new int[]{pos, (int) c[2]});
+        }
+        return sel;
+    }
+
+    /**
+     * Computes the t-statistics of all the candidate outliers for the current
+     * model
+     *
+     * @return t[type][pos]. 0 for excluded positions
+     */
+    private double[][] scan() {
+        ArimaModel arima = current.arima();
+        // linearized series (regression effects and mean removed, missing
+        // values interpolated)
+        double[] y = RegArimaUtility.linearizedData(current, estimation.getConcentratedLikelihood()).toArray();
+        int n = y.length;
+        double[] p = coefficients(arima.getAr());
+        double[] th = coefficients(arima.getMa());
+        int[] ip = nonZero(p), ith = nonZero(th);
+        int dp = p.length - 1;
+        double[] a = new double[n];
+        for (int s = dp; s < n; ++s) {
+            double e = 0;
+            for (int i : ip) {
+                e += p[i] * y[s - i];
+            }
+            for (int j : ith) {
+                if (j > 0 && s - j >= dp) {
+                    e -= th[j] * a[s - j];
+                }
+            }
+            a[s] = e;
+        }
+        double sig = mad(a, dp);
+        double[][] t = new double[factories.length][n];
+        if (sig == 0 || dp >= n) {
+            return t;
+        }
+        // backward filtering of the residuals: r = a/th(F)
+        double[] r = new double[n];
+        for (int s = n - 1; s >= dp; --s) {
+            double e = a[s];
+            for (int j : ith) {
+                if (j > 0 && s + j < n) {
+                    e -= th[j] * r[s + j];
+                }
+            }
+            r[s] = e;
+        }
+        for (int k = 0; k < factories.length; ++k) {
+            double[] v0 = pattern(factories[k], p, n);
+            if (v0 == null) {
+                continue;
+            }
+            double[] g2 = cumulatedSquares(v0, th, ith, n);
+            boolean[] xk = excluded[k];
+            double[] tk = t[k];
+            int nchunks = (ubound - lbound + CHUNK - 1) / CHUNK;
+            IntStream chunks = IntStream.range(0, nchunks);
+            if (parallelProcessing) {
+                chunks = chunks.parallel();
+            }
+            chunks.forEach(c -> {
+                int i0 = Math.max(dp, lbound + c * CHUNK), i1 = Math.min(ubound, lbound + (c + 1) * CHUNK);
+                for (int pos = i0; pos < i1; ++pos) {
+                    if (xk[pos]) {
+                        continue;
+                    }
+                    int m = Math.min(v0.length, n - pos);
+                    double num = 0;
+                    for (int l = 0; l < m; ++l) {
+                        num += v0[l] * r[pos + l];
+                    }
+                    double den = g2[n - pos];
+                    if (den > 0) {
+                        tk[pos] = num / (sig * Math.sqrt(den));
+                    }
+                }
+            });
+        }
+        return t;
+    }
+
+    private static double[] coefficients(BackFilter f) {
+        int d = f.getDegree();
+        double[] c = new double[d + 1];
+        for (int i = 0; i <= d; ++i) {
+            c[i] = f.get(i);
+        }
+        return c;
+    }
+
+    private static int[] nonZero(double[] c) {
+        return IntStream.range(0, c.length).filter(i -> c[i] != 0).toArray();
+    }
+
+    private static double mad(double[] a, int start) {
+        int n = a.length - start;
+        if (n <= 0) {
+            return 0;
+        }
+        double[] e = new double[n];
+        for (int i = 0; i < n; ++i) {
+            e[i] = Math.abs(a[start + i]);
+        }
+        Arrays.sort(e);
+        double median = (n % 2 == 1) ? e[n / 2] : (e[n / 2 - 1] + e[n / 2]) / 2;
+        return MAD * median;
+    }
+
+    /**
+     * Pattern of the outlier filtered by the AR polynomial, relative to its
+     * position.
+     *
+     * @param factory
+     * @param p The full AR polynomial (including the differencing)
+     * @param n The length of the series
+     * @return null if the filtered pattern doesn't start at the position of the
+     * outlier or if it is not negligible after MAX_PATTERN periods
+     */
+    private static double[] pattern(IOutlierFactory factory, double[] p, int n) {
+        int dp = p.length - 1;
+        int len = Math.min(n, MAX_PATTERN);
+        int pos0 = dp + 1, m = pos0 + len + 1;
+        double[] x = new double[m];
+        factory.fill(pos0, DataBlock.of(x));
+        double[] v = new double[m];
+        for (int s = dp; s < m; ++s) {
+            double cur = 0;
+            for (int i = 0; i <= dp; ++i) {
+                cur += p[i] * x[s - i];
+            }
+            v[s] = cur;
+        }
+        for (int s = dp; s < pos0; ++s) {
+            if (Math.abs(v[s]) > EPS) {
+                return null;
+            }
+        }
+        // the whole series is covered when len == n
+        if (len < n && Math.abs(v[m - 1]) > EPS) {
+            return null;
+        }
+        int last = m - 1;
+        while (last >= pos0 && Math.abs(v[last]) <= EPS) {
+            --last;
+        }
+        return Arrays.copyOfRange(v, pos0, last + 1);
+    }
+
+    /**
+     * g = v0/th(B); returns the cumulated sums of the squares of g, c[k] =
+     * g[0]^2+...+g[k-1]^2
+     */
+    private static double[] cumulatedSquares(double[] v0, double[] th, int[] ith, int n) {
+        double[] g = new double[n];
+        double[] c = new double[n + 1];
+        for (int k = 0; k < n; ++k) {
+            double cur = k < v0.length ? v0[k] : 0;
+            for (int j : ith) {
+                if (j > 0 && k - j >= 0) {
+                    cur -= th[j] * g[k - j];
+                }
+            }
+            g[k] = cur;
+            c[k + 1] = c[k] + cur * cur;
+        }
+        return c;
+    }
+}
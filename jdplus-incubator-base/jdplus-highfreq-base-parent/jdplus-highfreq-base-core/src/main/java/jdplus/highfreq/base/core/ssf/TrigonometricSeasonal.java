@@ -0,0 +1,236 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.core.ssf;
+
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.ssf.ISsfDynamics;
+import jdplus.toolkit.base.core.ssf.ISsfInitialization;
+import jdplus.toolkit.base.core.ssf.ISsfLoading;
+import jdplus.toolkit.base.core.ssf.StateComponent;
+import jdplus.toolkit.base.core.ssf.basic.Loading;
+
+/**
+ * Trigonometric seasonal component limited to the first harmonics of a
+ * (possibly very long and/or non integer) period.
+ * The state vector is [c(1), c*(1), ..., c(k), c*(k)], where each pair follows
+ * a stochastic rotation with frequency 2*pi*j/period. All the innovations share
+ * the same variance. The size of the state is 2*k, whatever the period, which
+ * makes the block usable for periods (8766 for hourly data...) that can't be
+ * handled by a canonical decomposition.
+ *
+ * @author Jean Palate <jean.palate@nbb.be>
+ */
+@lombok.experimental.UtilityClass
+public class TrigonometricSeasonal {
+
+    /**
+     *
+     * @param period The period of the seasonal component
+     * @param nharmonics The number of harmonics (should be lower than period/2)
+     * @param var The variance of the innovations
+     * @return
+     */
+    public StateComponent of(double period, int nharmonics, double var) {
+        if (nharmonics <= 0 || 2 * nharmonics >= period) {
+            throw new IllegalArgumentException("Invalid number of harmonics");
+        }
+        Data info = new Data(period, nharmonics, var);
+        return new StateComponent(new Initialization(info), new Dynamics(info));
+    }
+
+    /**
+     * The seasonal component is the sum of the first items of each pair
+     *
+     * @param nharmonics
+     * @return
+     */
+    public ISsfLoading defaultLoading(int nharmonics) {
+        return Loading.fromPositions(positions(nharmonics));
+    }
+
+    /**
+     * Positions (in the state block) of the items that define the seasonal
+     * component
+     *
+     * @param nharmonics
+     * @return
+     */
+    public int[] positions(int nharmonics) {
+        int[] pos = new int[nharmonics];
+        for (int i = 0; i < nharmonics; ++i) {
+            pos[i] = 2 * i;
+        }
+        return pos;
+    }
+
+    static class Data {
+
+        final int nh;
+        final double var, e;
+        final double[] cos, sin;
+
+        Data(double period, int nh, double var) {
+            this.nh = nh;
+            this.var = var;
+            this.e = var <= 0 ? 0 : Math.sqrt(var);
+            cos = new double[nh];
+            sin = new double[nh];
+            for (int i = 0; i < nh; ++i) {
+                double w = 2 * Math.PI * (i + 1) / period;
+                cos[i] = Math.cos(w);
+                sin[i] = Math.sin(w);
+            }
+        }
+    }
+
+    static class Dynamics implements ISsfDynamics {
+
+        private final Data info;
+
+        Dynamics(Data info) {
+            this.info = info;
+        }
+
+        @Override
+        public boolean isTimeInvariant() {
+            return true;
+        }
+
+        @Override
+        public boolean areInnovationsTimeInvariant() {
+            return true;
+        }
+
+        @Override
+        public int getInnovationsDim() {
+            return info.var > 0 ? 2 * info.nh : 0;
+        }
+
+        @Override
+        public void V(int pos, FastMatrix qm) {
+            if (info.var > 0) {
+                qm.diagonal().set(info.var);
+            }
+        }
+
+        @Override
+        public boolean hasInnovations(int pos) {
+            return info.var > 0;
+        }
+
+        @Override
+        public void S(int pos, FastMatrix cm) {
+            if (info.var > 0) {
+                cm.diagonal().set(info.e);
+            }
+        }
+
+        @Override
+        public void addSU(int pos, DataBlock x, DataBlock u) {
+            if (info.var > 0) {
+                x.addAY(info.e, u);
+            }
+        }
+
+        @Override
+        public void XS(int pos, DataBlock x, DataBlock xs) {
+            if (info.var > 0) {
+                for (int i = 0; i < 2 * info.nh; ++i) {
+                    xs.set(i, x.get(i) * info.e);
+                }
+            }
+        }
+
+        @Override
+        public void T(int pos, FastMatrix tr) {
+            for (int i = 0, j = 0; i < info.nh; ++i, j += 2) {
+                tr.set(j, j, info.cos[i]);
+                tr.set(j + 1, j + 1, info.cos[i]);
+                tr.set(j, j + 1, info.sin[i]);
+                tr.set(j + 1, j, -info.sin[i]);
+            }
+        }
+
+        @Override
+        public void TX(int pos, DataBlock x) {
+            for (int i = 0, j = 0; i < info.nh; ++i, j += 2) {
+                double a = x.get(j), b = x.get(j + 1);
+                x.set(j, a * info.cos[i] + b * info.sin[i]);
+                x.set(j + 1, -a * info.sin[i] + b * info.cos[i]);
+            }
+        }
+
+        @Override
+        public void XT(int pos, DataBlock x) {
+            for (int i = 0, j = 0; i < info.nh; ++i, j += 2) {
+                double a = x.get(j), b = x.get(j + 1);
+                x.set(j, a * info.cos[i] - b * info.sin[i]);
+                x.set(j + 1, a * info.sin[i] + b * info.cos[i]);
+            }
+        }
+
+        @Override
+        public void addV(int pos, FastMatrix p) {
+            if (info.var > 0) {
+                p.diagonal().add(info.var);
+            }
+        }
+    }
+
+    static class Initialization implements ISsfInitialization {
+
+        private final Data info;
+
+        Initialization(Data info) {
+            this.info = info;
+        }
+
+        @Override
+        public int getStateDim() {
+            return 2 * info.nh;
+        }
+
+        @Override
+        public boolean isDiffuse() {
+            return true;
+        }
+
+        @Override
+        public int getDiffuseDim() {
+            return 2 * info.nh;
+        }
+
+        @Override
+        public void diffuseConstraints(FastMatrix b) {
+            b.diagonal().set(1);
+        }
+
+        @Override
+        public void a0(DataBlock a0) {
+        }
+
+        @Override
+        public void Pi0(FastMatrix pi0) {
+            pi0.diagonal().set(1);
+        }
+
+        @Override
+        public void Pf0(FastMatrix pf0) {
+        }
+    }
+}
@@ -20,6 +20,7 @@ module jdplus.highfreq.base.core {
     exports jdplus.highfreq.base.core.extendedairline;
     exports jdplus.highfreq.base.core.extractors;
     exports jdplus.highfreq.base.core.regarima;
+    exports jdplus.highfreq.base.core.ssf;
     exports jdplus.highfreq.base.core.ssf.extractors;
     exports jdplus.highfreq.base.core.extendedairline.decomposition;
 
@@ -20,11 +20,14 @@ import jdplus.toolkit.base.api.data.DoubleSeq;
 import tck.demetra.data.Data;
 import tck.demetra.data.MatrixSerializer;
 import jdplus.highfreq.base.api.DecompositionSpec;
+import jdplus.highfreq.base.api.ExtendedAirlineDictionaries;
 import jdplus.toolkit.base.api.math.matrices.Matrix;
 import jdplus.toolkit.base.api.processing.ProcessingLog;
+import jdplus.toolkit.base.api.timeseries.TsUnit;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -64,6 +67,89 @@ public class DecompositionKernelTest {
         assertTrue(decomp != null);
     }
 
+    @Test
+    public void testReduced() {
+        DecompositionSpec spec = DecompositionSpec.builder()
+                .periodicities(new double[]{7, 365.25})
+                .maxCanonicalPeriod(100)
+                .harmonicsCount(6)
+                .forecastsCount(35)
+                .build();
+        DecompositionKernel kernel = new DecompositionKernel(spec);
+        ExtendedAirlineDecomposition decomp = kernel.process(EDF.log(), true, ProcessingLog.dummy());
+        ExtendedAirlineDecomposition.Step step = decomp.getSteps().get(1);
+        assertEquals(3, step.getComponentsCount());
+        assertEquals(EDF.length() + 35, step.getComponent(1).getData().length());
+        assertTrue(decomp.getFinalComponent(ExtendedAirlineDictionaries.SA_CMP).allMatch(x -> Double.isFinite(x)));
+    }
+
+    @Test
+    public void testDefaultHour() {
+        DecompositionSpec spec = DecompositionSpec.createDefault(TsUnit.HOUR);
+        assertArrayEquals(new double[]{24, 168, 8766}, spec.getPeriodicities());
+        assertTrue(spec.isAdjustToInt());
+        assertFalse(spec.isReduced(24));
+        assertFalse(spec.isReduced(168));
+        assertTrue(spec.isReduced(8766));
+        assertArrayEquals(new String[]{ExtendedAirlineDictionaries.SD_CMP, ExtendedAirlineDictionaries.SW_CMP, ExtendedAirlineDictionaries.SY_CMP},
+                DecompositionKernel.seasonalNames(spec.getPeriodicities()));
+    }
+
+    @Test
+    public void testDefaultMinute() {
+        DecompositionSpec spec = DecompositionSpec.createDefault(TsUnit.MINUTE);
+        assertArrayEquals(new double[]{1440, 10080}, spec.getPeriodicities());
+        assertTrue(spec.isReduced(1440));
+        assertTrue(spec.isReduced(10080));
+        assertArrayEquals(new String[]{ExtendedAirlineDictionaries.SD_CMP, ExtendedAirlineDictionaries.SW_CMP},
+                DecompositionKernel.seasonalNames(spec.getPeriodicities()));
+    }
+
+    @Test
+    public void testSeasonalNames() {
+        assertArrayEquals(new String[]{ExtendedAirlineDictionaries.SW_CMP, ExtendedAirlineDictionaries.SY_CMP},
+                DecompositionKernel.seasonalNames(new double[]{7, 365}));
+        assertArrayEquals(new String[]{ExtendedAirlineDictionaries.SW_CMP},
+                DecompositionKernel.seasonalNames(new double[]{7}));
+        assertArrayEquals(new String[]{ExtendedAirlineDictionaries.SY_CMP},
+                DecompositionKernel.seasonalNames(new double[]{12}));
+        assertArrayEquals(new String[]{ExtendedAirlineDictionaries.SD_CMP, ExtendedAirlineDictionaries.SY_CMP},
+                DecompositionKernel.seasonalNames(new double[]{24, 8766}));
+    }
+
+    @Test
+    public void testTrigonometricHourly() {
+        // 8 weeks of hourly data, with daily and weekly cycles
+        int n = 24 * 7 * 8;
+        double[] y = new double[n];
+        Random rnd = new Random(0);
+        for (int i = 0; i < n; ++i) {
+            y[i] = 100 + .01 * i + 5 * Math.sin(2 * Math.PI * i / 24) + 3 * Math.cos(2 * Math.PI * i / 168) + rnd.nextGaussian();
+        }
+        DecompositionSpec spec = DecompositionSpec.builder()
+                .periodicities(new double[]{24, 168})
+                .maxCanonicalPeriod(20)
+                .harmonicsCount(3)
+                .forecastsCount(24)
+                .build();
+        DecompositionKernel kernel = new DecompositionKernel(spec);
+        ExtendedAirlineDecomposition decomp = kernel.process(DoubleSeq.of(y), false, ProcessingLog.dummy());
+        assertEquals(2, decomp.getSteps().size());
+        DoubleSeq sd = decomp.getFinalComponent(ExtendedAirlineDictionaries.SD_CMP);
+        DoubleSeq sw = decomp.getFinalComponent(ExtendedAirlineDictionaries.SW_CMP);
+        assertEquals(n + 24, sd.length());
+        assertEquals(n + 24, sw.length());
+        assertTrue(decomp.getFinalComponent(ExtendedAirlineDictionaries.SY_CMP).isEmpty());
+        assertTrue(sd.allMatch(x -> Double.isFinite(x)));
+        assertTrue(sw.allMatch(x -> Double.isFinite(x)));
+        // the daily component follows the daily cycle
+        double cov = 0;
+        for (int i = 0; i < n; ++i) {
+            cov += sd.get(i) * Math.sin(2 * Math.PI * i / 24);
+        }
+        assertTrue(cov > 0);
+    }
+
     public static void main(String[] args){
         testComplex();
     }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.core.regarima;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import jdplus.highfreq.base.api.ExtendedAirlineSpec;
+import jdplus.highfreq.base.core.extendedairline.ExtendedAirlineMapping;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.math.matrices.Matrix;
+import jdplus.toolkit.base.core.arima.ArimaModel;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.modelling.regression.AdditiveOutlierFactory;
+import jdplus.toolkit.base.core.modelling.regression.IOutlierFactory;
+import jdplus.toolkit.base.core.modelling.regression.LevelShiftFactory;
+import jdplus.toolkit.base.core.regarima.GlsArimaProcessor;
+import jdplus.toolkit.base.core.regarima.RegArimaEstimation;
+import jdplus.toolkit.base.core.regarima.RegArimaModel;
+import jdplus.toolkit.base.core.regarima.ami.OutliersDetectionModule;
+import jdplus.toolkit.base.core.stats.likelihood.ConcentratedLikelihoodWithMissing;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import tck.demetra.data.Data;
+import tck.demetra.data.MatrixSerializer;
+
+/**
+ *
+ * @author Jean Palate <jean.palate@nbb.be>
+ */
+public class HighFreqOutliersDetectionModuleTest {
+
+    public HighFreqOutliersDetectionModuleTest() {
+    }
+
+    @Test
+    public void testDaily() throws IOException {
+        InputStream stream = Data.class.getResourceAsStream("edf.txt");
+        Matrix edf = MatrixSerializer.read(stream);
+        DoubleSeq y = edf.column(0).log();
+        ExtendedAirlineMapping mapping = ExtendedAirlineMapping.of(ExtendedAirlineSpec.DEFAULT_WD);
+        RegArimaModel<ArimaModel> regarima = RegArimaModel.<ArimaModel>builder()
+                .y(y)
+                .arima(mapping.getDefault())
+                .build();
+        int[][] batch = detect(regarima, mapping, false);
+        int[][] exact = detect(regarima, mapping, true);
+        int[][] generic = generic(regarima, mapping);
+        assertTrue(batch.length > 0);
+        assertTrue(exact.length > 0);
+        assertTrue(generic.length > 0);
+        checkPositions(batch, y.length());
+        checkPositions(exact, y.length());
+        // the most significant outlier of the first scan is the first outlier
+        // of the generic detection
+        assertEquals(generic[0][0], batch[0][0]);
+        assertEquals(generic[0][0], exact[0][0]);
+        // all the outliers are significant in the final model
+        checkSignificant(regarima, mapping, batch, 6);
+        checkSignificant(regarima, mapping, exact, 6);
+        // the exact and the approximate runs mostly agree
+        long common = Arrays.stream(exact)
+                .filter(o -> Arrays.stream(batch).anyMatch(b -> Arrays.equals(o, b)))
+                .count();
+        assertTrue(2 * common >= Math.min(batch.length, exact.length));
+    }
+
+    @Test
+    public void testMissingAndMean() throws IOException {
+        InputStream stream = Data.class.getResourceAsStream("edf.txt");
+        Matrix edf = MatrixSerializer.read(stream);
+        double[] y = edf.column(0).log().toArray();
+        int[] missing = {10, 11, 100, 500};
+        for (int pos : missing) {
+            y[pos] = Double.NaN;
+        }
+        ExtendedAirlineMapping mapping = ExtendedAirlineMapping.of(ExtendedAirlineSpec.DEFAULT_WD);
+        RegArimaModel<ArimaModel> regarima = RegArimaModel.<ArimaModel>builder()
+                .y(DoubleSeq.of(y))
+                .meanCorrection(true)
+                .arima(mapping.getDefault())
+                .build();
+        HighFreqOutliersDetectionModule od = HighFreqOutliersDetectionModule.builder()
+                .addFactories(AdditiveOutlierFactory.FACTORY, LevelShiftFactory.FACTORY_ZEROENDED)
+                .maxOutliers(20)
+                .maxRound(5)
+                .build();
+        od.setCriticalValue(6);
+        od.prepare(y.length);
+        for (int pos : missing) {
+            od.exclude(pos, 0);
+            od.exclude(pos, 1);
+        }
+        od.process(regarima, mapping);
+        int[][] o = od.getOutliers();
+        assertTrue(o.length > 0);
+        // the missing values don't prevent the detection in the rest of the series
+        assertTrue(Arrays.stream(o).anyMatch(cur -> cur[0] > 500));
+        for (int[] cur : o) {
+            assertTrue(Arrays.stream(missing).noneMatch(pos -> pos == cur[0]));
+        }
+    }
+
+    @Test
+    public void testNoFactory() {
+        ExtendedAirlineMapping mapping = ExtendedAirlineMapping.of(ExtendedAirlineSpec.DEFAULT_WD);
+        RegArimaModel<ArimaModel> regarima = RegArimaModel.<ArimaModel>builder()
+                .y(DoubleSeq.of(Data.RETAIL_BOOKSTORES))
+                .arima(mapping.getDefault())
+                .build();
+        HighFreqOutliersDetectionModule od = HighFreqOutliersDetectionModule.builder().build();
+        assertFalse(od.process(regarima, mapping));
+        assertEquals(0, od.getOutliers().length);
+    }
+
+    private static int[][] detect(RegArimaModel<ArimaModel> regarima, ExtendedAirlineMapping mapping, boolean exact) {
+        HighFreqOutliersDetectionModule od = HighFreqOutliersDetectionModule.builder()
+                .addFactories(AdditiveOutlierFactory.FACTORY, LevelShiftFactory.FACTORY_ZEROENDED)
+                .maxOutliers(20)
+                .maxRound(5)
+                .exactConfirmation(exact)
+                .build();
+        od.setCriticalValue(6);
+        od.prepare(regarima.getY().length());
+        od.process(regarima, mapping);
+        assertTrue(od.getRound() <= 5);
+        return od.getOutliers();
+    }
+
+    private static int[][] generic(RegArimaModel<ArimaModel> regarima, ExtendedAirlineMapping mapping) {
+        OutliersDetectionModule od = OutliersDetectionModule.build(ArimaModel.class)
+                .addFactories(AdditiveOutlierFactory.FACTORY, LevelShiftFactory.FACTORY_ZEROENDED)
+                .maxOutliers(20)
+                .processor(GlsArimaProcessor.builder(ArimaModel.class)
+                        .precision(1e-5)
+                        .build())
+                .build();
+        od.setCriticalValue(6);
+        od.prepare(regarima.getY().length());
+        od.process(regarima, mapping);
+        return od.getOutliers();
+    }
+
+    private static void checkPositions(int[][] outliers, int n) {
+        assertEquals(outliers.length, Arrays.stream(outliers).mapToInt(o -> o[0]).distinct().count());
+        for (int[] o : outliers) {
+            assertTrue(o[0] >= 0 && o[0] < n);
+            assertTrue(o[1] == 0 || o[1] == 1);
+        }
+    }
+
+    private static void checkSignificant(RegArimaModel<ArimaModel> regarima, ExtendedAirlineMapping mapping, int[][] outliers, double cv) {
+        IOutlierFactory[] factories = {AdditiveOutlierFactory.FACTORY, LevelShiftFactory.FACTORY_ZEROENDED};
+        RegArimaModel.Builder<ArimaModel> builder = regarima.toBuilder();
+        for (int[] o : outliers) {
+            DataBlock x = DataBlock.make(regarima.getY().length());
+            factories[o[1]].fill(o[0], x);
+            builder.addX(x);
+        }
+        RegArimaEstimation<ArimaModel> est = GlsArimaProcessor.builder(ArimaModel.class)
+                .precision(1e-5)
+                .build()
+                .process(builder.build(), mapping);
+        ConcentratedLikelihoodWithMissing ll = est.getConcentratedLikelihood();
+        DoubleSeq b = ll.coefficients();
+        Matrix cov = ll.covariance(mapping.getDim(), true);
+        int start = b.length() - outliers.length;
+        for (int i = 0; i < outliers.length; ++i) {
+            double t = b.get(start + i) / Math.sqrt(cov.get(start + i, start + i));
+            // small margin for the final re-estimation of the model
+            assertTrue(Math.abs(t) >= .9 * cv);
+        }
+    }
+}
@@ -27,7 +27,8 @@ import jdplus.toolkit.base.api.information.InformationSet;
 public class DecompositionSpecMapping {
 
     final String PERIODS = "periods", ITERATIVE = "iterative", NOISY = "noisy",
-            STDEV = "stdev", NBCASTS = "nbcasts", NFCASTS = "nfcasts", BIAS = "bias", TOINT = "toint";
+            STDEV = "stdev", NBCASTS = "nbcasts", NFCASTS = "nfcasts", BIAS = "bias", TOINT = "toint",
+            MAXCANONICAL = "maxcanonical", HARMONICS = "harmonics";
 
     InformationSet write(DecompositionSpec spec, boolean verbose) {
         InformationSet info = new InformationSet();
@@ -40,6 +41,12 @@ public class DecompositionSpecMapping {
         info.add(NFCASTS, spec.getForecastsCount());
         info.add(BIAS, spec.isBiasCorrection());
         info.add(TOINT, spec.isAdjustToInt());
+        if (verbose || spec.getMaxCanonicalPeriod() != DecompositionSpec.DEF_MAXCANONICALPERIOD) {
+            info.add(MAXCANONICAL, spec.getMaxCanonicalPeriod());
+        }
+        if (verbose || spec.getHarmonicsCount() != DecompositionSpec.DEF_HARMONICS) {
+            info.add(HARMONICS, spec.getHarmonicsCount());
+        }
         return info;
     }
 
@@ -76,6 +83,14 @@ public class DecompositionSpecMapping {
         if (b != null) {
             builder.adjustToInt(b);
         }
+        n = info.get(MAXCANONICAL, Integer.class);
+        if (n != null) {
+            builder.maxCanonicalPeriod(n);
+        }
+        n = info.get(HARMONICS, Integer.class);
+        if (n != null) {
+            builder.harmonicsCount(n);
+        }
         return builder.build();
     }
 }
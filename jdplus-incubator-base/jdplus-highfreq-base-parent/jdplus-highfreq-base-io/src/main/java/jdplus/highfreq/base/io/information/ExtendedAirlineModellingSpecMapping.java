@@ -70,7 +70,8 @@ public class ExtendedAirlineModellingSpecMapping {
 
     final String PERIOD = "period", SERIES = "series", ENABLED = "enabled",
             ESTIMATE = "estimate", TRANSFORM = "transform",
-            REGRESSION = "regression", STOCHASTIC = "stochastic", OUTLIER = "outlier";
+            REGRESSION = "regression", STOCHASTIC = "stochastic", OUTLIER = "outlier",
+            OUTLIERSDETECTION = "outliersdetection";
 
     InformationSet write(ExtendedAirlineModellingSpec spec, TsDomain domain, boolean verbose) {
         if (!spec.isEnabled()) {
@@ -83,6 +84,9 @@ public class ExtendedAirlineModellingSpecMapping {
         info.set(REGRESSION, TransformSpecMapping.write(spec.getTransform(), verbose));
         info.set(STOCHASTIC, ExtendedAirlineSpecMapping.write(spec.getStochastic(), verbose));
         info.set(OUTLIER, OutlierSpecMapping.write(spec.getOutlier(), verbose));
+        if (verbose || spec.getOutliersDetection() != ExtendedAirlineModellingSpec.OutliersDetection.Generic) {
+            info.add(OUTLIERSDETECTION, spec.getOutliersDetection().name());
+        }
         return info;
     }
 
@@ -98,6 +102,10 @@ public class ExtendedAirlineModellingSpecMapping {
                 .regression(RegressionSpecMapping.read(info.getSubSet(REGRESSION)))
                 .stochastic(ExtendedAirlineSpecMapping.read(info.getSubSet(STOCHASTIC)))
                 .outlier(OutlierSpecMapping.read(info.getSubSet(OUTLIER)));
+        String od = info.get(OUTLIERSDETECTION, String.class);
+        if (od != null) {
+            builder.outliersDetection(ExtendedAirlineModellingSpec.OutliersDetection.valueOf(od));
+        }
         return builder.build();
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.r;
+
+import jdplus.highfreq.base.core.extendedairline.decomposition.LightExtendedAirlineDecomposition;
+
+/**
+ * Results of the decomposition of a panel of series by extended airline
+ * models. The status and the messages have the same meaning as in
+ * ExtendedAirlinePanel.
+ *
+ * @author Jean Palate
+ */
+@lombok.Value
+@lombok.Builder
+public class ExtendedAirlineDecompositionPanel {
+
+    /**
+     * Status of the processing of each series (ExtendedAirlinePanel.OK or
+     * ExtendedAirlinePanel.FAILED)
+     */
+    int[] status;
+    /**
+     * Decomposition of each series (null for the series that couldn't be
+     * processed)
+     */
+    LightExtendedAirlineDecomposition[] decompositions;
+    /**
+     * Reason of the failure of each series (null for the series that have
+     * been processed)
+     */
+    String[] messages;
+
+    public int getSeriesCount() {
+        return status.length;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.highfreq.base.r;
+
+import jdplus.toolkit.base.api.math.matrices.Matrix;
+
+/**
+ * Compact results of the estimation of extended airline models on a panel of
+ * series. The matrices contain one column by series (column-major storage).
+ * The columns of the series that couldn't be processed are filled with
+ * missing values. The detailed results of a series can be obtained by
+ * re-estimating it individually.
+ *
+ * @author Jean Palate
+ */
+@lombok.Value
+@lombok.Builder
+public class ExtendedAirlinePanel {
+
+    public static final int OK = 0, FAILED = 1;
+
+    /**
+     * Status of the processing of each series (OK or FAILED)
+     */
+    int[] status;
+    /**
+     * Parameters of the stochastic model (nparams x nseries)
+     */
+    Matrix parameters;
+    /**
+     * Coefficients of the mean correction and of the user-defined regression
+     * variables (ncoeff x nseries)
+     */
+    Matrix coefficients;
+    /**
+     * Log-likelihood, AIC and BIC (3 x nseries)
+     */
+    Matrix likelihood;
+    /**
+     * Number of identified outliers
+     */
+    int[] outliersCount;
+    /**
+     * Reason of the failure of each series (null for the series that have
+     * been processed)
+     */
+    String[] messages;
+
+    public int getSeriesCount() {
+        return status.length;
+    }
+
+}
@@ -16,6 +16,7 @@
  */
 package jdplus.highfreq.base.r;
 
+import java.util.Arrays;
 import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.toolkit.base.api.data.Parameter;
 import jdplus.highfreq.base.core.extendedairline.decomposition.LightExtendedAirlineDecomposition;
@@ -54,8 +55,151 @@ public class FractionalAirlineProcessor {
     }
 
     public ExtendedAirlineEstimation estimate(double[] y, Matrix x, boolean mean, double[] periods, int ndiff, boolean ar, String[] outliers, double cv, double precision, boolean approximateHessian, int nfcasts, boolean log) {
-        ExtendedAirlineSpec spec = ExtendedAirlineSpec.builder().periodicities(periods).differencingOrder(ndiff).phi(ar ? Parameter.undefined() : null).theta(ar ? null : Parameter.undefined()).adjustToInt(false).build();
-        return ExtendedAirlineKernel.fastProcess(DoubleSeq.of(y), x, mean, outliers, cv, spec, precision, nfcasts, log);
+        ExtendedAirlineSpec spec = spec(periods, ndiff, ar);
+        return ExtendedAirlineKernel.fastProcess(DoubleSeq.of(y), x, mean, outliers, cv, spec, precision, approximateHessian, nfcasts, log);
+    }
+
+    /**
+     * Estimation of a panel of series (columns of y), which share the same
+     * specification and the same regression variables
+     *
+     * @param y
+     * @param x
+     * @param mean
+     * @param periods
+     * @param ndiff
+     * @param ar
+     * @param outliers
+     * @param cv
+     * @param precision
+     * @param approximateHessian
+     * @param nfcasts
+     * @param log
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @return
+     */
+    public ExtendedAirlinePanel estimate(Matrix y, Matrix x, boolean mean, double[] periods, int ndiff, boolean ar, String[] outliers, double cv, double precision, boolean approximateHessian, int nfcasts, boolean log, int nthreads) {
+        double[][] all = new double[y.getColumnsCount()][];
+        for (int i = 0; i < all.length; ++i) {
+            all[i] = y.column(i).toArray();
+        }
+        return estimate(all, x, mean, periods, ndiff, ar, outliers, cv, precision, approximateHessian, nfcasts, log, nthreads);
+    }
+
+    /**
+     * Estimation of a panel of series (possibly of different lengths when no
+     * regression variable is used)
+     *
+     * @param y
+     * @param x
+     * @param mean
+     * @param periods
+     * @param ndiff
+     * @param ar
+     * @param outliers
+     * @param cv
+     * @param precision
+     * @param approximateHessian
+     * @param nfcasts
+     * @param log
+     * @param nthreads
+     * @return
+     */
+    public ExtendedAirlinePanel estimate(double[][] y, Matrix x, boolean mean, double[] periods, int ndiff, boolean ar, String[] outliers, double cv, double precision, boolean approximateHessian, int nfcasts, boolean log, int nthreads) {
+        ExtendedAirlineSpec spec = spec(periods, ndiff, ar);
+        int m = y.length;
+        int np = ExtendedAirlineMapping.of(spec).getDim();
+        int nc = (mean ? 1 : 0) + (x == null ? 0 : x.getColumnsCount());
+        int[] status = new int[m];
+        int[] nout = new int[m];
+        String[] messages = new String[m];
+        double[] p = new double[np * m], c = new double[nc * m], ll = new double[3 * m];
+        // one processor by chunk of series
+        ForkJoinUtility.run(m, nthreads, () -> new ExtendedAirlineKernel.FastProcessor(spec, mean, outliers, cv, precision, approximateHessian), (processor, i) -> {
+            try {
+                ExtendedAirlineEstimation rslt = processor.process(DoubleSeq.of(y[i]), x, nfcasts, log);
+                rslt.getParameters().copyTo(p, i * np);
+                rslt.getCoefficients().range(0, nc).copyTo(c, i * nc);
+                ll[3 * i] = rslt.getLikelihood().getLogLikelihood();
+                ll[3 * i + 1] = rslt.getLikelihood().getAIC();
+                ll[3 * i + 2] = rslt.getLikelihood().getBIC();
+                nout[i] = rslt.getOutliers().length;
+            } catch (RuntimeException err) {
+                status[i] = ExtendedAirlinePanel.FAILED;
+                messages[i] = err.getMessage() == null ? err.toString() : err.getMessage();
+                Arrays.fill(p, i * np, (i + 1) * np, Double.NaN);
+                Arrays.fill(c, i * nc, (i + 1) * nc, Double.NaN);
+                Arrays.fill(ll, 3 * i, 3 * i + 3, Double.NaN);
+            }
+        });
+        return ExtendedAirlinePanel.builder()
+                .status(status)
+                .parameters(Matrix.of(p, np, m))
+                .coefficients(Matrix.of(c, nc, m))
+                .likelihood(Matrix.of(ll, 3, m))
+                .outliersCount(nout)
+                .messages(messages)
+                .build();
+    }
+
+    /**
+     * Decomposition of a panel of series (columns of s)
+     *
+     * @param s
+     * @param periods
+     * @param ndiff
+     * @param ar
+     * @param cov
+     * @param nb
+     * @param nf
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @return
+     */
+    public ExtendedAirlineDecompositionPanel decompose(Matrix s, double[] periods, int ndiff, boolean ar, boolean cov, int nb, int nf, int nthreads) {
+        double[][] all = new double[s.getColumnsCount()][];
+        for (int i = 0; i < all.length; ++i) {
+            all[i] = s.column(i).toArray();
+        }
+        return decompose(all, periods, ndiff, ar, cov, nb, nf, nthreads);
+    }
+
+    /**
+     * Decomposition of a panel of series (possibly of different lengths)
+     *
+     * @param s
+     * @param periods
+     * @param ndiff
+     * @param ar
+     * @param cov
+     * @param nb
+     * @param nf
+     * @param nthreads
+     * @return
+     */
+    public ExtendedAirlineDecompositionPanel decompose(double[][] s, double[] periods, int ndiff, boolean ar, boolean cov, int nb, int nf, int nthreads) {
+        int m = s.length;
+        LightExtendedAirlineDecomposition[] rslt = new LightExtendedAirlineDecomposition[m];
+        int[] status = new int[m];
+        String[] messages = new String[m];
+        ForkJoinUtility.run(m, nthreads, i -> {
+            try {
+                rslt[i] = ExtendedAirlineDecomposer.decompose(DoubleSeq.of(s[i]), periods, ndiff, ar, cov, nb, nf);
+            } catch (RuntimeException err) {
+                status[i] = ExtendedAirlinePanel.FAILED;
+                messages[i] = err.getMessage() == null ? err.toString() : err.getMessage();
+            }
+        });
+        return ExtendedAirlineDecompositionPanel.builder()
+                .status(status)
+                .decompositions(rslt)
+                .messages(messages)
+                .build();
+    }
+
+    private ExtendedAirlineSpec spec(double[] periods, int ndiff, boolean ar) {
+        return ExtendedAirlineSpec.builder().periodicities(periods).differencingOrder(ndiff).phi(ar ? Parameter.undefined() : null).theta(ar ? null : Parameter.undefined()).adjustToInt(false).build();
     }
 
     public double[] random(double[] periods, double theta, double[] stheta, boolean adjust, int n, double[] initial, double stdev, int warmup) {
@@ -112,6 +112,45 @@ public class FractionalAirlineProcessorTest {
 
     }
 
+    @Test
+    public void EstimationPanel() {
+        double[][] panel = new double[][]{logOBS, DoubleSeq.of(logOBS).reverse().toArray(), new double[]{1, 2}};
+        ExtendedAirlinePanel rslt = FractionalAirlineProcessor.estimate(panel, Matrix_Reg, false, new double[]{7}, 1, false, new String[]{"ao"}, 6, 1e-12, false, 0, false, 2);
+        ExtendedAirlineEstimation single = FractionalAirlineProcessor.estimate(logOBS, Matrix_Reg, false, new double[]{7}, 1, false, new String[]{"ao"}, 6, 1e-12, false, 0, false);
+        assertEquals(3, rslt.getSeriesCount());
+        assertEquals(ExtendedAirlinePanel.OK, rslt.getStatus()[0]);
+        assertEquals(ExtendedAirlinePanel.OK, rslt.getStatus()[1]);
+        assertEquals(ExtendedAirlinePanel.FAILED, rslt.getStatus()[2]);
+        assertArrayEquals(single.getParameters().toArray(), rslt.getParameters().column(0).toArray(), 1e-9);
+        assertEquals(single.getOutliers().length, rslt.getOutliersCount()[0]);
+        assertEquals(single.getLikelihood().getLogLikelihood(), rslt.getLikelihood().get(0, 0), 1e-9);
+        assertArrayEquals(single.getCoefficients().range(0, 1).toArray(), rslt.getCoefficients().column(0).toArray(), 1e-9);
+        assertTrue(rslt.getParameters().column(2).allMatch(Double::isNaN));
+        assertNull(rslt.getMessages()[0]);
+        assertNull(rslt.getMessages()[1]);
+        assertNotNull(rslt.getMessages()[2]);
+        // approximate hessian
+        ExtendedAirlinePanel arslt = FractionalAirlineProcessor.estimate(panel, Matrix_Reg, false, new double[]{7}, 1, false, new String[]{"ao"}, 6, 1e-12, true, 0, false, 2);
+        ExtendedAirlineEstimation asingle = FractionalAirlineProcessor.estimate(logOBS, Matrix_Reg, false, new double[]{7}, 1, false, new String[]{"ao"}, 6, 1e-12, true, 0, false);
+        assertArrayEquals(asingle.getParameters().toArray(), arslt.getParameters().column(0).toArray(), 1e-9);
+        assertEquals(asingle.getLikelihood().getLogLikelihood(), arslt.getLikelihood().get(0, 0), 1e-9);
+    }
+
+    @Test
+    public void DecompositionPanel() {
+        double[] y = DoubleSeq.of(WeeklyData.US_CLAIMS2).log().toArray();
+        double[][] panel = new double[][]{y, new double[]{1, 2}};
+        ExtendedAirlineDecompositionPanel rslt = FractionalAirlineProcessor.decompose(panel, new double[]{365.25 / 7}, -1, false, false, 0, 0, 2);
+        LightExtendedAirlineDecomposition single = FractionalAirlineProcessor.decompose(y, new double[]{365.25 / 7}, -1, false, false, 0, 0);
+        assertEquals(2, rslt.getSeriesCount());
+        assertEquals(ExtendedAirlinePanel.OK, rslt.getStatus()[0]);
+        assertEquals(ExtendedAirlinePanel.FAILED, rslt.getStatus()[1]);
+        assertArrayEquals(single.getData("sa", double[].class), rslt.getDecompositions()[0].getData("sa", double[].class), 1e-9);
+        assertNull(rslt.getDecompositions()[1]);
+        assertNull(rslt.getMessages()[0]);
+        assertNotNull(rslt.getMessages()[1]);
+    }
+
     @Test
     public void EstimationInDetail() {
         double[] OBS = {2.52, -1.43, -0.77, -3.19, -1.6, 0.35, 0.95, 1.69, 1.91, 1.46, -1.21, -2.48, 1.35, 0.6, 1.09, 1.73, -0.58, -2.56, -1.48, 0.36, 0.12, 1.6, 0.87, -1.31, -2.19, -1.46, -0.45, 2.43, 2.98, 11.93, 0.08, -2.42, -2.99, -0.44, 0.36, 3.83, -0.44, -1.19, -3.25, -2.65, -2.86, -1.18, 0.92, -2.06, -1.28, -2.6, -1.82, 0.53, -1.2, -0.76};
@@ -29,7 +29,7 @@ public class BsmEstimationSpec {
     
     public static final double DEF_TOL = 1e-9, DEF_LR_SMALL=0.01;
     public static final Optimizer DEF_OPT = Optimizer.LevenbergMarquardt;
-    public static final boolean DEF_DREGS = false, DEF_SCALINGFACTOR=true;
+    public static final boolean DEF_DREGS = false, DEF_SCALINGFACTOR=true, DEF_PARALLEL=false, DEF_ANALYTICGRADIENT=false;
     
     public static Builder builder(){
         return new Builder()
@@ -37,7 +37,9 @@ public class BsmEstimationSpec {
                 .scalingFactor(DEF_SCALINGFACTOR)
                 .optimizer(DEF_OPT)
                 .precision(DEF_TOL)
-                .likelihoodRatioThreshold(DEF_LR_SMALL);
+                .likelihoodRatioThreshold(DEF_LR_SMALL)
+                .parallelProcessing(DEF_PARALLEL)
+                .analyticGradient(DEF_ANALYTICGRADIENT);
     }
     
     public static final BsmEstimationSpec DEFAULT=builder().build();
@@ -47,5 +49,16 @@ public class BsmEstimationSpec {
     private boolean scalingFactor;
     private double precision, likelihoodRatioThreshold;
     private Optimizer optimizer;
+    /**
+     * Independent likelihood evaluations (choice of the starting values,
+     * removal of small variances) are done concurrently
+     */
+    private boolean parallelProcessing;
+    /**
+     * The gradient of the likelihood is computed analytically (score of the
+     * variances) instead of by finite differences. Only used with
+     * gradient-based optimizers (BFGS, LBFGS)
+     */
+    private boolean analyticGradient;
   
 }
@@ -16,6 +16,10 @@
  */
 package jdplus.sts.base.core;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
 import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.toolkit.base.api.data.DoubleSeqCursor;
 import jdplus.toolkit.base.api.data.Parameter;
@@ -109,8 +113,7 @@ public class BsmKernel {
                 BsmMapping mapping = new BsmMapping(modelSpec, period, fixedVar);
                 fn = buildFunction(mapping, true);
                 DoubleSeq parameters = mapping.map(bsm);
-                converged = fmin.minimize(fn.evaluate(parameters));
-                fnmax = (SsfFunctionPoint<BsmData, SsfBsm2>) fmin.getResult();
+                converged = minimize(fmin, mapping, parameters, true);
                 bsm = fnmax.getCore();
                 likelihood = fnmax.getLikelihood();
 
@@ -130,8 +133,7 @@ public class BsmKernel {
             BsmMapping mapping = new BsmMapping(modelSpec, period, isScaling() ? fixedVar : null);
             fn = buildFunction(mapping, isScaling());
             DoubleSeq parameters = mapping.map(bsm);
-            converged = fmin.minimize(fn.evaluate(parameters));
-            fnmax = (SsfFunctionPoint<BsmData, SsfBsm2>) fmin.getResult();
+            converged = minimize(fmin, mapping, parameters, isScaling());
             bsm = fnmax.getCore();
             likelihood = fnmax.getLikelihood();
             if (isScaling()) {
@@ -159,6 +161,43 @@ public class BsmKernel {
         return ok;
     }
 
+    /**
+     * Minimizes the current function (fn) and stores the optimum in fnmax.
+     * When requested, gradient-based optimizers use the analytic score
+     *
+     * @param fmin
+     * @param mapping
+     * @param parameters Starting values
+     * @param scaling
+     * @return True if the optimization converged
+     */
+    private boolean minimize(FunctionMinimizer fmin, BsmMapping mapping, DoubleSeq parameters, boolean scaling) {
+        boolean ok;
+        if (useAnalyticGradient(scaling)) {
+            BsmScoreFunction score = new BsmScoreFunction(fn, mapping, y, X, diffuseItems() > 0, scaling);
+            ok = fmin.minimize(score.evaluate(parameters));
+        } else {
+            ok = fmin.minimize(fn.evaluate(parameters));
+        }
+        fnmax = BsmScoreFunction.core(fmin.getResult());
+        return ok;
+    }
+
+    private boolean useAnalyticGradient(boolean scaling) {
+        if (!estimationSpec.isAnalyticGradient()) {
+            return false;
+        }
+        if (!scaling) {
+            return true;
+        }
+        return switch (estimationSpec.getOptimizer()) {
+            case LevenbergMarquardt, MinPack ->
+                false;
+            default ->
+                true;
+        };
+    }
+
     private FunctionMinimizer minimizer(double eps, int niter) {
         FunctionMinimizer.Builder builder = minimizerBuilder();
         return builder
@@ -207,13 +246,18 @@ public class BsmKernel {
         SsfFunctionPoint instance = new SsfFunctionPoint(fn, p);
         double ll = instance.getLikelihood().logLikelihood();
         int nvars = mapping.varsCount();
-        for (int i = 0; i < nvars; ++i) {
+        double[] llcur = evaluate(nvars, i -> {
             if (p.get(i) < 0.2) {
                 DataBlock np = DataBlock.of(p);
                 np.set(i, 0);
-                instance = new SsfFunctionPoint(fn, np);
-                double llcur = instance.getLikelihood().logLikelihood();
-                double v = 2 * (ll - llcur);
+                return new SsfFunctionPoint(fn, np).getLikelihood().logLikelihood();
+            } else {
+                return Double.NaN;
+            }
+        });
+        for (int i = 0; i < nvars; ++i) {
+            if (p.get(i) < 0.2) {
+                double v = 2 * (ll - llcur[i]);
                 if (v < vmin) {
                     vmin = v;
                     imin = i;
@@ -230,6 +274,24 @@ public class BsmKernel {
         return true;
     }
 
+    /**
+     * Evaluates fn(0)...fn(n-1), concurrently if it is required by the
+     * estimation specification. The results are returned in their natural
+     * order, so that the subsequent selections don't depend on the
+     * processing.
+     *
+     * @param n
+     * @param fn
+     * @return
+     */
+    private double[] evaluate(int n, IntToDoubleFunction fn) {
+        IntStream range = IntStream.range(0, n);
+        if (estimationSpec.isParallelProcessing() && n > 1) {
+            range = range.parallel();
+        }
+        return range.mapToDouble(fn).toArray();
+    }
+
     /**
      *
      * @return
@@ -298,46 +360,35 @@ public class BsmKernel {
         //
         double llmax = 0;
         Component cmax = Component.Undefined;
+        List<Component> cmps = new ArrayList<>();
         if (modelSpec.hasNoise()) {
-            SsfFunctionPoint<BsmData, SsfBsm2> lcur = ll(Component.Noise);
-            llmax = lcur.getLikelihood().logLikelihood();
-            bsm0 = lcur.getCore();
-            cmax = Component.Noise;
+            cmps.add(Component.Noise);
         }
         if (modelSpec.hasLevel()) {
-            SsfFunctionPoint<BsmData, SsfBsm2> lcur = ll(Component.Level);
-            double ll = lcur.getLikelihood().logLikelihood();
-            if (bsm0 == null || ll > llmax) {
-                llmax = ll;
-                bsm0 = lcur.getCore();
-                cmax = Component.Level;
-            }
+            cmps.add(Component.Level);
         }
         if (modelSpec.hasSlope()) {
-            SsfFunctionPoint<BsmData, SsfBsm2> lcur = ll(Component.Slope);
-            double ll = lcur.getLikelihood().logLikelihood();
-            if (bsm0 == null || ll > llmax) {
-                llmax = ll;
-                bsm0 = lcur.getCore();
-                cmax = Component.Slope;
-            }
+            cmps.add(Component.Slope);
         }
         if (modelSpec.hasSeasonal()) {
-            SsfFunctionPoint<BsmData, SsfBsm2> lcur = ll(Component.Seasonal);
-            double ll = lcur.getLikelihood().logLikelihood();
-            if (bsm0 == null || ll > llmax) {
-                llmax = ll;
-                bsm0 = lcur.getCore();
-                cmax = Component.Seasonal;
-            }
+            cmps.add(Component.Seasonal);
         }
         if (modelSpec.hasCycle()) {
-            SsfFunctionPoint<BsmData, SsfBsm2> lcur = ll(Component.Cycle);
-            double ll = lcur.getLikelihood().logLikelihood();
-            if (bsm0 == null || ll > llmax) {
+            cmps.add(Component.Cycle);
+        }
+        SsfFunctionPoint<BsmData, SsfBsm2>[] lcur = new SsfFunctionPoint[cmps.size()];
+        evaluate(lcur.length, i -> {
+            lcur[i] = ll(cmps.get(i));
+            return 0;
+        });
+        // same selection rules as in the sequential processing (the noise is
+        // taken by default, the first maximum is kept)
+        for (int i = 0; i < lcur.length; ++i) {
+            double ll = lcur[i].getLikelihood().logLikelihood();
+            if (cmps.get(i) == Component.Noise || ll > llmax) {
                 llmax = ll;
-                bsm0 = lcur.getCore();
-                cmax = Component.Cycle;
+                bsm0 = lcur[i].getCore();
+                cmax = cmps.get(i);
             }
         }
         this.fixedVar = cmax;
@@ -360,17 +411,22 @@ public class BsmKernel {
         int imax = -1;
         int nvars = mapping.varsCount();
         DoubleSeq refp = p;
-        for (int i = 0; i < nvars; ++i) {
+        double[] nll = evaluate(nvars, i -> {
             DataBlock np = DataBlock.of(p);
             np.mul(i, RVAR);
-            instance = new SsfFunctionPoint(fn, np);
-            double nll = instance.getLikelihood().logLikelihood();
-            if (nll > lmax) {
-                lmax = nll;
+            return new SsfFunctionPoint(fn, np).getLikelihood().logLikelihood();
+        });
+        for (int i = 0; i < nvars; ++i) {
+            if (nll[i] > lmax) {
+                lmax = nll[i];
                 imax = i;
-                refp = np;
             }
         }
+        if (imax >= 0) {
+            DataBlock np = DataBlock.of(p);
+            np.mul(imax, RVAR);
+            refp = np;
+        }
         if (imax < 0) {
             if (modelSpec.hasNoise()) {
                 fixedVar = Component.Noise;
@@ -407,6 +463,23 @@ public class BsmKernel {
      * @return
      */
     public boolean process(DoubleSeq y, Matrix x, int period, BsmSpec model) {
+        return process(y, x, period, model, null);
+    }
+
+    /**
+     * Estimation with given starting values. The computation of the initial
+     * model (which requires several estimations) is skipped. The starting
+     * values should correspond to the given specification; their scale is
+     * irrelevant (the series are normalized)
+     *
+     * @param y
+     * @param x
+     * @param period
+     * @param model
+     * @param start Starting values. Computed automatically if null
+     * @return
+     */
+    public boolean process(DoubleSeq y, Matrix x, int period, BsmSpec model, BsmData start) {
         clear();
         this.z = y;
         this.y = y.toArray();
@@ -415,6 +488,16 @@ public class BsmKernel {
         this.X = FastMatrix.of(x);
         this.period = period;
         modelSpec = model;
+        if (start != null) {
+            BsmData.ComponentVariance max = start.maxVariance();
+            if (max.getComponent() != Component.Undefined) {
+                bsm = start.scaleVariances(1 / max.getVariance());
+                modelSpec = specOf(bsm);
+                if (isScaling()) {
+                    fixedVar = max.getComponent();
+                }
+            }
+        }
         boolean rslt = estimate();
         if (rslt) {
             likelihood = likelihood.rescale(factor, null);
@@ -225,6 +225,23 @@ public class BsmMapping implements IParametricMapping<BsmData> {
         }
     }
 
+    /**
+     * Derivative of a variance with respect to its (transformed) parameter
+     *
+     * @param d The parameter
+     * @return
+     */
+    double dvar(double d) {
+        switch (transformation) {
+            case None:
+                return 1;
+            case Square:
+                return 2 * d;
+            default:
+                return 2 * Math.exp(2 * d);
+        }
+    }
+
     @Override
     public double lbound(int idx) {
         return transformation == Transformation.None ? 0
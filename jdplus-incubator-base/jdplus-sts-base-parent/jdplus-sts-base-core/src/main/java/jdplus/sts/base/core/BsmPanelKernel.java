@@ -0,0 +1,211 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.sts.base.core;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import jdplus.sts.base.api.BsmEstimationSpec;
+import jdplus.sts.base.api.BsmSpec;
+import jdplus.sts.base.api.Component;
+import jdplus.sts.base.api.RawBsmDecomposition;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.math.matrices.Matrix;
+import nbbrd.design.Development;
+
+/**
+ * Estimation of the same basic structural model on a large panel of (short)
+ * series. The series are processed on a fork-join pool, by chunks of
+ * consecutive series; each chunk re-uses the same kernel. The state space
+ * forms of the models share the (unit) variance matrices of the seasonal
+ * component, which are computed once for a given seasonal model and period
+ * (see SsfBsm). When the warm start is used, a sample of the panel is
+ * estimated first (with the usual computation of the initial values) and the
+ * other series start from the median of the parameters of the sample.
+ *
+ * @author Jean Palate
+ */
+@Development(status = Development.Status.Preliminary)
+public class BsmPanelKernel {
+
+    /**
+     * Size of the sample used for the warm start
+     */
+    public static final int PILOT = 50;
+    /**
+     * Minimal (relative) variance of the starting values. Null variances
+     * would stay at 0 in the optimization
+     */
+    public static final double MINVAR = .01;
+
+    private final BsmEstimationSpec estimationSpec;
+    private final boolean warmStart, components;
+    private final int nthreads;
+
+    /**
+     *
+     * @param estimationSpec Estimation options (default if null)
+     * @param warmStart Starts from the median parameters of a sample of the
+     * panel
+     * @param components Computes the smoothed components
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     */
+    @lombok.Builder(builderClassName = "Builder")
+    private BsmPanelKernel(BsmEstimationSpec estimationSpec, boolean warmStart, boolean components, int nthreads) {
+        this.estimationSpec = estimationSpec == null ? BsmEstimationSpec.DEFAULT : estimationSpec;
+        this.warmStart = warmStart;
+        this.components = components;
+        this.nthreads = nthreads;
+    }
+
+    /**
+     *
+     * @param y The series (possibly of different lengths)
+     * @param period The periodicity of the series
+     * @param spec The common specification
+     * @return
+     */
+    public BsmPanelResults process(double[][] y, int period, BsmSpec spec) {
+        int m = y.length, np = BsmPanelResults.PARAMETERS.length;
+        double[] p = new double[np * m], ll = new double[m];
+        boolean[] converged = new boolean[m];
+        Matrix[] cmps = new Matrix[m];
+        String[] messages = new String[m];
+        // raw: estimated models of the sample (normalized), starts: starting values
+        BsmData[] raw = new BsmData[m], starts = new BsmData[m];
+        ObjIntConsumer<BsmKernel> fn = (kernel, i) -> {
+            try {
+                if (!kernel.process(DoubleSeq.of(y[i]), null, period, spec, starts[i])) {
+                    throw new IllegalStateException("bsm estimation failed");
+                }
+                raw[i] = kernel.result(true);
+                BsmData bsm = kernel.result(false);
+                int j = i * np;
+                p[j++] = bsm.getLevelVar();
+                p[j++] = bsm.getSlopeVar();
+                p[j++] = bsm.getSeasonalVar();
+                p[j++] = bsm.getNoiseVar();
+                p[j++] = bsm.getCycleVar();
+                p[j++] = bsm.getCycleDumpingFactor();
+                p[j] = bsm.getCycleLength();
+                ll[i] = kernel.getLikelihood().logLikelihood();
+                converged[i] = kernel.hasConverged();
+                if (components) {
+                    cmps[i] = components(kernel.decompose(), y[i].length);
+                }
+            } catch (RuntimeException err) {
+                raw[i] = null;
+                Arrays.fill(p, i * np, (i + 1) * np, Double.NaN);
+                ll[i] = Double.NaN;
+                converged[i] = false;
+                cmps[i] = null;
+                messages[i] = err.getMessage() == null ? err.getClass().getSimpleName() : err.getMessage();
+            }
+        };
+        if (warmStart && m > PILOT) {
+            int step = m / PILOT;
+            int[] sample = IntStream.range(0, PILOT).map(i -> i * step).toArray();
+            ForkJoinUtility.run(sample.length, nthreads, () -> new BsmKernel(estimationSpec), (kernel, i) -> fn.accept(kernel, sample[i]));
+            BsmData start = median(sample, raw, period, spec);
+            boolean[] done = new boolean[m];
+            for (int i = 0; i < sample.length; ++i) {
+                done[sample[i]] = true;
+            }
+            int[] others = IntStream.range(0, m).filter(i -> !done[i]).toArray();
+            for (int i : others) {
+                starts[i] = start;
+            }
+            ForkJoinUtility.run(others.length, nthreads, () -> new BsmKernel(estimationSpec), (kernel, i) -> fn.accept(kernel, others[i]));
+        } else {
+            ForkJoinUtility.run(m, nthreads, () -> new BsmKernel(estimationSpec), fn);
+        }
+        return BsmPanelResults.builder()
+                .parameters(Matrix.of(p, np, m))
+                .logLikelihood(ll)
+                .converged(converged)
+                .components(cmps)
+                .messages(messages)
+                .build();
+    }
+
+    private static Matrix components(RawBsmDecomposition decomposition, int n) {
+        Component[] all = new Component[]{Component.Level, Component.Slope, Component.Seasonal, Component.Cycle, Component.Noise};
+        double[] data = new double[n * all.length];
+        for (int i = 0; i < all.length; ++i) {
+            DoubleSeq s = decomposition.getSeries(all[i], false);
+            if (s != null) {
+                s.copyTo(data, i * n);
+            }
+        }
+        return Matrix.of(data, n, all.length);
+    }
+
+    /**
+     * Median of the (normalized) models of the sample
+     */
+    private static BsmData median(int[] sample, BsmData[] raw, int period, BsmSpec spec) {
+        double[][] q = new double[7][sample.length];
+        int n = 0;
+        for (int i = 0; i < sample.length; ++i) {
+            BsmData bsm = raw[sample[i]];
+            if (bsm == null) {
+                continue;
+            }
+            BsmData.ComponentVariance max = bsm.maxVariance();
+            if (max.getComponent() == Component.Undefined) {
+                continue;
+            }
+            bsm = bsm.scaleVariances(1 / max.getVariance());
+            q[0][n] = bsm.getLevelVar();
+            q[1][n] = bsm.getSlopeVar();
+            q[2][n] = bsm.getSeasonalVar();
+            q[3][n] = bsm.getNoiseVar();
+            q[4][n] = bsm.getCycleVar();
+            q[5][n] = bsm.getCycleDumpingFactor();
+            q[6][n] = bsm.getCycleLength();
+            ++n;
+        }
+        if (n == 0) {
+            return null;
+        }
+        return BsmData.builder(period)
+                .seasonalModel(spec.getSeasonalModel())
+                .levelVar(variance(q[0], n))
+                .slopeVar(variance(q[1], n))
+                .seasonalVar(variance(q[2], n))
+                .noiseVar(variance(q[3], n))
+                .cycleVar(variance(q[4], n))
+                .cycleDumpingFactor(median(q[5], n))
+                .cycleLength(median(q[6], n))
+                .build();
+    }
+
+    private static double variance(double[] v, int n) {
+        double m = median(v, n);
+        if (m < 0) {
+            return m;
+        }
+        return Math.max(m, MINVAR);
+    }
+
+    private static double median(double[] v, int n) {
+        double[] s = Arrays.copyOf(v, n);
+        Arrays.sort(s);
+        return (n & 1) == 1 ? s[n / 2] : .5 * (s[n / 2 - 1] + s[n / 2]);
+    }
+}
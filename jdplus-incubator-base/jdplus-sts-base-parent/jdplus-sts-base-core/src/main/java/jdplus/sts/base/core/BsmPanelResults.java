@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.sts.base.core;
+
+import jdplus.toolkit.base.api.math.matrices.Matrix;
+
+/**
+ * Compact results of the estimation of basic structural models on a panel of
+ * series. The series that couldn't be processed are identified by missing
+ * values in the parameters and in the likelihood, and by an error message.
+ *
+ * @author Jean Palate
+ */
+@lombok.Value
+@lombok.Builder(builderClassName = "Builder")
+public class BsmPanelResults {
+
+    /**
+     * Names of the rows of the parameters
+     */
+    public static final String[] PARAMETERS = new String[]{"level", "slope", "seas", "noise", "cycle", "cycle-factor", "cycle-length"};
+
+    /**
+     * Names of the columns of the components
+     */
+    public static final String[] COMPONENTS = new String[]{"level", "slope", "seas", "cycle", "noise"};
+
+    /**
+     * Parameters of the models (see PARAMETERS) x nseries. The variances are
+     * expressed in the scale of the series; unused components have a
+     * variance equal to -1
+     */
+    Matrix parameters;
+    /**
+     * Log-likelihood of each series
+     */
+    double[] logLikelihood;
+    /**
+     * Convergence of the optimization procedure for each series
+     */
+    boolean[] converged;
+    /**
+     * Smoothed components (nobs x COMPONENTS) for each series. Unused
+     * components are set to 0. Null if the components were not requested or
+     * if the processing failed
+     */
+    Matrix[] components;
+    /**
+     * Error message of each series that couldn't be processed (null for the
+     * other series)
+     */
+    String[] messages;
+
+    public int getSeriesCount() {
+        return logLikelihood.length;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.sts.base.core;
+
+import jdplus.sts.base.api.Component;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.math.matrices.Matrix;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.functions.IFunction;
+import jdplus.toolkit.base.core.math.functions.IFunctionDerivatives;
+import jdplus.toolkit.base.core.math.functions.IFunctionPoint;
+import jdplus.toolkit.base.core.math.functions.IParametersDomain;
+import jdplus.toolkit.base.core.math.functions.NumericalDerivatives;
+import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.ssf.basic.RegSsf;
+import jdplus.toolkit.base.core.ssf.dk.SsfFunction;
+import jdplus.toolkit.base.core.ssf.dk.SsfFunctionPoint;
+import jdplus.toolkit.base.core.ssf.univariate.Ssf;
+import jdplus.toolkit.base.core.ssf.univariate.SsfData;
+import jdplus.toolkit.base.core.stats.likelihood.DiffuseConcentratedLikelihood;
+
+/**
+ * Likelihood function of a basic structural model with an analytic gradient.
+ * The values are provided by the usual SsfFunction; the derivatives with
+ * respect to the variances are computed from the smoothations of the model
+ * (one filtering/smoothing pass for all the variances):
+ * dl/dq = 1/2 * sum(tr(dV/dq * (r(t)r(t)'/s2 - N(t))))
+ * The sums are accumulated during the backward pass (SmoothationsScan), so
+ * that r(t), N(t) are never stored.
+ * A null noise variance is not part of the state; its derivative is
+ * computed from the smoothed measurement errors:
+ * dl/dh = 1/2 * sum(u(t)^2/s2 - D(t))
+ * The derivatives with respect to the other parameters (cycle) are computed
+ * by finite differences.
+ *
+ * @author Jean Palate
+ */
+class BsmScoreFunction implements IFunction {
+
+    private final SsfFunction<BsmData, SsfBsm2> fn;
+    private final BsmMapping mapping;
+    private final double[] y;
+    private final Matrix X;
+    private final boolean diffuseX, scaling;
+
+    /**
+     *
+     * @param fn The likelihood function
+     * @param mapping The mapping used in fn
+     * @param y The data
+     * @param X The regression variables (may be null)
+     * @param diffuseX True if the regression coefficients are diffuse
+     * @param scaling True if fn uses a scaling factor (ssq), false if fn
+     * uses the log-likelihood
+     */
+    BsmScoreFunction(SsfFunction<BsmData, SsfBsm2> fn, BsmMapping mapping, double[] y, Matrix X, boolean diffuseX, boolean scaling) {
+        this.fn = fn;
+        this.mapping = mapping;
+        this.y = y;
+        this.X = X;
+        this.diffuseX = diffuseX;
+        this.scaling = scaling;
+    }
+
+    @Override
+    public Point evaluate(DoubleSeq parameters) {
+        return new Point((SsfFunctionPoint<BsmData, SsfBsm2>) fn.evaluate(parameters));
+    }
+
+    @Override
+    public IParametersDomain getDomain() {
+        return fn.getDomain();
+    }
+
+    /**
+     * Retrieves the point of the underlying SsfFunction
+     *
+     * @param pt A point of this function or of the underlying function
+     * @return
+     */
+    static SsfFunctionPoint<BsmData, SsfBsm2> core(IFunctionPoint pt) {
+        if (pt instanceof Point point) {
+            return point.core;
+        } else {
+            return (SsfFunctionPoint<BsmData, SsfBsm2>) pt;
+        }
+    }
+
+    public class Point implements IFunctionPoint {
+
+        private final SsfFunctionPoint<BsmData, SsfBsm2> core;
+        private double[] gradient;
+
+        Point(SsfFunctionPoint<BsmData, SsfBsm2> core) {
+            this.core = core;
+        }
+
+        @Override
+        public IFunctionDerivatives derivatives() {
+            return new Derivatives(this);
+        }
+
+        @Override
+        public IFunction getFunction() {
+            return BsmScoreFunction.this;
+        }
+
+        @Override
+        public DoubleSeq getParameters() {
+            return core.getParameters();
+        }
+
+        @Override
+        public double getValue() {
+            return core.getValue();
+        }
+
+        synchronized double[] gradient() {
+            if (gradient == null) {
+                gradient = computeGradient(this);
+            }
+            return gradient;
+        }
+    }
+
+    private class Derivatives implements IFunctionDerivatives {
+
+        private final Point point;
+
+        Derivatives(Point point) {
+            this.point = point;
+        }
+
+        @Override
+        public IFunction getFunction() {
+            return BsmScoreFunction.this;
+        }
+
+        @Override
+        public DoubleSeq gradient() {
+            return DoubleSeq.of(point.gradient());
+        }
+
+        @Override
+        public void hessian(FastMatrix hessian) {
+            new NumericalDerivatives(point, false).hessian(hessian);
+        }
+    }
+
+    private double[] computeGradient(Point pt) {
+        DoubleSeq p = pt.getParameters();
+        int np = p.length(), nvars = mapping.varsCount();
+        double[] g = new double[np];
+        double val = pt.getValue();
+        BsmData bsm = pt.core.getCore();
+        DiffuseConcentratedLikelihood ll = pt.core.getLikelihood();
+        int m = ll.dim() - ll.ndiffuse();
+        double s2 = scaling ? ll.ssq() / m : 1;
+        // derivative of the objective function with respect to the log-likelihood
+        double dval = scaling ? -2 * val / m : -1;
+
+        // smoothations of the model (with the noise as state variable)
+        SsfBsm ssf = SsfBsm.of(bsm);
+        int dim = ssf.getStateDim();
+        Ssf wssf;
+        SsfData data;
+        if (X == null) {
+            wssf = ssf;
+            data = new SsfData(y);
+        } else if (diffuseX) {
+            wssf = RegSsf.ssf(ssf, FastMatrix.of(X));
+            data = new SsfData(y);
+        } else {
+            DataBlock lin = DataBlock.of(y.clone());
+            DoubleSeq b = ll.coefficients();
+            for (int j = 0; j < X.getColumnsCount(); ++j) {
+                lin.addAY(-b.get(j), DataBlock.of(X.column(j)));
+            }
+            wssf = ssf;
+            data = new SsfData(lin);
+        }
+        // A0 = r(0)r(0)'/s2 - N(0), A = sum(r(t)r(t)'/s2 - N(t)), t > 0
+        FastMatrix A0 = FastMatrix.square(dim), A = FastMatrix.square(dim);
+        boolean nullNoise = bsm.getNoiseVar() == 0 && mapping.transformation == BsmMapping.Transformation.None;
+        SmoothationsScan scan = new SmoothationsScan(wssf, data, nullNoise);
+        scan.process((i, R, N) -> {
+            FastMatrix cur = i == 0 ? A0 : A;
+            for (int c = 0; c < dim; ++c) {
+                double rc = R.get(c) / s2;
+                for (int r = 0; r < dim; ++r) {
+                    cur.add(r, c, R.get(r) * rc - N.get(r, c));
+                }
+            }
+        });
+
+        FastMatrix V = FastMatrix.square(dim), P = FastMatrix.square(dim);
+        ssf.dynamics().V(0, V);
+        ssf.initialization().Pf0(P);
+        for (int k = 0; k < nvars; ++k) {
+            double dvar = mapping.dvar(p.get(k));
+            if (dvar == 0) {
+                // null variance with the Square transformation
+                continue;
+            }
+            Component cmp = mapping.varPosition(k);
+            double score;
+            if (cmp == Component.Noise && nullNoise) {
+                score = .5 * (scan.smoothedErrorsSsq() / s2 - scan.smoothedErrorsVariance());
+            } else {
+                // the dynamics are linear in the variances
+                SsfBsm ssfk = SsfBsm.of(increment(bsm, cmp));
+                FastMatrix dV = FastMatrix.square(dim), dP = FastMatrix.square(dim);
+                ssfk.dynamics().V(0, dV);
+                dV.sub(V);
+                ssfk.initialization().Pf0(dP);
+                dP.sub(P);
+                score = .5 * (trace(dV, A) + trace(dP, A0));
+            }
+            g[k] = dval * score * dvar;
+        }
+        // other parameters
+        for (int k = nvars; k < np; ++k) {
+            double eps = mapping.epsilon(p, k);
+            DataBlock q = DataBlock.of(p);
+            q.add(k, eps);
+            g[k] = (fn.evaluate(q).getValue() - val) / eps;
+        }
+        return g;
+    }
+
+    private static double trace(FastMatrix S, FastMatrix T) {
+        int n = S.getRowsCount();
+        double s = 0;
+        for (int c = 0; c < n; ++c) {
+            for (int r = 0; r < n; ++r) {
+                double x = S.get(r, c);
+                if (x != 0) {
+                    s += x * T.get(c, r);
+                }
+            }
+        }
+        return s;
+    }
+
+    private static BsmData increment(BsmData bsm, Component cmp) {
+        BsmData.Builder builder = bsm.toBuilder();
+        switch (cmp) {
+            case Level:
+                return builder.levelVar(bsm.getLevelVar() + 1).build();
+            case Slope:
+                return builder.slopeVar(bsm.getSlopeVar() + 1).build();
+            case Seasonal:
+                return builder.seasonalVar(bsm.getSeasonalVar() + 1).build();
+            case Noise:
+                return builder.noiseVar(bsm.getNoiseVar() + 1).build();
+            case Cycle:
+                return builder.cycleVar(bsm.getCycleVar() + 1).build();
+            default:
+                return bsm;
+        }
+    }
+}
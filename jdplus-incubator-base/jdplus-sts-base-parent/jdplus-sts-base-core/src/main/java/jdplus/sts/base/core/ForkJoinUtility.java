@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.sts.base.core;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Execution of independent tasks on a fork-join (work-stealing) pool
+ *
+ * @author Jean Palate
+ */
+@lombok.experimental.UtilityClass
+class ForkJoinUtility {
+
+    /**
+     * Number of chunks by thread, when the tasks are processed by chunks
+     */
+    public final int CHUNKS = 4;
+
+    /**
+     * Runs the given tasks on a work-stealing pool
+     *
+     * @param n Number of tasks
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @param fn The tasks
+     */
+    public void run(int n, int nthreads, IntConsumer fn) {
+        ForkJoinPool pool = nthreads > 0 ? new ForkJoinPool(nthreads) : ForkJoinPool.commonPool();
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(fn)).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            if (nthreads > 0) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Runs the given tasks by chunks of consecutive tasks. Each chunk creates
+     * its own workspace (typically a kernel), which is re-used by all the
+     * tasks of the chunk and released at its end.
+     *
+     * @param <W> The type of the workspace
+     * @param n Number of tasks
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @param workspace Creation of a workspace
+     * @param fn The tasks
+     */
+    public <W> void run(int n, int nthreads, Supplier<W> workspace, ObjIntConsumer<W> fn) {
+        if (n == 0) {
+            return;
+        }
+        int nt = nthreads > 0 ? nthreads : ForkJoinPool.getCommonPoolParallelism();
+        int nchunks = Math.min(n, CHUNKS * nt);
+        run(nchunks, nthreads, c -> {
+            W w = workspace.get();
+            int end = (int) ((long) (c + 1) * n / nchunks);
+            for (int i = (int) ((long) c * n / nchunks); i < end; ++i) {
+                fn.accept(w, i);
+            }
+        });
+    }
+}
@@ -12,15 +12,15 @@ import nbbrd.design.BuilderPattern;
 import jdplus.sts.base.api.BsmSpec;
 import jdplus.sts.base.api.Component;
 import jdplus.toolkit.base.api.util.IntList;
+import java.util.Arrays;
 import jdplus.toolkit.base.core.data.DataBlock;
 import jdplus.toolkit.base.core.stats.likelihood.DiffuseConcentratedLikelihood;
 import jdplus.toolkit.base.core.math.linearsystem.LinearSystemSolver;
 import jdplus.toolkit.base.core.math.functions.IFunctionDerivatives;
-import jdplus.toolkit.base.core.math.matrices.LowerTriangularMatrix;
 import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.math.matrices.LowerTriangularMatrix;
 import jdplus.toolkit.base.core.math.matrices.MatrixFactory;
 import jdplus.toolkit.base.core.math.matrices.SymmetricMatrix;
-import jdplus.toolkit.base.core.ssf.akf.SmoothationsComputer;
 import jdplus.toolkit.base.core.ssf.dk.SsfFunction;
 import jdplus.toolkit.base.core.ssf.dk.SsfFunctionPoint;
 import jdplus.toolkit.base.core.ssf.basic.RegSsf;
@@ -248,62 +248,61 @@ public class OutliersDetection {
         SsfData data = new SsfData(y);
         int n = data.length();
         double sig2 = sig * sig;
-        SmoothationsComputer computer = new SmoothationsComputer();
-        computer.process(wssf, data);
-        int imax = -1;
-        double smax = 0;
-        int type = -1;
         int ncmp = SsfBsm.searchPosition(model, Component.Noise);
         int lcmp = SsfBsm.searchPosition(model, Component.Level);
         int scmp = SsfBsm.searchPosition(model, Component.Seasonal);
-        for (int i = 0; i < n; ++i) {
-            try {
-                DataBlock R = computer.R(i);
-                FastMatrix Rvar = computer.Rvar(i);
-                double sao = 0, sls = 0, sso = 0, sall = 0;
-                IntList sel = new IntList();
-                if (ao && ncmp >= 0 && !aoPositions.contains(i)) {
-                    double r = R.get(ncmp), v = Rvar.get(ncmp, ncmp);
-                    if (v > 0) {
-                        sao = r * r / (v * sig2);
-                    }
-                    sel.add(ncmp);
+        boolean[] xao = mask(n, aoPositions), xls = mask(n, lsPositions), xso = mask(n, soPositions);
+        // selected components (at most 3)
+        int[] sel = new int[3];
+        // the smoothations are consumed as soon as they are computed (backward)
+        Max max = new Max();
+        new SmoothationsScan(wssf, data).process((i, R, Rvar) -> {
+            double sao = 0, sls = 0, sso = 0, sall;
+            int k = 0;
+            if (ao && ncmp >= 0 && !xao[i]) {
+                double r = R.get(ncmp), v = Rvar.get(ncmp, ncmp);
+                if (v > 0) {
+                    sao = r * r / (v * sig2);
                 }
-                if (ls && lcmp >= 0 && !lsPositions.contains(i)) {
-                    double r = R.get(lcmp), v = Rvar.get(lcmp, lcmp);
-                    if (v > 0) {
-                        sls = r * r / (v * sig2);
-                    }
-                    sel.add(lcmp);
+                sel[k++] = ncmp;
+            }
+            if (ls && lcmp >= 0 && !xls[i]) {
+                double r = R.get(lcmp), v = Rvar.get(lcmp, lcmp);
+                if (v > 0) {
+                    sls = r * r / (v * sig2);
                 }
-                if (so && scmp >= 0 && !soPositions.contains(i)) {
-                    double r = R.get(scmp), v = Rvar.get(scmp, scmp);
-                    if (v > 0) {
-                        sso = r * r / (v * sig2);
-                    }
-                    sel.add(scmp);
+                sel[k++] = lcmp;
+            }
+            if (so && scmp >= 0 && !xso[i]) {
+                double r = R.get(scmp), v = Rvar.get(scmp, scmp);
+                if (v > 0) {
+                    sso = r * r / (v * sig2);
                 }
-
-                FastMatrix S = MatrixFactory.select(Rvar, sel, sel);
-                DataBlock ur = DataBlock.of(R.select(sel));
-                SymmetricMatrix.lcholesky(S, 1e-9);
-                LowerTriangularMatrix.solveLx(S, ur, 1e-9);
-                sall = ur.ssq() / sig2;
-
-                if (sall > smax) {
-                    imax = i;
-                    smax = sall;
-                    if (sao > sls && sao > sso) {
-                        type = 0;
-                    } else if (sls > sao && sls > sso) {
-                        type = 1;
-                    } else {
-                        type = 2;
-                    }
+                sel[k++] = scmp;
+            }
+            if (k == 0) {
+                return;
+            }
+            sall = quadraticForm(R, Rvar, sel, k);
+            if (sall < 0) {
+                return;
+            }
+            sall /= sig2;
+            // backward scan: the first position is kept in case of ties
+            if (sall > max.smax || (max.imax >= 0 && sall == max.smax)) {
+                max.imax = i;
+                max.smax = sall;
+                if (sao > sls && sao > sso) {
+                    max.type = 0;
+                } else if (sls > sao && sls > sso) {
+                    max.type = 1;
+                } else {
+                    max.type = 2;
                 }
-            } catch (Exception err) {
             }
-        }
+        });
+        int imax = max.imax, type = max.type;
+        double smax = max.smax;
         if (smax < curcv) {
             return false;
         }
@@ -322,6 +321,95 @@ public class OutliersDetection {
         return true;
     }
 
+    private static final double PIVOT_EPS = 1e-9;
+
+    private static class Max {
+
+        int imax = -1, type = -1;
+        double smax;
+    }
+
+    private static boolean[] mask(int n, IntList positions) {
+        boolean[] m = new boolean[n];
+        for (int i = 0; i < positions.size(); ++i) {
+            m[positions.get(i)] = true;
+        }
+        return m;
+    }
+
+    /**
+     * Computes r'V^-1r, where r and V are the sub-vector/sub-matrix of R, Rvar
+     * corresponding to the k (1 to 3) selected items. The Cholesky factor of V
+     * is computed in closed form. When a pivot is (quasi-)zero, the
+     * computation is done by the generic (zero-tolerant) Cholesky routines,
+     * which set the degenerate pivots to 0.
+     *
+     * @param R
+     * @param Rvar
+     * @param sel
+     * @param k
+     * @return -1 if V is not positive semi-definite
+     */
+    static double quadraticForm(DataBlock R, FastMatrix Rvar, int[] sel, int k) {
+        int i0 = sel[0];
+        double d0 = Rvar.get(i0, i0);
+        if (degenerate(d0, d0)) {
+            return genericQuadraticForm(R, Rvar, sel, k);
+        }
+        double l00 = Math.sqrt(d0);
+        double z0 = R.get(i0) / l00;
+        if (k == 1) {
+            return z0 * z0;
+        }
+        int i1 = sel[1];
+        double l10 = Rvar.get(i1, i0) / l00;
+        double v1 = Rvar.get(i1, i1);
+        double d1 = v1 - l10 * l10;
+        if (degenerate(d1, v1)) {
+            return genericQuadraticForm(R, Rvar, sel, k);
+        }
+        double l11 = Math.sqrt(d1);
+        double z1 = (R.get(i1) - l10 * z0) / l11;
+        if (k == 2) {
+            return z0 * z0 + z1 * z1;
+        }
+        int i2 = sel[2];
+        double l20 = Rvar.get(i2, i0) / l00;
+        double l21 = (Rvar.get(i2, i1) - l20 * l10) / l11;
+        double v2 = Rvar.get(i2, i2);
+        double d2 = v2 - l20 * l20 - l21 * l21;
+        if (degenerate(d2, v2)) {
+            return genericQuadraticForm(R, Rvar, sel, k);
+        }
+        double z2 = (R.get(i2) - l20 * z0 - l21 * z1) / Math.sqrt(d2);
+        return z0 * z0 + z1 * z1 + z2 * z2;
+    }
+
+    /**
+     * Pivots that are small in absolute value or in comparison with the
+     * corresponding diagonal element are handled by the generic routines
+     *
+     * @param d The pivot
+     * @param v The diagonal element
+     * @return
+     */
+    private static boolean degenerate(double d, double v) {
+        return d <= PIVOT_EPS * Math.max(1, Math.abs(v));
+    }
+
+    static double genericQuadraticForm(DataBlock R, FastMatrix Rvar, int[] sel, int k) {
+        int[] cur = Arrays.copyOf(sel, k);
+        try {
+            FastMatrix S = MatrixFactory.select(Rvar, cur, cur);
+            DataBlock ur = DataBlock.select(R, cur);
+            SymmetricMatrix.lcholesky(S, PIVOT_EPS);
+            LowerTriangularMatrix.solveLx(S, ur, PIVOT_EPS);
+            return ur.ssq();
+        } catch (RuntimeException err) {
+            return -1;
+        }
+    }
+
     private boolean fullEstimation(DoubleSeq y, FastMatrix W, int period, double eps) {
         BsmEstimationSpec espec = BsmEstimationSpec.builder()
                 .diffuseRegression(true)
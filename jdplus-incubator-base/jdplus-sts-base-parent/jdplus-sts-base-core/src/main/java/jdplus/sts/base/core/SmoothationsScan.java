@@ -0,0 +1,399 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.sts.base.core;
+
+import java.util.Arrays;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.ssf.ISsfDynamics;
+import jdplus.toolkit.base.core.ssf.ISsfInitialization;
+import jdplus.toolkit.base.core.ssf.ISsfLoading;
+import jdplus.toolkit.base.core.ssf.univariate.ISsf;
+import jdplus.toolkit.base.core.ssf.univariate.ISsfData;
+import jdplus.toolkit.base.core.ssf.univariate.ISsfError;
+
+/**
+ * Smoothations r(t) and their variances N(t) of a univariate state space
+ * model, computed by the exact initial (diffuse) smoother of Koopman-Durbin.
+ * The forward filter only keeps the prediction errors and their variances by
+ * position. The gains Pf*Z' are stored once by distinct value: when the filter
+ * reaches its steady state (time invariant models), all the following
+ * positions share the same gain, so that the storage of the gains is
+ * O(k*d), where k is the number of positions before the convergence (or
+ * after missing values), instead of O(n*d). The gains Pi*Z' of the diffuse
+ * updates (at most d) are stored apart.
+ * The backward pass provides r(t), N(t) to a consumer one position after the
+ * other, so that the history of N(t) (O(n*d^2) in SmoothationsComputer) is
+ * never stored.
+ * r(t), N(t) are the smoothations of the state at t (computed after the
+ * update with the observation at t).
+ * On demand, the sums of the squared smoothed measurement errors u(t)^2 and
+ * of their variances D(t) are also computed. They are used for the
+ * derivative of the likelihood with respect to a (null) measurement variance.
+ *
+ * @author Jean Palate
+ */
+class SmoothationsScan {
+
+    @FunctionalInterface
+    static interface Consumer {
+
+        /**
+         *
+         * @param pos The position
+         * @param r The smoothation at pos. The buffer is re-used at the next
+         * position
+         * @param N The variance of r. The buffer is re-used at the next
+         * position
+         */
+        void accept(int pos, DataBlock r, FastMatrix N);
+    }
+
+    private static final double EPS = 1e-9, STEADY_EPS = 1e-12;
+    private static final byte MISSING = 0, ORDINARY = 1, DIFFUSE = 2;
+
+    private final ISsfData data;
+    private final ISsfInitialization initialization;
+    private final ISsfDynamics dynamics;
+    private final ISsfLoading loading;
+    private final ISsfError error;
+    private final int n, dim;
+    private final boolean errors;
+    private double ussq, dsum, ssq;
+    private int nobs;
+
+    // filtering information by position
+    private final byte[] status;
+    private final double[] v, ff;
+    // index of the gain Pf*Z' of each position
+    private final int[] gain;
+    // distinct gains (Pf*Z' or Pi*Z'), stored contiguously
+    private double[] gains;
+    private int ngains;
+    // diffuse updates (normally at most dim): index of Pi*Z' and Z*Pi*Z'
+    private int[] dgain;
+    private double[] dfi;
+    private int nd;
+    // positions before enddiffuse belong to the diffuse period
+    private int enddiffuse;
+
+    // workspaces
+    private final DataBlock z, mf, mi, k0, k1, p, q, ak, atk;
+
+    SmoothationsScan(ISsf ssf, ISsfData data) {
+        this(ssf, data, false);
+    }
+
+    /**
+     *
+     * @param ssf The state space form
+     * @param data The data
+     * @param errors True if the smoothed measurement errors are also
+     * computed
+     */
+    SmoothationsScan(ISsf ssf, ISsfData data, boolean errors) {
+        this.errors = errors;
+        this.data = data;
+        this.initialization = ssf.initialization();
+        this.dynamics = ssf.dynamics();
+        this.loading = ssf.loading();
+        this.error = ssf.measurementError();
+        this.n = data.length();
+        this.dim = ssf.getStateDim();
+        status = new byte[n];
+        v = new double[n];
+        ff = new double[n];
+        gain = new int[n];
+        gains = new double[dim * Math.min(n + 1, 16)];
+        dgain = new int[dim];
+        dfi = new double[dim];
+        z = DataBlock.make(dim);
+        mf = DataBlock.make(dim);
+        mi = DataBlock.make(dim);
+        k0 = DataBlock.make(dim);
+        k1 = DataBlock.make(dim);
+        p = DataBlock.make(dim);
+        q = DataBlock.make(dim);
+        ak = DataBlock.make(dim);
+        atk = DataBlock.make(dim);
+    }
+
+    /**
+     * Filters the data and sends the smoothations to the consumer, from the
+     * last position to the first one
+     *
+     * @param consumer
+     */
+    void process(Consumer consumer) {
+        filter();
+        smooth(consumer);
+    }
+
+    /**
+     * Sum of u(t)^2, where u(t) = v(t)/f(t) - k(t)'r(t) is the smoothed
+     * measurement error (divided by the measurement variance)
+     *
+     * @return 0 if the errors are not computed
+     */
+    double smoothedErrorsSsq() {
+        return ussq;
+    }
+
+    /**
+     * Sum of D(t) = 1/f(t) + k(t)'N(t)k(t), the variances of u(t)
+     *
+     * @return 0 if the errors are not computed
+     */
+    double smoothedErrorsVariance() {
+        return dsum;
+    }
+
+    /**
+     * Maximum likelihood estimator of the scaling factor (sum of the squared
+     * standardized prediction errors divided by the number of non diffuse
+     * observations)
+     *
+     * @return
+     */
+    double var() {
+        return nobs == 0 ? Double.NaN : ssq / nobs;
+    }
+
+    private void filter() {
+        DataBlock a = DataBlock.make(dim);
+        FastMatrix Pf = FastMatrix.square(dim), Pi = null;
+        initialization.a0(a);
+        initialization.Pf0(Pf);
+        if (initialization.isDiffuse()) {
+            Pi = FastMatrix.square(dim);
+            initialization.Pi0(Pi);
+        }
+        enddiffuse = Pi == null ? 0 : n;
+        // last stored gain, shared by the following positions as long as
+        // the gain doesn't change
+        int last = -1;
+        for (int pos = 0; pos < n; ++pos) {
+            if (!data.isMissing(pos)) {
+                Z(pos, z);
+                mf.product(Pf.rowsIterator(), z);
+                double f = z.dot(mf);
+                if (error != null) {
+                    f += error.at(pos);
+                }
+                double e = data.get(pos) - z.dot(a);
+                double fd = 0;
+                if (Pi != null) {
+                    mi.product(Pi.rowsIterator(), z);
+                    fd = z.dot(mi);
+                }
+                if (fd > EPS) {
+                    if (nd == dgain.length) {
+                        // numerical noise in Pi
+                        dgain = Arrays.copyOf(dgain, 2 * nd + 1);
+                        dfi = Arrays.copyOf(dfi, 2 * nd + 1);
+                    }
+                    gain[pos] = store(mf);
+                    dgain[nd] = store(mi);
+                    dfi[nd++] = fd;
+                    last = -1;
+                    a.addAY(e / fd, mi);
+                    Pf.addXaXt(f / (fd * fd), mi);
+                    Pf.addXaYt(-1 / fd, mf, mi);
+                    Pf.addXaYt(-1 / fd, mi, mf);
+                    Pi.addXaXt(-1 / fd, mi);
+                    if (isZero(Pi)) {
+                        Pi = null;
+                        enddiffuse = pos + 1;
+                    }
+                    status[pos] = DIFFUSE;
+                } else if (f > EPS) {
+                    if (last < 0 || !isSame(mf, last)) {
+                        last = store(mf);
+                    }
+                    gain[pos] = last;
+                    a.addAY(e / f, mf);
+                    Pf.addXaXt(-1 / f, mf);
+                    status[pos] = ORDINARY;
+                    ssq += e * e / f;
+                    ++nobs;
+                }
+                v[pos] = e;
+                ff[pos] = f;
+            }
+            dynamics.TX(pos, a);
+            dynamics.TVT(pos, Pf);
+            dynamics.addV(pos, Pf);
+            if (Pi != null) {
+                dynamics.TVT(pos, Pi);
+            }
+        }
+    }
+
+    private void smooth(Consumer consumer) {
+        DataBlock r0 = DataBlock.make(dim), r1 = DataBlock.make(dim);
+        FastMatrix N0 = FastMatrix.square(dim), N1 = FastMatrix.square(dim), N2 = FastMatrix.square(dim);
+        // the diffuse updates are visited backwards
+        int id = nd;
+        for (int pos = n - 1; pos >= 0; --pos) {
+            boolean diffuse = pos < enddiffuse;
+            // transition
+            dynamics.XT(pos, r0);
+            TtNT(pos, N0);
+            if (diffuse) {
+                dynamics.XT(pos, r1);
+                TtNT(pos, N1);
+                TtNT(pos, N2);
+            }
+            if (status[pos] == ORDINARY) {
+                Z(pos, z);
+                mf.copyFrom(gains, gain[pos] * dim);
+                double f = ff[pos];
+                k0.copy(mf);
+                k0.mul(1 / f);
+                if (errors) {
+                    double u = v[pos] / f - k0.dot(r0);
+                    ussq += u * u;
+                    dsum += 1 / f + quad(N0, k0);
+                }
+                // r0 = Z'v/f + L'r0, L = I - KZ
+                r0.addAY((v[pos] - mf.dot(r0)) / f, z);
+                if (diffuse) {
+                    // N1 = N1 L
+                    ak.product(N1.rowsIterator(), k0);
+                    N1.addXaYt(-1, ak, z);
+                }
+                // N0 = Z'Z/f + L'N0L
+                quad(N0, k0, z);
+                N0.addXaXt(1 / f, z);
+            } else if (status[pos] == DIFFUSE) {
+                Z(pos, z);
+                --id;
+                double fd = dfi[id], f = ff[pos];
+                // L0 = I - K0 Z, L1 = -K1 Z
+                // k0 = mi/fi, k1 = (mf - k0*ff)/fi
+                k0.copyFrom(gains, dgain[id] * dim);
+                k0.mul(1 / fd);
+                k1.copyFrom(gains, gain[pos] * dim);
+                k1.addAY(-f, k0);
+                k1.mul(1 / fd);
+                if (errors) {
+                    double u = -k0.dot(r0);
+                    ussq += u * u;
+                    dsum += quad(N0, k0);
+                }
+                // p = N0'K1 - (K1'N0K0) Z', q = N1K1 - Z'(K0'N1K1), c = K1'N0K1
+                p.product(N0.columnsIterator(), k1);
+                double k1n0k0 = p.dot(k0);
+                double c = p.dot(k1);
+                p.addAY(-k1n0k0, z);
+                q.product(N1.rowsIterator(), k1);
+                q.addAY(-k0.dot(q), z);
+                // N2 = Z'F2Z + L0'N2L0 + L0'N1L1 + L1'N1'L0 + L1'N0L1
+                quad(N2, k0, z);
+                N2.addXaYt(-1, q, z);
+                N2.addXaYt(-1, z, q);
+                N2.addXaXt(c - f / (fd * fd), z);
+                // N1 = Z'F1Z + L0'N1L0 + L1'N0L0
+                quad(N1, k0, z);
+                N1.addXaYt(-1, z, p);
+                N1.addXaXt(1 / fd, z);
+                // N0 = L0'N0L0
+                quad(N0, k0, z);
+                // r1 = Z'F1v + L0'r1 + L1'r0, r0 = L0'r0
+                r1.addAY(v[pos] / fd - k0.dot(r1) - k1.dot(r0), z);
+                r0.addAY(-k0.dot(r0), z);
+            }
+            consumer.accept(pos, r0, N0);
+        }
+    }
+
+    /**
+     * Stores a gain
+     *
+     * @param x The gain
+     * @return The index of the gain
+     */
+    private int store(DataBlock x) {
+        if ((ngains + 1) * dim > gains.length) {
+            gains = Arrays.copyOf(gains, 2 * gains.length);
+        }
+        x.copyTo(gains, ngains * dim);
+        return ngains++;
+    }
+
+    /**
+     * Checks that x is (numerically) equal to the stored gain
+     */
+    private boolean isSame(DataBlock x, int idx) {
+        for (int i = 0, j = idx * dim; i < dim; ++i, ++j) {
+            double xi = x.get(i), gi = gains[j];
+            if (Math.abs(xi - gi) > STEADY_EPS * (Math.abs(xi) + Math.abs(gi))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void Z(int pos, DataBlock z) {
+        z.set(0);
+        loading.Z(pos, z);
+    }
+
+    /**
+     * A = (I - k*z')' A (I - k*z') = A - z*(A'k)' - (Ak)*z' + (k'Ak)*z*z'
+     */
+    private void quad(FastMatrix A, DataBlock k, DataBlock z) {
+        ak.product(A.rowsIterator(), k);
+        atk.product(A.columnsIterator(), k);
+        double kak = k.dot(ak);
+        A.addXaYt(-1, z, atk);
+        A.addXaYt(-1, ak, z);
+        A.addXaXt(kak, z);
+    }
+
+    /**
+     * k'Ak
+     */
+    private double quad(FastMatrix A, DataBlock k) {
+        ak.product(A.rowsIterator(), k);
+        return k.dot(ak);
+    }
+
+    /**
+     * N = T'NT
+     */
+    private void TtNT(int pos, FastMatrix N) {
+        for (int i = 0; i < dim; ++i) {
+            dynamics.XT(pos, N.row(i));
+        }
+        for (int i = 0; i < dim; ++i) {
+            dynamics.XT(pos, N.column(i));
+        }
+    }
+
+    private static boolean isZero(FastMatrix P) {
+        int n = P.getRowsCount();
+        for (int c = 0; c < n; ++c) {
+            for (int r = 0; r < n; ++r) {
+                if (Math.abs(P.get(r, c)) > EPS) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
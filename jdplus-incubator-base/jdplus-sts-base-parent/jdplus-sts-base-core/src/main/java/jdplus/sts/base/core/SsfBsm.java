@@ -18,6 +18,8 @@
  */
 package jdplus.sts.base.core;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import jdplus.sts.base.api.Component;
 import jdplus.toolkit.base.api.ssf.sts.SeasonalModel;
 import jdplus.toolkit.base.core.data.DataBlock;
@@ -141,6 +143,117 @@ public class SsfBsm extends Ssf {
         return new SsfBsm(initialization, dynamics, new Measurement(loading, null));
     }
 
+    /**
+     * Computes T*V*T' in place, without building the transition matrix.
+     * The dummy-like seasonal block (shift and negative sum) is handled in
+     * closed form: new V(0,0) = sum(V), new V(0,j) = -sum(V(.,j-1)),
+     * new V(i,j) = V(i-1,j-1). So, the whole product requires O(d^2)
+     * operations with a single pass on the seasonal block, whatever the period.
+     *
+     * @param data The model
+     * @param noise True if the first state variable is the noise (SsfBsm)
+     * @param vm The symmetric matrix. Modified in place
+     */
+    static void TVT(Bsm data, boolean noise, FastMatrix vm) {
+        int d = vm.getRowsCount();
+        int ns = data.seasVar >= 0 ? d - data.period + 1 : d;
+        // non-seasonal block: Tn*Vnn*Tn'
+        for (int j = 0; j < ns; ++j) {
+            TXn(data, noise, vm.column(j).range(0, ns));
+        }
+        for (int i = 0; i < ns; ++i) {
+            TXn(data, noise, vm.row(i).range(0, ns));
+        }
+        if (ns == d) {
+            return;
+        }
+        // cross block: Tn*Vns*Ts' (and its transpose)
+        for (int i = 0; i < ns; ++i) {
+            vm.row(i).range(ns, d).fshiftAndNegSum();
+        }
+        for (int j = ns; j < d; ++j) {
+            TXn(data, noise, vm.column(j).range(0, ns));
+        }
+        for (int i = 0; i < ns; ++i) {
+            for (int j = ns; j < d; ++j) {
+                vm.set(j, i, vm.get(i, j));
+            }
+        }
+        // seasonal block: Ts*Vss*Ts'
+        int m = d - ns;
+        double[] cs = new double[m];
+        double tot = 0;
+        for (int j = 0; j < m; ++j) {
+            double s = vm.column(ns + j).range(ns, d).sum();
+            cs[j] = s;
+            tot += s;
+        }
+        for (int j = d - 1; j > ns; --j) {
+            for (int i = d - 1; i > ns; --i) {
+                vm.set(i, j, vm.get(i - 1, j - 1));
+            }
+        }
+        for (int j = 1; j < m; ++j) {
+            double v = -cs[j - 1];
+            vm.set(ns, ns + j, v);
+            vm.set(ns + j, ns, v);
+        }
+        vm.set(ns, ns, tot);
+    }
+
+    /**
+     * T*x for the non-seasonal state variables (noise, cycle, trend)
+     */
+    private static void TXn(Bsm data, boolean noise, DataBlock x) {
+        int i0 = 0;
+        if (noise) {
+            x.set(0, 0);
+            ++i0;
+        }
+        if (data.cVar >= 0) {
+            double a = x.get(i0), b = x.get(i0 + 1);
+            x.set(i0, a * data.ccos + b * data.csin);
+            x.set(i0 + 1, -a * data.csin + b * data.ccos);
+            i0 += 2;
+        }
+        if (data.lVar >= 0 && data.sVar >= 0) {
+            x.add(i0, x.get(i0 + 1));
+        }
+    }
+
+    @lombok.Value
+    private static class SeasonalKey {
+
+        SeasonalModel model;
+        int period;
+    }
+
+    /**
+     * Variance of the seasonal innovations (and its Cholesky factor) for a
+     * unit variance. They only depend on the seasonal model and on the period,
+     * so that they are computed once and re-used by all the models (all the
+     * evaluations of the likelihood, all the series of a panel...). The
+     * matrices are never modified.
+     */
+    private static class SeasonalVariance {
+
+        final FastMatrix var, lvar;
+
+        SeasonalVariance(FastMatrix var, FastMatrix lvar) {
+            this.var = var;
+            this.lvar = lvar;
+        }
+
+        static SeasonalVariance of(SeasonalKey key) {
+            FastMatrix var = SeasonalComponent.tsVar(key.getModel(), key.getPeriod());
+            FastMatrix lvar = key.getModel() != SeasonalModel.Crude && key.getModel() != SeasonalModel.Dummy
+                    ? SeasonalComponent.tslVar(key.getModel(), key.getPeriod()) : null;
+            return new SeasonalVariance(var, lvar);
+        }
+    }
+
+    private static final Map<SeasonalKey, SeasonalVariance> SEASONALVARIANCES = new ConcurrentHashMap<>();
+
     static class Bsm {
 
         final FastMatrix tsvar, ltsvar;
@@ -168,10 +281,11 @@ public class SsfBsm extends Ssf {
             seasModel = model.getSeasonalModel();
             period = model.getPeriod();
             if (seasVar > 0) {
-                tsvar = SeasonalComponent.tsVar(seasModel, period);
+                SeasonalVariance unit = SEASONALVARIANCES.computeIfAbsent(new SeasonalKey(seasModel, period), SeasonalVariance::of);
+                tsvar = unit.var.deepClone();
                 tsvar.mul(seasVar);
-                if (model.getSeasonalModel() != SeasonalModel.Crude && model.getSeasonalModel() != SeasonalModel.Dummy) {
-                    ltsvar = SeasonalComponent.tslVar(seasModel, period);
+                if (unit.lvar != null) {
+                    ltsvar = unit.lvar.deepClone();
                     ltsvar.mul(Math.sqrt(seasVar));
                 } else {
                     ltsvar = null;
@@ -525,6 +639,11 @@ public class SsfBsm extends Ssf {
             }
         }
 
+        @Override
+        public void TVT(int pos, FastMatrix vm) {
+            SsfBsm.TVT(data, data.nVar > 0, vm);
+        }
+
         @Override
         public void TX(int pos, DataBlock x) {
             int i0 = 0;
@@ -253,8 +253,7 @@ public class SsfBsm2 extends Ssf {
             }
             if (data.seasVar > 0) {
                 if (data.seasModel == SeasonalModel.Dummy) {
-                    int j = i + data.period - 2;
-                    v.set(j, j, data.seasVar);
+                    v.set(i, i, data.seasVar);
                 } else {
                     int j = data.tsvar.getRowsCount();
                     v.extract(i, j, i, j).copy(data.tsvar);
@@ -290,7 +289,7 @@ public class SsfBsm2 extends Ssf {
             if (data.seasVar > 0) {
                 switch (data.seasModel) {
                     case Dummy:
-                        s.set(i + data.period - 2, j, Math.sqrt(data.seasVar));
+                        s.set(i, j, Math.sqrt(data.seasVar));
                         break;
                     case Crude:
                         s.extract(i, data.period - 1, j, 1).set(Math.sqrt(data.seasVar));
@@ -325,7 +324,7 @@ public class SsfBsm2 extends Ssf {
             if (data.seasVar > 0) {
                 switch (data.seasModel) {
                     case Dummy:
-                        x.add(i + data.period - 2, u.get(j) * Math.sqrt(data.seasVar));
+                        x.add(i, u.get(j) * Math.sqrt(data.seasVar));
                         break;
                     case Crude:
                         x.range(i, i + data.period - 1).add(Math.sqrt(data.seasVar) * u.get(j));
@@ -353,7 +352,7 @@ public class SsfBsm2 extends Ssf {
                 ++i;
             }
             if (data.sVar > 0) {
-                xs.set(j++, x.get(i++) * Math.sqrt(data.lVar));
+                xs.set(j++, x.get(i++) * Math.sqrt(data.sVar));
             } else if (data.sVar == 0) {
                 ++i;
             }
@@ -393,11 +392,16 @@ public class SsfBsm2 extends Ssf {
             }
             if (data.seasVar >= 0) {
                 FastMatrix seas = tr.extract(i, data.period - 1, i, data.period - 1);
-                seas.row(data.period - 2).set(-1);
-                seas.subDiagonal(1).set(1);
+                seas.row(0).set(-1);
+                seas.subDiagonal(-1).set(1);
             }
         }
 
+        @Override
+        public void TVT(int pos, FastMatrix vm) {
+            SsfBsm.TVT(data, false, vm);
+        }
+
         @Override
         public void TX(int pos, DataBlock x) {
             int i0 = 0;
@@ -473,8 +477,7 @@ public class SsfBsm2 extends Ssf {
             if (data.seasVar > 0) {
                 switch (data.seasModel) {
                     case Dummy: {
-                        int j = i + data.period - 2;
-                        p.add(j, j, data.seasVar);
+                        p.add(i, i, data.seasVar);
                         break;
                     }
                     case Crude: {
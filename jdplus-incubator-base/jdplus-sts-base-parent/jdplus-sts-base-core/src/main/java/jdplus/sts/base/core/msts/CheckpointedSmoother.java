@@ -0,0 +1,619 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.sts.base.core.msts;
+
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.ssf.ISsfDynamics;
+import jdplus.toolkit.base.core.ssf.ISsfInitialization;
+import jdplus.toolkit.base.core.ssf.ISsfLoading;
+import jdplus.toolkit.base.core.ssf.StateInfo;
+import jdplus.toolkit.base.core.ssf.StateStorage;
+import jdplus.toolkit.base.core.ssf.composite.MultivariateCompositeSsf;
+import jdplus.toolkit.base.core.ssf.likelihood.DiffuseLikelihood;
+import jdplus.toolkit.base.core.ssf.multivariate.ISsfErrors;
+
+/**
+ * Univariate treatment of a multivariate composite model (m equations by
+ * period), with independent measurement errors.
+ * The equations of a period are handled one after the other, directly on the
+ * multivariate model: the loadings are resolved once and stored in the
+ * (contiguous) columns of a matrix, the missing equations are skipped and the
+ * dynamics are applied once by period. The exact initial (diffuse) univariate
+ * filter and smoother of Koopman-Durbin are used, so that the smoothed
+ * variances are always available.
+ * The smoothing is done by segments of periods. The filtered states at the
+ * start of each segment are stored in a first pass (checkpoints); the segments
+ * are then re-filtered and smoothed backwards one after the other, so that
+ * only the filtering results of one segment are kept in memory.
+ *
+ * @author Jean Palate
+ */
+class CheckpointedSmoother {
+
+    private static final double EPS = 1e-9;
+
+    private final FastMatrix data;
+    private final ISsfInitialization initialization;
+    private final ISsfDynamics dynamics;
+    private final ISsfLoading[] loadings;
+    private final ISsfErrors errors;
+    private final int m, n, dim;
+
+    /**
+     * The univariate treatment is only valid for independent measurement
+     * errors
+     *
+     * @param ssf
+     * @return
+     */
+    static boolean isSupported(MultivariateCompositeSsf ssf) {
+        ISsfErrors errors = ssf.errors();
+        return errors == null || errors.areIndependent();
+    }
+
+    /**
+     *
+     * @param ssf The model. The measurement errors must be independent
+     * @param data The data (periods x equations)
+     */
+    CheckpointedSmoother(MultivariateCompositeSsf ssf, FastMatrix data) {
+        if (!isSupported(ssf)) {
+            throw new IllegalArgumentException("Correlated measurement errors");
+        }
+        this.data = data;
+        this.initialization = ssf.initialization();
+        this.dynamics = ssf.dynamics();
+        this.errors = ssf.errors();
+        this.m = ssf.measurementsCount();
+        this.loadings = new ISsfLoading[m];
+        for (int i = 0; i < m; ++i) {
+            loadings[i] = ssf.loading(i);
+        }
+        this.n = data.getRowsCount();
+        this.dim = ssf.getStateDim();
+    }
+
+    /**
+     * Number of periods of the segments, such that the smoothing fits in the
+     * given budget (as far as possible)
+     *
+     * @param budget Maximal storage, in bytes
+     * @return
+     */
+    int segmentLength(long budget) {
+        long d = dim;
+        // smoothed states
+        long avail = budget - 8L * n * (d * d + d);
+        // filtering results of one period and checkpoint
+        long period = 8L * (m * (2 * d + 3) + d + 2 * d * d);
+        long checkpoint = 8L * (d + 2 * d * d);
+        if (avail >= period * n) {
+            return n;
+        }
+        long len = Math.max(1, avail / period);
+        while (len > 1 && len * period + ((n + len - 1) / len) * checkpoint > avail) {
+            --len;
+        }
+        return (int) len;
+    }
+
+    /**
+     * Diffuse likelihood of the model
+     *
+     * @param scalingFactor True if the scaling factor is concentrated out
+     * @return
+     */
+    DiffuseLikelihood likelihood(boolean scalingFactor) {
+        Workspace w = new Workspace();
+        FState s = initial();
+        for (int t = 0; t < n; ++t) {
+            update(t, s, null, 0, w);
+            next(t, s);
+        }
+        return DiffuseLikelihood.builder(w.nobs, w.nd)
+                .ssqErr(w.ssq)
+                .logDeterminant(w.ldet)
+                .diffuseCorrection(w.lddet)
+                .concentratedScalingFactor(scalingFactor)
+                .build();
+    }
+
+    /**
+     * Smoothed states (at the start of each period)
+     *
+     * @param budget Maximal storage, in bytes
+     * @return
+     */
+    StateStorage smooth(long budget) {
+        int len = segmentLength(budget);
+        int nseg = (n + len - 1) / len;
+        FState[] checkpoints = new FState[nseg];
+        Workspace w = new Workspace();
+        FState s = initial();
+        if (nseg == 1) {
+            checkpoints[0] = s;
+        } else {
+            for (int t = 0; t < n; ++t) {
+                if (t % len == 0) {
+                    checkpoints[t / len] = s.copy();
+                }
+                update(t, s, null, 0, w);
+                next(t, s);
+            }
+        }
+        StateStorage ss = StateStorage.full(StateInfo.Smoothed);
+        ss.prepare(dim, 0, n);
+        Smoother smoother = new Smoother(w);
+        // buffers of the segments, reused from one segment to the other
+        FState[] states = new FState[len];
+        Info[] infos = new Info[len * m];
+        for (int k = nseg - 1; k >= 0; --k) {
+            int start = k * len, end = Math.min(n, start + len);
+            FState cur = checkpoints[k];
+            checkpoints[k] = null;
+            for (int t = start; t < end; ++t) {
+                FState st = states[t - start];
+                if (st == null) {
+                    st = new FState(dim);
+                    states[t - start] = st;
+                }
+                st.copyFrom(cur);
+                int off = (t - start) * m;
+                for (int i = 0; i < m; ++i) {
+                    if (infos[off + i] == null) {
+                        infos[off + i] = new Info(dim);
+                    }
+                }
+                update(t, cur, infos, off, w);
+                next(t, cur);
+            }
+            for (int t = end - 1; t >= start; --t) {
+                smoother.iterate(t, infos, (t - start) * m);
+                smoother.save(ss, t, states[t - start]);
+            }
+        }
+        return ss;
+    }
+
+    /**
+     * Filtered states. The forecasts of the diffuse periods are set to
+     * missing; the concurrent estimates are always provided (finite part of
+     * the covariance), as in the filtering results of the toolkit
+     *
+     * @param concurrent Concurrent estimates (after the last observation of
+     * the period) if true, forecasts (before the first observation of the
+     * period) otherwise
+     * @return
+     */
+    StateStorage filter(boolean concurrent) {
+        StateStorage ss = StateStorage.full(concurrent ? StateInfo.Concurrent : StateInfo.Forecast);
+        ss.prepare(dim, 0, n);
+        Workspace w = new Workspace();
+        FState s = initial();
+        for (int t = 0; t < n; ++t) {
+            if (!concurrent) {
+                save(ss, t, s);
+            }
+            update(t, s, null, 0, w);
+            if (concurrent) {
+                ss.save(t, s.a, s.Pf);
+            }
+            next(t, s);
+        }
+        return ss;
+    }
+
+    private static void save(StateStorage ss, int t, FState s) {
+        ss.save(t, s.a, s.Pf);
+        if (s.Pi != null) {
+            ss.a(t).set(Double.NaN);
+            ss.P(t).set(Double.NaN);
+        }
+    }
+
+    private FState initial() {
+        FState s = new FState(dim);
+        initialization.a0(s.a);
+        initialization.Pf0(s.Pf);
+        if (initialization.isDiffuse()) {
+            s.Pi = FastMatrix.square(dim);
+            initialization.Pi0(s.Pi);
+        }
+        return s;
+    }
+
+    /**
+     * Updates the state with the observations of period t, one equation after
+     * the other (the transition is not applied)
+     *
+     * @param t The period
+     * @param s The state
+     * @param infos The information needed by the smoother (not saved if null).
+     * Their buffers are re-used
+     * @param off Position of the information of the first equation in infos
+     * @param w Workspace
+     */
+    private void update(int t, FState s, Info[] infos, int off, Workspace w) {
+        load(t, w);
+        for (int i = 0; i < m; ++i) {
+            Info info = infos == null ? null : infos[off + i];
+            if (info != null) {
+                info.diffuse = s.Pi != null;
+                info.status = Info.MISSING;
+            }
+            double y = w.y[i];
+            if (Double.isNaN(y)) {
+                continue;
+            }
+            DataBlock z = w.Z.column(i);
+            DataBlock mf = info == null ? w.mf : info.mf;
+            // mf = Pf*Z'
+            mf.product(s.Pf.rowsIterator(), z);
+            double ff = z.dot(mf) + w.h[i];
+            double v = y - z.dot(s.a);
+            DataBlock mi = null;
+            double fi = 0;
+            if (s.Pi != null) {
+                mi = info == null ? w.mi : info.mi();
+                mi.product(s.Pi.rowsIterator(), z);
+                fi = z.dot(mi);
+            }
+            if (fi > EPS) {
+                s.a.addAY(v / fi, mi);
+                // Pf = Pf + mi*mi'*ff/fi^2 - (mf*mi' + mi*mf')/fi, Pi = Pi - mi*mi'/fi
+                s.Pf.addXaXt(ff / (fi * fi), mi);
+                s.Pf.addXaYt(-1 / fi, mf, mi);
+                s.Pf.addXaYt(-1 / fi, mi, mf);
+                s.Pi.addXaXt(-1 / fi, mi);
+                if (isZero(s.Pi)) {
+                    s.Pi = null;
+                }
+                ++w.nobs;
+                ++w.nd;
+                w.lddet += Math.log(fi);
+                if (info != null) {
+                    info.status = Info.DIFFUSE;
+                    info.v = v;
+                    info.ff = ff;
+                    info.fi = fi;
+                }
+            } else if (ff > EPS) {
+                s.a.addAY(v / ff, mf);
+                s.Pf.addXaXt(-1 / ff, mf);
+                ++w.nobs;
+                w.ssq += v * v / ff;
+                w.ldet += Math.log(ff);
+                if (info != null) {
+                    info.status = Info.ORDINARY;
+                    info.v = v;
+                    info.ff = ff;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transition to the next period
+     *
+     * @param t
+     * @param s
+     */
+    private void next(int t, FState s) {
+        dynamics.TX(t, s.a);
+        dynamics.TVT(t, s.Pf);
+        dynamics.addV(t, s.Pf);
+        if (s.Pi != null) {
+            dynamics.TVT(t, s.Pi);
+        }
+    }
+
+    /**
+     * Loads the observations of period t, the loadings of the (non missing)
+     * equations and the variances of the measurement errors in the workspace.
+     * The time invariant loadings and variances are loaded once, when the
+     * workspace is created
+     */
+    private void load(int t, Workspace w) {
+        for (int i = 0; i < m; ++i) {
+            double y = data.get(t, i);
+            w.y[i] = y;
+            if (!Double.isNaN(y) && !loadings[i].isTimeInvariant()) {
+                DataBlock z = w.Z.column(i);
+                z.set(0);
+                loadings[i].Z(t, z);
+            }
+        }
+        if (errors != null && !errors.isTimeInvariant()) {
+            w.loadErrors(t);
+        }
+    }
+
+    /**
+     * Buffers of the filter and of the smoother
+     */
+    private class Workspace {
+
+        // observations, loadings (by column) and measurement variances of the
+        // current period
+        final double[] y = new double[m], h = new double[m];
+        final FastMatrix Z = FastMatrix.make(dim, m);
+        final FastMatrix H = errors == null ? null : FastMatrix.square(m);
+        final DataBlock mf = DataBlock.make(dim), mi = DataBlock.make(dim);
+        final DataBlock k0 = DataBlock.make(dim), k1 = DataBlock.make(dim),
+                p = DataBlock.make(dim), q = DataBlock.make(dim),
+                ak = DataBlock.make(dim), atk = DataBlock.make(dim);
+        // likelihood
+        int nobs, nd;
+        double ssq, ldet, lddet;
+
+        Workspace() {
+            for (int i = 0; i < m; ++i) {
+                if (loadings[i].isTimeInvariant()) {
+                    loadings[i].Z(0, Z.column(i));
+                }
+            }
+            if (errors != null && errors.isTimeInvariant()) {
+                loadErrors(0);
+            }
+        }
+
+        void loadErrors(int t) {
+            H.set(0);
+            errors.H(t, H);
+            for (int i = 0; i < m; ++i) {
+                h[i] = H.get(i, i);
+            }
+        }
+    }
+
+    private class Smoother {
+
+        private final Workspace w;
+        private final DataBlock r0 = DataBlock.make(dim), r1 = DataBlock.make(dim);
+        private final FastMatrix N0 = FastMatrix.square(dim), N1 = FastMatrix.square(dim), N2 = FastMatrix.square(dim);
+        // workspaces of save (the storage copies the states)
+        private final DataBlock wa = DataBlock.make(dim);
+        private final FastMatrix U = FastMatrix.square(dim), W = FastMatrix.square(dim), V = FastMatrix.square(dim);
+
+        Smoother(Workspace w) {
+            this.w = w;
+        }
+
+        /**
+         * Backward iteration on period t: r, N before the first equation of
+         * t from r, N after the transition of t
+         *
+         * @param t The period
+         * @param infos The filtering information
+         * @param off Position of the information of the first equation in
+         * infos
+         */
+        void iterate(int t, Info[] infos, int off) {
+            // transition
+            dynamics.XT(t, r0);
+            TtNT(t, N0);
+            if (infos[off + m - 1].diffuse) {
+                dynamics.XT(t, r1);
+                TtNT(t, N1);
+                TtNT(t, N2);
+            }
+            load(t, w);
+            for (int i = m - 1; i >= 0; --i) {
+                Info info = infos[off + i];
+                switch (info.status) {
+                    case Info.ORDINARY ->
+                        ordinary(w.Z.column(i), info);
+                    case Info.DIFFUSE ->
+                        diffuse(w.Z.column(i), info);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        private void ordinary(DataBlock z, Info info) {
+            DataBlock k = w.k0;
+            k.copy(info.mf);
+            k.mul(1 / info.ff);
+            // r0 = Z'v/f + L'r0, L = I - KZ
+            r0.addAY((info.v - info.mf.dot(r0)) / info.ff, z);
+            if (info.diffuse) {
+                // N1 = N1 L
+                w.ak.product(N1.rowsIterator(), k);
+                N1.addXaYt(-1, w.ak, z);
+            }
+            // N0 = Z'Z/f + L'N0L
+            quad(N0, k, z);
+            N0.addXaXt(1 / info.ff, z);
+        }
+
+        private void diffuse(DataBlock z, Info info) {
+            DataBlock k0 = w.k0, k1 = w.k1, p = w.p, q = w.q;
+            double fi = info.fi, ff = info.ff;
+            // L0 = I - K0 Z, L1 = -K1 Z
+            // k0 = mi/fi, k1 = (mf - k0*ff)/fi
+            k0.copy(info.mi());
+            k0.mul(1 / fi);
+            k1.copy(info.mf);
+            k1.addAY(-ff, k0);
+            k1.mul(1 / fi);
+            // p = N0'K1 - (K1'N0K0) Z', q = N1K1 - Z'(K0'N1K1), c = K1'N0K1
+            p.product(N0.columnsIterator(), k1);
+            double k1n0k0 = p.dot(k0);
+            double c = p.dot(k1);
+            p.addAY(-k1n0k0, z);
+            q.product(N1.rowsIterator(), k1);
+            q.addAY(-k0.dot(q), z);
+            // N2 = Z'F2Z + L0'N2L0 + L0'N1L1 + L1'N1'L0 + L1'N0L1
+            quad(N2, k0, z);
+            N2.addXaYt(-1, q, z);
+            N2.addXaYt(-1, z, q);
+            N2.addXaXt(c - ff / (fi * fi), z);
+            // N1 = Z'F1Z + L0'N1L0 + L1'N0L0
+            quad(N1, k0, z);
+            N1.addXaYt(-1, z, p);
+            N1.addXaXt(1 / fi, z);
+            // N0 = L0'N0L0
+            quad(N0, k0, z);
+            // r1 = Z'F1v + L0'r1 + L1'r0, r0 = L0'r0
+            r1.addAY(info.v / fi - k0.dot(r1) - k1.dot(r0), z);
+            r0.addAY(-k0.dot(r0), z);
+        }
+
+        /**
+         * A = (I - k*z')' A (I - k*z') = A - z*(A'k)' - (Ak)*z' + (k'Ak)*z*z'
+         */
+        private void quad(FastMatrix A, DataBlock k, DataBlock z) {
+            DataBlock ak = w.ak, atk = w.atk;
+            ak.product(A.rowsIterator(), k);
+            atk.product(A.columnsIterator(), k);
+            double kak = k.dot(ak);
+            A.addXaYt(-1, z, atk);
+            A.addXaYt(-1, ak, z);
+            A.addXaXt(kak, z);
+        }
+
+        /**
+         * N = T'NT
+         */
+        private void TtNT(int t, FastMatrix N) {
+            for (int i = 0; i < dim; ++i) {
+                dynamics.XT(t, N.row(i));
+            }
+            for (int i = 0; i < dim; ++i) {
+                dynamics.XT(t, N.column(i));
+            }
+        }
+
+        /**
+         * a = a + Pf*r0 + Pi*r1
+         * V = Pf - Pf*N0*Pf - (Pi*N1*Pf)' - Pi*N1*Pf - Pi*N2*Pi
+         * = Pf - Pf*(N0*Pf + N1'*Pi) - Pi*(N1*Pf + N2*Pi)
+         * The products are computed in the workspaces of the smoother.
+         */
+        void save(StateStorage ss, int t, FState s) {
+            wa.copy(s.a);
+            wa.addProduct(s.Pf.rowsIterator(), r0);
+            for (int c = 0; c < dim; ++c) {
+                // U = N0*Pf (+ N1'*Pi)
+                DataBlock uc = U.column(c);
+                uc.product(N0.rowsIterator(), s.Pf.column(c));
+                if (s.Pi != null) {
+                    uc.addProduct(N1.columnsIterator(), s.Pi.column(c));
+                }
+            }
+            if (s.Pi != null) {
+                wa.addProduct(s.Pi.rowsIterator(), r1);
+                for (int c = 0; c < dim; ++c) {
+                    // W = N1*Pf + N2*Pi
+                    DataBlock wc = W.column(c);
+                    wc.product(N1.rowsIterator(), s.Pf.column(c));
+                    wc.addProduct(N2.rowsIterator(), s.Pi.column(c));
+                }
+            }
+            for (int c = 0; c < dim; ++c) {
+                // V = Pf - Pf*U (- Pi*W)
+                DataBlock vc = V.column(c);
+                vc.product(s.Pf.rowsIterator(), U.column(c));
+                if (s.Pi != null) {
+                    vc.addProduct(s.Pi.rowsIterator(), W.column(c));
+                }
+                vc.chs();
+                vc.add(s.Pf.column(c));
+            }
+            // symmetric result
+            for (int c = 0; c < dim; ++c) {
+                for (int r = c + 1; r < dim; ++r) {
+                    V.set(c, r, V.get(r, c));
+                }
+            }
+            ss.save(t, wa, V);
+        }
+    }
+
+    private static class FState {
+
+        final DataBlock a;
+        final FastMatrix Pf;
+        FastMatrix Pi;
+
+        FState(int dim) {
+            a = DataBlock.make(dim);
+            Pf = FastMatrix.square(dim);
+        }
+
+        FState copy() {
+            FState s = new FState(a.length());
+            s.copyFrom(this);
+            return s;
+        }
+
+        /**
+         * Copies the given state in this object (the buffers are re-used)
+         */
+        void copyFrom(FState s) {
+            a.copy(s.a);
+            Pf.copy(s.Pf);
+            if (s.Pi == null) {
+                Pi = null;
+            } else {
+                if (Pi == null) {
+                    Pi = FastMatrix.square(a.length());
+                }
+                Pi.copy(s.Pi);
+            }
+        }
+    }
+
+    private static class Info {
+
+        static final int MISSING = 0, ORDINARY = 1, DIFFUSE = 2;
+
+        final DataBlock mf;
+        private DataBlock mi;
+        boolean diffuse;
+        int status = MISSING;
+        double v, ff, fi;
+
+        Info(int dim) {
+            this.mf = DataBlock.make(dim);
+        }
+
+        /**
+         * Buffer of Pi*Z', created on the first use
+         */
+        DataBlock mi() {
+            if (mi == null) {
+                mi = DataBlock.make(mf.length());
+            }
+            return mi;
+        }
+    }
+
+    private static boolean isZero(FastMatrix P) {
+        int n = P.getRowsCount();
+        for (int c = 0; c < n; ++c) {
+            for (int r = 0; r < n; ++r) {
+                if (Math.abs(P.get(r, c)) > EPS) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
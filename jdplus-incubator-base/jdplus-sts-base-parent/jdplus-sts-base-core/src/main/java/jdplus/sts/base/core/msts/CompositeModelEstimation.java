@@ -36,7 +36,6 @@ import jdplus.toolkit.base.api.ssf.SsfInitialization;
 import java.util.Arrays;
 import jdplus.toolkit.base.core.data.DataBlock;
 import jdplus.toolkit.base.core.data.DataBlockIterator;
-import jdplus.toolkit.base.core.data.DataBlockStorage;
 import jdplus.toolkit.base.core.math.matrices.FastMatrix;
 import jdplus.toolkit.base.core.math.matrices.QuadraticForm;
 import jdplus.toolkit.base.core.ssf.ISsfLoading;
@@ -47,6 +46,11 @@ import jdplus.toolkit.base.core.ssf.ISsfLoading;
  */
 public class CompositeModelEstimation {
 
+    /**
+     * Default memory budget (in bytes) of the filtering/smoothing algorithms
+     */
+    public static final long DEF_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
     public static CompositeModelEstimation estimationOf(CompositeModel model, FastMatrix data,
             boolean marginal, boolean concentrated, SsfInitialization initialization, Optimizer optimizer, double eps, double[] parameters) {
         CompositeModelEstimation rslt = new CompositeModelEstimation();
@@ -84,6 +88,8 @@ public class CompositeModelEstimation {
         if (marginal) {
             rslt.likelihood = AkfToolkit.marginalLikelihoodComputer(concentrated, true).
                     compute(M2uAdapter.of(rslt.getSsf()), M2uAdapter.of(new SsfMatrix(data)));
+        } else if (CheckpointedSmoother.isSupported(rslt.getSsf())) {
+            rslt.likelihood = new CheckpointedSmoother(rslt.getSsf(), data).likelihood(true);
         } else {
             rslt.likelihood = DkToolkit.likelihood(rslt.getSsf(), new SsfMatrix(data), true, false);
         }
@@ -97,96 +103,66 @@ public class CompositeModelEstimation {
     private double[] fullParameters, parameters;
     private String[] parametersName, cmpName;
     private StateStorage smoothedStates, filteredStates, filteringStates;
+    private long memoryBudget = DEF_MEMORY_BUDGET;
 
     public StateStorage getSmoothedStates() {
         if (smoothedStates == null) {
-            try {
-                StateStorage ss = AkfToolkit.robustSmooth(getSsf(), new SsfMatrix(getData()), true, false);
-                if (likelihood.isScalingFactor()) {
-                    ss.rescaleVariances(likelihood.sigma2());
+            StateStorage ss;
+            if (CheckpointedSmoother.isSupported(ssf)) {
+                ss = new CheckpointedSmoother(ssf, data).smooth(memoryBudget);
+            } else {
+                try {
+                    ss = AkfToolkit.robustSmooth(getSsf(), new SsfMatrix(getData()), true, false);
+                } catch (Exception err) {
+//                    ss = AkfToolkit.smooth(getSsf(), new SsfMatrix(getData()), false, false, false);
+                    ss = DkToolkit.smooth(getSsf(), new SsfMatrix(getData()), true, false);
                 }
-                smoothedStates = ss;
-            } catch (OutOfMemoryError err) {
-                ISsf ussf = M2uAdapter.of(ssf);
-                ISsfData udata = M2uAdapter.of(new SsfMatrix(data));
-                DataBlockStorage ds = DkToolkit.fastSmooth(ussf, udata);
-                StateStorage ss = StateStorage.light(StateInfo.Smoothed);
-                int m = data.getColumnsCount(), n = data.getRowsCount();
-                ss.prepare(ussf.getStateDim(), 0, n);
-                for (int i = 0; i < n; ++i) {
-                    ss.save(i, ds.block(i * m), null);
-                }
-                if (likelihood.isScalingFactor()) {
-                    ss.rescaleVariances(likelihood.sigma2());
-                }
-                smoothedStates = ss;
-
-            } catch (Exception err) {
-//                StateStorage ss = AkfToolkit.smooth(getSsf(), new SsfMatrix(getData()), false, false, false);
-                StateStorage ss = DkToolkit.smooth(getSsf(), new SsfMatrix(getData()), true, false);
-                if (likelihood.isScalingFactor()) {
-                    ss.rescaleVariances(likelihood.sigma2());
-                }
-                smoothedStates = ss;
             }
+            if (likelihood.isScalingFactor()) {
+                ss.rescaleVariances(likelihood.sigma2());
+            }
+            smoothedStates = ss;
         }
         return smoothedStates;
     }
 
     public StateStorage getFilteredStates() {
         if (filteredStates == null) {
-            try {
+            StateStorage ss;
+            if (CheckpointedSmoother.isSupported(ssf)) {
+                ss = new CheckpointedSmoother(ssf, data).filter(true);
+            } else {
+                int m = data.getColumnsCount(), n = data.getRowsCount();
                 ISsf ussf = M2uAdapter.of(ssf);
                 ISsfData udata = M2uAdapter.of(new SsfMatrix(data));
                 StateFilteringResults fr = new StateFilteringResults(StateInfo.Concurrent, true);
-                int m = data.getColumnsCount(), n = data.getRowsCount();
                 fr.prepare(ussf.getStateDim(), 0, udata.length());
                 DkToolkit.sqrtFilter(ussf, udata, fr, true);
-                StateStorage ss = StateStorage.full(StateInfo.Concurrent);
+                ss = StateStorage.full(StateInfo.Concurrent);
                 ss.prepare(ussf.getStateDim(), 0, n);
                 for (int i = 1; i <= n; ++i) {
                     ss.save(i - 1, fr.a(i * m - 1), fr.P(i * m - 1));
                 }
-                if (likelihood.isScalingFactor()) {
-                    ss.rescaleVariances(likelihood.sigma2());
-                }
-                filteredStates = ss;
-            } catch (java.lang.OutOfMemoryError err) {
-                ISsf ussf = M2uAdapter.of(ssf);
-                ISsfData udata = M2uAdapter.of(new SsfMatrix(data));
-                StateFilteringResults fr = new StateFilteringResults(StateInfo.Concurrent, false);
-                int m = data.getColumnsCount(), n = data.getRowsCount();
-                fr.prepare(ussf.getStateDim(), 0, udata.length());
-                DkToolkit.sqrtFilter(ussf, udata, fr, false);
-                StateStorage ss = StateStorage.light(StateInfo.Forecast);
-                ss.prepare(ussf.getStateDim(), 0, n);
-                int nd = fr.getEndDiffusePosition() / m;
-                if (fr.getEndDiffusePosition() % m != 0) {
-                    ++nd;
-                }
-                for (int i = 0; i < n; ++i) {
-                    ss.save(i, fr.a(i * m), null);
-                }
-                for (int i = 0; i < nd; ++i) {
-                    ss.a(i).set(Double.NaN);
-                }
-                if (likelihood.isScalingFactor()) {
-                    ss.rescaleVariances(likelihood.sigma2());
-                }
-                filteredStates = ss;
             }
+            if (likelihood.isScalingFactor()) {
+                ss.rescaleVariances(likelihood.sigma2());
+            }
+            filteredStates = ss;
         }
         return filteredStates;
     }
 
     public StateStorage getFilteringStates() {
         if (filteringStates == null) {
-            try {
+            StateStorage ss;
+            if (CheckpointedSmoother.isSupported(ssf)) {
+                ss = new CheckpointedSmoother(ssf, data).filter(false);
+            } else {
+                int m = data.getColumnsCount(), n = data.getRowsCount();
                 ISsf ussf = M2uAdapter.of(ssf);
                 ISsfData udata = M2uAdapter.of(new SsfMatrix(data));
                 DefaultDiffuseSquareRootFilteringResults fr = DkToolkit.sqrtFilter(ussf, udata, true);
-                StateStorage ss = StateStorage.full(StateInfo.Forecast);
-                int m = data.getColumnsCount(), n = data.getRowsCount();
+                ss = StateStorage.full(StateInfo.Forecast);
                 ss.prepare(ussf.getStateDim(), 0, n);
                 int nd = fr.getEndDiffusePosition() / m;
                 if (fr.getEndDiffusePosition() % m != 0) {
@@ -199,33 +175,11 @@ public class CompositeModelEstimation {
                     ss.a(i).set(Double.NaN);
                     ss.P(i).set(Double.NaN);
                 }
-                if (likelihood.isScalingFactor()) {
-                    ss.rescaleVariances(likelihood.sigma2());
-                }
-                filteringStates = ss;
-            } catch (java.lang.OutOfMemoryError err) {
-                // Just computes the states
-                ISsf ussf = M2uAdapter.of(ssf);
-                ISsfData udata = M2uAdapter.of(new SsfMatrix(data));
-                DefaultDiffuseSquareRootFilteringResults fr = DkToolkit.sqrtFilter(ussf, udata, false);
-                StateStorage ss = StateStorage.light(StateInfo.Forecast);
-                int m = data.getColumnsCount(), n = data.getRowsCount();
-                ss.prepare(ussf.getStateDim(), 0, n);
-                int nd = fr.getEndDiffusePosition() / m;
-                if (fr.getEndDiffusePosition() % m != 0) {
-                    ++nd;
-                }
-                for (int i = 0; i < n; ++i) {
-                    ss.save(i, fr.a(i * m), null);
-                }
-                for (int i = 0; i < nd; ++i) {
-                    ss.a(i).set(Double.NaN);
-                }
-                if (likelihood.isScalingFactor()) {
-                    ss.rescaleVariances(likelihood.sigma2());
-                }
-                filteringStates = ss;
             }
+            if (likelihood.isScalingFactor()) {
+                ss.rescaleVariances(likelihood.sigma2());
+            }
+            filteringStates = ss;
         }
         return filteringStates;
     }
@@ -374,4 +328,29 @@ public class CompositeModelEstimation {
     public String[] getParametersName() {
         return parametersName;
     }
+
+    /**
+     * @return the memory budget (in bytes) of the filtering/smoothing
+     * algorithms
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the memory budget of the smoothing algorithm. When the storage
+     * needed by a full smoothing (predicted from the state dimension and the
+     * length of the series) exceeds the budget, the states are computed by
+     * segments (see CheckpointedSmoother). The budget is ignored for models
+     * with correlated measurement errors, which are handled by the generic
+     * algorithms of the toolkit. The cached states are reset.
+     *
+     * @param memoryBudget Maximal storage, in bytes
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        smoothedStates = null;
+        filteredStates = null;
+        filteringStates = null;
+    }
 }
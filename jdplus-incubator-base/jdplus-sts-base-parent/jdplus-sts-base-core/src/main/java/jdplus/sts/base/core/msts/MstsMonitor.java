@@ -26,8 +26,13 @@ import jdplus.toolkit.base.core.ssf.composite.MultivariateCompositeSsf;
 import jdplus.toolkit.base.core.ssf.multivariate.SsfMatrix;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.toolkit.base.core.stats.likelihood.Likelihood;
 import jdplus.toolkit.base.api.math.functions.Optimizer;
@@ -61,6 +66,7 @@ public class MstsMonitor {
         private int maxIter = MAXITER;
         private int maxIterOptimzer = MAXITER_MIN;
         private boolean concentratedLikelihood = true;
+        private int parallelism = 0;
 
         public Builder initialization(SsfInitialization initialization) {
             this.initialization = initialization;
@@ -103,6 +109,24 @@ public class MstsMonitor {
             return this;
         }
 
+        /**
+         * Parallelism level used in the evaluation of the likelihoods of the
+         * candidates when small variances are fixed or freed and in the
+         * computation of the numerical derivatives of the likelihood. 0
+         * (default) for the common pool, 1 for a sequential processing, k > 1
+         * for a dedicated pool of k threads
+         *
+         * @param parallelism
+         * @return
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
         public Builder optimizer(Optimizer optimizer) {
             this.optimizer = optimizer;
             return this;
@@ -120,6 +144,7 @@ public class MstsMonitor {
     private final boolean marginal;
     private final SsfInitialization initialization;
     private final Optimizer optimizer;
+    private final int parallelism;
 
     private FastMatrix data;
     private MstsMapping model;
@@ -129,6 +154,9 @@ public class MstsMonitor {
     private Likelihood ll;
     private VarianceInterpreter fixedVariance;
     private boolean converged;
+    // pool used for the parallel evaluations (parallelism > 1), created at
+    // most once by call to process
+    private ForkJoinPool pool;
 
     private final List<VarianceInterpreter> smallVariances = new ArrayList<>();
 //    private final List<LoadingParameter> smallLoadings = new ArrayList<>();
@@ -144,6 +172,7 @@ public class MstsMonitor {
         this.concentratedLikelihood = builder.concentratedLikelihood;
         this.maxIter = builder.maxIter;
         this.smallStde = Math.sqrt(builder.smallVar);
+        this.parallelism = builder.parallelism;
     }
 
 //    private LikelihoodFunction function(boolean concentrated) {
@@ -155,7 +184,7 @@ public class MstsMonitor {
         boolean needres = (optimizer == Optimizer.LevenbergMarquardt || optimizer == Optimizer.MinPack) || initialization == SsfInitialization.Augmented || marginal;
         if (marginal) {
             return MarginalLikelihoodFunction.builder(s.asSsfData(), model, m -> m.asSsf())
-                    .useParallelProcessing(true)
+                    .useParallelProcessing(parallelism != 1)
                     .useMaximumLikelihood(true)
                     .useScalingFactor(concentrated)
                     .residuals(needres)
@@ -166,14 +195,14 @@ public class MstsMonitor {
                     .useMaximumLikelihood(true)
                     .useScalingFactor(concentrated)
                     .useFastAlgorithm(true)
-                    .useParallelProcessing(true)
+                    .useParallelProcessing(parallelism != 1)
                     .residuals(needres)
                     .build();
             case Augmented_NoCollapsing -> AugmentedLikelihoodFunction.builder(s.asSsfData(), model, m -> m.asSsf())
                     .useMaximumLikelihood(true)
                     .useScalingFactor(concentrated)
                     .useFastAlgorithm(false)
-                    .useParallelProcessing(true)
+                    .useParallelProcessing(parallelism != 1)
                     .useCollapsing(false)
                     .residuals(needres)
                     .build();
@@ -181,19 +210,19 @@ public class MstsMonitor {
                     .useMaximumLikelihood(true)
                     .useScalingFactor(concentrated)
                     .useFastAlgorithm(false)
-                    .useParallelProcessing(true)
+                    .useParallelProcessing(parallelism != 1)
                     .robust(true)
                     .residuals(needres)
                     .build();
             case Diffuse -> SsfFunction.builder(s.asSsfData(), model, m -> m.asSsf())
-                    .useParallelProcessing(true)
+                    .useParallelProcessing(parallelism != 1)
                     .useMaximumLikelihood(true)
                     .useScalingFactor(concentrated)
                     .useFastAlgorithm(true)
                     .useSqrtInitialization(false)
                     .build();
             default -> SsfFunction.builder(s.asSsfData(), model, m -> m.asSsf())
-                    .useParallelProcessing(true)
+                    .useParallelProcessing(parallelism != 1)
                     .useMaximumLikelihood(true)
                     .useScalingFactor(concentrated)
                     .useFastAlgorithm(true)
@@ -221,6 +250,17 @@ public class MstsMonitor {
     }
 
     public void process(FastMatrix data, MstsMapping model, DoubleSeq fullInitial) {
+        try {
+            estimate(data, model, fullInitial);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    private void estimate(FastMatrix data, MstsMapping model, DoubleSeq fullInitial) {
         this.data = data;
         this.model = model;
         ll = null;
@@ -334,7 +374,17 @@ public class MstsMonitor {
         ssf = model.map(p);
     }
 
+    /**
+     * Minimizes the function. When the parallelism is larger than 1, the
+     * optimization is executed in the pool of the monitor, so that the
+     * parallel evaluations of the numerical derivatives run in that pool
+     * instead of the common one.
+     */
     private LikelihoodFunctionPoint min(LikelihoodFunction fn, boolean concentrated, double eps, int niter, DoubleSeq start) {
+        return inPool(() -> minimize(fn, concentrated, eps, niter, start));
+    }
+
+    private LikelihoodFunctionPoint minimize(LikelihoodFunction fn, boolean concentrated, double eps, int niter, DoubleSeq start) {
         if (fn.getDomain().getDim() == 0) {
             converged = true;
             return fn.evaluate(start);
@@ -389,20 +439,35 @@ public class MstsMonitor {
         }
         double dll = 0;
         VarianceInterpreter cur = null;
-        double eps = smallVariance();
+        double e = Math.sqrt(smallVariance());
+        // The candidates are temporarily freed (at 0), so that they can be
+        // evaluated concurrently with the same likelihood function
         for (VarianceInterpreter small : smallVariances) {
-            small.fixStde(Math.sqrt(eps));
-            try {
-                DoubleSeq nprslts = model.functionParameters(fullp);
-                Likelihood nll = function(concentratedLikelihood).evaluate(nprslts).getLikelihood();
-                double d = nll.logLikelihood() - ll.logLikelihood();
-                if (d > dll) {
-                    dll = d;
-                    cur = small;
-                }
-            } catch (Exception err) {
+            small.freeStde(0);
+        }
+        double[] nll;
+        double ll0;
+        try {
+            DoubleSeq p = model.functionParameters(fullp);
+            LikelihoodFunction fn = function(concentratedLikelihood);
+            ll0 = isNativeLikelihood() ? logLikelihood(fn, p) : ll.logLikelihood();
+            int[] pos = functionPositions(smallVariances);
+            nll = evaluate(pos.length, i -> {
+                double[] np = p.toArray();
+                np[pos[i]] = e;
+                return logLikelihood(fn, DoubleSeq.of(np));
+            });
+        } finally {
+            for (VarianceInterpreter small : smallVariances) {
+                small.fixStde(0);
+            }
+        }
+        for (int i = 0; i < nll.length; ++i) {
+            double d = nll[i] - ll0;
+            if (d > dll) {
+                dll = d;
+                cur = smallVariances.get(i);
             }
-            small.fixStde(0);
         }
         if (cur != null) {
             cur.freeStde(smallStde);
@@ -437,19 +502,22 @@ public class MstsMonitor {
         }
         double dll = 0;
         VarianceInterpreter cur = null;
-        for (VarianceInterpreter small : svar) {
-            double olde = small.fixStde(0);
-            try {
-                DoubleSeq p = model.functionParameters(fullp);
-                Likelihood nll = function(concentratedLikelihood).evaluate(p).getLikelihood();
-                double ndll = nll.logLikelihood() - ll.logLikelihood();
-                if (ndll > dll) {
-                    dll = ndll;
-                    cur = small;
-                }
-            } catch (Exception err) {
+        // Setting a (free) variance to 0 gives the same likelihood as fixing it
+        DoubleSeq p = model.functionParameters(fullp);
+        LikelihoodFunction fn = function(concentratedLikelihood);
+        double ll0 = isNativeLikelihood() ? logLikelihood(fn, p) : ll.logLikelihood();
+        int[] pos = functionPositions(svar);
+        double[] nll = evaluate(pos.length, i -> {
+            double[] np = p.toArray();
+            np[pos[i]] = 0;
+            return logLikelihood(fn, DoubleSeq.of(np));
+        });
+        for (int i = 0; i < nll.length; ++i) {
+            double ndll = nll[i] - ll0;
+            if (ndll > dll) {
+                dll = ndll;
+                cur = svar.get(i);
             }
-            small.freeStde(olde);
         }
         if (cur != null) {
             cur.fixStde(0);
@@ -461,6 +529,109 @@ public class MstsMonitor {
 
     }
 
+    /**
+     * The likelihoods of the candidates of fixSmallVariance/freeSmallVariance
+     * are computed by the univariate filter of the composite models
+     * (CheckpointedSmoother) when it gives the same likelihood as the
+     * function of the optimizer (diffuse initialization)
+     */
+    private boolean isNativeLikelihood() {
+        return !marginal && (initialization == SsfInitialization.Diffuse || initialization == SsfInitialization.SqrtDiffuse);
+    }
+
+    /**
+     * Log-likelihood at the given parameters of the likelihood function
+     *
+     * @param fn The likelihood function, used when the native filter is not
+     * available (correlated measurement errors...)
+     * @param p The parameters
+     * @return
+     */
+    private double logLikelihood(LikelihoodFunction fn, DoubleSeq p) {
+        if (isNativeLikelihood()) {
+            MultivariateCompositeSsf mssf = model.map(p);
+            if (CheckpointedSmoother.isSupported(mssf)) {
+                return new CheckpointedSmoother(mssf, data).likelihood(concentratedLikelihood).logLikelihood();
+            }
+        }
+        return fn.evaluate(p).getLikelihood().logLikelihood();
+    }
+
+    /**
+     * Positions of the given (free) variances in the parameters of the
+     * likelihood function
+     */
+    private int[] functionPositions(List<VarianceInterpreter> vars) {
+        int[] pos = new int[vars.size()];
+        int j = 0;
+        for (ParameterInterpreter p : model.allParameters()) {
+            if (!p.isFixed()) {
+                int k = vars.indexOf(p);
+                if (k >= 0) {
+                    pos[k] = j;
+                }
+                j += p.getDomain().getDim();
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Evaluates independent likelihoods, following the parallelism level. The
+     * failed evaluations are set to NaN.
+     *
+     * @param n Number of evaluations
+     * @param fn Evaluation
+     * @return The results, in the order of the evaluations
+     */
+    private double[] evaluate(int n, IntToDoubleFunction fn) {
+        IntToDoubleFunction safe = i -> {
+            try {
+                return fn.applyAsDouble(i);
+            } catch (Exception err) {
+                return Double.NaN;
+            }
+        };
+        if (parallelism == 1 || n < 2) {
+            return IntStream.range(0, n).mapToDouble(safe).toArray();
+        }
+        return inPool(() -> IntStream.range(0, n).parallel().mapToDouble(safe).toArray());
+    }
+
+    /**
+     * Executes the task in the pool of the monitor when the parallelism is
+     * larger than 1 (the parallel streams used by the task then run in that
+     * pool), in the current thread otherwise. The pool is shared by all the
+     * calls of a same process run.
+     *
+     * @param <T>
+     * @param task
+     * @return
+     */
+    private <T> T inPool(Callable<T> task) {
+        try {
+            if (parallelism <= 1) {
+                return task.call();
+            }
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism);
+            }
+            return pool.submit(task).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException err) {
+                throw err;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (RuntimeException err) {
+            throw err;
+        } catch (Exception err) {
+            throw new IllegalStateException(err);
+        }
+    }
+
     /**
      * @return the data
      */
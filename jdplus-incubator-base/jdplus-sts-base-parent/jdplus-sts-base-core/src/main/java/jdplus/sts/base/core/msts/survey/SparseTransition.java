@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.sts.base.core.msts.survey;
+
+import java.util.Arrays;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+
+/**
+ * Sparse form of the transition matrix of the survey errors blocks. The first
+ * nwaves rows contain a few auto-regressive coefficients; the other rows
+ * shift the state by nwaves positions (T(i, i-nwaves) = 1).
+ * The object is immutable: the workspaces of TVT (and the buffer used by the
+ * dynamics in TX/XT) are allocated once by thread, so that the transition can
+ * be shared by the dynamics, between threads, without allocation by step.
+ *
+ * @author Jean Palate
+ */
+class SparseTransition {
+
+    private final int dim, nwaves;
+    private final int[][] cols;
+    private final double[][] vals;
+    private final ThreadLocal<Workspace> workspace;
+
+    private static class Workspace {
+
+        final double[][] X;
+        final double[] buffer;
+
+        Workspace(int nwaves, int dim) {
+            X = new double[nwaves][dim];
+            buffer = new double[nwaves];
+        }
+    }
+
+    /**
+     * Retrieves the non-zero pattern of the first rows of the given (time
+     * invariant) transition matrix
+     *
+     * @param T The transition matrix
+     * @param nwaves
+     * @return
+     */
+    static SparseTransition of(FastMatrix T, int nwaves) {
+        int dim = T.getRowsCount();
+        int[][] cols = new int[nwaves][];
+        double[][] vals = new double[nwaves][];
+        for (int i = 0; i < nwaves; ++i) {
+            DataBlock row = T.row(i);
+            int nz = 0;
+            for (int j = 0; j < dim; ++j) {
+                if (row.get(j) != 0) {
+                    ++nz;
+                }
+            }
+            cols[i] = new int[nz];
+            vals[i] = new double[nz];
+            for (int j = 0, k = 0; j < dim; ++j) {
+                double c = row.get(j);
+                if (c != 0) {
+                    cols[i][k] = j;
+                    vals[i][k++] = c;
+                }
+            }
+        }
+        return new SparseTransition(dim, nwaves, cols, vals);
+    }
+
+    private SparseTransition(int dim, int nwaves, int[][] cols, double[][] vals) {
+        this.dim = dim;
+        this.nwaves = nwaves;
+        this.cols = cols;
+        this.vals = vals;
+        this.workspace = ThreadLocal.withInitial(() -> new Workspace(nwaves, dim));
+    }
+
+    /**
+     * Buffer of nwaves elements, owned by the current thread. It can be used
+     * by the TX/XT methods of the dynamics (it is not used by TVT)
+     *
+     * @return
+     */
+    double[] buffer() {
+        return workspace.get().buffer;
+    }
+
+    /**
+     * V = T*V*T'
+     *
+     * @param V
+     */
+    void TVT(FastMatrix V) {
+        // X = A*V, where A contains the first nwaves rows of T
+        double[][] X = workspace.get().X;
+        for (int a = 0; a < nwaves; ++a) {
+            Arrays.fill(X[a], 0);
+        }
+        for (int a = 0; a < nwaves; ++a) {
+            int[] ca = cols[a];
+            double[] va = vals[a], xa = X[a];
+            for (int k = 0; k < ca.length; ++k) {
+                DataBlock row = V.row(ca[k]);
+                double c = va[k];
+                for (int j = 0; j < dim; ++j) {
+                    xa[j] += c * row.get(j);
+                }
+            }
+        }
+        // shift of the other rows/columns (backwards, to avoid overwriting)
+        for (int c = dim - 1; c >= nwaves; --c) {
+            V.column(c).range(nwaves, dim).copy(V.column(c - nwaves).range(0, dim - nwaves));
+        }
+        for (int a = 0; a < nwaves; ++a) {
+            double[] xa = X[a];
+            // A*V*A'
+            for (int b = 0; b <= a; ++b) {
+                int[] cb = cols[b];
+                double[] vb = vals[b];
+                double s = 0;
+                for (int l = 0; l < cb.length; ++l) {
+                    s += vb[l] * xa[cb[l]];
+                }
+                V.set(a, b, s);
+                V.set(b, a, s);
+            }
+            // A*V*S'
+            for (int c = nwaves; c < dim; ++c) {
+                double s = xa[c - nwaves];
+                V.set(a, c, s);
+                V.set(c, a, s);
+            }
+        }
+    }
+}
@@ -51,9 +51,11 @@ public class WaveSpecificSurveyErrors {
     static class Dynamics implements ISsfDynamics {
 
         private final Data info;
+        private final SparseTransition transition;
 
         Dynamics(Data info) {
             this.info = info;
+            this.transition = SparseTransition.of(transition(info, 2 * info.nwaves), info.nwaves);
         }
 
         @Override
@@ -86,6 +88,10 @@ public class WaveSpecificSurveyErrors {
 
         @Override
         public void T(int pos, FastMatrix tr) {
+            fillT(info, tr);
+        }
+
+        private static void fillT(Data info, FastMatrix tr) {
             DataBlock d = tr.subDiagonal(-1);
             d.set(0, info.ar11);
             d.range(1, info.nwaves - 1).set(info.ar21);
@@ -93,6 +99,15 @@ public class WaveSpecificSurveyErrors {
             tr.subDiagonal(-info.nwaves).set(1);
         }
 
+        /**
+         * The (time invariant) transition matrix, computed from the data
+         */
+        private static FastMatrix transition(Data info, int dim) {
+            FastMatrix T = FastMatrix.square(dim);
+            fillT(info, T);
+            return T;
+        }
+
         @Override
         public void TX(int pos, DataBlock x) {
             for (int i = info.nwaves - 1; i > 1; --i) {
@@ -110,6 +125,11 @@ public class WaveSpecificSurveyErrors {
             x.set(0, 0);
         }
 
+        @Override
+        public void TVT(int pos, FastMatrix vm) {
+            transition.TVT(vm);
+        }
+
         @Override
         public void addSU(int pos, DataBlock x, DataBlock u) {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -333,11 +353,11 @@ public class WaveSpecificSurveyErrors {
     static class Dynamics2 implements ISsfDynamics {
 
         private final Data2 info;
-        private double[] tmp;
+        private final SparseTransition transition;
 
         Dynamics2(Data2 info) {
             this.info = info;
-            tmp = new double[info.nwaves()];
+            this.transition = SparseTransition.of(transition(info, info.dim()), info.nwaves());
         }
 
         @Override
@@ -368,6 +388,10 @@ public class WaveSpecificSurveyErrors {
 
         @Override
         public void T(int pos, FastMatrix tr) {
+            fillT(info, tr);
+        }
+
+        private static void fillT(Data2 info, FastMatrix tr) {
             int k = info.nwaves() * (info.lag - 1);
             int nar = info.nar();
             for (int j = 1; j <= nar; ++j, k += info.lag * info.nwaves()) {
@@ -383,12 +407,22 @@ public class WaveSpecificSurveyErrors {
             tr.subDiagonal(-info.nwaves()).set(1);
         }
 
+        /**
+         * The (time invariant) transition matrix, computed from the data
+         */
+        private static FastMatrix transition(Data2 info, int dim) {
+            FastMatrix T = FastMatrix.square(dim);
+            fillT(info, T);
+            return T;
+        }
+
         @Override
         public void TX(int pos, DataBlock x) {
 
             // first iterations
             int start = info.nwaves() * (info.lag - 1), del = info.nwaves() * info.lag - 1;
             int nar = info.nar();
+            double[] tmp = transition.buffer();
             for (int j = 0; j < info.nwaves(); ++j) {
                 int d = Math.min(nar, j);
                 double s = 0;
@@ -402,6 +436,11 @@ public class WaveSpecificSurveyErrors {
             x.range(0, info.nwaves()).copyFrom(tmp, 0);
         }
 
+        @Override
+        public void TVT(int pos, FastMatrix vm) {
+            transition.TVT(vm);
+        }
+
         @Override
         public void addSU(int pos, DataBlock x, DataBlock u) {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -416,6 +455,7 @@ public class WaveSpecificSurveyErrors {
         @Override
         public void XT(int pos, DataBlock x) {
             int nwaves = info.nwaves();
+            double[] tmp = transition.buffer();
             x.range(0, nwaves).copyTo(tmp, 0); // we save the first n waves items
             x.bshift(nwaves);
             int n = info.dim();
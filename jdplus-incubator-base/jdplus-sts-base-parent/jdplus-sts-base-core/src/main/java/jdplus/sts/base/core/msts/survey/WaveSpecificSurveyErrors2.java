@@ -108,11 +108,11 @@ public class WaveSpecificSurveyErrors2 {
     static class Dynamics implements ISsfDynamics {
 
         private final Data info;
-        private final double[] tmp;
+        private final SparseTransition transition;
 
         Dynamics(Data info) {
             this.info = info;
-            tmp = new double[info.nwaves()];
+            this.transition = SparseTransition.of(transition(info, info.dim()), info.nwaves());
         }
 
         @Override
@@ -143,6 +143,10 @@ public class WaveSpecificSurveyErrors2 {
 
         @Override
         public void T(int pos, FastMatrix tr) {
+            fillT(info, tr);
+        }
+
+        private static void fillT(Data info, FastMatrix tr) {
             int k = info.nwaves() * (info.lag - 1);
             int nar = info.nar();
             for (int j = 1; j <= nar; ++j, k += info.lag * info.nwaves()) {
@@ -158,12 +162,22 @@ public class WaveSpecificSurveyErrors2 {
             tr.subDiagonal(-info.nwaves()).set(1);
         }
 
+        /**
+         * The (time invariant) transition matrix, computed from the data
+         */
+        private static FastMatrix transition(Data info, int dim) {
+            FastMatrix T = FastMatrix.square(dim);
+            fillT(info, T);
+            return T;
+        }
+
         @Override
         public void TX(int pos, DataBlock x) {
 
             // first iterations
             int start = info.nwaves() * (info.lag - 1), del = info.nwaves() * info.lag - 1;
             int nar = info.nar();
+            double[] tmp = transition.buffer();
             for (int j = 0; j < info.nwaves(); ++j) {
                 int d = Math.min(nar, j);
                 double s = 0;
@@ -177,6 +191,11 @@ public class WaveSpecificSurveyErrors2 {
             x.range(0, info.nwaves()).copyFrom(tmp, 0);
         }
 
+        @Override
+        public void TVT(int pos, FastMatrix vm) {
+            transition.TVT(vm);
+        }
+
         @Override
         public void addSU(int pos, DataBlock x, DataBlock u) {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -191,6 +210,7 @@ public class WaveSpecificSurveyErrors2 {
         @Override
         public void XT(int pos, DataBlock x) {
             int nwaves = info.nwaves();
+            double[] tmp = transition.buffer();
             x.range(0, nwaves).copyTo(tmp, 0); // we save the first n waves items
             x.bshift(nwaves);
             int n = info.dim();
@@ -110,11 +110,11 @@ public class WaveSpecificSurveyErrors3 {
     static class Dynamics implements ISsfDynamics {
 
         private final Data info;
-        private final double[] tmp;
+        private final SparseTransition transition;
 
         Dynamics(Data info) {
             this.info = info;
-            tmp = new double[info.nwaves()];
+            this.transition = SparseTransition.of(transition(info, info.dim()), info.nwaves());
         }
 
         @Override
@@ -145,6 +145,10 @@ public class WaveSpecificSurveyErrors3 {
 
         @Override
         public void T(int pos, FastMatrix tr) {
+            fillT(info, tr);
+        }
+
+        private static void fillT(Data info, FastMatrix tr) {
             int nw = info.nwaves();
             int k = nw * (info.lag - 1);
             DataBlock d = tr.subDiagonal(k - 1);
@@ -158,11 +162,21 @@ public class WaveSpecificSurveyErrors3 {
             }
         }
 
+        /**
+         * The (time invariant) transition matrix, computed from the data
+         */
+        private static FastMatrix transition(Data info, int dim) {
+            FastMatrix T = FastMatrix.square(dim);
+            fillT(info, T);
+            return T;
+        }
+
         @Override
         public void TX(int pos, DataBlock x) {
             // first iterations
             int nw = info.nwaves();
             int start = nw * (info.lag - 1);
+            double[] tmp = transition.buffer();
             tmp[0] = 0;
             for (int j = 1, k = start; j < nw; ++j, ++k) {
                 tmp[j] = x.get(k) * info.ar[j - 1];
@@ -172,6 +186,11 @@ public class WaveSpecificSurveyErrors3 {
             x.range(0, nw).copyFrom(tmp, 0);
         }
 
+        @Override
+        public void TVT(int pos, FastMatrix vm) {
+            transition.TVT(vm);
+        }
+
         @Override
         public void addSU(int pos, DataBlock x, DataBlock u) {
             throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -187,6 +206,7 @@ public class WaveSpecificSurveyErrors3 {
         public void XT(int pos, DataBlock x) {
             int nwaves = info.nwaves();
             if (info.lag > 1) {
+                double[] tmp = transition.buffer();
                 x.range(0, nwaves).copyTo(tmp, 0); // we save the first n waves items
                 x.bshift(nwaves);
                 int k = nwaves * (info.lag - 1);
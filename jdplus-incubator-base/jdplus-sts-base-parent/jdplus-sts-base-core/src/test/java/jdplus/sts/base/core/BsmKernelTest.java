@@ -21,9 +21,14 @@ import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.toolkit.base.api.data.Parameter;
 import jdplus.sts.base.api.BsmEstimationSpec;
 import jdplus.sts.base.api.BsmSpec;
+import jdplus.sts.base.api.Component;
+import jdplus.toolkit.base.api.math.functions.Optimizer;
 import jdplus.toolkit.base.api.ssf.sts.SeasonalModel;
 import ec.tstoolkit.structural.ComponentUse;
+import jdplus.toolkit.base.core.ssf.dk.SsfFunction;
+import jdplus.toolkit.base.core.ssf.univariate.SsfData;
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  *
@@ -56,6 +61,133 @@ public class BsmKernelTest {
 //        System.out.println(monitor.getLikelihood().ser());
     }
 
+    @Test
+    public void testScoreFunction() {
+        double[] y = DoubleSeq.of(Data.RETAIL_BOOKSTORES).log().toArray();
+        BsmSpec free = BsmSpec.builder()
+                .level(Parameter.undefined(), Parameter.undefined())
+                .seasonal(SeasonalModel.HarrisonStevens)
+                .build();
+        BsmSpec fixed = BsmSpec.builder()
+                .level(Parameter.undefined(), Parameter.fixed(0))
+                .seasonal(SeasonalModel.HarrisonStevens)
+                .build();
+        // log-likelihood: all the variances (l, s, seas, n) are estimated
+        checkScore(y, new BsmMapping(free, 12, null), false,
+                new double[]{.02, .005, .01, .03}, new double[]{.02, 0, .01, .03}, new double[]{0, .005, .02, 0});
+        // scaling: the noise variance is fixed to 1
+        checkScore(y, new BsmMapping(free, 12, Component.Noise), true,
+                new double[]{.5, .1, .3}, new double[]{.5, 0, .3}, new double[]{1.5, .2, 0});
+        // fixed slope variance
+        checkScore(y, new BsmMapping(fixed, 12, Component.Noise), true,
+                new double[]{.5, .3}, new double[]{0, .3});
+        checkScore(y, new BsmMapping(fixed, 12, null), false,
+                new double[]{.02, .01, .03}, new double[]{.02, 0, .03});
+        // no transformation: true derivatives at the boundary (null variances)
+        checkScore(y, new BsmMapping(free, 12, null, BsmMapping.Transformation.None), false,
+                new double[]{.0004, .00003, .0001, .0009}, new double[]{.0004, 0, .0001, 0}, new double[]{0, .00003, 0, .0009});
+        checkScore(y, new BsmMapping(free, 12, Component.Noise, BsmMapping.Transformation.None), true,
+                new double[]{.25, 0, .09}, new double[]{0, .04, 0});
+    }
+
+    /**
+     * Compares the analytic gradient with central differences (one-sided
+     * differences at the boundary of the domain)
+     */
+    private static void checkScore(double[] y, BsmMapping mapping, boolean scaling, double[]... points) {
+        SsfFunction<BsmData, SsfBsm2> fn = SsfFunction.builder(new SsfData(y), mapping, model -> SsfBsm2.of(model))
+                .useFastAlgorithm(true)
+                .useParallelProcessing(false)
+                .useLog(!scaling)
+                .useScalingFactor(scaling)
+                .build();
+        BsmScoreFunction score = new BsmScoreFunction(fn, mapping, y, null, false, scaling);
+        for (double[] p : points) {
+            double[] g = score.evaluate(DoubleSeq.of(p)).derivatives().gradient().toArray();
+            assertEquals(p.length, g.length);
+            for (int k = 0; k < p.length; ++k) {
+                double h = 1e-5 * Math.max(Math.abs(p[k]), 1e-2);
+                double[] q = p.clone();
+                double gn;
+                if (p[k] == 0 && mapping.transformation == BsmMapping.Transformation.None) {
+                    q[k] = h;
+                    double f1 = fn.evaluate(DoubleSeq.of(q)).getValue();
+                    q[k] = 2 * h;
+                    double f2 = fn.evaluate(DoubleSeq.of(q)).getValue();
+                    gn = (-3 * score.evaluate(DoubleSeq.of(p)).getValue() + 4 * f1 - f2) / (2 * h);
+                } else {
+                    q[k] = p[k] + h;
+                    double f1 = fn.evaluate(DoubleSeq.of(q)).getValue();
+                    q[k] = p[k] - h;
+                    double f0 = fn.evaluate(DoubleSeq.of(q)).getValue();
+                    gn = (f1 - f0) / (2 * h);
+                }
+                assertEquals(gn, g[k], 1e-3 * Math.max(1, Math.abs(gn)));
+            }
+        }
+    }
+
+    @Test
+    public void testAnalyticGradient() {
+        BsmSpec mspec = BsmSpec.builder()
+                .level(Parameter.undefined(), Parameter.undefined())
+                .seasonal(SeasonalModel.Crude)
+                .build();
+        DoubleSeq y = DoubleSeq.of(Data.RETAIL_BOOKSTORES);
+        for (Optimizer opt : new Optimizer[]{Optimizer.BFGS, Optimizer.LBFGS}) {
+            BsmEstimationSpec espec = BsmEstimationSpec.builder()
+                    .optimizer(opt)
+                    .build();
+            BsmKernel numerical = new BsmKernel(espec);
+            numerical.process(y, 12, mspec);
+            BsmKernel analytic = new BsmKernel(espec.toBuilder().analyticGradient(true).build());
+            analytic.process(y, 12, mspec);
+            double ll0 = numerical.getLikelihood().logLikelihood(), ll1 = analytic.getLikelihood().logLikelihood();
+            assertEquals(ll0, ll1, 1e-4 * Math.abs(ll0));
+        }
+    }
+
+    @Test
+    public void testParallelProcessing() {
+        BsmSpec[] specs = new BsmSpec[]{
+            BsmSpec.builder()
+            .level(Parameter.undefined(), Parameter.undefined())
+            .seasonal(SeasonalModel.HarrisonStevens)
+            .build(),
+            BsmSpec.builder()
+            .level(Parameter.undefined(), Parameter.undefined())
+            .seasonal(SeasonalModel.Trigonometric)
+            .cycle(true)
+            .build(),
+            BsmSpec.builder()
+            .level(Parameter.undefined(), Parameter.fixed(0))
+            .seasonal(SeasonalModel.Crude)
+            .build()
+        };
+        DoubleSeq[] series = new DoubleSeq[]{DoubleSeq.of(Data.RETAIL_BOOKSTORES), DoubleSeq.of(Data.PROD).log()};
+        for (boolean scaling : new boolean[]{true, false}) {
+            BsmEstimationSpec espec = BsmEstimationSpec.builder()
+                    .scalingFactor(scaling)
+                    .build();
+            for (BsmSpec mspec : specs) {
+                for (DoubleSeq y : series) {
+                    BsmKernel sequential = new BsmKernel(espec);
+                    boolean ok = sequential.process(y, 12, mspec);
+                    BsmKernel parallel = new BsmKernel(espec.toBuilder().parallelProcessing(true).build());
+                    assertEquals(ok, parallel.process(y, 12, mspec));
+                    if (!ok) {
+                        continue;
+                    }
+                    // same selected model, same parameters
+                    assertEquals(sequential.finalSpecification(false), parallel.finalSpecification(false));
+                    assertEquals(sequential.result(false), parallel.result(false));
+                    assertEquals(sequential.getLikelihood().logLikelihood(), parallel.getLikelihood().logLikelihood(), 0);
+                    assertEquals(sequential.hasConverged(), parallel.hasConverged());
+                }
+            }
+        }
+    }
+
     @Test
     public void testProdNoScaling() {
 //        BsmKernel monitor = new BsmKernel();
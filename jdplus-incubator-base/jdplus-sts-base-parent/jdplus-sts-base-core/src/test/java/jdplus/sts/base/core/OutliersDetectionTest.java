@@ -8,6 +8,8 @@ package jdplus.sts.base.core;
 import tck.demetra.data.Data;
 import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.sts.base.api.BsmSpec;
+import jdplus.sts.base.api.Component;
+import jdplus.toolkit.base.api.data.Parameter;
 import jdplus.toolkit.base.api.ssf.sts.SeasonalModel;
 import jdplus.toolkit.base.api.timeseries.TsPeriod;
 import jdplus.toolkit.base.api.timeseries.calendars.DayClustering;
@@ -31,6 +33,7 @@ import jdplus.toolkit.base.core.ssf.univariate.DefaultSmoothingResults;
 import jdplus.toolkit.base.core.ssf.univariate.Ssf;
 import jdplus.toolkit.base.core.ssf.univariate.SsfData;
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  *
@@ -108,6 +111,50 @@ public class OutliersDetectionTest {
 //        System.out.println(DoubleSeq.of(A));
     }
 
+    @Test
+    public void testDegenerateBlocks() {
+        // fixed (zero) level variance: singular blocks for LS
+        BsmSpec spec = BsmSpec.builder()
+                .level(Parameter.fixed(0), Parameter.undefined())
+                .seasonal(SeasonalModel.HarrisonStevens)
+                .build();
+        BsmData model = new BsmData(spec, 12);
+        SsfData data = new SsfData(DoubleSeq.of(Data.PROD).log());
+        SmoothationsComputer computer = new SmoothationsComputer();
+        computer.process(SsfBsm.of(model), data);
+        int[] sel = new int[]{SsfBsm.searchPosition(model, Component.Noise),
+            SsfBsm.searchPosition(model, Component.Level),
+            SsfBsm.searchPosition(model, Component.Seasonal)};
+        int imax = -1, jmax = -1;
+        double smax = 0, tmax = 0;
+        for (int i = 0; i < data.length(); ++i) {
+            DataBlock R = computer.R(i);
+            FastMatrix Rvar = computer.Rvar(i);
+            double s = OutliersDetection.quadraticForm(R, Rvar, sel, 3);
+            // previous computation
+            double t;
+            try {
+                FastMatrix S = MatrixFactory.select(Rvar, sel, sel);
+                DataBlock ur = DataBlock.select(R, sel);
+                SymmetricMatrix.lcholesky(S, 1e-9);
+                LowerTriangularMatrix.solveLx(S, ur, 1e-9);
+                t = ur.ssq();
+            } catch (Exception err) {
+                t = -1;
+            }
+            assertEquals(t, s, 1e-9 * Math.max(1, Math.abs(t)));
+            if (s > smax) {
+                smax = s;
+                imax = i;
+            }
+            if (t > tmax) {
+                tmax = t;
+                jmax = i;
+            }
+        }
+        assertEquals(jmax, imax);
+    }
+
     public static void main(String[] args) {
         stressTest();
     }
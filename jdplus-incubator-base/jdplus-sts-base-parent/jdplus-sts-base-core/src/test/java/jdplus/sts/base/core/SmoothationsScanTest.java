@@ -0,0 +1,122 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package jdplus.sts.base.core;
+
+import jdplus.sts.base.api.BsmEstimationSpec;
+import jdplus.sts.base.api.BsmSpec;
+import jdplus.sts.base.api.Component;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.ssf.sts.SeasonalModel;
+import jdplus.toolkit.base.api.timeseries.TsPeriod;
+import jdplus.toolkit.base.api.timeseries.calendars.DayClustering;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.modelling.regression.GenericTradingDaysFactory;
+import jdplus.toolkit.base.core.ssf.akf.SmoothationsComputer;
+import jdplus.toolkit.base.core.ssf.basic.RegSsf;
+import jdplus.toolkit.base.core.ssf.univariate.Ssf;
+import jdplus.toolkit.base.core.ssf.univariate.SsfData;
+import org.junit.jupiter.api.Test;
+import tck.demetra.data.Data;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Jean Palate
+ */
+public class SmoothationsScanTest {
+
+    public SmoothationsScanTest() {
+    }
+
+    @Test
+    public void testProd() {
+        DoubleSeq y = DoubleSeq.of(Data.PROD).log();
+        compare(y, null);
+        compare(y, td(y.length()));
+    }
+
+    @Test
+    public void testProdOutliers() {
+        double[] A = Data.PROD.clone();
+        A[14] *= 1.3;
+        A[55] *= .7;
+        DoubleSeq y = DoubleSeq.of(A).log();
+        int pos = compare(y, null);
+        assertTrue(pos == 14 || pos == 55);
+        pos = compare(y, td(y.length()));
+        assertTrue(pos == 14 || pos == 55);
+    }
+
+    private static FastMatrix td(int n) {
+        FastMatrix days = FastMatrix.make(n, 7);
+        GenericTradingDaysFactory.fillTradingDaysMatrix(TsPeriod.monthly(1967, 1), false, days);
+        return GenericTradingDaysFactory.generateContrasts(DayClustering.TD3, days);
+    }
+
+    /**
+     * Compares the smoothations of SmoothationsScan with those of the
+     * toolkit, position by position, and the positions of the largest joint
+     * AO/LS/SO statistics
+     *
+     * @return The position of the largest statistic
+     */
+    private static int compare(DoubleSeq y, FastMatrix W) {
+        BsmSpec spec = BsmSpec.builder()
+                .seasonal(SeasonalModel.HarrisonStevens)
+                .build();
+        BsmKernel kernel = new BsmKernel(BsmEstimationSpec.builder()
+                .diffuseRegression(true)
+                .build());
+        assertTrue(kernel.process(y, W, 12, spec));
+        BsmData model = kernel.result(true);
+        SsfBsm ssf = SsfBsm.of(model);
+        Ssf wssf = W == null ? ssf : RegSsf.ssf(ssf, W);
+        SsfData data = new SsfData(y);
+        int n = data.length(), dim = wssf.getStateDim();
+
+        SmoothationsComputer computer = new SmoothationsComputer();
+        computer.process(wssf, data);
+        double sig2 = computer.getFilteringResults().var();
+
+        int[] sel = new int[]{SsfBsm.searchPosition(model, Component.Noise),
+            SsfBsm.searchPosition(model, Component.Level),
+            SsfBsm.searchPosition(model, Component.Seasonal)};
+        double[] stats = new double[n];
+        SmoothationsScan scan = new SmoothationsScan(wssf, data);
+        scan.process((i, R, N) -> {
+            DataBlock Rc = computer.R(i);
+            FastMatrix Nc = computer.Rvar(i);
+            // the smoothations of the diffuse period are defined differently
+            // in the augmented smoother
+            if (i >= dim) {
+                assertTrue(R.distance(Rc) < 1e-6 * Math.max(1, Rc.norm2()));
+                for (int c = 0; c < dim; ++c) {
+                    assertTrue(N.column(c).distance(Nc.column(c)) < 1e-6 * Math.max(1, Nc.column(c).norm2()));
+                }
+            }
+            stats[i] = OutliersDetection.quadraticForm(R, N, sel, 3) / sig2;
+        });
+        assertEquals(sig2, scan.var(), 1e-9 * sig2);
+
+        int imax = -1, jmax = -1;
+        double smax = 0, tmax = 0;
+        for (int i = 0; i < n; ++i) {
+            double t = OutliersDetection.quadraticForm(computer.R(i), computer.Rvar(i), sel, 3) / sig2;
+            if (stats[i] > smax) {
+                smax = stats[i];
+                imax = i;
+            }
+            if (t > tmax) {
+                tmax = t;
+                jmax = i;
+            }
+        }
+        assertEquals(jmax, imax);
+        assertEquals(tmax, smax, 1e-6 * tmax);
+        return imax;
+    }
+}
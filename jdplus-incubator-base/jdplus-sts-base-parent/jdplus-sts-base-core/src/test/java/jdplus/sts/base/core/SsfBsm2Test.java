@@ -16,8 +16,12 @@
  */
 package jdplus.sts.base.core;
 
+import java.util.Random;
 import tck.demetra.data.Data;
 import jdplus.sts.base.api.BsmSpec;
+import jdplus.toolkit.base.api.ssf.sts.SeasonalModel;
+import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.ssf.ISsfDynamics;
 import jdplus.toolkit.base.core.ssf.StateStorage;
 import jdplus.toolkit.base.core.ssf.akf.AkfToolkit;
 import jdplus.toolkit.base.core.ssf.ckms.CkmsToolkit;
@@ -148,6 +152,86 @@ public class SsfBsm2Test {
         assertTrue(rslt.getComponent(0).distance(fs.getComponent(0)) < 1e-6);
     }
 
+    @Test
+    public void testTVT() {
+        Random rnd = new Random(0);
+        for (int period : new int[]{4, 12, 52}) {
+            for (SeasonalModel sm : new SeasonalModel[]{SeasonalModel.Dummy, SeasonalModel.Crude, SeasonalModel.HarrisonStevens, SeasonalModel.Trigonometric}) {
+                for (int k = 0; k < 4; ++k) {
+                    BsmData model = BsmData.builder(period)
+                            .levelVar(1)
+                            .slopeVar((k & 1) == 0 ? .1 : -1)
+                            .cycleVar((k & 2) == 0 ? .5 : -1)
+                            .seasonalVar(.2)
+                            .seasonalModel(sm)
+                            .noiseVar(1)
+                            .build();
+                    checkTVT(SsfBsm2.of(model).dynamics(), SsfBsm2.of(model).getStateDim(), rnd);
+                    checkTVT(SsfBsm.of(model).dynamics(), SsfBsm.of(model).getStateDim(), rnd);
+                }
+            }
+        }
+    }
+
+    private static void checkTVT(ISsfDynamics dynamics, int dim, Random rnd) {
+        FastMatrix V = FastMatrix.square(dim);
+        for (int i = 0; i < dim; ++i) {
+            for (int j = 0; j <= i; ++j) {
+                double x = rnd.nextDouble();
+                V.set(i, j, x);
+                V.set(j, i, x);
+            }
+        }
+        // generic path
+        FastMatrix G = V.deepClone();
+        for (int j = 0; j < dim; ++j) {
+            dynamics.TX(0, G.column(j));
+        }
+        for (int i = 0; i < dim; ++i) {
+            dynamics.TX(0, G.row(i));
+        }
+        // explicit transition matrix
+        FastMatrix T = FastMatrix.square(dim);
+        dynamics.T(0, T);
+        FastMatrix E = FastMatrix.square(dim);
+        for (int i = 0; i < dim; ++i) {
+            for (int j = 0; j < dim; ++j) {
+                double s = 0;
+                for (int k = 0; k < dim; ++k) {
+                    for (int l = 0; l < dim; ++l) {
+                        s += T.get(i, k) * V.get(k, l) * T.get(j, l);
+                    }
+                }
+                E.set(i, j, s);
+            }
+        }
+        FastMatrix S = V.deepClone();
+        dynamics.TVT(0, S);
+        for (int i = 0; i < dim; ++i) {
+            for (int j = 0; j < dim; ++j) {
+                assertEquals(G.get(i, j), S.get(i, j), 1e-9);
+                assertEquals(E.get(i, j), S.get(i, j), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testDummy() {
+        BsmData model = BsmData.builder(12)
+                .levelVar(1)
+                .slopeVar(.1)
+                .seasonalVar(.5)
+                .seasonalModel(SeasonalModel.Dummy)
+                .noiseVar(2)
+                .build();
+        SsfData data = new SsfData(Data.EXPORTS);
+        DiffuseLikelihood ll = DkToolkit.likelihoodComputer(true, true, true).compute(SsfBsm2.of(model), data);
+        DiffuseLikelihood ll2 = DkToolkit.likelihoodComputer(true, true, true).compute(SsfBsm.of(model), data);
+        DiffuseLikelihood ll3 = CkmsToolkit.likelihoodComputer(true).compute(SsfBsm2.of(model), data);
+        assertEquals(ll.logLikelihood(), ll2.logLikelihood(), 1e-6);
+        assertEquals(ll.logLikelihood(), ll3.logLikelihood(), 1e-6);
+    }
+
     public static void stressTestBsm() {
         SsfData data = new SsfData(Data.EXPORTS);
         long t0 = System.currentTimeMillis();
@@ -12,8 +12,21 @@ import jdplus.toolkit.base.api.ssf.SsfInitialization;
 import jdplus.toolkit.base.core.math.matrices.FastMatrix;
 import jdplus.toolkit.base.api.timeseries.TsData;
 import jdplus.toolkit.base.api.timeseries.TsPeriod;
+import jdplus.toolkit.base.core.ssf.StateInfo;
 import jdplus.toolkit.base.core.ssf.StateStorage;
+import jdplus.toolkit.base.core.ssf.akf.AkfToolkit;
+import jdplus.toolkit.base.core.ssf.composite.MultivariateCompositeSsf;
+import jdplus.toolkit.base.core.ssf.dk.DkToolkit;
+import jdplus.toolkit.base.core.ssf.dk.sqrt.DefaultDiffuseSquareRootFilteringResults;
+import jdplus.toolkit.base.core.ssf.likelihood.DiffuseLikelihood;
+import jdplus.toolkit.base.core.ssf.multivariate.M2uAdapter;
+import jdplus.toolkit.base.core.ssf.multivariate.SsfMatrix;
+import jdplus.toolkit.base.core.ssf.univariate.ISsfData;
+import jdplus.toolkit.base.core.ssf.univariate.StateFilteringResults;
+import java.util.Random;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  *
@@ -127,6 +140,189 @@ public class CompositeModelTest {
 //        System.out.println(rslt.getLikelihood().factor());
     }
 
+    @Test
+    public void testParallelism() {
+        int len = VAT_NOBUG.length;
+        FastMatrix M = FastMatrix.make(len, 1);
+        M.column(0).copyFrom(VAT_NOBUG, 0);
+        M.column(0).normalize();
+        M.mul(10);
+        double[] ll = new double[2];
+        DoubleSeq[] p = new DoubleSeq[2];
+        int[] parallelism = {1, 4};
+        for (int k = 0; k < 2; ++k) {
+            StateItem l = AtomicModels.localLinearTrend("l", .01, .01, false, false);
+            StateItem seas = AtomicModels.seasonalComponent("s", "HarrisonStevens", 4, 0.1, false);
+            StateItem n = AtomicModels.noise("n", 1, false);
+            CompositeModel model = new CompositeModel();
+            model.add(l);
+            model.add(seas);
+            model.add(n);
+            ModelEquation eq = new ModelEquation("eq", 0, true);
+            eq.add(l);
+            eq.add(seas);
+            eq.add(n);
+            model.add(eq);
+            MstsMonitor monitor = MstsMonitor.builder()
+                    .concentratedLikelihood(false)
+                    .initialization(SsfInitialization.SqrtDiffuse)
+                    .precision(1e-12)
+                    .parallelism(parallelism[k])
+                    .build();
+            monitor.process(M, model.mapping(), null);
+            ll[k] = monitor.getLikelihood().logLikelihood();
+            p[k] = monitor.fullParameters();
+        }
+        assertEquals(ll[0], ll[1], 1e-9);
+        assertTrue(p[0].distance(p[1]) < 1e-6);
+    }
+
+    @Test
+    public void testParallelismSmallVariances() {
+        // deterministic trend and seasonal: the variances of the level, of the
+        // slope and of the seasonal component are small
+        int len = 120;
+        Random rnd = new Random(0);
+        FastMatrix M = FastMatrix.make(len, 1);
+        for (int i = 0; i < len; ++i) {
+            M.set(i, 0, 10 + .05 * i + (i % 4 == 0 ? 1 : i % 4 == 2 ? -1 : 0) + rnd.nextGaussian());
+        }
+        double[] ll = new double[2];
+        DoubleSeq[] p = new DoubleSeq[2];
+        String[] fixed = new String[2];
+        int[] parallelism = {1, 4};
+        for (int k = 0; k < 2; ++k) {
+            StateItem l = AtomicModels.localLinearTrend("l", .01, .01, false, false);
+            StateItem seas = AtomicModels.seasonalComponent("s", "HarrisonStevens", 4, 0.1, false);
+            StateItem n = AtomicModels.noise("n", 1, false);
+            CompositeModel model = new CompositeModel();
+            model.add(l);
+            model.add(seas);
+            model.add(n);
+            ModelEquation eq = new ModelEquation("eq", 0, true);
+            eq.add(l);
+            eq.add(seas);
+            eq.add(n);
+            model.add(eq);
+            MstsMapping mapping = model.mapping();
+            MstsMonitor monitor = MstsMonitor.builder()
+                    .concentratedLikelihood(false)
+                    .initialization(SsfInitialization.SqrtDiffuse)
+                    .precision(1e-12)
+                    .parallelism(parallelism[k])
+                    .build();
+            monitor.process(M, mapping, null);
+            ll[k] = monitor.getLikelihood().logLikelihood();
+            p[k] = monitor.fullParameters();
+            fixed[k] = mapping.parameters()
+                    .filter(q -> q instanceof VarianceInterpreter && q.isFixed())
+                    .map(q -> q.getName())
+                    .collect(Collectors.joining(","));
+        }
+        assertEquals(fixed[0], fixed[1]);
+        assertEquals(ll[0], ll[1], 1e-9);
+        assertTrue(p[0].distance(p[1]) < 1e-6);
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        int len = VAT_NOBUG.length;
+        FastMatrix M = FastMatrix.make(len, 2);
+        M.column(0).copyFrom(VAT_NOBUG, 0);
+        M.column(0).normalize();
+        M.column(1).copy(M.column(0));
+        M.column(1).mul(.5);
+        for (int i = 0; i < len; i += 7) {
+            M.set(i, i % 2, Double.NaN);
+        }
+        StateItem l = AtomicModels.localLinearTrend("l", .01, .01, false, false);
+        StateItem seas = AtomicModels.seasonalComponent("s", "HarrisonStevens", 4, 0.1, false);
+        CompositeModel model = new CompositeModel();
+        model.add(l);
+        model.add(seas);
+        ModelEquation eq1 = new ModelEquation("eq1", .1, false);
+        eq1.add(l);
+        eq1.add(seas);
+        model.add(eq1);
+        ModelEquation eq2 = new ModelEquation("eq2", .2, false);
+        eq2.add(l);
+        model.add(eq2);
+        CompositeModelEstimation rslt = model.estimate(M, false, true, SsfInitialization.SqrtDiffuse, Optimizer.LevenbergMarquardt, 1e-9, null);
+        StateStorage full = rslt.getSmoothedStates();
+        StateStorage ffull = rslt.getFilteringStates();
+        StateStorage cfull = rslt.getFilteredStates();
+        // segments of 1 period
+        rslt.setMemoryBudget(1);
+        StateStorage bounded = rslt.getSmoothedStates();
+        StateStorage fbounded = rslt.getFilteringStates();
+        StateStorage cbounded = rslt.getFilteredStates();
+        // concurrent estimates of the toolkit (defined in the diffuse periods too)
+        StateFilteringResults fr = new StateFilteringResults(StateInfo.Concurrent, true);
+        ISsfData udata = M2uAdapter.of(new SsfMatrix(M));
+        fr.prepare(rslt.getSsf().getStateDim(), 0, udata.length());
+        DkToolkit.sqrtFilter(M2uAdapter.of(rslt.getSsf()), udata, fr, true);
+        for (int i = 0; i < len; ++i) {
+            assertTrue(full.a(i).distance(bounded.a(i)) < 1e-6);
+            FastMatrix P = full.P(i), Q = bounded.P(i);
+            for (int j = 0; j < P.getColumnsCount(); ++j) {
+                assertTrue(P.column(j).distance(Q.column(j)) < 1e-6);
+            }
+            if (!Double.isNaN(ffull.a(i).get(0))) {
+                assertTrue(ffull.a(i).distance(fbounded.a(i)) < 1e-6);
+            }
+            assertTrue(cfull.a(i).distance(cbounded.a(i)) < 1e-6);
+            assertTrue(cfull.a(i).distance(fr.a(2 * i + 1)) < 1e-6);
+        }
+    }
+
+    @Test
+    public void testNativeFilter() {
+        int len = VAT_NOBUG.length;
+        FastMatrix M = FastMatrix.make(len, 2);
+        M.column(0).copyFrom(VAT_NOBUG, 0);
+        M.column(0).normalize();
+        M.column(1).copy(M.column(0));
+        M.column(1).mul(.5);
+        for (int i = 0; i < len; i += 5) {
+            M.set(i, i % 2, Double.NaN);
+        }
+        StateItem l = AtomicModels.localLinearTrend("l", .01, .01, false, false);
+        StateItem seas = AtomicModels.seasonalComponent("s", "HarrisonStevens", 4, 0.1, false);
+        CompositeModel model = new CompositeModel();
+        model.add(l);
+        model.add(seas);
+        ModelEquation eq1 = new ModelEquation("eq1", .1, false);
+        eq1.add(l);
+        eq1.add(seas);
+        model.add(eq1);
+        ModelEquation eq2 = new ModelEquation("eq2", .2, false);
+        eq2.add(l);
+        model.add(eq2);
+        CompositeModelEstimation rslt = model.estimate(M, false, true, SsfInitialization.SqrtDiffuse, Optimizer.LevenbergMarquardt, 1e-9, null);
+        MultivariateCompositeSsf mssf = rslt.getSsf();
+        CheckpointedSmoother cs = new CheckpointedSmoother(mssf, M);
+        // likelihood
+        DiffuseLikelihood nll = cs.likelihood(true);
+        DiffuseLikelihood dll = DkToolkit.likelihood(mssf, new SsfMatrix(M), true, false);
+        assertEquals(dll.logLikelihood(), nll.logLikelihood(), 1e-9);
+        // smoothed states
+        StateStorage ss = cs.smooth(Long.MAX_VALUE);
+        StateStorage tss = AkfToolkit.robustSmooth(mssf, new SsfMatrix(M), true, false);
+        // filtered states (forecasts)
+        StateStorage fs = cs.filter(false);
+        DefaultDiffuseSquareRootFilteringResults fr = DkToolkit.sqrtFilter(M2uAdapter.of(mssf), M2uAdapter.of(new SsfMatrix(M)), true);
+        for (int i = 0; i < len; ++i) {
+            assertTrue(ss.a(i).distance(tss.a(i)) < 1e-6);
+            FastMatrix P = ss.P(i), Q = tss.P(i);
+            for (int j = 0; j < P.getColumnsCount(); ++j) {
+                assertTrue(P.column(j).distance(Q.column(j)) < 1e-6);
+            }
+            if (!Double.isNaN(fs.a(i).get(0))) {
+                assertTrue(fs.a(i).distance(fr.a(2 * i)) < 1e-6);
+            }
+        }
+    }
+
     @Test
     public void testVAT() {
         CompositeModel model = new CompositeModel();
@@ -6,7 +6,10 @@
 package jdplus.sts.base.core.msts.survey;
 
 import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.api.math.matrices.Matrix;
 import jdplus.toolkit.base.core.math.matrices.FastMatrix;
+import jdplus.toolkit.base.core.ssf.ISsfDynamics;
+import jdplus.toolkit.base.core.ssf.StateComponent;
 import org.junit.jupiter.api.Test;
 
 import java.util.Random;
@@ -153,6 +156,56 @@ public class WaveSpecificSurveyErrorsTest {
         xt(new double[][]{new double[0], new double[]{.3}, new double[]{.2, .4}}, 3);
     }
 
+    @Test
+    public void testTVT() {
+        WaveSpecificSurveyErrors.Data data = new WaveSpecificSurveyErrors.Data(.3, .4, .2, 8);
+        tvt(new WaveSpecificSurveyErrors.Dynamics(data), 16);
+        double[][] ar = new double[][]{new double[0], new double[]{.3}, new double[]{.2, .4}, new double[]{.2, .4}};
+        WaveSpecificSurveyErrors.Data2 data2 = new WaveSpecificSurveyErrors.Data2(ar, 3);
+        tvt(new WaveSpecificSurveyErrors.Dynamics2(data2), data2.dim());
+        StateComponent cmp2 = WaveSpecificSurveyErrors2.of(new double[]{1, 2, 3, 4}, ar, 3);
+        tvt(cmp2.dynamics(), cmp2.initialization().getStateDim());
+        Matrix M = Matrix.of(new double[]{1, 1, 1, 1, 1}, 1, 5);
+        for (int lag = 1; lag <= 3; ++lag) {
+            StateComponent cmp3 = WaveSpecificSurveyErrors3.of(new double[]{1, 2, 3, 4, 5}, new double[]{.2, .3, .4, .5}, M, lag);
+            tvt(cmp3.dynamics(), cmp3.initialization().getStateDim());
+        }
+    }
+
+    private void tvt(ISsfDynamics dyn, int dim) {
+        FastMatrix T = FastMatrix.square(dim);
+        dyn.T(0, T);
+        Random rnd = new Random(0);
+        FastMatrix X = FastMatrix.square(dim);
+        for (int j = 0; j < dim; ++j) {
+            X.column(j).set((DoubleSupplier) rnd::nextDouble);
+        }
+        FastMatrix V = FastMatrix.square(dim);
+        // V = X*X'
+        for (int i = 0; i < dim; ++i) {
+            for (int j = 0; j < dim; ++j) {
+                V.set(i, j, X.row(i).dot(X.row(j)));
+            }
+        }
+        // TV = T*V
+        FastMatrix TV = FastMatrix.square(dim);
+        for (int i = 0; i < dim; ++i) {
+            for (int j = 0; j < dim; ++j) {
+                TV.set(i, j, T.row(i).dot(V.column(j)));
+            }
+        }
+        FastMatrix TVT = FastMatrix.square(dim);
+        for (int i = 0; i < dim; ++i) {
+            for (int j = 0; j < dim; ++j) {
+                TVT.set(i, j, TV.row(i).dot(T.row(j)));
+            }
+        }
+        dyn.TVT(0, V);
+        for (int j = 0; j < dim; ++j) {
+            assertTrue(V.column(j).distance(TVT.column(j)) < 1e-9);
+        }
+    }
+
     //@Test
     public void stressTest() {
         double[][] ar = new double[][]{new double[0], new double[]{.3}, new double[]{2}, new double[]{.4}};
@@ -39,6 +39,8 @@ import jdplus.sts.base.core.BsmData;
 import jdplus.sts.base.core.SsfBsm;
 import jdplus.sts.base.core.BsmKernel;
 import jdplus.sts.base.core.BsmMapping;
+import jdplus.sts.base.core.BsmPanelKernel;
+import jdplus.sts.base.core.BsmPanelResults;
 import jdplus.sts.base.core.StsKernel;
 import jdplus.toolkit.base.api.math.matrices.Matrix;
 
@@ -104,6 +106,53 @@ public class Bsm {
                 .build();
     }
     
+    /**
+     * Estimation of the same model on a panel of series (columns of y)
+     *
+     * @param y
+     * @param period
+     * @param level
+     * @param slope
+     * @param cycle
+     * @param noise
+     * @param seasmodel
+     * @param tol
+     * @param warmStart Starts from the median parameters of a sample of the
+     * panel
+     * @param components Computes the smoothed components
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @return
+     */
+    public BsmPanelResults processPanel(Matrix y, int period, int level, int slope, int cycle, int noise, String seasmodel, double tol, boolean warmStart, boolean components, int nthreads) {
+        double[][] all = new double[y.getColumnsCount()][];
+        for (int i = 0; i < all.length; ++i) {
+            all[i] = y.column(i).toArray();
+        }
+        return processPanel(all, period, level, slope, cycle, noise, seasmodel, tol, warmStart, components, nthreads);
+    }
+
+    public BsmPanelResults processPanel(double[][] y, int period, int level, int slope, int cycle, int noise, String seasmodel, double tol, boolean warmStart, boolean components, int nthreads) {
+        SeasonalModel sm = period == 1 || seasmodel == null || seasmodel.equalsIgnoreCase("none") ? null : SeasonalModel.valueOf(seasmodel);
+        BsmSpec mspec = BsmSpec.builder()
+                .level(of(level), of(slope))
+                .cycle(cycle != -1)
+                .noise(of(noise))
+                .seasonal(sm)
+                .build();
+
+        BsmEstimationSpec espec = BsmEstimationSpec.builder()
+                .precision(tol)
+                .build();
+        return BsmPanelKernel.builder()
+                .estimationSpec(espec)
+                .warmStart(warmStart)
+                .components(components)
+                .nthreads(nthreads)
+                .build()
+                .process(y, period, mspec);
+    }
+
     public byte[] toBuffer(LightBasicStructuralModel.Estimation estimation){
         return StsProtosUtility.convert(estimation).toByteArray();
     }
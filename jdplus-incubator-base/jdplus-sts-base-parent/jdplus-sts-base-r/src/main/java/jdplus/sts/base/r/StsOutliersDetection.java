@@ -22,8 +22,12 @@ import jdplus.toolkit.base.api.ssf.sts.SeasonalModel;
 import jdplus.sts.base.io.outliers.protobuf.StsOutliersProtos;
 import jdplus.toolkit.base.api.timeseries.TsData;
 import jdplus.toolkit.base.protobuf.toolkit.ToolkitProtosUtility;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import jdplus.toolkit.base.core.data.DataBlock;
 import jdplus.toolkit.base.core.stats.likelihood.DiffuseConcentratedLikelihood;
 import jdplus.toolkit.base.core.math.matrices.FastMatrix;
@@ -372,12 +376,111 @@ public class StsOutliersDetection {
     }
 
     public double[] seasonalBreaks(double[] y, int period, int level, int slope, int noise, String seasmodel, Matrix x) {
+        return seasonalBreaks(y, period, level, slope, noise, seasmodel, x, false);
+    }
+
+    /**
+     * Seasonal breaks statistics
+     *
+     * @param y
+     * @param period
+     * @param level
+     * @param slope
+     * @param noise
+     * @param seasmodel
+     * @param x
+     * @param parallel The statistics of the different positions are computed
+     * in parallel, on the common pool
+     * @return
+     */
+    public double[] seasonalBreaks(double[] y, int period, int level, int slope, int noise, String seasmodel, Matrix x, boolean parallel) {
+        return seasonalBreaks(y, period, breaksSpec(level, slope, noise, seasmodel), x, parallel);
+    }
+
+    @lombok.Value
+    @lombok.Builder
+    public static class SeasonalBreaks {
+
+        public static final int OK = 0, FAILED = 1;
+
+        /**
+         * Statistics for each position (nobs x nseries). The columns of the
+         * series that couldn't be processed are filled with missing values
+         */
+        Matrix statistics;
+        /**
+         * Status of the processing of each series (OK or FAILED)
+         */
+        int[] status;
+        /**
+         * Reason of the failure of each series (null for the series that have
+         * been processed)
+         */
+        String[] messages;
+    }
+
+    /**
+     * Seasonal breaks statistics for a panel of series (in columns)
+     *
+     * @param y The series
+     * @param period
+     * @param level
+     * @param slope
+     * @param noise
+     * @param seasmodel
+     * @param x Regression variables, common to all the series (may be null)
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @return
+     */
+    public SeasonalBreaks seasonalBreaks(Matrix y, int period, int level, int slope, int noise, String seasmodel, Matrix x, int nthreads) {
+        int n = y.getRowsCount(), m = y.getColumnsCount();
+        BsmSpec mspec = breaksSpec(level, slope, noise, seasmodel);
+        double[] all = new double[n * m];
+        int[] status = new int[m];
+        String[] messages = new String[m];
+        IntConsumer fn = i -> {
+            double[] s = null;
+            try {
+                s = seasonalBreaks(y.column(i).toArray(), period, mspec, x, false);
+                if (s == null) {
+                    messages[i] = "bsm estimation failed";
+                }
+            } catch (RuntimeException err) {
+                messages[i] = err.getMessage() == null ? err.toString() : err.getMessage();
+            }
+            if (s == null) {
+                status[i] = SeasonalBreaks.FAILED;
+                Arrays.fill(all, i * n, (i + 1) * n, Double.NaN);
+            } else {
+                System.arraycopy(s, 0, all, i * n, n);
+            }
+        };
+        ForkJoinPool pool = nthreads > 0 ? new ForkJoinPool(nthreads) : ForkJoinPool.commonPool();
+        try {
+            pool.submit(() -> IntStream.range(0, m).parallel().forEach(fn)).join();
+        } finally {
+            if (nthreads > 0) {
+                pool.shutdown();
+            }
+        }
+        return SeasonalBreaks.builder()
+                .statistics(Matrix.of(all, n, m))
+                .status(status)
+                .messages(messages)
+                .build();
+    }
+
+    private BsmSpec breaksSpec(int level, int slope, int noise, String seasmodel) {
         SeasonalModel sm = SeasonalModel.valueOf(seasmodel);
-        BsmSpec mspec = BsmSpec.builder()
+        return BsmSpec.builder()
                 .seasonal(sm)
                 .level(of(level), of(slope))
                 .noise(of(noise))
                 .build();
+    }
+
+    private double[] seasonalBreaks(double[] y, int period, BsmSpec mspec, Matrix x, boolean parallel) {
         BsmEstimationSpec espec = BsmEstimationSpec.builder()
                 .diffuseRegression(true)
                 .build();
@@ -389,18 +492,16 @@ public class StsOutliersDetection {
         BsmData bsm = monitor.result(true);
 
         Ssf ssf = SsfBsm.of(bsm);
-        int nx = 0;
 
         if (x != null) {
             ssf = RegSsf.ssf(ssf, X);
-            nx = X.getColumnsCount();
         }
         SsfData data = new SsfData(DoubleSeq.of(y));
         int n = data.length();
         SmoothingOutput output = AkfToolkit.robustSmooth(ssf, data, true, false);
-        DefaultSmoothingResults sd=output.getSmoothing();
+        DefaultSmoothingResults sd = output.getSmoothing();
         double sig2 = output.getSig2();
- 
+
         int spos = 0;
         if (bsm.getNoiseVar() != 0) {
             ++spos;
@@ -411,21 +512,25 @@ public class StsOutliersDetection {
         if (mspec.hasSlope()) {
             ++spos;
         }
+        int start = spos;
         double[] s = new double[n];
-        for (int i = 0; i < n; ++i) {
+        // the statistics are independent: they are computed by chunks
+        IntStream positions = IntStream.range(0, n);
+        if (parallel) {
+            positions = positions.parallel();
+        }
+        positions.forEach(i -> {
             try {
                 DataBlock R = DataBlock.of(sd.R(i));
                 FastMatrix Rvar = sd.RVariance(i);
-                FastMatrix S = Rvar.extract(spos, period - 1, spos, period - 1).deepClone();
-                DataBlock ur = R.extract(spos, period - 1).deepClone();
+                FastMatrix S = Rvar.extract(start, period - 1, start, period - 1).deepClone();
+                DataBlock ur = R.extract(start, period - 1).deepClone();
                 SymmetricMatrix.lcholesky(S, 1e-9);
                 LowerTriangularMatrix.solveLx(S, ur, 1e-9);
                 s[i] = ur.ssq() / sig2;
-
             } catch (Exception err) {
             }
-        }
+        });
         return s;
-
     }
 }
@@ -12,6 +12,15 @@ import jdplus.sts.base.core.LightBasicStructuralModel;
 import jdplus.toolkit.base.api.timeseries.TsData;
 import jdplus.toolkit.base.api.timeseries.TsPeriod;
 import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import jdplus.sts.base.api.BsmEstimationSpec;
+import jdplus.sts.base.api.BsmSpec;
+import jdplus.sts.base.core.BsmData;
+import jdplus.sts.base.core.BsmKernel;
+import jdplus.sts.base.core.BsmPanelResults;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.data.Parameter;
+import jdplus.toolkit.base.api.ssf.sts.SeasonalModel;
 import org.junit.jupiter.api.Test;
 import jdplus.toolkit.base.api.math.matrices.Matrix;
 
@@ -69,4 +78,53 @@ public class BsmTest {
         byte[] bytes = Bsm.toBuffer(bsm);
         assertTrue(bytes != null);
     }
+
+    @Test
+    public void testPanel() {
+        int n = 96, m = 60;
+        double[][] y = new double[m][];
+        for (int i = 0; i < m; ++i) {
+            y[i] = Arrays.copyOfRange(Data.RETAIL_BOOKSTORES, i, i + n);
+        }
+        BsmPanelResults rslt = Bsm.processPanel(y, 12, 1, 1, -1, 1, "HarrisonStevens", 1e-9, true, true, 2);
+        assertEquals(m, rslt.getSeriesCount());
+        for (int i = 0; i < m; ++i) {
+            assertTrue(Double.isFinite(rslt.getLogLikelihood()[i]));
+            assertEquals(n, rslt.getComponents()[i].getRowsCount());
+            assertNull(rslt.getMessages()[i]);
+        }
+    }
+
+    @Test
+    public void testPanelVsSingle() {
+        int n = 96, m = 24;
+        double[][] y = new double[m][];
+        for (int i = 0; i < m; ++i) {
+            y[i] = Arrays.copyOfRange(Data.RETAIL_BOOKSTORES, 2 * i, 2 * i + n);
+        }
+        // same model as in processPanel(..., 1, 1, -1, 1, "HarrisonStevens", 1e-9, ...)
+        BsmSpec mspec = BsmSpec.builder()
+                .level(Parameter.undefined(), Parameter.undefined())
+                .cycle(false)
+                .noise(Parameter.undefined())
+                .seasonal(SeasonalModel.HarrisonStevens)
+                .build();
+        BsmEstimationSpec espec = BsmEstimationSpec.builder()
+                .precision(1e-9)
+                .build();
+        BsmPanelResults rslt = Bsm.processPanel(y, 12, 1, 1, -1, 1, "HarrisonStevens", 1e-9, false, false, 3);
+        Matrix p = rslt.getParameters();
+        for (int i = 0; i < m; ++i) {
+            BsmKernel kernel = new BsmKernel(espec);
+            assertTrue(kernel.process(DoubleSeq.of(y[i]), null, 12, mspec));
+            BsmData bsm = kernel.result(false);
+            assertEquals(kernel.getLikelihood().logLikelihood(), rslt.getLogLikelihood()[i], 1e-9);
+            assertEquals(kernel.hasConverged(), rslt.getConverged()[i]);
+            assertEquals(bsm.getLevelVar(), p.get(0, i), 1e-9);
+            assertEquals(bsm.getSlopeVar(), p.get(1, i), 1e-9);
+            assertEquals(bsm.getSeasonalVar(), p.get(2, i), 1e-9);
+            assertEquals(bsm.getNoiseVar(), p.get(3, i), 1e-9);
+            assertEquals(bsm.getCycleVar(), p.get(4, i), 1e-9);
+        }
+    }
 }
@@ -8,9 +8,13 @@ package jdplus.sts.base.r;
 import tck.demetra.data.Data;
 import jdplus.toolkit.base.api.timeseries.TsData;
 import jdplus.toolkit.base.api.timeseries.TsPeriod;
+import java.util.Arrays;
 import java.util.Random;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.math.matrices.Matrix;
 import jdplus.toolkit.base.core.math.matrices.FastMatrix;
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  *
@@ -62,4 +66,22 @@ public class StsOutliersDetectionTest {
 //        System.out.println(DoubleSeq.of(rslt));
     }
 
+    @Test
+    public void testSeasonalBreaksPanel() {
+        TsData y = TsData.ofInternal(TsPeriod.monthly(1974, 1), sugar).multiply(.100);
+        double[] s0 = StsOutliersDetection.seasonalBreaks(y, 1, 1, 1, "HarrisonStevens", null);
+        int n = y.length();
+        double[] all = new double[2 * n];
+        y.getValues().copyTo(all, 0);
+        Arrays.fill(all, n, 2 * n, Double.NaN);
+        StsOutliersDetection.SeasonalBreaks rslt = StsOutliersDetection.seasonalBreaks(Matrix.of(all, n, 2), 12, 1, 1, 1, "HarrisonStevens", null, 2);
+        assertEquals(StsOutliersDetection.SeasonalBreaks.OK, rslt.getStatus()[0]);
+        assertEquals(StsOutliersDetection.SeasonalBreaks.FAILED, rslt.getStatus()[1]);
+        assertNull(rslt.getMessages()[0]);
+        assertNotNull(rslt.getMessages()[1]);
+        assertTrue(rslt.getStatistics().column(0).distance(DoubleSeq.of(s0)) < 1e-9);
+        double[] p0 = StsOutliersDetection.seasonalBreaks(y.getValues().toArray(), 12, 1, 1, 1, "HarrisonStevens", null, true);
+        assertTrue(DoubleSeq.of(p0).distance(DoubleSeq.of(s0)) < 1e-9);
+    }
+
 }
@@ -97,6 +97,7 @@ public class MX11plusSpec implements SaSpecification {
         PeriodSpec cur = periodSpec.orElseThrow();
         return X11plusSpec.builder()
                 .mode(mode)
+                .period(cur.getPeriod())
                 .backcastHorizon(backcastHorizon)
                 .forecastHorizon(forecastHorizon)
                 .trendFilter(cur.getTrendFilter())
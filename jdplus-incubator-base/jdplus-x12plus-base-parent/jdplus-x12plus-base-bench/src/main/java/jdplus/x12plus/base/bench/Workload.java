@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.x12plus.base.bench;
+
+import java.time.LocalDate;
+import java.util.Random;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.timeseries.TsData;
+import jdplus.toolkit.base.api.timeseries.TsPeriod;
+import jdplus.toolkit.base.api.timeseries.TsUnit;
+import jdplus.x12plus.base.api.SeasonalFilterOption;
+import jdplus.x12plus.base.api.X11plusSpec;
+
+/**
+ * Synthetic seasonal series (random walk trend, stable seasonal pattern and
+ * white noise, in logarithms). The series only depend on the frequency and on
+ * the length, so that all the runs use the same corpus.
+ *
+ * @author Jean Palate
+ */
+@lombok.experimental.UtilityClass
+public class Workload {
+
+    public static enum Frequency {
+        // integer periods must be provided as Integer (the X11 seasonal filters
+        // are selected following the type of the period)
+        MONTHLY(TsUnit.MONTH, 12),
+        QUARTERLY(TsUnit.QUARTER, 4),
+        WEEKLY(TsUnit.WEEK, 365.25 / 7),
+        DAILY(TsUnit.DAY, 365.25);
+
+        private final TsUnit unit;
+        private final Number period;
+
+        private Frequency(TsUnit unit, Number period) {
+            this.unit = unit;
+            this.period = period;
+        }
+
+        public TsUnit getUnit() {
+            return unit;
+        }
+
+        public Number getPeriod() {
+            return period;
+        }
+
+        /**
+         * Default (multiplicative) X11 specification for the frequency
+         *
+         * @return
+         */
+        public X11plusSpec getSpec() {
+            return X11plusSpec.createDefault(true, period, SeasonalFilterOption.S3X5);
+        }
+    }
+
+    public final long SEED = 20230101L;
+    public final double TREND_STDEV = 0.005, NOISE_STDEV = 0.01, SEASONAL_AMPLITUDE = 0.1;
+
+    /**
+     * Number of observations corresponding to a given number of years
+     *
+     * @param freq
+     * @param years
+     * @return
+     */
+    public int length(Frequency freq, int years) {
+        return (int) Math.round(freq.getPeriod().doubleValue() * years);
+    }
+
+    /**
+     * Generates a positive series
+     *
+     * @param freq
+     * @param n Length of the series
+     * @return
+     */
+    public double[] generate(Frequency freq, int n) {
+        Random rnd = new Random(SEED + freq.ordinal());
+        double period = freq.getPeriod().doubleValue();
+        // a few harmonics, with fixed phases
+        int nh = Math.min(3, (int) (period / 2));
+        double[] phases = new double[nh];
+        for (int j = 0; j < nh; ++j) {
+            phases[j] = 2 * Math.PI * rnd.nextDouble();
+        }
+        double[] y = new double[n];
+        double level = Math.log(100);
+        for (int i = 0; i < n; ++i) {
+            level += TREND_STDEV * rnd.nextGaussian();
+            double s = 0;
+            for (int j = 0; j < nh; ++j) {
+                s += Math.cos(2 * Math.PI * (j + 1) * i / period + phases[j]) / (j + 1);
+            }
+            y[i] = Math.exp(level + SEASONAL_AMPLITUDE * s + NOISE_STDEV * rnd.nextGaussian());
+        }
+        return y;
+    }
+
+    /**
+     * Generates a time series, starting in January 2000
+     *
+     * @param freq
+     * @param n Length of the series
+     * @return
+     */
+    public TsData series(Frequency freq, int n) {
+        TsPeriod start = TsPeriod.of(freq.getUnit(), LocalDate.of(2000, 1, 3).atStartOfDay());
+        return TsData.of(start, DoubleSeq.of(generate(freq, n)));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.x12plus.base.bench;
+
+import java.util.concurrent.TimeUnit;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.x12plus.base.core.RawX11Kernel;
+import jdplus.x12plus.base.core.RawX11Results;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Complete X11 decompositions (B, C and D tables) through RawX11Kernel.
+ * The kernel (and its context) is re-used between the invocations, as in the
+ * batch processing; the "cold" benchmark creates a new kernel each time.
+ *
+ * @author Jean Palate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class X11KernelBenchmark {
+
+    @Param({"MONTHLY", "QUARTERLY", "WEEKLY", "DAILY"})
+    public Workload.Frequency frequency;
+
+    @Param({"10", "25"})
+    public int years;
+
+    private DoubleSeq series;
+    private RawX11Kernel kernel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        series = DoubleSeq.of(Workload.generate(frequency, Workload.length(frequency, years)));
+        kernel = new RawX11Kernel(frequency.getSpec());
+    }
+
+    @Benchmark
+    public RawX11Results kernel() {
+        RawX11Results rslt = kernel.process(series);
+        kernel.clear();
+        return rslt;
+    }
+
+    @Benchmark
+    public RawX11Results cold() {
+        return new RawX11Kernel(frequency.getSpec()).process(series);
+    }
+}
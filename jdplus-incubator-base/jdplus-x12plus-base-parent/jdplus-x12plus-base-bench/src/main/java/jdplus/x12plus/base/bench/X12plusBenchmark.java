@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.x12plus.base.bench;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jdplus.sa.base.api.benchmarking.SaBenchmarkingSpec;
+import jdplus.toolkit.base.api.modelling.regular.ModellingSpec;
+import jdplus.toolkit.base.api.timeseries.TsData;
+import jdplus.x12plus.base.api.X12plusSpec;
+import jdplus.x12plus.base.core.x12.X12plusKernel;
+import jdplus.x12plus.base.core.x12.X12plusResults;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Complete X12plus processing (pre-processing, X11, finals and diagnostics).
+ * The pre-processing is limited to monthly and quarterly series. The
+ * independent stages can be executed concurrently. The Cholette benchmarking
+ * is always enabled, so that the concurrent runs have a stage to overlap with
+ * the diagnostics and that they can be compared with the sequential runs.
+ *
+ * @author Jean Palate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class X12plusBenchmark {
+
+    @Param({"MONTHLY", "QUARTERLY"})
+    public Workload.Frequency frequency;
+
+    @Param({"10", "25"})
+    public int years;
+
+    @Param({"true", "false"})
+    public boolean preprocessing;
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    private TsData series;
+    private X12plusSpec spec;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        series = Workload.series(frequency, Workload.length(frequency, years));
+        spec = X12plusSpec.builder()
+                .preprocessing(preprocessing ? ModellingSpec.FULL : ModellingSpec.DISABLED)
+                .x11(frequency.getSpec())
+                .benchmarking(SaBenchmarkingSpec.DEFAULT_ENABLED)
+                .build();
+        executor = concurrent ? Executors.newFixedThreadPool(2) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public X12plusResults kernel() {
+        return X12plusKernel.of(spec, null, executor).process(series, null);
+    }
+}
@@ -16,7 +16,6 @@
  */
 package jdplus.x12plus.base.core;
 
-import jdplus.toolkit.base.api.data.Doubles;
 import nbbrd.design.Development;
 import jdplus.sa.base.api.DecompositionMode;
 import java.util.Arrays;
@@ -59,6 +58,57 @@ class DefaultExtremeValuesCorrector {
     private double lsigma = 1.5, usigma = 2.5;
     private DoubleSeq scur, sweights;
     private int nperiods = 5;
+    private final X11Workspace ws;
+    private final String id;
+    private State state;
+
+    /**
+     * State of an analysis: sums of squares by period (blocks), standard
+     * deviations by year and weights of the two passes. It is re-used by the
+     * analysis of an extension of the series (see analyse)
+     */
+    static final class State {
+
+        final int n, start, period;
+        // null when a single standard deviation is used
+        final double[] ssq1, ssq2;
+        final int[] nobs1, nobs2;
+        final double[] stdev1, stdevw;
+        final DoubleSeq w1, w;
+        // first position of w1 with a weight lower than 1 (n if none)
+        final int first1;
+
+        State(int n, int start, int period, double[] ssq1, int[] nobs1, double[] stdev1, DoubleSeq w1, int first1,
+                double[] ssq2, int[] nobs2, double[] stdevw, DoubleSeq w) {
+            this.n = n;
+            this.start = start;
+            this.period = period;
+            this.ssq1 = ssq1;
+            this.nobs1 = nobs1;
+            this.stdev1 = stdev1;
+            this.w1 = w1;
+            this.first1 = first1;
+            this.ssq2 = ssq2;
+            this.nobs2 = nobs2;
+            this.stdevw = stdevw;
+            this.w = w;
+        }
+    }
+
+    DefaultExtremeValuesCorrector() {
+        this(X11Workspace.allocating(), "");
+    }
+
+    /**
+     *
+     * @param ws The workspace that provides the work arrays of the corrector
+     * @param id The identifier of the corrector in the workspace (prefix of
+     * the names of its work arrays)
+     */
+    DefaultExtremeValuesCorrector(X11Workspace ws, String id) {
+        this.ws = ws;
+        this.id = id;
+    }
 
     /**
      * Searches the extreme values in a given series
@@ -67,20 +117,180 @@ class DefaultExtremeValuesCorrector {
      * @return The number of extreme values that have been detected (>= 0)
      */
     public void analyse(final DoubleSeq s, X11Context context) {
+        analyse(s, context, null, 0);
+    }
+
+    /**
+     * Searches the extreme values in a series that extends (or revises) the
+     * series of a previous analysis. The sums of squares of the periods, the
+     * standard deviations and the weights of the previous analysis are kept
+     * before the first position where they can change; the results are
+     * identical to the results of a full analysis.
+     * The standard deviations of a year only depend on the periods of its
+     * window, so that they shouldn't change more than 2*nperiods years before
+     * the first modified observation. Otherwise (for instance when a second
+     * pass becomes necessary or when the series is too short for moving
+     * standard deviations), the previous analysis is considered as unstable
+     * and a X11Workspace.Restart exception is thrown.
+     *
+     * @param s The analysed series
+     * @param context
+     * @param prev The state of the previous analysis (null for a full
+     * analysis)
+     * @param change The first position of s that differs from the previous
+     * series
+     */
+    void analyse(final DoubleSeq s, X11Context context, State prev, int change) {
         lsigma=context.getLowerSigma();
         usigma=context.getUpperSigma();
         scur = s;
         sweights = null;
         period = context.getPeriod().intValue();
         mul = (context.getMode() == DecompositionMode.Multiplicative);
+        int n = s.length();
+        int nfy = (n - start) / period;
+        if (prev != null && (prev.start != start || prev.period != period || n < prev.n || change > prev.n)) {
+            prev = null;
+        }
+        int limit = 0;
+        if (prev != null) {
+            int ylimit = year(change) - 2 * nperiods;
+            limit = ylimit > 0 ? yearStart(ylimit) : 0;
+        }
+        boolean blocks = nfy >= nperiods;
         // compute standard deviations
-        double[] stdev = calcStdev(scur);
-        sweights = outliersDetection(scur, stdev);
-        if (sweights.anyMatch(x -> x < 1)) {
-            DoubleSeq corr = removeExtremes(scur, sweights);
-            stdev = calcStdev(corr);
-            sweights = outliersDetection(scur, stdev);
+        double[] ssq1 = null;
+        int[] nobs1 = null;
+        double[] stdev1;
+        if (blocks) {
+            ssq1 = new double[nfy + 2];
+            nobs1 = new int[nfy + 2];
+            int from = prev == null || prev.ssq1 == null ? 0 : reusableBlocks(prev, change);
+            if (from > 0) {
+                System.arraycopy(prev.ssq1, 0, ssq1, 0, from);
+                System.arraycopy(prev.nobs1, 0, nobs1, 0, from);
+            }
+            blocks(s, null, start, period, mul, ssq1, nobs1, from);
+            stdev1 = calcStdev(ssq1, nobs1, n, start, period, nperiods);
+        } else {
+            stdev1 = new double[]{calcSingleStdev(s, mul)};
+        }
+        int c1 = prev == null ? 0 : changed(prev.stdev1, stdev1, change, limit);
+        DoubleSeq w1 = outliersDetection(scur, stdev1, ws.buffer(id + ".w1", n), prev == null ? null : prev.w1, c1);
+        int first1 = prev != null && prev.first1 < c1 ? prev.first1 : firstExtreme(w1, c1);
+        sweights = w1;
+        double[] ssq2 = null, stdevw = stdev1;
+        int[] nobs2 = null;
+        if (first1 < n) {
+            if (blocks) {
+                // the extreme values (null weights) are removed
+                ssq2 = new double[nfy + 2];
+                nobs2 = new int[nfy + 2];
+                int from = prev == null || prev.ssq2 == null ? 0 : reusableBlocks(prev, c1);
+                if (from > 0) {
+                    System.arraycopy(prev.ssq2, 0, ssq2, 0, from);
+                    System.arraycopy(prev.nobs2, 0, nobs2, 0, from);
+                }
+                blocks(s, w1, start, period, mul, ssq2, nobs2, from);
+                stdevw = calcStdev(ssq2, nobs2, n, start, period, nperiods);
+            } else {
+                stdevw = new double[]{calcSingleStdev(removeExtremes(scur, w1), mul)};
+            }
+            int cw = prev == null ? 0 : changed(prev.stdevw, stdevw, c1, limit);
+            sweights = outliersDetection(scur, stdevw, ws.buffer(id + ".w", n), prev == null ? null : prev.w, cw);
+        }
+        state = new State(n, start, period, ssq1, nobs1, stdev1, w1, first1, ssq2, nobs2, stdevw, sweights);
+    }
+
+    /**
+     * The state of the last analysis
+     *
+     * @return
+     */
+    State state() {
+        return state;
+    }
+
+    /**
+     * Year of a given position (the first year may be incomplete)
+     *
+     * @param pos
+     * @return
+     */
+    private int year(int pos) {
+        if (start > 0) {
+            return pos < start ? 0 : 1 + (pos - start) / period;
+        } else {
+            return pos / period;
+        }
+    }
+
+    /**
+     * First position of a given year
+     *
+     * @param year
+     * @return
+     */
+    private int yearStart(int year) {
+        if (start > 0) {
+            return year == 0 ? 0 : start + (year - 1) * period;
+        } else {
+            return year * period;
+        }
+    }
+
+    /**
+     * Number of blocks of the previous analysis that can be re-used: the
+     * blocks that end before pos and that were complete
+     *
+     * @param prev
+     * @param pos
+     * @return
+     */
+    private int reusableBlocks(State prev, int pos) {
+        int nfy = (prev.n - start) / period;
+        int nblocks = pos < start ? 0 : 1 + (pos - start) / period;
+        return Math.min(nblocks, nfy + 1);
+    }
+
+    /**
+     * First position whose standard deviation is modified
+     *
+     * @param prev The previous standard deviations (by year)
+     * @param cur The new standard deviations (by year)
+     * @param change The first modified observation
+     * @param limit Start of the stable region: the standard deviations
+     * shouldn't change before it
+     * @return The first position (before change) whose standard deviation is
+     * modified, or change
+     */
+    private int changed(double[] prev, double[] cur, int change, int limit) {
+        int c = change;
+        for (int y = 0;; ++y) {
+            int ystart = yearStart(y);
+            if (ystart >= c) {
+                break;
+            }
+            double p = prev[Math.min(y, prev.length - 1)], q = cur[Math.min(y, cur.length - 1)];
+            if (Double.doubleToLongBits(p) != Double.doubleToLongBits(q)) {
+                c = ystart;
+                break;
+            }
+        }
+        if (c < limit) {
+            throw new X11Workspace.Restart();
         }
+        return c;
+    }
+
+    private static int firstExtreme(DoubleSeq w, int from) {
+        int n = w.length();
+        for (int i = from; i < n; ++i) {
+            if (w.get(i) < 1) {
+                return i;
+            }
+        }
+        return n;
     }
 
     /**
@@ -91,25 +301,99 @@ class DefaultExtremeValuesCorrector {
      * @return The corrected series. A new time series is always returned.
      */
     public DoubleSeq applyCorrections(DoubleSeq sorig, DoubleSeq corrections) {
-        double[] ns = sorig.toArray();
-        for (int i = 0; i < ns.length; ++i) {
+        return applyCorrections(sorig, corrections, new double[sorig.length()]);
+    }
+
+    /**
+     * Applies the detected corrections in a given buffer
+     *
+     * @param sorig The original series
+     * @param corrections The corrections
+     * @param ns The buffer (its length should be at least the length of the
+     * series)
+     * @return The corrected series (view on the buffer)
+     */
+    DoubleSeq applyCorrections(DoubleSeq sorig, DoubleSeq corrections, double[] ns) {
+        int n = sorig.length();
+        sorig.copyTo(ns, 0);
+        for (int i = 0; i < n; ++i) {
             double x = corrections.get(i);
             if (!Double.isNaN(x)) {
                 ns[i] = x;
             }
         }
-        return DoubleSeq.of(ns);
+        return X11Workspace.seq(ns, n);
     }
 
-    private double[] calcStdev(DoubleSeq s) {
+    /**
+     * Moving standard deviations, computed on windows of nperiods periods
+     * (shifted by one period). The sums of squares and the numbers of non
+     * missing values are computed once for each period (block), so that the
+     * whole computation is linear in the length of the series. The detection
+     * itself (outliersDetection) is still a separate pass on the series.
+     *
+     * @param s The series
+     * @param start Position of the first complete period
+     * @param period Period of the series
+     * @param nperiods Number of periods in each window
+     * @param mul Multiplicative decomposition (the deviations are computed
+     * around 1)
+     * @return
+     */
+    static double[] calcStdev(DoubleSeq s, int start, int period, int nperiods, boolean mul) {
 
         int n = s.length();
         int nfy = (n - start) / period;
 
         if (nfy < nperiods) {
-            return new double[]{calcSingleStdev(s)};
+            return new double[]{calcSingleStdev(s, mul)};
+        }
+        double[] bssq = new double[nfy + 2];
+        int[] bn = new int[nfy + 2];
+        blocks(s, null, start, period, mul, bssq, bn, 0);
+        return calcStdev(bssq, bn, n, start, period, nperiods);
+    }
+
+    /**
+     * Sums of squares and numbers of non missing values of the blocks: [0,
+     * start[, the complete periods, the last incomplete period
+     *
+     * @param s The series
+     * @param w The weights of the observations (the observations with a null
+     * weight are considered as missing). Not used if null
+     * @param start
+     * @param period
+     * @param mul
+     * @param ssq The sums of squares (nfy+2 blocks)
+     * @param nobs The numbers of observations (nfy+2 blocks)
+     * @param from The first computed block
+     */
+    private static void blocks(DoubleSeq s, DoubleSeq w, int start, int period, boolean mul, double[] ssq, int[] nobs, int from) {
+        int n = s.length();
+        int nfy = (n - start) / period;
+        if (from == 0) {
+            block(s, w, 0, start, mul, ssq, nobs, 0);
         }
+        for (int j = Math.max(1, from); j <= nfy; ++j) {
+            int i0 = start + (j - 1) * period;
+            block(s, w, i0, i0 + period, mul, ssq, nobs, j);
+        }
+        block(s, w, start + nfy * period, n, mul, ssq, nobs, nfy + 1);
+    }
 
+    /**
+     * Moving standard deviations computed on the blocks
+     *
+     * @param bssq
+     * @param bn
+     * @param n
+     * @param start
+     * @param period
+     * @param nperiods
+     * @return
+     */
+    private static double[] calcStdev(double[] bssq, int[] bn, int n, int start, int period, int nperiods) {
+        int nfy = (n - start) / period;
         int ny = nfy;
         int ie = nperiods / 2;
         if (start > 0) {
@@ -121,25 +405,21 @@ class DefaultExtremeValuesCorrector {
             ++ny;
             cend = true;
         }
+
         double[] stdev = new double[ny];
         // first years
-        double e = calcSingleStdev(s.range(0, start + nperiods * period));
+        double e = stdev(bssq, bn, 0, nperiods + 1);
         for (int i = 0; i < ie; ++i) {
             stdev[i] = e;
         }
-        int ibeg = start, iend = ibeg + nperiods * period;
-        while (iend <= n) {
-            DoubleSeq cur = s.range(ibeg, iend);
-            e = calcSingleStdev(cur);
+        int k = 1;
+        for (; k + nperiods <= nfy + 1; ++k) {
+            e = stdev(bssq, bn, k, k + nperiods);
             stdev[ie++] = e;
-            ibeg += period;
-            iend += period;
         }
         // the last block is too short...
         if (cend) {
-            ibeg -= period;
-            DoubleSeq cur = s.range(ibeg, n);
-            e = calcSingleStdev(cur);
+            e = stdev(bssq, bn, k - 1, nfy + 2);
         } else {
             e = stdev[ie - 1];
         }
@@ -150,7 +430,37 @@ class DefaultExtremeValuesCorrector {
         return stdev;
     }
 
-    private double calcSingleStdev(DoubleSeq data) {
+    private static void block(DoubleSeq data, DoubleSeq w, int beg, int end, boolean mul, double[] ssq, int[] nobs, int pos) {
+        double e = 0;
+        int m = 0;
+        for (int i = beg; i < end; ++i) {
+            if (w != null && w.get(i) == 0) {
+                continue;
+            }
+            double x = data.get(i);
+            if (!Double.isNaN(x)) {
+                if (mul) {
+                    x -= 1;
+                }
+                e += x * x;
+                ++m;
+            }
+        }
+        ssq[pos] = e;
+        nobs[pos] = m;
+    }
+
+    private static double stdev(double[] ssq, int[] nobs, int beg, int end) {
+        double e = 0;
+        int m = 0;
+        for (int i = beg; i < end; ++i) {
+            e += ssq[i];
+            m += nobs[i];
+        }
+        return Math.sqrt(e / m);
+    }
+
+    static double calcSingleStdev(DoubleSeq data, boolean mul) {
         int n = data.length();
         int nm = 0;
         double e = 0;
@@ -177,8 +487,19 @@ class DefaultExtremeValuesCorrector {
      * corrections for the other periods
      */
     public DoubleSeq computeCorrections(DoubleSeq s) {
+        return computeCorrections(s, new double[s.length()]);
+    }
+
+    /**
+     * Computes the corrections in a given buffer
+     *
+     * @param s The series being corrected
+     * @param ns The buffer (its length should be at least the length of the
+     * series)
+     * @return The corrections (view on the buffer)
+     */
+    DoubleSeq computeCorrections(DoubleSeq s, double[] ns) {
         int n = s.length();
-        double[] ns = new double[n];
         int beg = start;
         double[] avgs = null;
         for (int i = 0; i < n; i++) {
@@ -205,7 +526,7 @@ class DefaultExtremeValuesCorrector {
                 }
             }
         }
-        return DoubleSeq.of(ns);
+        return X11Workspace.seq(ns, n);
     }
 
     /**
@@ -216,9 +537,19 @@ class DefaultExtremeValuesCorrector {
      * @return A new series is always returned
      */
     public DoubleSeq getCorrectionFactors() {
+        return getCorrectionFactors(new double[sweights.length()]);
+    }
+
+    /**
+     * Gets the correction factors in a given buffer
+     *
+     * @param ns The buffer (its length should be at least the length of the
+     * series)
+     * @return The correction factors (view on the buffer)
+     */
+    DoubleSeq getCorrectionFactors(double[] ns) {
         int n = sweights.length();
-        double[] ns = new double[n];
-        Arrays.fill(ns, mul ? 1 : 0);
+        Arrays.fill(ns, 0, n, mul ? 1 : 0);
         for (int i = 0; i < n; ++i) {
             double x = sweights.get(i);
             if (x < 1) {
@@ -230,7 +561,7 @@ class DefaultExtremeValuesCorrector {
                 }
             }
         }
-        return DoubleSeq.of(ns);
+        return X11Workspace.seq(ns, n);
     }
 
     public DoubleSeq getObservationWeights() {
@@ -241,13 +572,19 @@ class DefaultExtremeValuesCorrector {
      *
      * @param cur The series being
      * @param stdev
+     * @param w The buffer of the weights
+     * @param prev The weights of a previous analysis (may be null if from is
+     * 0)
+     * @param from The weights before that position are copied from prev
      * @return The weights corresponding to the series
      */
-    private DoubleSeq outliersDetection(DoubleSeq cur, double[] stdev) {
+    private DoubleSeq outliersDetection(DoubleSeq cur, double[] stdev, double[] w, DoubleSeq prev, int from) {
         int n = cur.length();
 
-        double[] w = new double[n];
-        Arrays.fill(w, 1);
+        if (from > 0) {
+            prev.range(0, from).copyTo(w, 0);
+        }
+        Arrays.fill(w, from, n, 1);
 
         double xbar = mul ? 1 : 0;
         int y = 0;
@@ -277,18 +614,20 @@ class DefaultExtremeValuesCorrector {
                 iend = n;
             }
         }
-        return Doubles.of(w);
+        return X11Workspace.seq(w, n);
     }
 
     private DoubleSeq removeExtremes(DoubleSeq in, DoubleSeq weights) {
-        double[] cin = in.toArray();
+        int n = in.length();
+        double[] cin = ws.buffer(id + ".x", n);
+        in.copyTo(cin, 0);
 
-        for (int i = 0; i < cin.length; ++i) {
+        for (int i = 0; i < n; ++i) {
             if (sweights.get(i) == 0) {
                 cin[i] = Double.NaN;
             }
         }
-        return Doubles.of(cin);
+        return X11Workspace.seq(cin, n);
     }
 
     private int[] searchPositionsForOutlierCorrection(int p, final int period) {
@@ -31,25 +31,49 @@ import jdplus.toolkit.base.api.data.DoubleSeq;
 class DefaultSeasonalNormalizer {
 
     public DoubleSeq normalize(DoubleSeq in, int nextend, X11Context context){
+        return normalize(in, nextend, context, new double[in.length() + 2 * nextend]);
+    }
+
+    /**
+     * Normalization in a given buffer
+     *
+     * @param in
+     * @param nextend
+     * @param context
+     * @param x The buffer. Its length should be at least the length of in +
+     * 2*nextend
+     * @return The normalized series (view on the buffer)
+     */
+    DoubleSeq normalize(DoubleSeq in, int nextend, X11Context context, double[] x){
+        int m = in.length() + 2 * nextend;
+        normalize(in, nextend, context, DataBlock.of(x, 0, m));
+        return X11Workspace.seq(x, m);
+    }
+
+    /**
+     * Normalization in a given block
+     *
+     * @param in
+     * @param nextend
+     * @param context
+     * @param out The output. Its length should be the length of in +
+     * 2*nextend
+     */
+    void normalize(DoubleSeq in, int nextend, X11Context context, DataBlock out){
         SymmetricFilter filter = X11FilterFactory.makeSymmetricFilter(context.getPeriod());
         int ndrop = filter.length() / 2;
 
-        double[] x = new double[in.length()];
-        DataBlock out = DataBlock.of(x, ndrop, x.length-ndrop);
-        filter.apply(in, out);
+        int n = in.length();
+        DataBlock cur = out.range(nextend, nextend + n);
+        filter.apply(in, cur.range(ndrop, n - ndrop));
        
         CopyEndPoints cp=new CopyEndPoints(ndrop);
-        cp.process(in, DataBlock.of(x));
-        DoubleSeq t= DoubleSeq.of(x);
-        DoubleSeq tmp=context.remove(in, t);
-        if (nextend == 0)
-            return tmp;
-        else{
-            x=new double[x.length+2*nextend];
-            tmp.copyTo(x, nextend);
+        cp.process(in, cur);
+        // in place: cur = in (-/) cur
+        context.remove(in, cur, cur);
+        if (nextend > 0) {
             CopyPeriodicEndPoints cpp=new CopyPeriodicEndPoints(nextend, context.getPeriod().intValue());
-            cpp.process(null, DataBlock.of(x));
-            return DoubleSeq.of(x);
+            cpp.process(null, out);
         }
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.x12plus.base.core;
+
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.x12plus.base.api.X11plusSpec;
+import nbbrd.design.Development;
+
+/**
+ * X11 for series that are regularly extended with new observations.
+ * <br>
+ * The kernel keeps the tables of the previous run (and the standard
+ * deviations used in the corrections of the extreme values). When the new
+ * series extends the previous one (without revision of the previous
+ * observations), each table is only recomputed from the first position that
+ * can be affected by the new observations: the filters are applied on the
+ * tail of their inputs, the sums of squares and the standard deviations of
+ * the corrections are re-used before the last periods, and the other values
+ * are copied from the previous tables. The changes are tracked table by
+ * table, so that the results are identical (bitwise) to the results of a
+ * full processing by construction.
+ * <br>
+ * If the standard deviations (or, consequently, the weights of the
+ * observations) of the corrections change in the stable region of the
+ * series (more than 2 x 5 years before the first modified observation), or
+ * if a filtered tail doesn't reproduce the previous table where it should,
+ * the whole series is processed.
+ * <br>
+ * The recomputed tail is the accumulation of the reach of the successive
+ * filters (more than 35 years for monthly series with the usual filters,
+ * see getTailStart): the incremental processing is only useful for long
+ * series. Non-integer periods are always processed in full.
+ *
+ * @author Jean Palate
+ */
+@Development(status = Development.Status.Preliminary)
+public class IncrementalX11Kernel {
+
+    private final X11plusSpec spec;
+    private final RawX11Kernel kernel;
+
+    private double[] y;
+    private X11Workspace last;
+    private boolean incremental;
+    private int tail;
+
+    public IncrementalX11Kernel(X11plusSpec spec) {
+        this.spec = spec;
+        this.kernel = new RawX11Kernel(spec);
+    }
+
+    /**
+     * Processes the given series, re-using the previous results when
+     * possible. The previous results are re-used only if the new series
+     * extends the previous one (without revisions) and if the period is an
+     * integer.
+     *
+     * @param data
+     * @return
+     */
+    public RawX11Results process(DoubleSeq data) {
+        double[] ndata = data.toArray();
+        X11Context context = kernel.context();
+        RawX11Results rslts = null;
+        X11Workspace ws = null;
+        if (isExtension(ndata)) {
+            ws = last.next();
+            try {
+                rslts = kernel.process(DoubleSeq.of(ndata), context, null, ws);
+            } catch (X11Workspace.Restart err) {
+                rslts = null;
+            }
+        }
+        incremental = rslts != null;
+        if (incremental) {
+            tail = ws.getTailStart();
+            ws.release();
+        } else {
+            ws = isIntegerPeriod() ? X11Workspace.tracking() : X11Workspace.allocating();
+            rslts = kernel.process(DoubleSeq.of(ndata), context, null, ws);
+            tail = 0;
+        }
+        kernel.clear();
+        y = ndata;
+        last = ws.isTracking() ? ws : null;
+        return rslts;
+    }
+
+    /**
+     * Indicates whether the last call to process re-used the previous results
+     *
+     * @return
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * First position of the series re-processed by the filters during the
+     * last call to process (0 if the series has been processed in full)
+     *
+     * @return
+     */
+    public int getTailStart() {
+        return tail;
+    }
+
+    /**
+     * Forgets the previous results
+     */
+    public void reset() {
+        y = null;
+        last = null;
+        incremental = false;
+        tail = 0;
+    }
+
+    private boolean isIntegerPeriod() {
+        double dp = spec.getPeriod().doubleValue();
+        return Math.abs(dp - Math.round(dp)) <= 1e-9;
+    }
+
+    /**
+     * Checks that the new series extends the previous one
+     *
+     * @param ndata
+     * @return
+     */
+    private boolean extends_(double[] ndata) {
+        if (last == null || ndata.length < y.length) {
+            return false;
+        }
+        // revisions
+        for (int i = 0; i < y.length; ++i) {
+            if (Double.doubleToLongBits(y[i]) != Double.doubleToLongBits(ndata[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
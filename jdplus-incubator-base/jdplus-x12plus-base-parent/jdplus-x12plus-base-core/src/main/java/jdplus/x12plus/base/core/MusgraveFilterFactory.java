@@ -21,8 +21,8 @@ import jdplus.toolkit.base.core.math.linearfilters.FiniteFilter;
 import jdplus.toolkit.base.core.math.linearfilters.HendersonFilters;
 import jdplus.toolkit.base.core.math.linearfilters.IFiniteFilter;
 import jdplus.toolkit.base.core.math.polynomials.Polynomial;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Factory for the creation of the asymmetric Musgrave filters
@@ -39,7 +39,12 @@ public class MusgraveFilterFactory {
         double D;
     }
 
-    private static final Map<Key, FiniteFilter[]> FILTERSTORE = new HashMap<>();
+    /**
+     * Maximum number of cached sets of filters
+     */
+    public static final int CACHE_SIZE = 256;
+
+    private static final Map<Key, FiniteFilter[]> FILTERSTORE = new ConcurrentHashMap<>();
     private static final Polynomial X11_H1 = Polynomial.valueOf(-0.073, 0.294, 0.522, 0.257),
             X11_H0 = Polynomial.valueOf(-0.073, 0.403, 0.670);
 
@@ -106,13 +111,15 @@ public class MusgraveFilterFactory {
     }
 
     /**
-     * Gets the Musgrave filters corresponding to the Henderson filters
+     * Gets the Musgrave filters corresponding to the Henderson filters. The
+     * filters are cached by (length, D); concurrent calls don't block each
+     * other
      *
      * @param len Length of the Henderson filter.
      * @param freq Annual frequency of the series
      * @return
      */
-    public static synchronized IFiniteFilter[] makeFiltersForHenderson(int len,
+    public static IFiniteFilter[] makeFiltersForHenderson(int len,
             int freq) {
         double r = findR(len, freq);
         double D = 4.0 / (Math.PI * r * r);
@@ -126,7 +133,12 @@ public class MusgraveFilterFactory {
                 Polynomial w = computeCoefficients(h, D, len - i);
                 filters[i - 1] = new FiniteFilter(w, -l2);
             }
-            FILTERSTORE.put(key, filters);
+            if (FILTERSTORE.size() < CACHE_SIZE) {
+                FiniteFilter[] prev = FILTERSTORE.putIfAbsent(key, filters);
+                if (prev != null) {
+                    filters = prev;
+                }
+            }
         }
         return filters.clone();
     }
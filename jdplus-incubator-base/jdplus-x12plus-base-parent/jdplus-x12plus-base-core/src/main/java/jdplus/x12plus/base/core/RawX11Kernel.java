@@ -17,6 +17,7 @@
 package jdplus.x12plus.base.core;
 
 import java.util.Arrays;
+import java.util.Set;
 import jdplus.toolkit.base.core.math.linearfilters.FiltersToolkit;
 import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.x12plus.base.api.X11SeasonalFilterSpec;
@@ -29,6 +30,8 @@ import jdplus.x12plus.base.api.X11plusSpec;
 public class RawX11Kernel {
     
     private final X11plusSpec spec;
+    private final X11Workspace workspace;
+    private X11Context context;
 
 //    private X11AStep astep;
     private X11BStep bstep;
@@ -43,65 +46,129 @@ public class RawX11Kernel {
     }
     
     public RawX11Kernel(X11plusSpec spec){
-        this.spec=spec;
+        this(spec, X11Workspace.allocating());
+    }
+
+    /**
+     * Kernel that re-uses its work arrays from one series to the other. The
+     * tables of the results are copied out of the work arrays, while the
+     * tables of the steps (see getBstep...) are only valid until the next
+     * processing. Such a kernel should be used by a single thread.
+     *
+     * @param spec
+     * @return
+     */
+    public static RawX11Kernel pooled(X11plusSpec spec) {
+        return new RawX11Kernel(spec, X11Workspace.pooled());
+    }
+
+    RawX11Kernel(X11plusSpec spec, X11Workspace workspace) {
+        this.spec = spec;
+        this.workspace = workspace;
     }
 
     public RawX11Results process(DoubleSeq data) {
-        clear();
+        return process(data, context());
+    }
 
-        // build the context from the spec
-        X11Context context = X11Context.of(spec);
-        return process(data, context);
+    /**
+     * Context built from the spec. It is computed once and re-used by the
+     * successive calls to process, so that a kernel can be used for many
+     * series sharing the same specification
+     *
+     * @return
+     */
+    public X11Context context() {
+        if (context == null) {
+            context = X11Context.of(spec);
+        }
+        return context;
     }
 
     public RawX11Results process(DoubleSeq data, X11Context context) {
+        return process(data, context, null);
+    }
+
+    /**
+     * Processes a series and materializes only the given tables. The other
+     * tables are null, except B1 (the analysed series), which is always
+     * provided
+     *
+     * @param data The series
+     * @param tables The names of the tables ("b1", ..., "d13"; see
+     * X11Toolkit.TABLES). All the tables are materialized if tables is null
+     * @return
+     */
+    public RawX11Results process(DoubleSeq data, Set<String> tables) {
+        return process(data, context(), tables);
+    }
+
+    RawX11Results process(DoubleSeq data, X11Context context, Set<String> tables) {
+        return process(data, context, tables, workspace);
+    }
+
+    /**
+     * Processing with a given workspace (see IncrementalX11Kernel)
+     *
+     * @param data
+     * @param context
+     * @param tables
+     * @param ws
+     * @return
+     */
+    RawX11Results process(DoubleSeq data, X11Context context, Set<String> tables, X11Workspace ws) {
         clear();
+        ws.select(tables);
+        ws.start(context);
+        ws.input("b1", data);
         bstep = new X11BStep();
-        bstep.process(data, context);
+        bstep.process(context, ws);
+        ws.remove("c1", "b1", "b20", context);
         cstep = new X11CStep();
-        cstep.process(data, context.remove(data, bstep.getB20()), context);
+        cstep.process(context, ws);
+        ws.remove("d1", "b1", "c20", context);
         dstep = new X11DStep();
-        dstep.process(data, context.remove(data, cstep.getC20()), context);
+        dstep.process(context, ws);
 
         return RawX11Results.builder()
                 .mode(context.getMode())
                 .b1(bstep.getB1())
-                .b2(bstep.getB2())
-                .b3(bstep.getB3())
-                .b4(bstep.getB4())
-                .b5(bstep.getB5())
-                .b6(bstep.getB6())
-                .b7(bstep.getB7())
-                .b8(bstep.getB8())
-                .b9(bstep.getB9())
-                .b10(bstep.getB10())
-                .b11(bstep.getB11())
-                .b13(bstep.getB13())
-                .b17(bstep.getB17())
-                .b20(bstep.getB20())
-                .c1(cstep.getC1())
-                .c2(cstep.getC2())
-                .c4(cstep.getC4())
-                .c5(cstep.getC5())
-                .c6(cstep.getC6())
-                .c7(cstep.getC7())
-                .c9(cstep.getC9())
-                .c10(cstep.getC10())
-                .c11(cstep.getC11())
-                .c13(cstep.getC13())
-                .c17(cstep.getC17())
-                .c20(cstep.getC20())
-                .d1(dstep.getD1())
-                .d2(dstep.getD2())
-                .d4(dstep.getD4())
-                .d5(dstep.getD5())
-                .d6(dstep.getD6())
-                .d7(dstep.getD7())
-                .d8(dstep.getD8())
-                .d10(dstep.getD10())
-                .d11(dstep.getD11())
-                .d12(dstep.getD12())
-                .d13(dstep.getD13())
+                .b2(ws.result("b2", bstep.getB2()))
+                .b3(ws.result("b3", bstep.getB3()))
+                .b4(ws.result("b4", bstep.getB4()))
+                .b5(ws.result("b5", bstep.getB5()))
+                .b6(ws.result("b6", bstep.getB6()))
+                .b7(ws.result("b7", bstep.getB7()))
+                .b8(ws.result("b8", bstep.getB8()))
+                .b9(ws.result("b9", bstep.getB9()))
+                .b10(ws.result("b10", bstep.getB10()))
+                .b11(ws.result("b11", bstep.getB11()))
+                .b13(ws.result("b13", bstep.getB13()))
+                .b17(ws.result("b17", bstep.getB17()))
+                .b20(ws.result("b20", bstep.getB20()))
+                .c1(ws.result("c1", cstep.getC1()))
+                .c2(ws.result("c2", cstep.getC2()))
+                .c4(ws.result("c4", cstep.getC4()))
+                .c5(ws.result("c5", cstep.getC5()))
+                .c6(ws.result("c6", cstep.getC6()))
+                .c7(ws.result("c7", cstep.getC7()))
+                .c9(ws.result("c9", cstep.getC9()))
+                .c10(ws.result("c10", cstep.getC10()))
+                .c11(ws.result("c11", cstep.getC11()))
+                .c13(ws.result("c13", cstep.getC13()))
+                .c17(ws.result("c17", cstep.getC17()))
+                .c20(ws.result("c20", cstep.getC20()))
+                .d1(ws.result("d1", dstep.getD1()))
+                .d2(ws.result("d2", dstep.getD2()))
+                .d4(ws.result("d4", dstep.getD4()))
+                .d5(ws.result("d5", dstep.getD5()))
+                .d6(ws.result("d6", dstep.getD6()))
+                .d7(ws.result("d7", dstep.getD7()))
+                .d8(ws.result("d8", dstep.getD8()))
+                .d10(ws.result("d10", dstep.getD10()))
+                .d11(ws.result("d11", dstep.getD11()))
+                .d12(ws.result("d12", dstep.getD12()))
+                .d13(ws.result("d13", dstep.getD13()))
                 .build();
     }
 
@@ -133,7 +200,10 @@ public class RawX11Kernel {
         return estep;
     }
 
-    private void clear() {
+    /**
+     * Releases the intermediate steps of the last processing
+     */
+    public void clear() {
         bstep = null;
         cstep = null;
         dstep = null;
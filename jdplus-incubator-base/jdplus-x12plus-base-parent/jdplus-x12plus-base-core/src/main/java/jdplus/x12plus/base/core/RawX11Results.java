@@ -5,6 +5,7 @@
  */
 package jdplus.x12plus.base.core;
 
+import java.util.Set;
 import jdplus.sa.base.api.DecompositionMode;
 import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.toolkit.base.api.information.GenericExplorable;
@@ -25,4 +26,65 @@ public class RawX11Results implements GenericExplorable{
 
     DecompositionMode mode;
 
+    /**
+     * Keeps only the given tables. The other tables are set to null, so that
+     * they can be released. The data are not copied. B1 (the analysed series)
+     * is always kept: it defines the domain of the results.
+     *
+     * @param tables The names of the tables ("b1", ..., "d13"). All the tables
+     * are kept if tables is null
+     * @return
+     */
+    public RawX11Results select(Set<String> tables) {
+        if (tables == null) {
+            return this;
+        }
+        return RawX11Results.builder()
+                .nbackcasts(nbackcasts)
+                .nforecasts(nforecasts)
+                .mode(mode)
+                .b1(b1)
+                .b2(select(tables, "b2", b2))
+                .b3(select(tables, "b3", b3))
+                .b4(select(tables, "b4", b4))
+                .b5(select(tables, "b5", b5))
+                .b6(select(tables, "b6", b6))
+                .b7(select(tables, "b7", b7))
+                .b8(select(tables, "b8", b8))
+                .b9(select(tables, "b9", b9))
+                .b10(select(tables, "b10", b10))
+                .b11(select(tables, "b11", b11))
+                .b13(select(tables, "b13", b13))
+                .b17(select(tables, "b17", b17))
+                .b20(select(tables, "b20", b20))
+                .c1(select(tables, "c1", c1))
+                .c2(select(tables, "c2", c2))
+                .c4(select(tables, "c4", c4))
+                .c5(select(tables, "c5", c5))
+                .c6(select(tables, "c6", c6))
+                .c7(select(tables, "c7", c7))
+                .c9(select(tables, "c9", c9))
+                .c10(select(tables, "c10", c10))
+                .c11(select(tables, "c11", c11))
+                .c13(select(tables, "c13", c13))
+                .c17(select(tables, "c17", c17))
+                .c20(select(tables, "c20", c20))
+                .d1(select(tables, "d1", d1))
+                .d2(select(tables, "d2", d2))
+                .d4(select(tables, "d4", d4))
+                .d5(select(tables, "d5", d5))
+                .d6(select(tables, "d6", d6))
+                .d7(select(tables, "d7", d7))
+                .d8(select(tables, "d8", d8))
+                .d10(select(tables, "d10", d10))
+                .d11(select(tables, "d11", d11))
+                .d12(select(tables, "d12", d12))
+                .d13(select(tables, "d13", d13))
+                .build();
+    }
+
+    private static DoubleSeq select(Set<String> tables, String name, DoubleSeq s) {
+        return tables.contains(name) ? s : null;
+    }
+
 }
@@ -16,10 +16,7 @@
  */
 package jdplus.x12plus.base.core;
 
-import jdplus.toolkit.base.core.data.DataBlock;
-import jdplus.toolkit.base.core.math.linearfilters.SymmetricFilter;
 import jdplus.toolkit.base.api.data.DoubleSeq;
-import jdplus.toolkit.base.core.math.linearfilters.IFiltering;
 
 /**
  *
@@ -70,92 +67,92 @@ public class X11BStep {
     }
 
     public void process(DoubleSeq input, X11Context context) {
-        b1 = input;
-        b2(context);
-        b3(context);
-        b4(context);
-        b5(context);
-        b6(context);
-        b7(context);
-        b8(context);
-        b9(context);
-        bfinal(context);
+        X11Workspace ws = X11Workspace.allocating();
+        ws.start(context);
+        ws.input("b1", input);
+        process(context, ws);
     }
 
-    private void b2(X11Context context) {
-        SymmetricFilter filter = X11FilterFactory.makeSymmetricFilter(context.getPeriod());
-        b2drop = filter.length() / 2;
-
-        double[] x = RawX11Kernel.table(b1.length() - 2 * b2drop, Double.NaN);
-        DataBlock out = DataBlock.of(x, 0, x.length);
-        filter.apply(b1, out);
-        b2 = DoubleSeq.of(x);
+    /**
+     * Processes the series registered as "b1" in the workspace
+     *
+     * @param context
+     * @param ws
+     */
+    void process(X11Context context, X11Workspace ws) {
+        b1 = ws.table("b1");
+        b2(context, ws);
+        b3(context, ws);
+        b4(context, ws);
+        b5(context, ws);
+        b6(context, ws);
+        b7(context, ws);
+        b8(context, ws);
+        b9(context, ws);
+        bfinal(context, ws);
     }
 
-    private void b3(X11Context context) {
-        b3 = context.remove(b1.drop(b2drop, b2drop), b2);
+    private void b2(X11Context context, X11Workspace ws) {
+        b2drop = X11FilterFactory.makeSymmetricFilter(context.getPeriod()).length() / 2;
+        b2 = ws.movingAverage("b2", "b1", context);
     }
 
-    private void b4(X11Context context) {
-        IFiltering filter = context.getInitialSeasonalFiltering();
-        b4a = filter.process(b3);
-        b4anorm = DefaultSeasonalNormalizer.normalize(b4a, 0, context);
-        b4d = context.remove(b3, b4anorm);
+    private void b3(X11Context context, X11Workspace ws) {
+        b3 = ws.remove("b3", "b1", "b2", context);
+    }
 
-        DefaultExtremeValuesCorrector ecorr = new DefaultExtremeValuesCorrector();
-        ecorr.setStart(b2drop);
-        ecorr.analyse(b4d, context);
+    private void b4(X11Context context, X11Workspace ws) {
+        int n = b3.length();
+        b4a = ws.seasonal("b4a", context.getInitialSeasonalFiltering(), "b3");
+        b4anorm = ws.normalize("b4anorm", "b4a", 0, context);
+        b4d = ws.remove("b4d", "b3", "b4anorm", context);
 
-        b4 = ecorr.computeCorrections(b3);
-        b4g = ecorr.applyCorrections(b3, b4);
+        DefaultExtremeValuesCorrector ecorr = ws.corrector("b4", "b4d", b2drop, context);
+        b4 = ws.add("b4", "b3", ecorr.computeCorrections(b3, ws.buffer("b4", n)));
+        b4g = ws.add("b4g", "b3", ecorr.applyCorrections(b3, b4, ws.buffer("b4g", n)));
     }
 
-    private void b5(X11Context context) {
-        IFiltering filter = context.getInitialSeasonalFiltering();
-        DoubleSeq b5a = filter.process(b4g);
-        b5 = DefaultSeasonalNormalizer.normalize(b5a, b2drop, context);
+    private void b5(X11Context context, X11Workspace ws) {
+        ws.seasonal("b5a", context.getInitialSeasonalFiltering(), "b4g");
+        b5 = ws.normalize("b5", "b5a", b2drop, context);
     }
 
-    private void b6(X11Context context) {
-        b6 = context.remove(b1, b5);
+    private void b6(X11Context context, X11Workspace ws) {
+        b6 = ws.remove("b6", "b1", "b5", context);
     }
 
-    private void b7(X11Context context) {
-        b7 = context.getTrendFiltering().process(b6);
+    private void b7(X11Context context, X11Workspace ws) {
+        b7 = ws.trend("b7", "b6", context);
         if (context.getMode().isMultiplicative() && b7.anyMatch(z -> z <= 0)) {
             throw new X11Exception(X11Exception.ERR_NEG);
         }
     }
 
-    private void b8(X11Context context) {
-        b8 = context.remove(b1, b7);
+    private void b8(X11Context context, X11Workspace ws) {
+        b8 = ws.remove("b8", "b1", "b7", context);
     }
 
-    private void b9(X11Context context) {
-        IFiltering filter = context.getFinalSeasonalFiltering();
-        DoubleSeq b9a = filter.process(b8);
-        DoubleSeq b9c = DefaultSeasonalNormalizer.normalize(b9a, 0, context);
-        DoubleSeq b9d = context.remove(b8, b9c);
-        DefaultExtremeValuesCorrector ecorr = new DefaultExtremeValuesCorrector();
-        ecorr.setStart(0);
-        ecorr.analyse(b9d, context);
+    private void b9(X11Context context, X11Workspace ws) {
+        int n = b8.length();
+        ws.seasonal("b9a", context.getFinalSeasonalFiltering(), "b8");
+        ws.normalize("b9c", "b9a", 0, context);
+        ws.remove("b9d", "b8", "b9c", context);
+        DefaultExtremeValuesCorrector ecorr = ws.corrector("b9", "b9d", 0, context);
 
-        b9 = ecorr.computeCorrections(b8);
-        b9g = ecorr.applyCorrections(b8, b9);
+        b9 = ws.add("b9", "b8", ecorr.computeCorrections(b8, ws.buffer("b9", n)));
+        b9g = ws.add("b9g", "b8", ecorr.applyCorrections(b8, b9, ws.buffer("b9g", n)));
     }
 
-    private void bfinal(X11Context context) {
-        IFiltering filter = context.getFinalSeasonalFiltering();
-        DoubleSeq b10a = filter.process(b9g);
-        b10 = DefaultSeasonalNormalizer.normalize(b10a, 0, context);
-        b11 = context.remove(b1, b10);
-        b13 = context.remove(b11, b7);
+    private void bfinal(X11Context context, X11Workspace ws) {
+        int n = b1.length();
+        ws.seasonal("b10a", context.getFinalSeasonalFiltering(), "b9g");
+        b10 = ws.normalize("b10", "b10a", 0, context);
+        b11 = ws.remove("b11", "b1", "b10", context);
+        b13 = ws.remove("b13", "b11", "b7", context);
 
-        DefaultExtremeValuesCorrector ecorr = new DefaultExtremeValuesCorrector();
-        ecorr.setStart(0);
-        ecorr.analyse(b13, context);
+        DefaultExtremeValuesCorrector ecorr = ws.corrector("b17", "b13", 0, context);
         b17 = ecorr.getObservationWeights();
-        b20 = ecorr.getCorrectionFactors();
+        b20 = ws.add("b20", "b13", ecorr.getCorrectionFactors(ws.buffer("b20", n)));
     }
 
     /**
@@ -16,9 +16,6 @@
  */
 package jdplus.x12plus.base.core;
 
-import jdplus.toolkit.base.core.data.DataBlock;
-import jdplus.toolkit.base.core.math.linearfilters.IFiltering;
-import jdplus.toolkit.base.core.math.linearfilters.SymmetricFilter;
 import jdplus.toolkit.base.api.data.DoubleSeq;
 
 /**
@@ -31,63 +28,69 @@ public class X11CStep {
     private int c2drop;
 
     public void process(DoubleSeq refSeries, DoubleSeq input, X11Context context) {
-        this.refSeries=refSeries;
-        c1 = input;
-        c2(context);
-        c4(context);
-        c5(context);
-        c6(context);
-        c7(context);
-        c9(context);
-        cfinal(context);
+        X11Workspace ws = X11Workspace.allocating();
+        ws.start(context);
+        ws.input("b1", refSeries);
+        ws.input("c1", input);
+        process(context, ws);
     }
 
-    private void c2(X11Context context) {
-        SymmetricFilter filter = X11FilterFactory.makeSymmetricFilter(context.getPeriod());
-        c2drop = filter.length() / 2;
+    /**
+     * Processes the series registered as "c1" in the workspace. The reference
+     * series is "b1"
+     *
+     * @param context
+     * @param ws
+     */
+    void process(X11Context context, X11Workspace ws) {
+        this.refSeries = ws.table("b1");
+        c1 = ws.table("c1");
+        c2(context, ws);
+        c4(context, ws);
+        c5(context, ws);
+        c6(context, ws);
+        c7(context, ws);
+        c9(context, ws);
+        cfinal(context, ws);
+    }
 
-        double[] x = RawX11Kernel.table(c1.length() - 2 * c2drop, Double.NaN);
-        DataBlock out = DataBlock.of(x, 0, x.length);
-        filter.apply(c1, out);
-        c2 = DoubleSeq.of(x);
+    private void c2(X11Context context, X11Workspace ws) {
+        c2drop = X11FilterFactory.makeSymmetricFilter(context.getPeriod()).length() / 2;
+        c2 = ws.movingAverage("c2", "c1", context);
     }
 
-    private void c5(X11Context context) {
-        IFiltering filter = context.getInitialSeasonalFiltering();
-        DoubleSeq c5a = filter.process(c4);
-        c5 = DefaultSeasonalNormalizer.normalize(c5a, c2drop, context);
+    private void c5(X11Context context, X11Workspace ws) {
+        ws.seasonal("c5a", context.getInitialSeasonalFiltering(), "c4");
+        c5 = ws.normalize("c5", "c5a", c2drop, context);
     }
 
-    private void c4(X11Context context) {
-        c4 = context.remove(c1.drop(c2drop, c2drop), c2);
+    private void c4(X11Context context, X11Workspace ws) {
+        c4 = ws.remove("c4", "c1", "c2", context);
     }
 
-    private void c6(X11Context context) {
-        c6 = context.remove(c1, c5);
+    private void c6(X11Context context, X11Workspace ws) {
+        c6 = ws.remove("c6", "c1", "c5", context);
     }
 
-    private void c7(X11Context context) {
-        c7 = context.getTrendFiltering().process(c6);
+    private void c7(X11Context context, X11Workspace ws) {
+        c7 = ws.trend("c7", "c6", context);
         if (context.getMode().isMultiplicative() && c7.anyMatch(z->z <=0))
             throw new X11Exception(X11Exception.ERR_NEG);
     }
     
-    private void c9(X11Context context) {
-        c9=context.remove(c1, c7);
+    private void c9(X11Context context, X11Workspace ws) {
+        c9=ws.remove("c9", "c1", "c7", context);
     }
 
-    private void cfinal(X11Context context) {
-        IFiltering filter = context.getFinalSeasonalFiltering();
-        DoubleSeq c10a = filter.process(c9);
-        c10=DefaultSeasonalNormalizer.normalize(c10a, 0, context);
-        c11=context.remove(refSeries, c10);
-        c13=context.remove(c11, c7);
+    private void cfinal(X11Context context, X11Workspace ws) {
+        ws.seasonal("c10a", context.getFinalSeasonalFiltering(), "c9");
+        c10=ws.normalize("c10", "c10a", 0, context);
+        c11=ws.remove("c11", "b1", "c10", context);
+        c13=ws.remove("c13", "c11", "c7", context);
         
-        DefaultExtremeValuesCorrector ecorr=new DefaultExtremeValuesCorrector();
-        ecorr.setStart(0);
-        ecorr.analyse(c13, context);
+        DefaultExtremeValuesCorrector ecorr=ws.corrector("c17", "c13", 0, context);
         c17 = ecorr.getObservationWeights();
-        c20 = ecorr.getCorrectionFactors();
+        c20 = ws.add("c20", "c13", ecorr.getCorrectionFactors(ws.buffer("c20", c13.length())));
     }
 
     /**
@@ -20,6 +20,7 @@ import jdplus.toolkit.base.core.math.linearfilters.FiltersToolkit;
 import jdplus.toolkit.base.core.data.DataBlock;
 import jdplus.sa.base.api.DecompositionMode;
 import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.api.data.DoubleSeqCursor;
 import jdplus.toolkit.base.core.math.linearfilters.LocalPolynomialFilters;
 import jdplus.toolkit.base.api.math.linearfilters.LocalPolynomialFilterSpec;
 import jdplus.toolkit.base.core.math.linearfilters.IQuasiSymmetricFiltering;
@@ -65,24 +66,90 @@ public class X11Context {
         return builder;
     }
 
+    private boolean isMultiplicativeOp() {
+        return mode == DecompositionMode.Multiplicative || mode == DecompositionMode.PseudoAdditive;
+    }
+
+    /**
+     * Removes r from l (l/r or l-r, following the decomposition mode). The
+     * result is computed once, in a new array
+     *
+     * @param l
+     * @param r
+     * @return
+     */
     public DoubleSeq remove(DoubleSeq l, DoubleSeq r) {
-        if (mode == DecompositionMode.Multiplicative || mode == DecompositionMode.PseudoAdditive) {
-            return DoubleSeq.onMapping(l.length(), i -> l.get(i) / r.get(i));
+        double[] q = new double[l.length()];
+        remove(l, r, q);
+        return DoubleSeq.of(q);
+    }
+
+    /**
+     * Adds r to l (l*r or l+r, following the decomposition mode). The result
+     * is computed once, in a new array
+     *
+     * @param l
+     * @param r
+     * @return
+     */
+    public DoubleSeq add(DoubleSeq l, DoubleSeq r) {
+        double[] q = new double[l.length()];
+        add(l, r, q);
+        return DoubleSeq.of(q);
+    }
+
+    /**
+     * Removes r from l in the given buffer. The buffer may be the storage of l
+     * or of r (in-place computation, when they start at 0)
+     *
+     * @param l
+     * @param r
+     * @param q The buffer. Its length should be at least the length of l
+     */
+    public void remove(DoubleSeq l, DoubleSeq r, double[] q) {
+        int n = l.length();
+        if (r.length() < n) {
+            throw new IllegalArgumentException();
+        }
+        DoubleSeqCursor lcursor = l.cursor(), rcursor = r.cursor();
+        if (isMultiplicativeOp()) {
+            for (int i = 0; i < n; ++i) {
+                q[i] = lcursor.getAndNext() / rcursor.getAndNext();
+            }
         } else {
-            return DoubleSeq.onMapping(l.length(), i -> l.get(i) - r.get(i));
+            for (int i = 0; i < n; ++i) {
+                q[i] = lcursor.getAndNext() - rcursor.getAndNext();
+            }
         }
     }
 
-    public DoubleSeq add(DoubleSeq l, DoubleSeq r) {
-        if (mode == DecompositionMode.Multiplicative || mode == DecompositionMode.PseudoAdditive) {
-            return DoubleSeq.onMapping(l.length(), i -> l.get(i) * r.get(i));
+    /**
+     * Adds r to l in the given buffer. The buffer may be the storage of l or of
+     * r (in-place computation, when they start at 0)
+     *
+     * @param l
+     * @param r
+     * @param q The buffer. Its length should be at least the length of l
+     */
+    public void add(DoubleSeq l, DoubleSeq r, double[] q) {
+        int n = l.length();
+        if (r.length() < n) {
+            throw new IllegalArgumentException();
+        }
+        DoubleSeqCursor lcursor = l.cursor(), rcursor = r.cursor();
+        if (isMultiplicativeOp()) {
+            for (int i = 0; i < n; ++i) {
+                q[i] = lcursor.getAndNext() * rcursor.getAndNext();
+            }
         } else {
-            return DoubleSeq.onMapping(l.length(), i -> l.get(i) + r.get(i));
+            for (int i = 0; i < n; ++i) {
+                q[i] = lcursor.getAndNext() + rcursor.getAndNext();
+            }
         }
     }
 
     public void remove(DoubleSeq l, DoubleSeq r, DataBlock q) {
-        if (mode == DecompositionMode.Multiplicative || mode == DecompositionMode.PseudoAdditive) {
+        if (isMultiplicativeOp()) {
             q.set(l, r, (x, y) -> x / y);
         } else {
             q.set(l, r, (x, y) -> x - y);
@@ -90,7 +157,7 @@ public class X11Context {
     }
 
     public void add(DoubleSeq l, DoubleSeq r, DataBlock q) {
-        if (mode == DecompositionMode.Multiplicative || mode == DecompositionMode.PseudoAdditive) {
+        if (isMultiplicativeOp()) {
             q.set(l, r, (x, y) -> x * y);
         } else {
             q.set(l, r, (x, y) -> x + y);
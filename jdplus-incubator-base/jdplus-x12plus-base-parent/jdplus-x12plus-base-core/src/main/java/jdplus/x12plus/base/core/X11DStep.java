@@ -16,10 +16,7 @@
  */
 package jdplus.x12plus.base.core;
 
-import jdplus.toolkit.base.core.data.DataBlock;
-import jdplus.toolkit.base.core.math.linearfilters.SymmetricFilter;
 import jdplus.toolkit.base.api.data.DoubleSeq;
-import jdplus.toolkit.base.core.math.linearfilters.IFiltering;
 
 /**
  *
@@ -31,67 +28,78 @@ public class X11DStep {
     private int d2drop;
 
     public void process(DoubleSeq refSeries, DoubleSeq input, X11Context context) {
-        this.refSeries = refSeries;
-        d1 = input;
-        d2(context);
-        d4(context);
-        d5(context);
-        d6(context);
-        d7(context);
-        d8(context);
-        d9(context);
-        dfinal(context);
+        X11Workspace ws = X11Workspace.allocating();
+        ws.start(context);
+        ws.input("b1", refSeries);
+        ws.input("d1", input);
+        process(context, ws);
     }
 
-    private void d2(X11Context context) {
-        SymmetricFilter filter = X11FilterFactory.makeSymmetricFilter(context.getPeriod());
-        d2drop = filter.length() / 2;
+    /**
+     * Processes the series registered as "d1" in the workspace. The reference
+     * series is "b1"
+     *
+     * @param context
+     * @param ws
+     */
+    void process(X11Context context, X11Workspace ws) {
+        this.refSeries = ws.table("b1");
+        d1 = ws.table("d1");
+        d2(context, ws);
+        d4(context, ws);
+        d5(context, ws);
+        d6(context, ws);
+        d7(context, ws);
+        // D8 is not used by the next tables
+        if (ws.isSelected("d8")) {
+            d8(context, ws);
+        }
+        d9(context, ws);
+        dfinal(context, ws);
+    }
 
-        double[] x = RawX11Kernel.table(d1.length() - 2 * d2drop, Double.NaN);
-        DataBlock out = DataBlock.of(x, 0, x.length);
-        filter.apply(d1, out);
-        d2 = DoubleSeq.of(x);
+    private void d2(X11Context context, X11Workspace ws) {
+        d2drop = X11FilterFactory.makeSymmetricFilter(context.getPeriod()).length() / 2;
+        d2 = ws.movingAverage("d2", "d1", context);
     }
 
-    private void d4(X11Context context) {
-        d4 = context.remove(d1.drop(d2drop, d2drop), d2);
+    private void d4(X11Context context, X11Workspace ws) {
+        d4 = ws.remove("d4", "d1", "d2", context);
     }
 
-    private void d5(X11Context context) {
-        IFiltering filter = context.getInitialSeasonalFiltering();
-        DoubleSeq d5a = filter.process(d4);
-        d5 = DefaultSeasonalNormalizer.normalize(d5a, d2drop, context);
+    private void d5(X11Context context, X11Workspace ws) {
+        ws.seasonal("d5a", context.getInitialSeasonalFiltering(), "d4");
+        d5 = ws.normalize("d5", "d5a", d2drop, context);
     }
 
-    private void d6(X11Context context) {
-        d6 = context.remove(d1, d5);
+    private void d6(X11Context context, X11Workspace ws) {
+        d6 = ws.remove("d6", "d1", "d5", context);
     }
 
-    private void d7(X11Context context) {
-        d7 = context.getTrendFiltering().process(d6);
+    private void d7(X11Context context, X11Workspace ws) {
+        d7 = ws.trend("d7", "d6", context);
         if (context.getMode().isMultiplicative() && d7.anyMatch(z->z <=0))
             throw new X11Exception(X11Exception.ERR_NEG);
     }
 
-    private void d8(X11Context context) {
-        d8 = context.remove(refSeries, d7);
+    private void d8(X11Context context, X11Workspace ws) {
+        d8 = ws.remove("d8", "b1", "d7", context);
     }
 
-    private void d9(X11Context context) {
-        d9bis = context.remove(d1, d7);
+    private void d9(X11Context context, X11Workspace ws) {
+        d9bis = ws.remove("d9bis", "d1", "d7", context);
     }
 
-    private void dfinal(X11Context context) {
-        IFiltering filter = context.getFinalSeasonalFiltering();
-        d10bis = filter.process(d9bis);
-        d10 = DefaultSeasonalNormalizer.normalize(d10bis, 0, context);
-        d11bis = context.remove(d1, d10);
-        d11 = context.remove(refSeries, d10);
+    private void dfinal(X11Context context, X11Workspace ws) {
+        d10bis = ws.seasonal("d10bis", context.getFinalSeasonalFiltering(), "d9bis");
+        d10 = ws.normalize("d10", "d10bis", 0, context);
+        d11bis = ws.remove("d11bis", "d1", "d10", context);
+        d11 = ws.remove("d11", "b1", "d10", context);
 
-        d12 = context.getTrendFiltering().process(d11bis);
+        d12 = ws.trend("d12", "d11bis", context);
         if (context.getMode().isMultiplicative() && d12.anyMatch(z->z <=0))
             throw new X11Exception(X11Exception.ERR_NEG);
-        d13 = context.remove(d11, d12);
+        d13 = ws.remove("d13", "d11", "d12", context);
 
     }
 
@@ -16,9 +16,11 @@
  */
 package jdplus.x12plus.base.core;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 import jdplus.toolkit.base.core.math.linearfilters.FiltersToolkit;
 import jdplus.x12plus.base.api.SeasonalFilterOption;
 import jdplus.toolkit.base.core.data.DataBlock;
@@ -41,33 +43,68 @@ import jdplus.x12plus.base.api.X11SeasonalFilterSpec;
 @lombok.experimental.UtilityClass
 public class X11SeasonalFiltersFactory {
 
-    private final Map< Class, Function<SeasonalFilterSpec, ISymmetricFiltering>> map = new HashMap<>();
+    private final Map< Class, Function<SeasonalFilterSpec, ISymmetricFiltering>> map = new ConcurrentHashMap<>();
+
+    /**
+     * Maximum number of cached filters
+     */
+    public final int CACHE_SIZE = 256;
+
+    @lombok.Value
+    private static class Key {
+
+        double period;
+        boolean integer;
+        SeasonalFilterOption option;
+    }
+
+    /**
+     * The filters are immutable: they can be shared by all the threads
+     */
+    private final Map<Key, ISymmetricFiltering> FILTERS = new ConcurrentHashMap<>();
 
     public <S extends SeasonalFilterSpec> void register(Class<S> spec, Function<S, ISymmetricFiltering> fn) {
-        synchronized (map) {
-            if (fn != null) {
-                map.put(spec, (Function<SeasonalFilterSpec, ISymmetricFiltering>) fn);
-            }
+        if (fn != null) {
+            map.put(spec, (Function<SeasonalFilterSpec, ISymmetricFiltering>) fn);
         }
     }
 
     public <S extends FilterSpec> void unregister(Class<S> spec) {
-        synchronized (map) {
-            map.remove(spec);
-        }
+        map.remove(spec);
     }
 
     public ISymmetricFiltering of(SeasonalFilterSpec spec) {
-        synchronized (map) {
-            Function<SeasonalFilterSpec, ISymmetricFiltering> fn = map.get(spec.getClass());
-            if (fn == null) {
-                throw new LinearFilterException("Filter spec not registered");
-            }
-            return fn.apply(spec);
+        Function<SeasonalFilterSpec, ISymmetricFiltering> fn = map.get(spec.getClass());
+        if (fn == null) {
+            throw new LinearFilterException("Filter spec not registered");
         }
+        return fn.apply(spec);
     }
 
+    /**
+     * Gets the seasonal filter for a given period and option. The filters are
+     * cached (up to CACHE_SIZE filters)
+     *
+     * @param period
+     * @param option
+     * @return
+     */
     public ISymmetricFiltering filter(Number period, SeasonalFilterOption option) {
+        Key key = new Key(period.doubleValue(), period instanceof Integer, option);
+        ISymmetricFiltering f = FILTERS.get(key);
+        if (f == null) {
+            f = makeFilter(period, option);
+            if (FILTERS.size() < CACHE_SIZE) {
+                ISymmetricFiltering prev = FILTERS.putIfAbsent(key, f);
+                if (prev != null) {
+                    f = prev;
+                }
+            }
+        }
+        return f;
+    }
+
+    private ISymmetricFiltering makeFilter(Number period, SeasonalFilterOption option) {
 
         SymmetricFilter sfilter = null;
         IFiniteFilter[] efilters = null;
@@ -102,6 +139,27 @@ public class X11SeasonalFiltersFactory {
         }
     }
 
+    /**
+     * Applies a seasonal filtering in a given buffer. The filters of this
+     * factory don't allocate any array; other filterings are applied through
+     * their own process method, and their output is copied
+     *
+     * @param filtering The seasonal filtering
+     * @param in The input
+     * @param out The output (same length as the input)
+     * @param wrk A work array (its length should be at least the length of
+     * the input)
+     */
+    void process(ISymmetricFiltering filtering, DoubleSeq in, DataBlock out, double[] wrk) {
+        if (filtering instanceof DefaultFilter df) {
+            df.process(in, out, wrk);
+        } else if (filtering instanceof AnyFilter af) {
+            af.process(in, out, wrk);
+        } else {
+            out.copy(filtering.process(in));
+        }
+    }
+
     static class DefaultFilter implements ISymmetricFiltering {
 
         private final SymmetricFilter sfilter;
@@ -117,8 +175,13 @@ public class X11SeasonalFiltersFactory {
         @Override
         public DoubleSeq process(DoubleSeq in) {
             double[] x = new double[in.length()];
-            DataBlock out = DataBlock.of(x);
-            DataBlock input = DataBlock.of(in);
+            process(in, DataBlock.of(x), new double[x.length]);
+            return DoubleSeq.of(x);
+        }
+
+        void process(DoubleSeq in, DataBlock out, double[] wrk) {
+            in.copyTo(wrk, 0);
+            DataBlock input = DataBlock.of(wrk, 0, in.length());
             int n = sfilter.length() / 2;
             for (int i = 0; i < period; ++i) {
                 DataBlock cin = input.extract(i, -1, period);
@@ -128,7 +191,6 @@ public class X11SeasonalFiltersFactory {
                     endpoints.process(cin, cout);
                 }
             }
-            return DoubleSeq.of(x);
         }
 
         @Override
@@ -144,9 +206,15 @@ public class X11SeasonalFiltersFactory {
 
     static class AnyFilter implements ISymmetricFiltering {
 
+        /**
+         * Maximum number of cached plans (one by length of the series)
+         */
+        private static final int MAX_PLANS = 16;
+
         private final SymmetricFilter sfilter;
         private final IFiniteFilter[] endpoints;
         private final double period;
+        private final Map<Integer, Plan> plans = new ConcurrentHashMap<>();
 
         AnyFilter(final double period, final SymmetricFilter sfilter, final IFiniteFilter[] endpoints) {
             this.period = period;
@@ -154,11 +222,63 @@ public class X11SeasonalFiltersFactory {
             this.endpoints = endpoints;
         }
 
+        /**
+         * Sparse form of the filtering of a series of a given length:
+         * x[i] = sum(w[k]*in[idx[k]]), for start[i] &le; k &lt; start[i+1]
+         */
+        private static final class Plan {
+
+            private final int[] start, idx;
+            private final double[] w;
+
+            private Plan(int[] start, int[] idx, double[] w) {
+                this.start = start;
+                this.idx = idx;
+                this.w = w;
+            }
+
+            private void apply(DoubleSeq in, DataBlock out, double[] y) {
+                in.copyTo(y, 0);
+                int n = start.length - 1;
+                for (int i = 0; i < n; ++i) {
+                    double s = 0;
+                    for (int k = start[i]; k < start[i + 1]; ++k) {
+                        s += w[k] * y[idx[k]];
+                    }
+                    out.set(i, s);
+                }
+            }
+        }
+
         @Override
         public DoubleSeq process(DoubleSeq in) {
             double[] x = new double[in.length()];
+            process(in, DataBlock.of(x), new double[x.length]);
+            return DoubleSeq.of(x);
+        }
+
+        void process(DoubleSeq in, DataBlock out, double[] wrk) {
+            int len = in.length();
+            Plan plan = plans.get(len);
+            if (plan == null) {
+                plan = plan(len);
+                if (plans.size() < MAX_PLANS) {
+                    plans.putIfAbsent(len, plan);
+                }
+            }
+            plan.apply(in, out, wrk);
+        }
+
+        /**
+         * Computes the interpolation positions/weights of the subseries
+         * (which only depend on the length of the series and on the period)
+         * and combines them with the weights of the filters
+         *
+         * @param len Length of the series
+         * @return
+         */
+        private Plan plan(int len) {
             int n = sfilter.length(), m = n / 2;
-            DataBlock cin = DataBlock.make(n);
             double t = m * period;
             int l;
             if ((t - (int) t) < 1e-9) {
@@ -166,98 +286,96 @@ public class X11SeasonalFiltersFactory {
             } else {
                 l = 1 + m;
             }
-            for (int i = 0; i < x.length; ++i) {
-                cin.set(0);
+            // weights of the filters applied on the (interpolated) buffer
+            double[] cw = weights(n, cin -> sfilter.apply(cin));
+            double[][] lw = new double[m][], rw = new double[m][];
+            for (int c = 0; c < m; ++c) {
+                IFiniteFilter ep = endpoints[m - c - 1];
+                int k = m - c;
+                lw[c] = weights(n, cin -> ep.apply(cin.reverse().range(k, n)));
+                rw[c] = weights(n, cin -> ep.apply(cin.range(k, n)));
+            }
+            int[] start = new int[len + 1], idx = new int[2 * n * len];
+            double[] w = new double[idx.length];
+            int pos = 0;
+            for (int i = 0; i < len; ++i) {
+                start[i] = pos;
                 int c = (int) (i / period);
-                int q = (int) ((x.length - 1 - i) / period); // last possible item
+                int q = (int) ((len - 1 - i) / period); // last possible item
+                int cur;
+                double[] fw;
+                // [lo, hi[: items of the buffer used by the filter
+                int lo = 0, hi = n;
+                boolean lbound = false, rbound = false;
                 if (c >= l && q >= l) {
-                    // fill the input buffer;
-                    cin.set(m, in.get(i));
-                    double dcur = period;
-                    for (int j = m + 1; j < n; ++j, dcur += period) {
-                        int jcur = (int) dcur;
-                        double p0 = dcur - jcur, p1 = 1 - p0;
-                        if (p0 > 1e-9) {
-                            cin.set(j, p1 * in.get(i + jcur) + p0 * in.get(i + jcur + 1));
-                        } else {
-                            cin.set(j, in.get(i + jcur));
-                        }
-                    }
-                    dcur = period;
-                    for (int j = m - 1; j >= 0; --j, dcur += period) {
-                        int jcur = (int) dcur;
-                        double p0 = dcur - jcur, p1 = 1 - p0;
-                        if (p0 > 1e-9) {
-                            cin.set(j, p1 * in.get(i - jcur) + p0 * in.get(i - jcur - 1));
-                        } else {
-                            cin.set(j, in.get(i - jcur));
-                        }
-                    }
-                    x[i] = sfilter.apply(cin);
+                    cur = m;
+                    fw = cw;
                 } else if (c < l) {
-                    int w = c;
-                    // fill the input buffer;
-                    cin.set(w, in.get(i));
-                    double dcur = period;
-                    for (int j = w + 1; j < n; ++j, dcur += period) {
-                        int jcur = (int) dcur;
-                        double p0 = dcur - jcur, p1 = 1 - p0;
-                        if (p0 > 1e-9) {
-                            cin.set(j, p1 * in.get(i + jcur) + p0 * in.get(i + jcur + 1));
-                        } else {
-                            cin.set(j, in.get(i + jcur));
-                        }
-                    }
-                    dcur = period;
-                    for (int j = w - 1; j >= 0; --j, dcur += period) {
-                        int jcur = (int) dcur;
-                        double p0 = dcur - jcur, p1 = 1 - p0;
-                        if (p0 > 1e-9 && i - jcur - 1 >= 0) {
-                            cin.set(j, p1 * in.get(i - jcur) + p0 * in.get(i - jcur - 1));
-                        } else {
-                            cin.set(j, in.get(i - jcur));
-                        }
-                    }
+                    cur = c;
                     if (c < m) {
-                        int k = c + 1;
-                        x[i] = endpoints[m - k].apply(cin.reverse().range(m - c, n));
+                        fw = lw[c];
+                        hi = n - m + c;
                     } else {
-                        x[i] = sfilter.apply(cin);
+                        fw = cw;
                     }
+                    lbound = true;
                 } else {
-                    int w = n - q - 1;
-                    // fill the input buffer;
-                    cin.set(w, in.get(i));
-                    double dcur = period;
-                    for (int j = w + 1; j < n; ++j, dcur += period) {
-                        int jcur = (int) dcur;
-                        double p0 = dcur - jcur, p1 = 1 - p0;
-                        if (p0 > 1e-9 && i + jcur + 1 < in.length()) {
-                            cin.set(j, p1 * in.get(i + jcur) + p0 * in.get(i + jcur + 1));
-                        } else {
-                            cin.set(j, p1 * in.get(i + jcur));
-                        }
+                    cur = n - q - 1;
+                    if (q < m) {
+                        fw = rw[q];
+                        lo = m - q;
+                    } else {
+                        fw = cw;
                     }
-                    dcur = period;
-                    for (int j = w - 1; j >= 0; --j, dcur += period) {
-                        int jcur = (int) dcur;
-                        double p0 = dcur - jcur, p1 = 1 - p0;
-                        if (p0 > 1e-9) {
-                            cin.set(j, p1 * in.get(i - jcur) + p0 * in.get(i - jcur - 1));
-                        } else {
-                            cin.set(j, in.get(i - jcur));
-                        }
+                    rbound = true;
+                }
+                pos = add(idx, w, pos, i, fw[cur]);
+                double dcur = period;
+                for (int j = cur + 1; j < hi; ++j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9 && (!rbound || i + jcur + 1 < len)) {
+                        pos = add(idx, w, pos, i + jcur, fw[j] * p1);
+                        pos = add(idx, w, pos, i + jcur + 1, fw[j] * p0);
+                    } else {
+                        pos = add(idx, w, pos, i + jcur, rbound ? fw[j] * p1 : fw[j]);
                     }
-                    if (q < m) {
-                        int k = q + 1;
-                        x[i] = endpoints[m - k].apply(cin.range(m - q, n));
+                }
+                dcur = period;
+                for (int j = cur - 1; j >= lo; --j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9 && (!lbound || i - jcur - 1 >= 0)) {
+                        pos = add(idx, w, pos, i - jcur, fw[j] * p1);
+                        pos = add(idx, w, pos, i - jcur - 1, fw[j] * p0);
                     } else {
-                        x[i] = sfilter.apply(cin);
+                        pos = add(idx, w, pos, i - jcur, fw[j]);
                     }
-
                 }
             }
-            return DoubleSeq.of(x);
+            start[len] = pos;
+            return new Plan(start, Arrays.copyOf(idx, pos), Arrays.copyOf(w, pos));
+        }
+
+        /**
+         * Null coefficients are kept: as in the direct application of the
+         * filters, missing values propagate to all the outputs that use them
+         */
+        private static int add(int[] idx, double[] w, int pos, int i, double c) {
+            idx[pos] = i;
+            w[pos] = c;
+            return pos + 1;
+        }
+
+        private static double[] weights(int n, ToDoubleFunction<DataBlock> fn) {
+            double[] wts = new double[n];
+            DataBlock e = DataBlock.make(n);
+            for (int j = 0; j < n; ++j) {
+                e.set(0);
+                e.set(j, 1);
+                wts[j] = fn.applyAsDouble(e);
+            }
+            return wts;
         }
 
         @Override
@@ -16,6 +16,8 @@
  */
 package jdplus.x12plus.base.core;
 
+import java.util.List;
+import java.util.Set;
 import jdplus.toolkit.base.api.timeseries.TsData;
 import jdplus.toolkit.base.api.timeseries.TsPeriod;
 import jdplus.x12plus.base.api.MX11plusSpec;
@@ -29,66 +31,116 @@ import jdplus.x12plus.base.api.X11plusSpec;
 @lombok.experimental.UtilityClass
 public class X11Toolkit {
 
+    /**
+     * Names of the tables that can be materialized in the results
+     */
+    public final List<String> TABLES = List.of("b1", "b2", "b3", "b4", "b5", "b6", "b7", "b8", "b9", "b10", "b11", "b13", "b17", "b20", "c1", "c2", "c4", "c5", "c6", "c7", "c9", "c10", "c11", "c13", "c17", "c20", "d1", "d2", "d4", "d5", "d6", "d7", "d8", "d10", "d11", "d12", "d13");
+
     public X11plusResults process(TsData data, X11plusSpec spec) {
         RawX11Kernel x11 = new RawX11Kernel(spec);
-        RawX11Results decomp = x11.process(data.getValues());
+        return results(data.getStart(), x11.process(data.getValues()));
+    }
 
-        TsPeriod start = data.getStart();
+    /**
+     * Processes a batch of series sharing the same specification. The series
+     * are dispatched by chunks on a fork-join pool; each chunk re-uses its own
+     * pooled kernel for all the series it handles, so that the context of the
+     * processing (the filters) is built once by chunk and the work arrays of
+     * the different steps are re-used from one series to the other. Only the
+     * selected tables are copied out of the work arrays. The trend filters of
+     * the toolkit still allocate their outputs (B7, C7, D7, D12).
+     *
+     * @param data The series
+     * @param spec The common specification
+     * @param tables The tables that should be materialized (see TABLES). All
+     * the tables are materialized if tables is null
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @return The results, in the order of the series
+     */
+    public X11plusResults[] process(TsData[] data, X11plusSpec spec, Set<String> tables, int nthreads) {
+        X11plusResults[] rslts = new X11plusResults[data.length];
+        ForkJoinUtility.run(data.length, nthreads, () -> RawX11Kernel.pooled(spec), (x11, i) -> {
+            rslts[i] = results(data[i].getStart(), x11.process(data[i].getValues(), tables));
+            x11.clear();
+        });
+        return rslts;
+    }
 
+    private X11plusResults results(TsPeriod start, RawX11Results decomp) {
         return X11plusResults.builder()
-                .mode(decomp.getMode())
-                .b1(TsData.of(start, decomp.getB1()))
-                .b2(TsData.of(start, decomp.getB2()))
-                .b3(TsData.of(start, decomp.getB3()))
-                .b4(TsData.of(start, decomp.getB4()))
-                .b5(TsData.of(start, decomp.getB5()))
-                .b6(TsData.of(start, decomp.getB6()))
-                .b7(TsData.of(start, decomp.getB7()))
-                .b8(TsData.of(start, decomp.getB8()))
-                .b9(TsData.of(start, decomp.getB9()))
-                .b10(TsData.of(start, decomp.getB10()))
-                .b11(TsData.of(start, decomp.getB11()))
-                .b13(TsData.of(start, decomp.getB13()))
-                .b17(TsData.of(start, decomp.getB17()))
-                .b20(TsData.of(start, decomp.getB20()))
-                .c1(TsData.of(start, decomp.getC1()))
-                .c2(TsData.of(start, decomp.getC2()))
-                .c4(TsData.of(start, decomp.getC4()))
-                .c5(TsData.of(start, decomp.getC5()))
-                .c6(TsData.of(start, decomp.getC6()))
-                .c7(TsData.of(start, decomp.getC7()))
-                .c9(TsData.of(start, decomp.getC9()))
-                .c10(TsData.of(start, decomp.getC10()))
-                .c11(TsData.of(start, decomp.getC11()))
-                .c13(TsData.of(start, decomp.getC13()))
-                .c17(TsData.of(start, decomp.getC17()))
-                .c20(TsData.of(start, decomp.getC20()))
-                .d1(TsData.of(start, decomp.getD1()))
-                .d2(TsData.of(start, decomp.getD2()))
-                .d4(TsData.of(start, decomp.getD4()))
-                .d5(TsData.of(start, decomp.getD5()))
-                .d6(TsData.of(start, decomp.getD6()))
-                .d7(TsData.of(start, decomp.getD7()))
-                .d8(TsData.of(start, decomp.getD8()))
-                .d10(TsData.of(start, decomp.getD10()))
-                .d11(TsData.of(start, decomp.getD11()))
-                .d12(TsData.of(start, decomp.getD12()))
-                .d13(TsData.of(start, decomp.getD13()))
+                .start(start)
+                .raw(decomp)
                 .build();
     }
 
     public MX11Results process(TsData data, MX11plusSpec spec) {
+        return process(data, spec, kernels(spec));
+    }
+
+    /**
+     * Processes a batch of series sharing the same multi-periods
+     * specification. The series are dispatched by chunks on a fork-join pool
+     * (bounded by nthreads), so that the period steps of different series
+     * overlap; each chunk re-uses its own kernels (one by period, with their
+     * filters) for all the series it handles.
+     * The kernels of a chunk share a single pool of work arrays (one array by
+     * table), re-used by all the period steps of all the series of the
+     * chunk. Within a series, the steps are sequential and only D10-D13 of
+     * each step are copied out of the pool; the tables that are not needed by
+     * the next tables (D8) are not computed. So the peak memory of a chunk is
+     * a fixed multiple of the length of the longest series (the pool and the
+     * outputs of the trend filters of the toolkit, which still allocate them)
+     * plus the results themselves (D10-D13 of each step).
+     *
+     * @param data The series
+     * @param spec The common specification
+     * @param nthreads Number of threads. The common pool is used if nthreads
+     * is 0 or negative
+     * @return The results, in the order of the series
+     */
+    public MX11Results[] process(TsData[] data, MX11plusSpec spec, int nthreads) {
+        MX11Results[] rslts = new MX11Results[data.length];
+        ForkJoinUtility.run(data.length, nthreads, () -> kernels(spec), (kernels, i) -> rslts[i] = process(data[i], spec, kernels));
+        return rslts;
+    }
+
+    /**
+     * Tables of a period step that are used by the next steps or by the
+     * results
+     */
+    private final Set<String> STEP_TABLES = Set.of("d10", "d11", "d12", "d13");
+
+    /**
+     * Kernels of the different periods, sharing the same work arrays
+     *
+     * @param spec
+     * @return
+     */
+    private RawX11Kernel[] kernels(MX11plusSpec spec) {
+        X11Workspace ws = X11Workspace.pooled();
+        return spec.getPeriodSpecs().stream()
+                .map(pspec -> new RawX11Kernel(spec.step(pspec.getPeriod()), ws))
+                .toArray(RawX11Kernel[]::new);
+    }
+
+    private MX11Results process(TsData data, MX11plusSpec spec, RawX11Kernel[] kernels) {
         // We should add pre-processing
         MX11Results.Builder builder = MX11Results.builder()
                 .mode(spec.getMode());
+        List<PeriodSpec> pspecs = spec.getPeriodSpecs();
         TsData b1 = data;
-        for (PeriodSpec pspec : spec.getPeriodSpecs()) {
-            RawX11Kernel x11 = new RawX11Kernel(spec.step(pspec.getPeriod()));
-            RawX11Results decomp = x11.process(b1.getValues());
+        for (int i = 0; i < kernels.length; ++i) {
+            RawX11Kernel x11 = kernels[i];
+            // only D10-D13 are copied out of the work arrays, which are
+            // re-used by the next step
+            RawX11Results decomp = x11.process(b1.getValues(), STEP_TABLES);
+            x11.clear();
 
             TsPeriod start = b1.getStart();
 
             MX11Results.Step step = MX11Results.Step.builder()
+                    .period(pspecs.get(i).getPeriod())
                     .b1(b1)
                     .d10(TsData.of(start, decomp.getD10()))
                     .d11(TsData.of(start, decomp.getD11()))
@@ -96,7 +148,7 @@ public class X11Toolkit {
                     .d13(TsData.of(start, decomp.getD13()))
                     .build();
             builder.step(step);
-            b1=step.getD11();
+            b1 = step.getD11();
         }
 
         return builder.build();
@@ -16,6 +16,8 @@
  */
 package jdplus.x12plus.base.core;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import nbbrd.design.Development;
 import jdplus.toolkit.base.core.math.linearfilters.LinearFilterException;
 import jdplus.toolkit.base.core.math.linearfilters.SymmetricFilter;
@@ -28,6 +30,13 @@ import jdplus.toolkit.base.core.math.linearfilters.SymmetricFilter;
 @Development(status = Development.Status.Release)
 public final class X11TrendCycleFilterFactory {
 
+    /**
+     * Maximum number of cached Henderson filters
+     */
+    public static final int CACHE_SIZE = 64;
+
+    private static final Map<Integer, SymmetricFilter> HENDERSON = new ConcurrentHashMap<>();
+
     /**
      * The method returns the appropriate default Henderson filter for the
      * Trend-Cycle estimation. The length depends on the frequency of the
@@ -46,7 +55,8 @@ public final class X11TrendCycleFilterFactory {
     }
 
     /**
-     * Creates an Henderson filter for a given length
+     * Creates an Henderson filter for a given length. The (immutable) filters
+     * are cached
      * 
      * @param length The length of the Henderson filter. Should be an odd number
      * @return The corresponding Henderson filter
@@ -54,6 +64,19 @@ public final class X11TrendCycleFilterFactory {
     public static SymmetricFilter makeHendersonFilter(int length) {
 	if (length % 2 == 0)
 	    throw new LinearFilterException("Invalid length for Henderson filter. Should be odd");
+	SymmetricFilter filter = HENDERSON.get(length);
+	if (filter == null) {
+	    filter = computeHendersonFilter(length);
+	    if (HENDERSON.size() < CACHE_SIZE) {
+		SymmetricFilter prev = HENDERSON.putIfAbsent(length, filter);
+		if (prev != null)
+		    filter = prev;
+	    }
+	}
+	return filter;
+    }
+
+    private static SymmetricFilter computeHendersonFilter(int length) {
 	int m = length / 2;
 	double[] c = new double[m + 1];
 	int n = m + 2;
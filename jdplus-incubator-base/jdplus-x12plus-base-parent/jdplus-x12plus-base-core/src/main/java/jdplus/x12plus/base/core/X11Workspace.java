@@ -0,0 +1,498 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.x12plus.base.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.linearfilters.IQuasiSymmetricFiltering;
+import jdplus.toolkit.base.core.math.linearfilters.ISymmetricFiltering;
+import jdplus.toolkit.base.core.math.linearfilters.SymmetricFilter;
+
+/**
+ * Work arrays and tables of the X11 steps.
+ * <br>
+ * A pooled workspace keeps its arrays from one processing to the other: the
+ * tables produced by the steps are then only valid until the next
+ * processing, and the results must be copied out of the pool (see result).
+ * Otherwise, a new array is allocated for each table.
+ * <br>
+ * A tracking workspace (see next) keeps the tables of a previous processing
+ * of the same series (possibly shorter). Each table records the first
+ * position where it differs from the previous one: the filters are only
+ * applied on the tail of their input that can be affected by that change and
+ * the other values are copied from the previous tables. The corrections of
+ * the extreme values re-use the previous standard deviations in the same way.
+ * When the previous tables can't be re-used safely, a Restart exception is
+ * thrown and the series should be processed in full.
+ * <br>
+ * A workspace is not thread-safe: it should be owned by a single kernel (or
+ * by the kernels of a single thread).
+ *
+ * @author Jean Palate
+ */
+final class X11Workspace {
+
+    /**
+     * Thrown when the previous tables can't be re-used
+     */
+    static final class Restart extends RuntimeException {
+
+        Restart() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Filtering of a (part of a) table
+     */
+    @FunctionalInterface
+    static interface Filter {
+
+        void apply(DoubleSeq in, DataBlock out);
+    }
+
+    /**
+     * Table of a step. Its first item corresponds to the position offset of
+     * the series. change is the first position of the series where the table
+     * differs from the previous one (offset if there is no previous table)
+     */
+    private static final class Table {
+
+        private final int offset, change;
+        private final DoubleSeq data;
+
+        private Table(int offset, DoubleSeq data, int change) {
+            this.offset = offset;
+            this.data = data;
+            this.change = change;
+        }
+
+        private int end() {
+            return offset + data.length();
+        }
+    }
+
+    private static final String WRK = "wrk";
+
+    private final Map<String, double[]> pool;
+    private final Map<String, Table> tables = new HashMap<>();
+    // null if the workspace doesn't track the changes
+    private final Map<String, DefaultExtremeValuesCorrector.State> states;
+    private X11Workspace previous;
+    private Set<String> selection;
+    private int period, tail;
+
+    private X11Workspace(Map<String, double[]> pool, boolean tracking, X11Workspace previous) {
+        this.pool = pool;
+        this.states = tracking ? new HashMap<>() : null;
+        this.previous = previous;
+    }
+
+    static X11Workspace allocating() {
+        return new X11Workspace(null, false, null);
+    }
+
+    static X11Workspace pooled() {
+        return new X11Workspace(new HashMap<>(), false, null);
+    }
+
+    /**
+     * Allocating workspace that keeps its tables for a next processing
+     *
+     * @return
+     */
+    static X11Workspace tracking() {
+        return new X11Workspace(null, true, null);
+    }
+
+    boolean isPooled() {
+        return pool != null;
+    }
+
+    boolean isTracking() {
+        return states != null;
+    }
+
+    /**
+     * Workspace for the processing of an extension of the series processed
+     * with this workspace (which must be tracking)
+     *
+     * @return
+     */
+    X11Workspace next() {
+        if (states == null) {
+            throw new IllegalStateException();
+        }
+        return new X11Workspace(null, true, this);
+    }
+
+    /**
+     * Forgets the previous workspace (see next)
+     */
+    void release() {
+        previous = null;
+    }
+
+    /**
+     * Starts a new processing
+     *
+     * @param context
+     */
+    void start(X11Context context) {
+        tables.clear();
+        if (states != null) {
+            states.clear();
+        }
+        period = context.getPeriod().intValue();
+        tail = Integer.MAX_VALUE;
+    }
+
+    /**
+     * First position of the input that has been re-processed by the filters
+     * (0 if the series has been processed in full)
+     *
+     * @return
+     */
+    int getTailStart() {
+        return tail == Integer.MAX_VALUE ? 0 : tail;
+    }
+
+    /**
+     * Work array of a given table. The array may be longer than n (pooled
+     * workspace); its first n items are set to 0
+     *
+     * @param name The name of the table
+     * @param n The length of the table
+     * @return
+     */
+    double[] buffer(String name, int n) {
+        if (pool == null) {
+            return new double[n];
+        }
+        double[] x = pool.get(name);
+        if (x == null || x.length < n) {
+            x = new double[n];
+            pool.put(name, x);
+        } else {
+            Arrays.fill(x, 0, n, 0);
+        }
+        return x;
+    }
+
+    /**
+     * Read-only view on the first n items of a work array
+     *
+     * @param x
+     * @param n
+     * @return
+     */
+    static DoubleSeq seq(double[] x, int n) {
+        DoubleSeq s = DoubleSeq.of(x);
+        return n == x.length ? s : s.range(0, n);
+    }
+
+    /**
+     * Current content of a table
+     *
+     * @param name
+     * @return null if the table has not been computed
+     */
+    DoubleSeq table(String name) {
+        Table t = tables.get(name);
+        return t == null ? null : t.data;
+    }
+
+    /**
+     * Registers an input of the steps (which covers the whole series)
+     *
+     * @param name
+     * @param s
+     * @return s
+     */
+    DoubleSeq input(String name, DoubleSeq s) {
+        return put(name, 0, s, 0);
+    }
+
+    /**
+     * Registers a table computed outside the workspace
+     *
+     * @param name
+     * @param domain The table that has the same position in the series
+     * @param s
+     * @return s
+     */
+    DoubleSeq add(String name, String domain, DoubleSeq s) {
+        return put(name, tables.get(domain).offset, s, 0);
+    }
+
+    /**
+     * l (-/) r, on the common part of the two tables, in the work array of the
+     * given table
+     *
+     * @param name
+     * @param l
+     * @param r
+     * @param context
+     * @return
+     */
+    DoubleSeq remove(String name, String l, String r, X11Context context) {
+        Table lt = tables.get(l), rt = tables.get(r);
+        int beg = Math.max(lt.offset, rt.offset), end = Math.min(lt.end(), rt.end());
+        int n = end - beg;
+        DoubleSeq ls = lt.data.range(beg - lt.offset, end - lt.offset),
+                rs = rt.data.range(beg - rt.offset, end - rt.offset);
+        double[] x = buffer(name, n);
+        Table prev = previous(name, beg);
+        int k = 0;
+        if (prev != null) {
+            k = Math.min(Math.min(lt.change, rt.change) - beg, Math.min(n, prev.data.length()));
+            if (k > 0) {
+                prev.data.range(0, k).copyTo(x, 0);
+            } else {
+                k = 0;
+            }
+        }
+        if (k == 0) {
+            context.remove(ls, rs, x);
+        } else {
+            context.remove(ls.drop(k, 0), rs.drop(k, 0), DataBlock.of(x, k, n));
+        }
+        return put(name, beg, seq(x, n), k);
+    }
+
+    /**
+     * Moving average used by the steps 2 (the ends of the series are dropped)
+     *
+     * @param name
+     * @param in
+     * @param context
+     * @return
+     */
+    DoubleSeq movingAverage(String name, String in, X11Context context) {
+        SymmetricFilter filter = X11FilterFactory.makeSymmetricFilter(context.getPeriod());
+        int h = filter.length() / 2;
+        return filter(name, in, h, h, (s, out) -> {
+            out.set(Double.NaN);
+            filter.apply(s, out);
+        });
+    }
+
+    /**
+     * Seasonal filtering, in the work array of the given table
+     *
+     * @param name
+     * @param filtering
+     * @param in
+     * @return
+     */
+    DoubleSeq seasonal(String name, ISymmetricFiltering filtering, String in) {
+        int reach = filtering.centralFilter().getUpperBound() * period;
+        return filter(name, in, 0, reach,
+                (s, out) -> X11SeasonalFiltersFactory.process(filtering, s, out, buffer(WRK, s.length())));
+    }
+
+    /**
+     * Normalization of seasonal factors, in the work array of the given table
+     *
+     * @param name
+     * @param in
+     * @param nextend
+     * @param context
+     * @return
+     */
+    DoubleSeq normalize(String name, String in, int nextend, X11Context context) {
+        int h = X11FilterFactory.makeSymmetricFilter(context.getPeriod()).length() / 2;
+        return filter(name, in, -nextend, h,
+                (s, out) -> DefaultSeasonalNormalizer.normalize(s, nextend, context, out));
+    }
+
+    /**
+     * Trend filtering. The toolkit filters allocate their output, which is
+     * used as such when the changes are not tracked
+     *
+     * @param name
+     * @param in
+     * @param context
+     * @return
+     */
+    DoubleSeq trend(String name, String in, X11Context context) {
+        IQuasiSymmetricFiltering filtering = context.getTrendFiltering();
+        if (states == null) {
+            Table t = tables.get(in);
+            return put(name, t.offset, filtering.process(t.data), 0);
+        }
+        SymmetricFilter cf = filtering.centralFilter();
+        int reach = Math.max(cf.getUpperBound(), -cf.getLowerBound());
+        return filter(name, in, 0, reach, (s, out) -> out.copy(filtering.process(s)));
+    }
+
+    /**
+     * Extreme values corrector analysing a given table. When the changes are
+     * tracked, the analysis re-uses the previous one
+     *
+     * @param id The identifier of the corrector (and the prefix of its work
+     * arrays)
+     * @param in The analysed table
+     * @param start The start of the corrector
+     * @param context
+     * @return
+     */
+    DefaultExtremeValuesCorrector corrector(String id, String in, int start, X11Context context) {
+        Table t = tables.get(in);
+        DefaultExtremeValuesCorrector ecorr = new DefaultExtremeValuesCorrector(this, id);
+        ecorr.setStart(start);
+        DefaultExtremeValuesCorrector.State prev = previous == null ? null : previous.states.get(id);
+        ecorr.analyse(t.data, context, prev, t.change - t.offset);
+        if (states != null) {
+            states.put(id, ecorr.state());
+        }
+        return ecorr;
+    }
+
+    /**
+     * Applies a filter on a table. The output corresponds to the positions
+     * [offset + shift, end - shift[ of the input; its items only depend on the
+     * inputs at a distance smaller or equal to reach (the end points being
+     * computed on the last/first items of the input).
+     * When the changes are tracked, the filter is only applied on the tail of
+     * the input that starts 3*reach before the first change (and that is long
+     * enough to avoid any interaction between the two ends). The first reach
+     * outputs of the tail are then unusable; the next reach outputs must
+     * reproduce the previous table (otherwise, a Restart exception is thrown)
+     * and the outputs before them are copied from the previous table.
+     *
+     * @param name
+     * @param in
+     * @param shift
+     * @param reach
+     * @param fn
+     * @return
+     */
+    private DoubleSeq filter(String name, String in, int shift, int reach, Filter fn) {
+        Table t = tables.get(in);
+        int nin = t.data.length(), n = nin - 2 * shift, offset = t.offset + shift;
+        double[] x = buffer(name, n);
+        Table prev = previous(name, offset);
+        int s = 0, k = 0;
+        if (prev != null) {
+            s = Math.min(t.change - t.offset - 3 * reach, nin - 4 * reach - 2 * period);
+            k = s + 2 * reach - shift;
+            if (s <= 0 || k > prev.data.length()) {
+                s = 0;
+                k = 0;
+            }
+        }
+        fn.apply(s == 0 ? t.data : t.data.drop(s, 0), DataBlock.of(x, s, n));
+        if (k > 0) {
+            int c = s + reach - shift;
+            if (firstDifference(prev.data.range(c, k), seq(x, n).range(c, k), 0) < k - c) {
+                throw new Restart();
+            }
+            prev.data.range(0, k).copyTo(x, 0);
+        }
+        tail = Math.min(tail, s == 0 ? 0 : t.offset + s);
+        return put(name, offset, seq(x, n), k);
+    }
+
+    /**
+     * Table of the previous processing, if it has the same position
+     *
+     * @param name
+     * @param offset
+     * @return
+     */
+    private Table previous(String name, int offset) {
+        if (previous == null) {
+            return null;
+        }
+        Table prev = previous.tables.get(name);
+        return prev == null || prev.offset != offset ? null : prev;
+    }
+
+    /**
+     * Registers a table
+     *
+     * @param name
+     * @param offset
+     * @param data
+     * @param from The items before that position are identical to the
+     * previous table
+     * @return data
+     */
+    private DoubleSeq put(String name, int offset, DoubleSeq data, int from) {
+        int change = offset;
+        Table prev = previous(name, offset);
+        if (prev != null) {
+            change += firstDifference(prev.data, data, from);
+        }
+        tables.put(name, new Table(offset, data, change));
+        return data;
+    }
+
+    /**
+     * First position (from a given position) where two series differ
+     * (bitwise)
+     *
+     * @param l
+     * @param r
+     * @param from
+     * @return The first position that differs, or the length of the shortest
+     * series
+     */
+    private static int firstDifference(DoubleSeq l, DoubleSeq r, int from) {
+        int n = Math.min(l.length(), r.length());
+        for (int i = from; i < n; ++i) {
+            if (Double.doubleToLongBits(l.get(i)) != Double.doubleToLongBits(r.get(i))) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Sets the tables that should be put in the results
+     *
+     * @param tables The names of the tables. All the tables are selected if
+     * tables is null
+     */
+    void select(Set<String> tables) {
+        this.selection = tables;
+    }
+
+    boolean isSelected(String table) {
+        return selection == null || selection.contains(table);
+    }
+
+    /**
+     * Table as it should be put in the results: null if it is not selected,
+     * a copy if it is stored in the pool
+     *
+     * @param table
+     * @param s
+     * @return
+     */
+    DoubleSeq result(String table, DoubleSeq s) {
+        if (s == null || !isSelected(table)) {
+            return null;
+        }
+        return pool == null ? s : DoubleSeq.of(s.toArray());
+    }
+}
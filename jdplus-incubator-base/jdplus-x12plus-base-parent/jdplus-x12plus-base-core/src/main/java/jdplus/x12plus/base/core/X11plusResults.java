@@ -8,52 +8,265 @@ package jdplus.x12plus.base.core;
 import jdplus.sa.base.api.ComponentType;
 import jdplus.sa.base.api.DecompositionMode;
 import jdplus.sa.base.api.SeriesDecomposition;
+import jdplus.toolkit.base.api.data.DoubleSeq;
 import jdplus.toolkit.base.api.information.GenericExplorable;
 import jdplus.toolkit.base.api.timeseries.TsData;
 import jdplus.toolkit.base.api.timeseries.TsDomain;
+import jdplus.toolkit.base.api.timeseries.TsPeriod;
 
 /**
+ * Results of X11. The tables are materialized (as time series) on demand,
+ * from the raw results; the cache of the materialized tables is not part of
+ * the value (equals, hashCode, toString).
  *
  * @author Thomas Witthohn
  */
 @lombok.Value
-@lombok.Builder
 public class X11plusResults implements GenericExplorable{
 
+    /**
+     * Number of tables
+     */
+    public static final int NTABLES = 37;
+
     int nbackcasts, nforecasts;
+    /**
+     * Start of the tables
+     */
+    TsPeriod start;
+    @lombok.Getter(lombok.AccessLevel.NONE)
+    RawX11Results raw;
+    /**
+     * The time series are created on demand, from the tables of the raw
+     * results
+     */
+    @lombok.Getter(lombok.AccessLevel.NONE)
+    @lombok.EqualsAndHashCode.Exclude
+    @lombok.ToString.Exclude
+    TsData[] tables = new TsData[NTABLES];
+
+    @lombok.Builder(builderClassName = "Builder")
+    private X11plusResults(TsPeriod start, RawX11Results raw, int nbackcasts, int nforecasts) {
+        this.start = start;
+        this.raw = raw;
+        this.nbackcasts = nbackcasts;
+        this.nforecasts = nforecasts;
+    }
+
+    public DecompositionMode getMode() {
+        return raw.getMode();
+    }
+
+    /**
+     * Underlying (raw) results
+     *
+     * @return
+     */
+    public RawX11Results getRawResults() {
+        return raw;
+    }
+
+    private TsData table(int pos, DoubleSeq s) {
+        TsData t = tables[pos];
+        if (t == null && s != null) {
+            t = TsData.of(start, s);
+            tables[pos] = t;
+        }
+        return t;
+    }
+
+    public TsData getB1() {
+        return table(0, raw.getB1());
+    }
 
-    TsData b1, b2, b3, b4, b5, b6, b7, b8, b9, b10, b11, b13, b17, b20;
-    TsData c1, c2, c4, c5, c6, c7, c9, c10, c11, c13, c17, c20;
-    TsData d1, d2, d4, d5, d6, d7, d8, d10, d11, d12, d13;
+    public TsData getB2() {
+        return table(1, raw.getB2());
+    }
+
+    public TsData getB3() {
+        return table(2, raw.getB3());
+    }
+
+    public TsData getB4() {
+        return table(3, raw.getB4());
+    }
+
+    public TsData getB5() {
+        return table(4, raw.getB5());
+    }
+
+    public TsData getB6() {
+        return table(5, raw.getB6());
+    }
+
+    public TsData getB7() {
+        return table(6, raw.getB7());
+    }
 
-    DecompositionMode mode;
+    public TsData getB8() {
+        return table(7, raw.getB8());
+    }
+
+    public TsData getB9() {
+        return table(8, raw.getB9());
+    }
+
+    public TsData getB10() {
+        return table(9, raw.getB10());
+    }
+
+    public TsData getB11() {
+        return table(10, raw.getB11());
+    }
+
+    public TsData getB13() {
+        return table(11, raw.getB13());
+    }
+
+    public TsData getB17() {
+        return table(12, raw.getB17());
+    }
+
+    public TsData getB20() {
+        return table(13, raw.getB20());
+    }
+
+    public TsData getC1() {
+        return table(14, raw.getC1());
+    }
+
+    public TsData getC2() {
+        return table(15, raw.getC2());
+    }
+
+    public TsData getC4() {
+        return table(16, raw.getC4());
+    }
+
+    public TsData getC5() {
+        return table(17, raw.getC5());
+    }
 
+    public TsData getC6() {
+        return table(18, raw.getC6());
+    }
+
+    public TsData getC7() {
+        return table(19, raw.getC7());
+    }
+
+    public TsData getC9() {
+        return table(20, raw.getC9());
+    }
+
+    public TsData getC10() {
+        return table(21, raw.getC10());
+    }
+
+    public TsData getC11() {
+        return table(22, raw.getC11());
+    }
+
+    public TsData getC13() {
+        return table(23, raw.getC13());
+    }
+
+    public TsData getC17() {
+        return table(24, raw.getC17());
+    }
+
+    public TsData getC20() {
+        return table(25, raw.getC20());
+    }
+
+    public TsData getD1() {
+        return table(26, raw.getD1());
+    }
+
+    public TsData getD2() {
+        return table(27, raw.getD2());
+    }
+
+    public TsData getD4() {
+        return table(28, raw.getD4());
+    }
+
+    public TsData getD5() {
+        return table(29, raw.getD5());
+    }
+
+    public TsData getD6() {
+        return table(30, raw.getD6());
+    }
+
+    public TsData getD7() {
+        return table(31, raw.getD7());
+    }
+
+    public TsData getD8() {
+        return table(32, raw.getD8());
+    }
+
+    public TsData getD10() {
+        return table(33, raw.getD10());
+    }
+
+    public TsData getD11() {
+        return table(34, raw.getD11());
+    }
+
+    public TsData getD12() {
+        return table(35, raw.getD12());
+    }
+
+    public TsData getD13() {
+        return table(36, raw.getD13());
+    }
+
+    /**
+     * Main components of the decomposition. The components that have not been
+     * selected in the results are omitted
+     *
+     * @return
+     */
     public SeriesDecomposition asDecomposition(){
-        return SeriesDecomposition.builder(mode)
-                .add(b1, ComponentType.Series)
-                .add(d12, ComponentType.Trend)
-                .add(d11, ComponentType.SeasonallyAdjusted)
-                .add(d13, ComponentType.Irregular)
-                .add(d10, ComponentType.Seasonal)
-                .build();
+        SeriesDecomposition.Builder builder = SeriesDecomposition.builder(getMode());
+        add(builder, getB1(), ComponentType.Series);
+        add(builder, getD12(), ComponentType.Trend);
+        add(builder, getD11(), ComponentType.SeasonallyAdjusted);
+        add(builder, getD13(), ComponentType.Irregular);
+        add(builder, getD10(), ComponentType.Seasonal);
+        return builder.build();
     }
-    
+
+    private static void add(SeriesDecomposition.Builder builder, TsData s, ComponentType type) {
+        if (s != null) {
+            builder.add(s, type);
+        }
+    }
+
+    /**
+     * Domain of the tables, computed from the start and the length of the
+     * raw series (B1 is always kept in the raw results)
+     *
+     * @return
+     */
     public TsDomain getFullDomain() {
-        return b1.getDomain();
+        return TsDomain.of(start, raw.getB1().length());
     }
 
     public TsDomain getBackcastDomain() {
-        return b1.getDomain().range(0, nbackcasts);
+        return getFullDomain().range(0, nbackcasts);
     }
 
     public TsDomain getForecastDomain() {
-        TsDomain domain = b1.getDomain();
+        TsDomain domain = getFullDomain();
         int n = domain.getLength();
         return domain.range(n - nforecasts, n);
     }
 
     public TsDomain getActualDomain() {
-        TsDomain domain = b1.getDomain();
+        TsDomain domain = getFullDomain();
         return domain.range(nbackcasts, domain.getLength() - nforecasts);
     }
     
@@ -17,11 +17,20 @@
 package jdplus.x12plus.base.core.x12;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import jdplus.advancedsa.base.api.movingtd.MovingTradingDaysSpec;
 import jdplus.advancedsa.base.api.movingtd.TimeVaryingSpec;
 import jdplus.advancedsa.base.core.movingtd.MovingTradingDaysCorrection;
-import jdplus.advancedsa.base.core.movingtd.TimeVaryingCorrection;
 import jdplus.advancedsa.base.core.movingtd.TimeVaryingEstimator;
 import jdplus.toolkit.base.api.modelling.regular.SeriesSpec;
 import jdplus.toolkit.base.api.processing.ProcessingLog;
@@ -74,76 +83,94 @@ public class X12plusKernel {
     private X11plusSpec spec;
     private boolean preprop;
     private CholetteProcessor cholette;
+    private Executor executor;
 
     public static X12plusKernel of(X12plusSpec spec, ModellingContext context) {
+        return of(spec, context, null);
+    }
+
+    /**
+     * Kernel whose independent stages are executed on the given executor.
+     *
+     * @param spec
+     * @param context
+     * @param executor Executor of the independent stages. If null, all the
+     * stages are executed in the calling thread. The kernel may be used in
+     * tasks of the same (bounded) executor: a stage that is not yet started
+     * when its result is needed is executed in the calling thread, so that
+     * the processing never waits for a free thread of the executor
+     * @return
+     */
+    public static X12plusKernel of(X12plusSpec spec, ModellingContext context, Executor executor) {
         PreliminaryChecks.Tool check = of(spec);
         boolean blPreprop = spec.getPreprocessing().isEnabled();
         FastKernel preprocessor = FastKernel.of(spec.getPreprocessing(), context);
-        return new X12plusKernel(check, preprocessor, spec.getMovingTradingDays(), spec.getX11(), blPreprop, CholetteProcessor.of(spec.getBenchmarking()));
+        return new X12plusKernel(check, preprocessor, spec.getMovingTradingDays(), spec.getX11(), blPreprop, CholetteProcessor.of(spec.getBenchmarking()), executor);
     }
 
+    /**
+     * The stages of the processing, in their order of execution. Once the
+     * series is pre-processed, the estimation of the moving trading days is
+     * independent of the linearization and of X11; once the final components
+     * are computed, the benchmarking is independent of the diagnostics.
+     */
+    public static final String PRELIMINARY = "preliminary", PREPROCESSING = "preprocessing",
+            MOVINGTD = "movingtd", LINEARIZATION = "linearization", X11 = "x11",
+            FINALS = "finals", BENCHMARKING = "benchmarking", DIAGNOSTICS = "diagnostics";
+
+    private static final String[] STAGES = new String[]{PRELIMINARY, PREPROCESSING, MOVINGTD, LINEARIZATION,
+        X11, FINALS, BENCHMARKING, DIAGNOSTICS};
+
     public X12plusResults process(TsData s, ProcessingLog log) {
-        if (log == null) {
-            log = ProcessingLog.dummy();
-        }
+        ProcessingLog plog = log == null ? ProcessingLog.dummy() : log;
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        Executor exec = executor == null ? Runnable::run : executor;
         try {
             // Step 0. Preliminary checks
-            TsData sc = preliminary.check(s, log);
+            TsData sc = timed(timings, PRELIMINARY, () -> preliminary.check(s, plog));
             // Step 1. Preprocessing
-            RegSarimaModel preprocessing;
-            MovingTradingDaysCorrection mtdc = null;
-            X12plusPreadjustment preadjustment;
-            TsData alin;
-            if (preprocessor != null) {
-                preprocessing = preprocessor.process(sc, log);
-                int nb = spec == null ? 0 : spec.getBackcastHorizon();
-                if (nb < 0) {
-                    nb = -nb * s.getAnnualFrequency();
+            RegSarimaModel preprocessing = preprocessor == null ? null
+                    : timed(timings, PREPROCESSING, () -> preprocessor.process(sc, plog));
+            int nb = horizon(spec == null ? 0 : spec.getBackcastHorizon(), s.getAnnualFrequency()),
+                    nf = horizon(spec == null ? 0 : spec.getForecastHorizon(), s.getAnnualFrequency());
+            Stage<MovingTradingDaysCorrection> fmtdc = Stage.start(
+                    () -> timed(timings, MOVINGTD, () -> mtdCorrection(preprocessing, nb, nf)), exec);
+            // Step 2. Link between regarima and x11
+            X12plusPreadjustment.Builder builder = X12plusPreadjustment.builder();
+            TsData alin = timed(timings, LINEARIZATION, () -> {
+                if (preprocessing == null) {
+                    builder.a1(sc);
+                    return sc;
+                } else {
+                    return initialStep(preprocessing, nb, nf, builder);
                 }
-                int nf = spec == null ? 0 : spec.getForecastHorizon();
-                if (nf < 0) {
-                    nf = -nf * s.getAnnualFrequency();
-                }
-                if (mtd != null) {
-                    if (mtd instanceof TimeVaryingSpec tspec) {
-                        TimeVaryingEstimator te = new TimeVaryingEstimator(tspec);
-                        TimeVaryingCorrection tcorr = te.process(preprocessing, nb, nf);
-                        if (tcorr != null) {
-//                            alin=tcorr.getPartialLinearizedSeries();
-                            mtdc = tcorr;
-                        }
-                    }
-                }
-                // Step 2. Link between regarima and x11
-                X12plusPreadjustment.Builder builder = X12plusPreadjustment.builder();
-                alin = initialStep(preprocessing, nb, nf, builder);
-                preadjustment = builder.build();
-            } else {
-                preprocessing = null;
-                preadjustment = X12plusPreadjustment.builder().a1(sc).build();
-                alin = sc;
-            }
+            });
+            X12plusPreadjustment preadjustment = builder.build();
             // Step 3. X11
             X11plusSpec nspec = updateSpec(spec, preprocessing);
-            X11plusKernel x11 = X11plusKernel.of(nspec);
-            X11plusResults xr = x11.process(alin);
-            X12plusFinals finals = finals(nspec.getMode(), preadjustment, xr);
-            SaBenchmarkingResults bench = null;
-            if (cholette != null) {
-                bench = cholette.process(s, TsData.concatenate(finals.getD11final(), finals.getD11a()), preprocessing);
-            }
+            X11plusResults xr = timed(timings, X11, () -> X11plusKernel.of(nspec).process(alin));
+            X12plusFinals finals = timed(timings, FINALS, () -> finals(nspec.getMode(), preadjustment, xr));
+            // Step 4. Benchmarking and diagnostics
+            Stage<SaBenchmarkingResults> fbench = Stage.start(() -> cholette == null ? null
+                    : timed(timings, BENCHMARKING,
+                            () -> cholette.process(s, TsData.concatenate(finals.getD11final(), finals.getD11a()), preprocessing)), exec);
+            X12plusDiagnostics diagnostics = timed(timings, DIAGNOSTICS, () -> X12plusDiagnostics.of(preprocessing, preadjustment, xr, finals));
             return X12plusResults.builder()
                     .preprocessing(preprocessing)
-                    .mtdCorrection(mtdc)
+                    .mtdCorrection(fmtdc.join())
                     .preadjustment(preadjustment)
                     .decomposition(xr)
                     .finals(finals)
-                    .benchmarking(bench)
-                    .diagnostics(X12plusDiagnostics.of(preprocessing, preadjustment, xr, finals))
-                    .log(log)
+                    .benchmarking(fbench.join())
+                    .diagnostics(diagnostics)
+                    .timings(ordered(timings))
+                    .log(plog)
                     .build();
+        } catch (CompletionException err) {
+            plog.error(err.getCause());
+            return null;
         } catch (Exception err) {
-            log.error(err);
+            plog.error(err);
             return null;
         }
 
@@ -219,6 +246,82 @@ public class X12plusKernel {
 //        }
     }
 
+    /**
+     * Stage executed either by the executor or, if it is not yet started
+     * when its result is needed, by the calling thread
+     *
+     * @param <T>
+     */
+    private static final class Stage<T> implements Runnable {
+
+        private final Supplier<T> fn;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Stage(Supplier<T> fn) {
+            this.fn = fn;
+        }
+
+        private static <T> Stage<T> start(Supplier<T> fn, Executor exec) {
+            Stage<T> stage = new Stage<>(fn);
+            try {
+                exec.execute(stage);
+            } catch (RejectedExecutionException err) {
+                // executed in join
+            }
+            return stage;
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                try {
+                    result.complete(fn.get());
+                } catch (Throwable err) {
+                    result.completeExceptionally(err);
+                }
+            }
+        }
+
+        private T join() {
+            run();
+            return result.join();
+        }
+    }
+
+    private static int horizon(int h, int period) {
+        return h < 0 ? -h * period : h;
+    }
+
+    private MovingTradingDaysCorrection mtdCorrection(RegSarimaModel preprocessing, int nb, int nf) {
+        if (preprocessing == null || mtd == null) {
+            return null;
+        }
+        if (mtd instanceof TimeVaryingSpec tspec) {
+            TimeVaryingEstimator te = new TimeVaryingEstimator(tspec);
+            return te.process(preprocessing, nb, nf);
+        }
+        return null;
+    }
+
+    private static <T> T timed(Map<String, Long> timings, String stage, Supplier<T> fn) {
+        long t0 = System.nanoTime();
+        T rslt = fn.get();
+        timings.put(stage, System.nanoTime() - t0);
+        return rslt;
+    }
+
+    private static Map<String, Long> ordered(Map<String, Long> timings) {
+        Map<String, Long> all = new LinkedHashMap<>();
+        for (String stage : STAGES) {
+            Long t = timings.get(stage);
+            if (t != null) {
+                all.put(stage, t);
+            }
+        }
+        return Collections.unmodifiableMap(all);
+    }
+
     private TsData initialStep(RegSarimaModel model, int nb, int nf, X12plusPreadjustment.Builder astep) {
         boolean mul = model.getDescription().isLogTransformation();
         TsData series = model.interpolatedSeries(false);
@@ -16,6 +16,7 @@
  */
 package jdplus.x12plus.base.core.x12;
 
+import java.util.Map;
 import jdplus.advancedsa.base.core.movingtd.MovingTradingDaysCorrection;
 import jdplus.toolkit.base.api.information.GenericExplorable;
 import jdplus.toolkit.base.api.processing.HasLog;
@@ -41,5 +42,10 @@ public class X12plusResults implements GenericExplorable, HasLog, HasRegSarimaPr
     private SaBenchmarkingResults benchmarking;
     private X12plusDiagnostics diagnostics;
     private ProcessingLog log;
+    /**
+     * Durations (in nanoseconds) of the stages of the processing, in their
+     * order of execution (see X12plusKernel)
+     */
+    private Map<String, Long> timings;
     
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.x12plus.base.core;
+
+import java.util.Random;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Jean Palate
+ */
+public class DefaultExtremeValuesCorrectorTest {
+
+    public DefaultExtremeValuesCorrectorTest() {
+    }
+
+    @Test
+    public void testStdev() {
+        for (int period : new int[]{4, 7, 12}) {
+            for (int start = 0; start < period; start += 3) {
+                // complete and partial last years
+                for (int len = start + 5 * period; len < start + 9 * period + 3; len += 5) {
+                    for (boolean mul : new boolean[]{false, true}) {
+                        DoubleSeq s = series(len, mul, period + start + len);
+                        double[] stdev = DefaultExtremeValuesCorrector.calcStdev(s, start, period, 5, mul);
+                        double[] ref = windowStdev(s, start, period, 5, mul);
+                        assertEquals(ref.length, stdev.length);
+                        for (int i = 0; i < ref.length; ++i) {
+                            assertEquals(ref[i], stdev[i], 1e-12 * ref[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testShortSeries() {
+        DoubleSeq s = series(50, false, 0);
+        double[] stdev = DefaultExtremeValuesCorrector.calcStdev(s, 2, 12, 5, false);
+        assertEquals(1, stdev.length);
+        assertEquals(DefaultExtremeValuesCorrector.calcSingleStdev(s, false), stdev[0]);
+    }
+
+    private static DoubleSeq series(int n, boolean mul, long seed) {
+        Random rnd = new Random(seed);
+        double[] s = new double[n];
+        for (int i = 0; i < n; ++i) {
+            s[i] = (mul ? 1 : 0) + .05 * rnd.nextGaussian();
+        }
+        // missing values (extreme values removed in the second iteration)
+        for (int i = 3; i < n; i += 11) {
+            s[i] = Double.NaN;
+        }
+        return DoubleSeq.of(s);
+    }
+
+    /**
+     * Previous implementation, which computes each window separately
+     */
+    private static double[] windowStdev(DoubleSeq s, int start, int period, int nperiods, boolean mul) {
+        int n = s.length();
+        int nfy = (n - start) / period;
+
+        if (nfy < nperiods) {
+            return new double[]{DefaultExtremeValuesCorrector.calcSingleStdev(s, mul)};
+        }
+
+        int ny = nfy;
+        int ie = nperiods / 2;
+        if (start > 0) {
+            ++ny;
+            ++ie;
+        }
+        boolean cend = false;
+        if ((n - start) % period != 0) {
+            ++ny;
+            cend = true;
+        }
+        double[] stdev = new double[ny];
+        double e = DefaultExtremeValuesCorrector.calcSingleStdev(s.range(0, start + nperiods * period), mul);
+        for (int i = 0; i < ie; ++i) {
+            stdev[i] = e;
+        }
+        int ibeg = start, iend = ibeg + nperiods * period;
+        while (iend <= n) {
+            e = DefaultExtremeValuesCorrector.calcSingleStdev(s.range(ibeg, iend), mul);
+            stdev[ie++] = e;
+            ibeg += period;
+            iend += period;
+        }
+        if (cend) {
+            ibeg -= period;
+            e = DefaultExtremeValuesCorrector.calcSingleStdev(s.range(ibeg, n), mul);
+        } else {
+            e = stdev[ie - 1];
+        }
+        for (int i = ie; i < stdev.length; ++i) {
+            stdev[i] = e;
+        }
+        return stdev;
+    }
+}
@@ -29,6 +29,7 @@ import ec.tstoolkit.modelling.arima.PreprocessingModel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.function.DoubleSupplier;
 import jdplus.toolkit.base.api.math.linearfilters.AsymmetricFilterOption;
 import jdplus.toolkit.base.api.math.linearfilters.FilterSpec;
@@ -42,6 +43,8 @@ import jdplus.toolkit.base.core.data.DataBlock;
 import jdplus.toolkit.base.api.math.linearfilters.LocalPolynomialFilterSpec;
 //import jdplus.experimentalsa.base.core.filters.SpectralDensity;
 import jdplus.x12plus.base.api.X11SeasonalFilterSpec;
+import jdplus.x12plus.base.api.MX11plusSpec;
+import jdplus.x12plus.base.api.PeriodSpec;
 import jdplus.x12plus.base.api.X11plusSpec;
 //import jdplus.experimentalsa.base.core.rkhs.RKHSFilterFactory;
 //import jdplus.experimentalsa.base.core.rkhs.RKHSFilterSpec;
@@ -129,6 +132,178 @@ public class RawX11KernelTest {
         System.out.println(t1-t0);
     }
 
+    @Test
+    public void testBatch() {
+        TsData[] all = Data.indprod_de();
+        List<TsData> lseries = new ArrayList<>();
+        for (TsData s : all) {
+            if (s.getValues().allMatch(x -> Double.isFinite(x) && x > 0)) {
+                lseries.add(s);
+            }
+        }
+        TsData[] series = lseries.toArray(new TsData[lseries.size()]);
+        X11plusSpec spec = X11plusSpec.createDefault(true, 12, SeasonalFilterOption.S3X5);
+        X11plusResults[] rslts = X11Toolkit.process(series, spec, Set.of("d10", "d11"), 2);
+        assertEquals(series.length, rslts.length);
+        for (int i = 0; i < series.length; ++i) {
+            X11plusResults rslt = X11Toolkit.process(series[i], spec);
+            assertArrayEquals(rslt.getD11().getValues().toArray(), rslts[i].getD11().getValues().toArray(), 1e-9);
+            assertNotNull(rslts[i].getD10());
+            assertNull(rslts[i].getD12());
+            // the domain and the decomposition are available after the selection
+            assertNotNull(rslts[i].getB1());
+            assertEquals(series[i].getDomain(), rslts[i].getFullDomain());
+            assertEquals(series[i].getDomain(), rslts[i].getActualDomain());
+            assertNotNull(rslts[i].asDecomposition());
+        }
+    }
+
+    @Test
+    public void testPooled() {
+        X11plusSpec spec = X11plusSpec.createDefault(true, 12, SeasonalFilterOption.S3X5);
+        RawX11Kernel pooled = RawX11Kernel.pooled(spec);
+        RawX11Kernel kernel = new RawX11Kernel(spec);
+        // the work arrays are re-used by series of decreasing and increasing lengths
+        DoubleSeq[] series = new DoubleSeq[]{INPUT, INPUT.drop(0, 25), INPUT.drop(13, 0), INPUT};
+        RawX11Results first = null;
+        double[] d13 = null;
+        for (DoubleSeq s : series) {
+            RawX11Results prslt = pooled.process(s, (Set<String>) null);
+            RawX11Results rslt = kernel.process(s);
+            assertArrayEquals(rslt.getB4().toArray(), prslt.getB4().toArray(), 0);
+            assertArrayEquals(rslt.getB17().toArray(), prslt.getB17().toArray(), 0);
+            assertArrayEquals(rslt.getC20().toArray(), prslt.getC20().toArray(), 0);
+            assertArrayEquals(rslt.getD10().toArray(), prslt.getD10().toArray(), 0);
+            assertArrayEquals(rslt.getD11().toArray(), prslt.getD11().toArray(), 0);
+            assertArrayEquals(rslt.getD13().toArray(), prslt.getD13().toArray(), 0);
+            if (first == null) {
+                first = prslt;
+                d13 = prslt.getD13().toArray();
+            }
+        }
+        // the results are copied out of the work arrays
+        assertArrayEquals(d13, first.getD13().toArray(), 0);
+        X11plusSpec wspec = X11plusSpec.createDefault(true, 365.25 / 7, SeasonalFilterOption.S3X5);
+        RawX11Results wrslt = RawX11Kernel.pooled(wspec).process(DoubleSeq.of(WeeklyData.US_CLAIMS2), Set.of("d11"));
+        RawX11Results rslt = new RawX11Kernel(wspec).process(DoubleSeq.of(WeeklyData.US_CLAIMS2));
+        assertArrayEquals(rslt.getD11().toArray(), wrslt.getD11().toArray(), 0);
+        assertNull(wrslt.getD10());
+    }
+
+    @Test
+    public void testIncremental() {
+        Random rnd = new Random(0);
+        int n = 3000;
+        double[] y = new double[n];
+        double level = 100;
+        for (int i = 0; i < n; ++i) {
+            level += rnd.nextGaussian();
+            y[i] = level + 5 * Math.sin(2 * Math.PI * i / 7) + rnd.nextGaussian();
+        }
+        X11plusSpec spec = X11plusSpec.createDefault(false, 7, SeasonalFilterOption.S3X5);
+        IncrementalX11Kernel ikernel = new IncrementalX11Kernel(spec);
+        RawX11Kernel kernel = new RawX11Kernel(spec);
+        for (int m = n - 5; m <= n; ++m) {
+            DoubleSeq s = DoubleSeq.of(y).range(0, m);
+            RawX11Results irslt = ikernel.process(s);
+            RawX11Results rslt = kernel.process(s);
+            // the first call is a full processing
+            assertEquals(m > n - 5, ikernel.isIncremental());
+            assertArrayEquals(rslt.getB20().toArray(), irslt.getB20().toArray(), 0);
+            assertArrayEquals(rslt.getC17().toArray(), irslt.getC17().toArray(), 0);
+            assertArrayEquals(rslt.getD10().toArray(), irslt.getD10().toArray(), 0);
+            assertArrayEquals(rslt.getD12().toArray(), irslt.getD12().toArray(), 0);
+            assertArrayEquals(rslt.getD13().toArray(), irslt.getD13().toArray(), 0);
+        }
+    }
+
+    @Test
+    public void testIncrementalMonthly() {
+        Random rnd = new Random(1);
+        int n = 1200;
+        double[] y = new double[n];
+        double level = 100;
+        for (int i = 0; i < n; ++i) {
+            level += rnd.nextGaussian();
+            y[i] = level + 5 * Math.sin(2 * Math.PI * i / 12) + rnd.nextGaussian();
+            if (i % 97 == 0) {
+                // a few extreme values
+                y[i] += 10;
+            }
+        }
+        X11plusSpec spec = X11plusSpec.createDefault(false, 12, SeasonalFilterOption.S3X5);
+        IncrementalX11Kernel ikernel = new IncrementalX11Kernel(spec);
+        RawX11Kernel kernel = new RawX11Kernel(spec);
+        for (int m = n - 3; m <= n; ++m) {
+            DoubleSeq s = DoubleSeq.of(y).range(0, m);
+            RawX11Results irslt = ikernel.process(s);
+            RawX11Results rslt = kernel.process(s);
+            if (m > n - 3) {
+                // only the tail has been re-processed
+                assertTrue(ikernel.isIncremental());
+                assertTrue(ikernel.getTailStart() > 0);
+            } else {
+                assertFalse(ikernel.isIncremental());
+            }
+            assertArrayEquals(rslt.getB20().toArray(), irslt.getB20().toArray(), 0);
+            assertArrayEquals(rslt.getC17().toArray(), irslt.getC17().toArray(), 0);
+            assertArrayEquals(rslt.getC20().toArray(), irslt.getC20().toArray(), 0);
+            assertArrayEquals(rslt.getD10().toArray(), irslt.getD10().toArray(), 0);
+            assertArrayEquals(rslt.getD11().toArray(), irslt.getD11().toArray(), 0);
+            assertArrayEquals(rslt.getD12().toArray(), irslt.getD12().toArray(), 0);
+            assertArrayEquals(rslt.getD13().toArray(), irslt.getD13().toArray(), 0);
+        }
+    }
+
+    @Test
+    public void testMX11Batch() {
+        TsData[] all = Data.indprod_de();
+        List<TsData> lseries = new ArrayList<>();
+        for (TsData s : all) {
+            if (s.getValues().allMatch(x -> Double.isFinite(x) && x > 0)) {
+                lseries.add(s);
+            }
+        }
+        TsData[] series = lseries.toArray(new TsData[lseries.size()]);
+        MX11plusSpec spec = MX11plusSpec.builder()
+                .mode(DecompositionMode.Multiplicative)
+                .periodSpec(periodSpec(X11plusSpec.createDefault(true, 6, SeasonalFilterOption.S3X3)))
+                .periodSpec(periodSpec(X11plusSpec.createDefault(true, 12, SeasonalFilterOption.S3X5)))
+                .build();
+        MX11Results[] rslts = X11Toolkit.process(series, spec, 3);
+        assertEquals(series.length, rslts.length);
+        for (int i = 0; i < series.length; ++i) {
+            MX11Results rslt = X11Toolkit.process(series[i], spec);
+            assertEquals(2, rslts[i].getSteps().size());
+            // the steps share their work arrays: same results as independent kernels
+            DoubleSeq b1 = series[i].getValues();
+            for (int j = 0; j < 2; ++j) {
+                RawX11Results step = new RawX11Kernel(spec.step(spec.getPeriodSpecs().get(j).getPeriod())).process(b1);
+                MX11Results.Step t = rslts[i].getSteps().get(j);
+                assertArrayEquals(step.getD10().toArray(), t.getD10().getValues().toArray(), 0);
+                assertArrayEquals(step.getD13().toArray(), t.getD13().getValues().toArray(), 0);
+                b1 = step.getD11();
+            }
+            for (int j = 0; j < 2; ++j) {
+                MX11Results.Step s = rslt.getSteps().get(j), t = rslts[i].getSteps().get(j);
+                assertEquals(s.getPeriod(), t.getPeriod());
+                assertArrayEquals(s.getD10().getValues().toArray(), t.getD10().getValues().toArray(), 1e-12);
+                assertArrayEquals(s.getD11().getValues().toArray(), t.getD11().getValues().toArray(), 1e-12);
+                assertArrayEquals(s.getD12().getValues().toArray(), t.getD12().getValues().toArray(), 1e-12);
+                assertArrayEquals(s.getD13().getValues().toArray(), t.getD13().getValues().toArray(), 1e-12);
+            }
+        }
+    }
+
+    private static PeriodSpec periodSpec(X11plusSpec spec) {
+        return PeriodSpec.builder()
+                .period(spec.getPeriod())
+                .trendFilter(spec.getTrendFilter())
+                .initialSeasonalFilter(spec.getInitialSeasonalFilter())
+                .finalSeasonalFilter(spec.getFinalSeasonalFilter())
+                .build();
+    }
+
     @Test
     public void testMonthly() {
         X11plusSpec nspec= X11plusSpec.createDefault(false, 12, SeasonalFilterOption.S3X5);
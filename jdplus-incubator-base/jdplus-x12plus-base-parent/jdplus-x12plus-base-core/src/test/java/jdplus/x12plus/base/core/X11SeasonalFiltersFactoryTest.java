@@ -0,0 +1,195 @@
+/*
+ * Copyright 2023 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package jdplus.x12plus.base.core;
+
+import java.util.Random;
+import jdplus.toolkit.base.api.data.DoubleSeq;
+import jdplus.toolkit.base.core.data.DataBlock;
+import jdplus.toolkit.base.core.math.linearfilters.IFiniteFilter;
+import jdplus.toolkit.base.core.math.linearfilters.ISymmetricFiltering;
+import jdplus.toolkit.base.core.math.linearfilters.SymmetricFilter;
+import jdplus.x12plus.base.api.SeasonalFilterOption;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Jean Palate
+ */
+public class X11SeasonalFiltersFactoryTest {
+
+    public X11SeasonalFiltersFactoryTest() {
+    }
+
+    @Test
+    public void testAnyFilter() {
+        compare(365.25, SeasonalFilterOption.S3X3, 2000, 2191, 2557, 3000);
+        compare(365.25, SeasonalFilterOption.S3X5, 2600, 2922, 3333);
+        compare(52.18, SeasonalFilterOption.S3X3, 300, 313, 365, 417, 523);
+        compare(52.18, SeasonalFilterOption.S3X5, 400, 417, 470, 523);
+    }
+
+    @Test
+    public void testAnyFilterWithMissing() {
+        ISymmetricFiltering filter = X11SeasonalFiltersFactory.filter(52.18, SeasonalFilterOption.S3X3);
+        double[] y = series(417, 52);
+        y[0] = Double.NaN;
+        y[200] = Double.NaN;
+        y[416] = Double.NaN;
+        DoubleSeq in = DoubleSeq.of(y);
+        DoubleSeq x = filter.process(in);
+        DoubleSeq ref = reference(52.18, filter.centralFilter(), filter.endPointsFilters(), in);
+        for (int i = 0; i < y.length; ++i) {
+            assertEquals(Double.isNaN(ref.get(i)), Double.isNaN(x.get(i)));
+            if (!Double.isNaN(ref.get(i))) {
+                assertEquals(ref.get(i), x.get(i), 1e-9);
+            }
+        }
+    }
+
+    private static void compare(double period, SeasonalFilterOption option, int... lengths) {
+        ISymmetricFiltering filter = X11SeasonalFiltersFactory.filter(period, option);
+        assertTrue(filter instanceof X11SeasonalFiltersFactory.AnyFilter);
+        for (int len : lengths) {
+            DoubleSeq in = DoubleSeq.of(series(len, len));
+            DoubleSeq x = filter.process(in);
+            DoubleSeq ref = reference(period, filter.centralFilter(), filter.endPointsFilters(), in);
+            assertEquals(len, x.length());
+            assertTrue(x.distance(ref) < 1e-9 * len);
+            // the plan is re-used
+            assertTrue(filter.process(in).distance(x) == 0);
+        }
+    }
+
+    private static double[] series(int n, long seed) {
+        Random rnd = new Random(seed);
+        double[] y = new double[n];
+        for (int i = 0; i < n; ++i) {
+            y[i] = 10 + Math.sin(i * 2 * Math.PI / 52.18) + rnd.nextGaussian();
+        }
+        return y;
+    }
+
+    /**
+     * Previous implementation of AnyFilter.process, which interpolates the
+     * subseries for each position
+     */
+    private static DoubleSeq reference(double period, SymmetricFilter sfilter, IFiniteFilter[] endpoints, DoubleSeq in) {
+        double[] x = new double[in.length()];
+        int n = sfilter.length(), m = n / 2;
+        DataBlock cin = DataBlock.make(n);
+        double t = m * period;
+        int l;
+        if ((t - (int) t) < 1e-9) {
+            l = m;
+        } else {
+            l = 1 + m;
+        }
+        for (int i = 0; i < x.length; ++i) {
+            cin.set(0);
+            int c = (int) (i / period);
+            int q = (int) ((x.length - 1 - i) / period); // last possible item
+            if (c >= l && q >= l) {
+                // fill the input buffer;
+                cin.set(m, in.get(i));
+                double dcur = period;
+                for (int j = m + 1; j < n; ++j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9) {
+                        cin.set(j, p1 * in.get(i + jcur) + p0 * in.get(i + jcur + 1));
+                    } else {
+                        cin.set(j, in.get(i + jcur));
+                    }
+                }
+                dcur = period;
+                for (int j = m - 1; j >= 0; --j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9) {
+                        cin.set(j, p1 * in.get(i - jcur) + p0 * in.get(i - jcur - 1));
+                    } else {
+                        cin.set(j, in.get(i - jcur));
+                    }
+                }
+                x[i] = sfilter.apply(cin);
+            } else if (c < l) {
+                int w = c;
+                // fill the input buffer;
+                cin.set(w, in.get(i));
+                double dcur = period;
+                for (int j = w + 1; j < n; ++j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9) {
+                        cin.set(j, p1 * in.get(i + jcur) + p0 * in.get(i + jcur + 1));
+                    } else {
+                        cin.set(j, in.get(i + jcur));
+                    }
+                }
+                dcur = period;
+                for (int j = w - 1; j >= 0; --j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9 && i - jcur - 1 >= 0) {
+                        cin.set(j, p1 * in.get(i - jcur) + p0 * in.get(i - jcur - 1));
+                    } else {
+                        cin.set(j, in.get(i - jcur));
+                    }
+                }
+                if (c < m) {
+                    int k = c + 1;
+                    x[i] = endpoints[m - k].apply(cin.reverse().range(m - c, n));
+                } else {
+                    x[i] = sfilter.apply(cin);
+                }
+            } else {
+                int w = n - q - 1;
+                // fill the input buffer;
+                cin.set(w, in.get(i));
+                double dcur = period;
+                for (int j = w + 1; j < n; ++j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9 && i + jcur + 1 < in.length()) {
+                        cin.set(j, p1 * in.get(i + jcur) + p0 * in.get(i + jcur + 1));
+                    } else {
+                        cin.set(j, p1 * in.get(i + jcur));
+                    }
+                }
+                dcur = period;
+                for (int j = w - 1; j >= 0; --j, dcur += period) {
+                    int jcur = (int) dcur;
+                    double p0 = dcur - jcur, p1 = 1 - p0;
+                    if (p0 > 1e-9) {
+                        cin.set(j, p1 * in.get(i - jcur) + p0 * in.get(i - jcur - 1));
+                    } else {
+                        cin.set(j, in.get(i - jcur));
+                    }
+                }
+                if (q < m) {
+                    int k = q + 1;
+                    x[i] = endpoints[m - k].apply(cin.range(m - q, n));
+                } else {
+                    x[i] = sfilter.apply(cin);
+                }
+
+            }
+        }
+        return DoubleSeq.of(x);
+    }
+}
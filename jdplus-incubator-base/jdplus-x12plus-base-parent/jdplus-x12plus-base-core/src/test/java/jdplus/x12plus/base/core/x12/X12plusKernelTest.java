@@ -16,6 +16,11 @@
  */
 package jdplus.x12plus.base.core.x12;
 
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import jdplus.sa.base.api.benchmarking.SaBenchmarkingSpec;
 import jdplus.toolkit.base.api.modelling.regular.ModellingSpec;
 import jdplus.advancedsa.base.api.movingtd.TimeVaryingSpec;
@@ -23,6 +28,7 @@ import jdplus.x12plus.base.api.SeasonalFilterOption;
 import jdplus.x12plus.base.api.X11plusSpec;
 import tck.demetra.data.Data;
 import jdplus.x12plus.base.api.X12plusSpec;
+import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -77,6 +83,44 @@ public class X12plusKernelTest {
         X12plusResults rslt = kernel.process(Data.TS_ABS_RETAIL, null);
      }
 
+    @Test
+    public void testExecutor() throws Exception {
+        X11plusSpec x11 = X11plusSpec.createDefault(true, 12, SeasonalFilterOption.S3X5)
+                .toBuilder()
+                .backcastHorizon(-1)
+                .forecastHorizon(-1)
+                .build();
+        X12plusSpec spec = X12plusSpec.builder()
+                .preprocessing(ModellingSpec.FULL)
+                .movingTradingDays(TimeVaryingSpec.DEF_SPEC)
+                .x11(x11)
+                .benchmarking(SaBenchmarkingSpec.DEFAULT_ENABLED)
+                .build();
+        X12plusResults srslt = X12plusKernel.of(spec, null).process(Data.TS_ABS_RETAIL, null);
+        // single thread executor, also used by the caller (no free thread for the stages)
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        try {
+            X12plusKernel kernel = X12plusKernel.of(spec, null, pool);
+            X12plusResults prslt = kernel.process(Data.TS_ABS_RETAIL, null);
+            Future<X12plusResults> inner = pool.submit(() -> kernel.process(Data.TS_ABS_RETAIL, null));
+            X12plusResults irslt = inner.get(60, TimeUnit.SECONDS);
+            for (X12plusResults rslt : new X12plusResults[]{prslt, irslt}) {
+                assertArrayEquals(srslt.getFinals().getD11final().getValues().toArray(), rslt.getFinals().getD11final().getValues().toArray(), 0);
+                assertArrayEquals(srslt.getFinals().getD12final().getValues().toArray(), rslt.getFinals().getD12final().getValues().toArray(), 0);
+                assertArrayEquals(srslt.getMtdCorrection().getTdCoefficients().toArray(), rslt.getMtdCorrection().getTdCoefficients().toArray(), 0);
+                assertArrayEquals(srslt.getBenchmarking().getBenchmarkedSeries().getValues().toArray(),
+                        rslt.getBenchmarking().getBenchmarkedSeries().getValues().toArray(), 0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Map<String, Long> timings = srslt.getTimings();
+        assertArrayEquals(new String[]{X12plusKernel.PRELIMINARY, X12plusKernel.PREPROCESSING, X12plusKernel.MOVINGTD,
+            X12plusKernel.LINEARIZATION, X12plusKernel.X11, X12plusKernel.FINALS, X12plusKernel.BENCHMARKING,
+            X12plusKernel.DIAGNOSTICS}, timings.keySet().toArray(String[]::new));
+        assertTrue(timings.values().stream().allMatch(t -> t >= 0));
+    }
+
     public static void main(String[] args) {
         X12plusSpec spec = X12plusSpec.builder()
                 .preprocessing(ModellingSpec.FULL)
@@ -89,6 +89,7 @@ public class ExtendedAirlineDecompositionViewFactory extends ProcDocumentViewFac
         return new String[]{
             generateId("Seasonal (component)", Dictionary.concatenate(SaDictionaries.DECOMPOSITION, ExtendedAirlineDictionaries.SY_CMP)),
             generateId("Seasonal (component)", Dictionary.concatenate(SaDictionaries.DECOMPOSITION, ExtendedAirlineDictionaries.SW_CMP)),
+            generateId("Seasonal (component)", Dictionary.concatenate(SaDictionaries.DECOMPOSITION, ExtendedAirlineDictionaries.SD_CMP)),
             generateId("Calendar effects", ModellingDictionary.CAL),
             generateId("Irregular", SaDictionaries.I)
         };